@@ -0,0 +1,490 @@
+package com.mininglamp.nebulamybatis;
+
+import java.util.List;
+
+/**
+ * 基准测试的返回对象
+ *
+ * @author daiyi
+ */
+public final class BenchBeans {
+
+    private BenchBeans() {
+    }
+
+    /**
+     * 属性 p0..p31，偶数位为 Long，奇数位为 String
+     */
+    public static class Properties {
+        private Long p0;
+
+        private String p1;
+
+        private Long p2;
+
+        private String p3;
+
+        private Long p4;
+
+        private String p5;
+
+        private Long p6;
+
+        private String p7;
+
+        private Long p8;
+
+        private String p9;
+
+        private Long p10;
+
+        private String p11;
+
+        private Long p12;
+
+        private String p13;
+
+        private Long p14;
+
+        private String p15;
+
+        private Long p16;
+
+        private String p17;
+
+        private Long p18;
+
+        private String p19;
+
+        private Long p20;
+
+        private String p21;
+
+        private Long p22;
+
+        private String p23;
+
+        private Long p24;
+
+        private String p25;
+
+        private Long p26;
+
+        private String p27;
+
+        private Long p28;
+
+        private String p29;
+
+        private Long p30;
+
+        private String p31;
+
+        public Long getP0() {
+            return p0;
+        }
+
+        public void setP0(Long p0) {
+            this.p0 = p0;
+        }
+
+        public String getP1() {
+            return p1;
+        }
+
+        public void setP1(String p1) {
+            this.p1 = p1;
+        }
+
+        public Long getP2() {
+            return p2;
+        }
+
+        public void setP2(Long p2) {
+            this.p2 = p2;
+        }
+
+        public String getP3() {
+            return p3;
+        }
+
+        public void setP3(String p3) {
+            this.p3 = p3;
+        }
+
+        public Long getP4() {
+            return p4;
+        }
+
+        public void setP4(Long p4) {
+            this.p4 = p4;
+        }
+
+        public String getP5() {
+            return p5;
+        }
+
+        public void setP5(String p5) {
+            this.p5 = p5;
+        }
+
+        public Long getP6() {
+            return p6;
+        }
+
+        public void setP6(Long p6) {
+            this.p6 = p6;
+        }
+
+        public String getP7() {
+            return p7;
+        }
+
+        public void setP7(String p7) {
+            this.p7 = p7;
+        }
+
+        public Long getP8() {
+            return p8;
+        }
+
+        public void setP8(Long p8) {
+            this.p8 = p8;
+        }
+
+        public String getP9() {
+            return p9;
+        }
+
+        public void setP9(String p9) {
+            this.p9 = p9;
+        }
+
+        public Long getP10() {
+            return p10;
+        }
+
+        public void setP10(Long p10) {
+            this.p10 = p10;
+        }
+
+        public String getP11() {
+            return p11;
+        }
+
+        public void setP11(String p11) {
+            this.p11 = p11;
+        }
+
+        public Long getP12() {
+            return p12;
+        }
+
+        public void setP12(Long p12) {
+            this.p12 = p12;
+        }
+
+        public String getP13() {
+            return p13;
+        }
+
+        public void setP13(String p13) {
+            this.p13 = p13;
+        }
+
+        public Long getP14() {
+            return p14;
+        }
+
+        public void setP14(Long p14) {
+            this.p14 = p14;
+        }
+
+        public String getP15() {
+            return p15;
+        }
+
+        public void setP15(String p15) {
+            this.p15 = p15;
+        }
+
+        public Long getP16() {
+            return p16;
+        }
+
+        public void setP16(Long p16) {
+            this.p16 = p16;
+        }
+
+        public String getP17() {
+            return p17;
+        }
+
+        public void setP17(String p17) {
+            this.p17 = p17;
+        }
+
+        public Long getP18() {
+            return p18;
+        }
+
+        public void setP18(Long p18) {
+            this.p18 = p18;
+        }
+
+        public String getP19() {
+            return p19;
+        }
+
+        public void setP19(String p19) {
+            this.p19 = p19;
+        }
+
+        public Long getP20() {
+            return p20;
+        }
+
+        public void setP20(Long p20) {
+            this.p20 = p20;
+        }
+
+        public String getP21() {
+            return p21;
+        }
+
+        public void setP21(String p21) {
+            this.p21 = p21;
+        }
+
+        public Long getP22() {
+            return p22;
+        }
+
+        public void setP22(Long p22) {
+            this.p22 = p22;
+        }
+
+        public String getP23() {
+            return p23;
+        }
+
+        public void setP23(String p23) {
+            this.p23 = p23;
+        }
+
+        public Long getP24() {
+            return p24;
+        }
+
+        public void setP24(Long p24) {
+            this.p24 = p24;
+        }
+
+        public String getP25() {
+            return p25;
+        }
+
+        public void setP25(String p25) {
+            this.p25 = p25;
+        }
+
+        public Long getP26() {
+            return p26;
+        }
+
+        public void setP26(Long p26) {
+            this.p26 = p26;
+        }
+
+        public String getP27() {
+            return p27;
+        }
+
+        public void setP27(String p27) {
+            this.p27 = p27;
+        }
+
+        public Long getP28() {
+            return p28;
+        }
+
+        public void setP28(Long p28) {
+            this.p28 = p28;
+        }
+
+        public String getP29() {
+            return p29;
+        }
+
+        public void setP29(String p29) {
+            this.p29 = p29;
+        }
+
+        public Long getP30() {
+            return p30;
+        }
+
+        public void setP30(Long p30) {
+            this.p30 = p30;
+        }
+
+        public String getP31() {
+            return p31;
+        }
+
+        public void setP31(String p31) {
+            this.p31 = p31;
+        }
+    }
+
+    public static class StringVertex extends Properties {
+
+        private String id;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+    }
+
+    public static class LongVertex extends Properties {
+
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+    }
+
+    public static class StringEdge extends Properties {
+
+        private String src;
+
+        private String dst;
+
+        public String getSrc() {
+            return src;
+        }
+
+        public void setSrc(String src) {
+            this.src = src;
+        }
+
+        public String getDst() {
+            return dst;
+        }
+
+        public void setDst(String dst) {
+            this.dst = dst;
+        }
+    }
+
+    public static class LongEdge extends Properties {
+
+        private Long src;
+
+        private Long dst;
+
+        public Long getSrc() {
+            return src;
+        }
+
+        public void setSrc(Long src) {
+            this.src = src;
+        }
+
+        public Long getDst() {
+            return dst;
+        }
+
+        public void setDst(Long dst) {
+            this.dst = dst;
+        }
+    }
+
+    /**
+     * 路径，结构与 StringPathDO、LongPathDO 一致
+     */
+    public static class Path {
+
+        private Object start;
+
+        private Object end;
+
+        private List<Object> nodes;
+
+        private List<RelationShip> relationShips;
+
+        public Object getStart() {
+            return start;
+        }
+
+        public void setStart(Object start) {
+            this.start = start;
+        }
+
+        public Object getEnd() {
+            return end;
+        }
+
+        public void setEnd(Object end) {
+            this.end = end;
+        }
+
+        public List<Object> getNodes() {
+            return nodes;
+        }
+
+        public void setNodes(List<Object> nodes) {
+            this.nodes = nodes;
+        }
+
+        public List<RelationShip> getRelationShips() {
+            return relationShips;
+        }
+
+        public void setRelationShips(List<RelationShip> relationShips) {
+            this.relationShips = relationShips;
+        }
+
+        public static class RelationShip {
+
+            private Object src;
+
+            private Object dst;
+
+            private long ranking;
+
+            public Object getSrc() {
+                return src;
+            }
+
+            public void setSrc(Object src) {
+                this.src = src;
+            }
+
+            public Object getDst() {
+                return dst;
+            }
+
+            public void setDst(Object dst) {
+                this.dst = dst;
+            }
+
+            public long getRanking() {
+                return ranking;
+            }
+
+            public void setRanking(long ranking) {
+                this.ranking = ranking;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.mininglamp.nebulamybatis;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 运行基准测试并输出吞吐量和每行分配字节数
+ * <p>
+ * 参数与 JMH 命令行一致，例如 {@code java -jar target/benchmarks.jar InterceptBenchmark -p rows=10000}。
+ * 总是开启 GC profiler，每行分配字节数 = gc.alloc.rate.norm / 行数（rows 或 length 参数，没有时按 1 行计）。
+ *
+ * @author daiyi
+ */
+public class BenchmarkMain {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        System.out.println();
+        System.out.printf("%-60s %16s %16s %14s%n", "Benchmark", "ops/s", "B/op", "B/row");
+        for (RunResult result : results) {
+            BenchmarkParams params = result.getParams();
+            Result primary = result.getPrimaryResult();
+            Result alloc = findAlloc(result);
+            double bytesPerOp = alloc == null ? Double.NaN : alloc.getScore();
+            System.out.printf("%-60s %16.1f %16.1f %14.1f%n", describe(params), primary.getScore(), bytesPerOp, bytesPerOp / rowsPerOp(params));
+        }
+    }
+
+    private static Result findAlloc(RunResult result) {
+        for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+            if (entry.getKey().endsWith(ALLOC_NORM)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static int rowsPerOp(BenchmarkParams params) {
+        for (String key : new String[]{"rows", "length"}) {
+            String value = params.getParam(key);
+            if (value != null) {
+                return Math.max(1, Integer.parseInt(value));
+            }
+        }
+        return 1;
+    }
+
+    private static String describe(BenchmarkParams params) {
+        String name = params.getBenchmark();
+        StringBuilder sb = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+        for (String key : params.getParamsKeys()) {
+            sb.append(' ').append(key).append('=').append(params.getParam(key));
+        }
+        return sb.toString();
+    }
+}
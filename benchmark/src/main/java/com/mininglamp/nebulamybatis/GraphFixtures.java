@@ -0,0 +1,138 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.*;
+import com.vesoft.nebula.client.graph.data.ResultSet;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 基准测试用的内存数据：点、边、路径及对应的 MappedStatement，不需要连接 graphd
+ * <p>
+ * 属性 p0..p31 偶数位为 int，奇数位为 string；VID 可以是 string 或 int。
+ *
+ * @author daiyi
+ */
+final class GraphFixtures {
+
+    static final String DECODE_TYPE = "utf-8";
+    static final int MAX_WIDTH = 32;
+
+    private GraphFixtures() {
+    }
+
+    static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Value vid(boolean stringVid, long id) {
+        return stringVid ? Value.sVal(bytes("vid-" + id)) : Value.iVal(id);
+    }
+
+    static Map<byte[], Value> properties(long seed, int width) {
+        Map<byte[], Value> props = new LinkedHashMap<>(width * 2);
+        for (int i = 0; i < width; i++) {
+            props.put(bytes("p" + i), i % 2 == 0 ? Value.iVal(seed + i) : Value.sVal(bytes("value-" + seed + "-" + i)));
+        }
+        return props;
+    }
+
+    static Vertex vertex(boolean stringVid, long id, int width) {
+        return new Vertex(vid(stringVid, id), Collections.singletonList(new Tag(bytes("person"), properties(id, width))));
+    }
+
+    static Value vertexValue(boolean stringVid, long id, int width) {
+        return Value.vVal(vertex(stringVid, id, width));
+    }
+
+    static Value edgeValue(boolean stringVid, long src, long dst, int width) {
+        return Value.eVal(new Edge(vid(stringVid, src), vid(stringVid, dst), 1, bytes("follow"), 0, properties(src, width)));
+    }
+
+    /**
+     * 长度为 length 的路径：length + 1 个点，length 条边
+     */
+    static Value pathValue(boolean stringVid, int length) {
+        List<Step> steps = new ArrayList<>(length);
+        for (int i = 1; i <= length; i++) {
+            steps.add(new Step(vertex(stringVid, i, 0), 1, bytes("follow"), i, new HashMap<>()));
+        }
+        return Value.pVal(new Path(vertex(stringVid, 0, 0), steps));
+    }
+
+    static ValueWrapper wrap(Value value) {
+        return new ValueWrapper(value, DECODE_TYPE, 0);
+    }
+
+    /**
+     * 单列结果集，每行一个值
+     */
+    static NebulaResultSet singleColumn(List<Value> values) {
+        List<String> columnNames = Collections.singletonList("v");
+        List<ResultSet.Record> records = new ArrayList<>(values.size());
+        for (Value value : values) {
+            records.add(new ResultSet.Record(columnNames, new Row(Collections.singletonList(value)), DECODE_TYPE, 0));
+        }
+        return new NebulaResultSet(records.size(), columnNames, records);
+    }
+
+    /**
+     * 点的映射语句：id + p0..p(width-1)
+     */
+    static MappedStatement vertexStatement(Configuration configuration, boolean stringVid, int width) {
+        List<ResultMapping> mappings = new ArrayList<>(width + 1);
+        mappings.add(mapping(configuration, "id", "id", stringVid ? String.class : Long.class));
+        addProperties(configuration, mappings, width);
+        return statement(configuration, "vertex-" + stringVid + "-" + width,
+                stringVid ? BenchBeans.StringVertex.class : BenchBeans.LongVertex.class, mappings);
+    }
+
+    /**
+     * 边的映射语句：_src + _dst + p0..p(width-1)
+     */
+    static MappedStatement edgeStatement(Configuration configuration, boolean stringVid, int width) {
+        Class<?> vidType = stringVid ? String.class : Long.class;
+        List<ResultMapping> mappings = new ArrayList<>(width + 2);
+        mappings.add(mapping(configuration, "src", "_src", vidType));
+        mappings.add(mapping(configuration, "dst", "_dst", vidType));
+        addProperties(configuration, mappings, width);
+        return statement(configuration, "edge-" + stringVid + "-" + width,
+                stringVid ? BenchBeans.StringEdge.class : BenchBeans.LongEdge.class, mappings);
+    }
+
+    /**
+     * 路径的映射语句：_start + _end + _nodes + _relation_ships
+     */
+    static MappedStatement pathStatement(Configuration configuration) {
+        List<ResultMapping> mappings = new ArrayList<>(4);
+        mappings.add(mapping(configuration, "start", "_start", Object.class));
+        mappings.add(mapping(configuration, "end", "_end", Object.class));
+        mappings.add(mapping(configuration, "nodes", "_nodes", Object.class));
+        mappings.add(mapping(configuration, "relationShips", "_relation_ships", Object.class));
+        return statement(configuration, "path", BenchBeans.Path.class, mappings);
+    }
+
+    private static void addProperties(Configuration configuration, List<ResultMapping> mappings, int width) {
+        for (int i = 0; i < width; i++) {
+            mappings.add(mapping(configuration, "p" + i, "p" + i, i % 2 == 0 ? Long.class : String.class));
+        }
+    }
+
+    private static ResultMapping mapping(Configuration configuration, String property, String column, Class<?> javaType) {
+        return new ResultMapping.Builder(configuration, property, column, javaType).build();
+    }
+
+    private static MappedStatement statement(Configuration configuration, String id, Class<?> type, List<ResultMapping> mappings) {
+        ResultMap resultMap = new ResultMap.Builder(configuration, id + "-map", type, mappings).build();
+        return new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, "MATCH"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap))
+                .build();
+    }
+}
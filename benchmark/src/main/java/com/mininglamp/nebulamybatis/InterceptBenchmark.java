@@ -0,0 +1,77 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.jdbc.NebulaStatement;
+import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GraphResultSetIntercept.intercept 的整体吞吐：一次调用映射 rows 个点或边
+ *
+ * @author daiyi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InterceptBenchmark {
+
+    @Param({"100", "10000"})
+    public int rows;
+
+    @Param({"4", "32"})
+    public int width;
+
+    @Param({"string", "int"})
+    public String vid;
+
+    @Param({"vertex", "edge"})
+    public String element;
+
+    @Param({"two-pass", "direct", "parallel"})
+    public String mode;
+
+    private GraphResultSetIntercept intercept;
+    private MappedStatement mappedStatement;
+    private NebulaResultSet resultSet;
+    private Statement statement;
+    private Method handleResultSets;
+
+    @Setup
+    public void setup() throws Exception {
+        boolean stringVid = "string".equals(vid);
+        Configuration configuration = new Configuration();
+        boolean vertex = "vertex".equals(element);
+        mappedStatement = vertex ? GraphFixtures.vertexStatement(configuration, stringVid, width)
+                : GraphFixtures.edgeStatement(configuration, stringVid, width);
+        List<Value> values = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            values.add(vertex ? GraphFixtures.vertexValue(stringVid, i, width) : GraphFixtures.edgeValue(stringVid, i, i + 1, width));
+        }
+        resultSet = GraphFixtures.singleColumn(values);
+        statement = new NebulaStatement(resultSet);
+        intercept = new GraphResultSetIntercept();
+        intercept.setDirectMapping(!"two-pass".equals(mode));
+        intercept.setParallelDecode("parallel".equals(mode));
+        intercept.setParallelThreshold(1000);
+        handleResultSets = ResultSetHandler.class.getMethod("handleResultSets", Statement.class);
+    }
+
+    @Benchmark
+    public Object intercept() throws Throwable {
+        resultSet.beforeFirst();
+        // mybatis 每次查询都会新建 DefaultResultSetHandler
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, mappedStatement, null, null, null, RowBounds.DEFAULT);
+        return intercept.intercept(new Invocation(handler, handleResultSets, new Object[]{statement}));
+    }
+}
@@ -0,0 +1,42 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import org.apache.ibatis.session.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路径解码（原 doPath，现 NebulaRowDecoder#decodePath）：起点终点、节点列表和 $RelationShip 列表
+ *
+ * @author daiyi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PathBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int length;
+
+    @Param({"string", "int"})
+    public String vid;
+
+    private MappingPlan plan;
+    private NebulaRowDecoder decoder;
+    private ValueWrapper path;
+
+    @Setup
+    public void setup() {
+        plan = MappingPlan.compile(GraphFixtures.pathStatement(new Configuration()));
+        decoder = new NebulaRowDecoder(plan, null, false, null, null);
+        path = GraphFixtures.wrap(GraphFixtures.pathValue("string".equals(vid), length));
+    }
+
+    @Benchmark
+    public Object decodePath() throws Exception {
+        Object bean = plan.newInstance();
+        decoder.decodePath(bean, path);
+        return bean;
+    }
+}
@@ -0,0 +1,86 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.Row;
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.client.graph.data.ResultSet;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResultSet getter：遍历 rows 行，按列名读取每一列（偶数列 getLong，奇数列 getString），
+ * 对比 Record 行式的 NebulaResultSet 与列式的 NebulaColumnarResultSet
+ *
+ * @author daiyi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ResultSetBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    @Param({"4", "32"})
+    public int width;
+
+    @Param({"record", "columnar"})
+    public String layout;
+
+    private AbstractNebulaResultSet resultSet;
+    private String[] labels;
+
+    @Setup
+    public void setup() {
+        List<String> columnNames = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            columnNames.add("p" + i);
+        }
+        labels = columnNames.toArray(new String[0]);
+        if ("record".equals(layout)) {
+            List<ResultSet.Record> records = new ArrayList<>(rows);
+            for (int r = 0; r < rows; r++) {
+                records.add(new ResultSet.Record(columnNames, new Row(row(r)), GraphFixtures.DECODE_TYPE, 0));
+            }
+            resultSet = new NebulaResultSet(rows, columnNames, records);
+        } else {
+            NebulaColumnarResultSet.Builder builder = NebulaColumnarResultSet.builder(columnNames);
+            for (int r = 0; r < rows; r++) {
+                List<Value> row = row(r);
+                ValueWrapper[] cells = new ValueWrapper[width];
+                for (int i = 0; i < width; i++) {
+                    cells[i] = GraphFixtures.wrap(row.get(i));
+                }
+                builder.append(cells, GraphFixtures.DECODE_TYPE, 0);
+            }
+            resultSet = builder.build();
+        }
+    }
+
+    private List<Value> row(int r) {
+        List<Value> row = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            row.add(i % 2 == 0 ? Value.iVal(r + i) : Value.sVal(GraphFixtures.bytes("value-" + r + "-" + i)));
+        }
+        return row;
+    }
+
+    @Benchmark
+    public void readByLabel(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            for (int i = 0; i < labels.length; i++) {
+                if (i % 2 == 0) {
+                    blackhole.consume(resultSet.getLong(labels[i]));
+                } else {
+                    blackhole.consume(resultSet.getString(labels[i]));
+                }
+            }
+        }
+    }
+}
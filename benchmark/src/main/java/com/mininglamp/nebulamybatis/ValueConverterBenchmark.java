@@ -0,0 +1,116 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.NList;
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个值的转换（原 resolveValue，现 ValueConverter 转换表）：转换为对象，以及直接写入 bean 属性
+ *
+ * @author daiyi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ValueConverterBenchmark {
+
+    @Param({"long", "string", "double", "list"})
+    public String kind;
+
+    private ValueWrapper value;
+    private ValueConverter.Table table;
+    private PropertyWriter writer;
+    private Object bean;
+
+    @Setup
+    public void setup() throws Exception {
+        bean = new Target();
+        switch (kind) {
+            case "long":
+                value = GraphFixtures.wrap(Value.iVal(42));
+                writer = PropertyWriter.of(Target.class, "count");
+                break;
+            case "string":
+                value = GraphFixtures.wrap(Value.sVal(GraphFixtures.bytes("value-42")));
+                writer = PropertyWriter.of(Target.class, "name");
+                break;
+            case "double":
+                value = GraphFixtures.wrap(Value.fVal(4.2));
+                writer = PropertyWriter.of(Target.class, "weight");
+                break;
+            default:
+                List<Value> items = new ArrayList<>(16);
+                for (int i = 0; i < 16; i++) {
+                    items.add(Value.iVal(i));
+                }
+                value = GraphFixtures.wrap(Value.lVal(new NList(items)));
+                writer = PropertyWriter.of(Target.class, "ids");
+                break;
+        }
+        // public bean 的 public setter（包括基本类型参数）应当走生成的 lambda，否则测到的是 MethodHandle 退化路径
+        if (!writer.isGenerated()) {
+            throw new IllegalStateException("属性 " + kind + " 没有生成 lambda 写入器");
+        }
+        table = ValueConverter.table(writer.getGenericPropertyType());
+    }
+
+    @Benchmark
+    public Object convert() throws Exception {
+        return table.convert(value);
+    }
+
+    @Benchmark
+    public void write(Blackhole blackhole) throws Exception {
+        table.write(bean, value, writer);
+        blackhole.consume(bean);
+    }
+
+    public static class Target {
+
+        private long count;
+
+        private String name;
+
+        private double weight;
+
+        private List<Long> ids;
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public void setWeight(double weight) {
+            this.weight = weight;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public void setIds(List<Long> ids) {
+            this.ids = ids;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.TimeWrapper;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import com.vesoft.nebula.jdbc.BaseResultSet;
+import com.vesoft.nebula.jdbc.NebulaResultSetMetaData;
+
+import java.io.UnsupportedEncodingException;
+import java.sql.*;
+
+/**
+ * 基于 {@link ValueWrapper} 的只读 ResultSet 公共实现
+ * <p>
+ * 子类只需要提供按下标、按列名取值，类型转换逻辑统一在这里，
+ * 保证 mybatis TypeHandler 在各种 ResultSet 实现上读到的值一致。
+ *
+ * @author daiyi
+ */
+public abstract class AbstractNebulaResultSet implements BaseResultSet {
+
+    private boolean lastNull;
+
+    /**
+     * 字符串驻留表，未开启时为 null
+     */
+    private StringInterner interner;
+
+    /**
+     * 按下标取值
+     *
+     * @param columnIndex 列下标，从1开始
+     * @return 值，不存在时返回 null
+     * @throws SQLException
+     */
+    protected abstract ValueWrapper value(int columnIndex) throws SQLException;
+
+    /**
+     * 按列名取值
+     *
+     * @param columnLabel 列名
+     * @return 值，不存在时返回 null
+     * @throws SQLException
+     */
+    protected abstract ValueWrapper value(String columnLabel) throws SQLException;
+
+    /**
+     * 判空并记录 {@link #wasNull()} 的结果
+     */
+    private boolean isNull(ValueWrapper value) {
+        lastNull = value == null || value.isNull() || value.isEmpty();
+        return lastNull;
+    }
+
+    /**
+     * 开启字符串驻留，getString、getObject 读取的字符串重复时返回同一个实例
+     */
+    void setInterner(StringInterner interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * 子类直接读取原始值时，记录 {@link #wasNull()} 的结果
+     */
+    protected void setWasNull(boolean wasNull) {
+        this.lastNull = wasNull;
+    }
+
+    @Override
+    public boolean wasNull() throws SQLException {
+        return lastNull;
+    }
+
+    @Override
+    public String getString(int columnIndex) throws SQLException {
+        return toString(value(columnIndex));
+    }
+
+    @Override
+    public String getString(String columnLabel) throws SQLException {
+        return toString(value(columnLabel));
+    }
+
+    @Override
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        final ValueWrapper value = value(columnIndex);
+        return !isNull(value) && value.asBoolean();
+    }
+
+    @Override
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        final ValueWrapper value = value(columnLabel);
+        return !isNull(value) && value.asBoolean();
+    }
+
+    @Override
+    public short getShort(int columnIndex) throws SQLException {
+        return (short) getLong(columnIndex);
+    }
+
+    @Override
+    public short getShort(String columnLabel) throws SQLException {
+        return (short) getLong(columnLabel);
+    }
+
+    @Override
+    public int getInt(int columnIndex) throws SQLException {
+        return (int) getLong(columnIndex);
+    }
+
+    @Override
+    public int getInt(String columnLabel) throws SQLException {
+        return (int) getLong(columnLabel);
+    }
+
+    @Override
+    public long getLong(int columnIndex) throws SQLException {
+        final ValueWrapper value = value(columnIndex);
+        return isNull(value) ? 0 : value.asLong();
+    }
+
+    @Override
+    public long getLong(String columnLabel) throws SQLException {
+        final ValueWrapper value = value(columnLabel);
+        return isNull(value) ? 0 : value.asLong();
+    }
+
+    @Override
+    public float getFloat(int columnIndex) throws SQLException {
+        return (float) getDouble(columnIndex);
+    }
+
+    @Override
+    public float getFloat(String columnLabel) throws SQLException {
+        return (float) getDouble(columnLabel);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) throws SQLException {
+        final ValueWrapper value = value(columnIndex);
+        return isNull(value) ? 0 : value.asDouble();
+    }
+
+    @Override
+    public double getDouble(String columnLabel) throws SQLException {
+        final ValueWrapper value = value(columnLabel);
+        return isNull(value) ? 0 : value.asDouble();
+    }
+
+    @Override
+    public Date getDate(int columnIndex) throws SQLException {
+        return toDate(value(columnIndex));
+    }
+
+    @Override
+    public Date getDate(String columnLabel) throws SQLException {
+        return toDate(value(columnLabel));
+    }
+
+    @Override
+    public Time getTime(int columnIndex) throws SQLException {
+        return toTime(value(columnIndex));
+    }
+
+    @Override
+    public Time getTime(String columnLabel) throws SQLException {
+        return toTime(value(columnLabel));
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        final ValueWrapper value = value(columnIndex);
+        return isNull(value) ? null : new Timestamp(value.asLong() * 1000);
+    }
+
+    @Override
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        final ValueWrapper value = value(columnLabel);
+        return isNull(value) ? null : new Timestamp(value.asLong() * 1000);
+    }
+
+    /**
+     * cast to {@link ValueWrapper}
+     *
+     * @param columnIndex index of column
+     * @return {@link ValueWrapper}
+     * @throws SQLException
+     */
+    @Override
+    public Object getObject(int columnIndex) throws SQLException {
+        final ValueWrapper value = value(columnIndex);
+        return isNull(value) ? null : value;
+    }
+
+    /**
+     * cast to {@link ValueWrapper}
+     *
+     * @param columnLabel name of column
+     * @return {@link ValueWrapper}
+     * @throws SQLException
+     */
+    @Override
+    public Object getObject(String columnLabel) throws SQLException {
+        final ValueWrapper value = value(columnLabel);
+        return isNull(value) ? null : value;
+    }
+
+    /**
+     * 按目标类型转换，支持 java.time、数值、集合等 {@link ValueConverter} 支持的类型
+     *
+     * @param columnIndex index of column
+     * @param type        目标类型
+     * @return 转换结果，空值返回 null
+     * @throws SQLException 不支持的目标类型
+     */
+    @Override
+    public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+        return convert(value(columnIndex), type);
+    }
+
+    /**
+     * 按目标类型转换，支持 java.time、数值、集合等 {@link ValueConverter} 支持的类型
+     *
+     * @param columnLabel name of column
+     * @param type        目标类型
+     * @return 转换结果，空值返回 null
+     * @throws SQLException 不支持的目标类型
+     */
+    @Override
+    public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+        return convert(value(columnLabel), type);
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return new NebulaResultSetMetaData(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T convert(ValueWrapper value, Class<T> type) throws SQLException {
+        if (isNull(value)) {
+            return null;
+        }
+        ValueConverter.Table converters = ValueConverter.table(type);
+        if (converters == null) {
+            throw new SQLException("不支持转换为 " + type.getName());
+        }
+        try {
+            return (T) converters.convert(value, interner);
+        } catch (UnsupportedEncodingException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private String toString(ValueWrapper value) throws SQLException {
+        if (isNull(value)) {
+            return null;
+        }
+        try {
+            if (!value.isString()) {
+                return value.toString();
+            }
+            return interner != null ? interner.intern(value) : value.asString();
+        } catch (UnsupportedEncodingException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private Date toDate(ValueWrapper value) {
+        return isNull(value) ? null : Date.valueOf(value.asDate().toString());
+    }
+
+    private Time toTime(ValueWrapper value) {
+        if (isNull(value)) {
+            return null;
+        }
+        final TimeWrapper wrapper = value.asTime();
+        return new Time(wrapper.getHour(), wrapper.getMinute(), wrapper.getSecond());
+    }
+}
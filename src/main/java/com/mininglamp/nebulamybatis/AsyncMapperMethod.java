@@ -0,0 +1,213 @@
+package com.mininglamp.nebulamybatis;
+
+import org.apache.ibatis.annotations.MapKey;
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 返回 {@link CompletableFuture} 的 mapper 方法
+ * <p>
+ * 与 mybatis MapperMethod 相同的方式解析语句和参数，按 CompletableFuture 的泛型参数决定调用
+ * selectList / selectMap / selectOne 或 insert / update / delete，在指定的线程池中执行。
+ *
+ * @author daiyi
+ */
+final class AsyncMapperMethod {
+
+    /**
+     * 结果的处理方式
+     */
+    private enum Kind {
+        LIST, SET, MAP, OPTIONAL, ONE, ROW_COUNT
+    }
+
+    /**
+     * 注解声明的 select 按方法返回值生成内联 ResultMap，类型为 CompletableFuture，需要替换为实际的结果类型
+     */
+    private static final MethodHandle RESULT_MAPS_SETTER;
+
+    static {
+        try {
+            Field field = MappedStatement.class.getDeclaredField("resultMaps");
+            field.setAccessible(true);
+            RESULT_MAPS_SETTER = MethodHandles.lookup().unreflectSetter(field);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final SqlSession sqlSession;
+    private final String statementId;
+    private final SqlCommandType commandType;
+    private final ParamNameResolver paramNameResolver;
+    private final Kind kind;
+    private final Class<?> resultType;
+    private final String mapKey;
+    private final int rowBoundsIndex;
+
+    AsyncMapperMethod(SqlSession sqlSession, Class<?> mapperInterface, Method method) {
+        MapperMethod.SqlCommand command = new MapperMethod.SqlCommand(sqlSession.getConfiguration(), mapperInterface, method);
+        this.sqlSession = sqlSession;
+        this.statementId = command.getName();
+        this.commandType = command.getType();
+        this.paramNameResolver = new ParamNameResolver(sqlSession.getConfiguration(), method);
+        this.resultType = rawType(futureType(method));
+        this.mapKey = method.isAnnotationPresent(MapKey.class) ? method.getAnnotation(MapKey.class).value() : null;
+        this.rowBoundsIndex = indexOf(method, RowBounds.class);
+        if (indexOf(method, ResultHandler.class) >= 0 || Cursor.class.isAssignableFrom(resultType)) {
+            throw new BindingException("异步 mapper 方法不支持 ResultHandler、Cursor：" + statementId);
+        }
+        this.kind = kindOf(commandType, resultType, mapKey);
+        if (commandType == SqlCommandType.SELECT) {
+            fixInlineResultMap(sqlSession.getConfiguration().getMappedStatement(statementId), futureType(method));
+        }
+    }
+
+    /**
+     * 内联 ResultMap 的类型为 CompletableFuture 时，按 CompletableFuture 的泛型参数（集合、Optional 取元素类型，Map 取值类型）替换
+     */
+    private void fixInlineResultMap(MappedStatement mappedStatement, Type futureType) {
+        List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+        if (resultMaps.size() != 1 || resultMaps.get(0).getType() != CompletableFuture.class) {
+            return;
+        }
+        Type elementType = futureType;
+        if (kind == Kind.LIST || kind == Kind.SET || kind == Kind.OPTIONAL || kind == Kind.MAP) {
+            Type[] arguments = futureType instanceof ParameterizedType ? ((ParameterizedType) futureType).getActualTypeArguments() : new Type[0];
+            elementType = arguments.length == 0 ? Object.class : arguments[arguments.length - 1];
+        }
+        ResultMap origin = resultMaps.get(0);
+        ResultMap inline = new ResultMap.Builder(mappedStatement.getConfiguration(), origin.getId(), rawType(elementType),
+                origin.getResultMappings(), origin.getAutoMapping()).build();
+        try {
+            RESULT_MAPS_SETTER.invoke(mappedStatement, Collections.singletonList(inline));
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 在线程池中执行，参数在调用线程上解析
+     *
+     * @param args     方法参数
+     * @param executor 线程池，队列已满时 CompletableFuture 以 RejectedExecutionException 失败
+     * @return 结果
+     */
+    CompletableFuture<Object> execute(Object[] args, Executor executor) {
+        Object param = paramNameResolver.getNamedParams(args);
+        RowBounds rowBounds = rowBoundsIndex >= 0 ? (RowBounds) args[rowBoundsIndex] : RowBounds.DEFAULT;
+        try {
+            return CompletableFuture.supplyAsync(() -> run(param, rowBounds), executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<Object> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    private Object run(Object param, RowBounds rowBounds) {
+        switch (kind) {
+            case LIST:
+                return sqlSession.selectList(statementId, param, rowBounds);
+            case SET:
+                return new LinkedHashSet<>(sqlSession.selectList(statementId, param, rowBounds));
+            case MAP:
+                return sqlSession.selectMap(statementId, param, mapKey, rowBounds);
+            case OPTIONAL:
+                return Optional.ofNullable(sqlSession.selectOne(statementId, param));
+            case ONE:
+                return sqlSession.selectOne(statementId, param);
+            default:
+                return rowCount(write(param));
+        }
+    }
+
+    private int write(Object param) {
+        switch (commandType) {
+            case INSERT:
+                return sqlSession.insert(statementId, param);
+            case UPDATE:
+                return sqlSession.update(statementId, param);
+            case DELETE:
+                return sqlSession.delete(statementId, param);
+            default:
+                throw new BindingException("未知的语句类型：" + statementId);
+        }
+    }
+
+    private Object rowCount(int rows) {
+        if (resultType == Void.class) {
+            return null;
+        }
+        if (resultType == Long.class) {
+            return (long) rows;
+        }
+        if (resultType == Boolean.class) {
+            return rows > 0;
+        }
+        return rows;
+    }
+
+    private static Kind kindOf(SqlCommandType commandType, Class<?> resultType, String mapKey) {
+        if (commandType == SqlCommandType.INSERT || commandType == SqlCommandType.UPDATE || commandType == SqlCommandType.DELETE) {
+            return Kind.ROW_COUNT;
+        }
+        if (Set.class.isAssignableFrom(resultType)) {
+            return Kind.SET;
+        }
+        if (Collection.class.isAssignableFrom(resultType)) {
+            return Kind.LIST;
+        }
+        if (mapKey != null && Map.class.isAssignableFrom(resultType)) {
+            return Kind.MAP;
+        }
+        return resultType == Optional.class ? Kind.OPTIONAL : Kind.ONE;
+    }
+
+    /**
+     * @return CompletableFuture 的泛型参数，未声明时为 Object
+     */
+    private static Type futureType(Method method) {
+        Type returnType = method.getGenericReturnType();
+        return returnType instanceof ParameterizedType ? ((ParameterizedType) returnType).getActualTypeArguments()[0] : Object.class;
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return Object.class;
+    }
+
+    private static int indexOf(Method method, Class<?> parameterType) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterType.isAssignableFrom(parameterTypes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
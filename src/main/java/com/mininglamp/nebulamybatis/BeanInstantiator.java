@@ -0,0 +1,65 @@
+package com.mininglamp.nebulamybatis;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+
+/**
+ * bean 实例化器
+ * <p>
+ * 每个类型只解析一次无参构造器，public 且可见的类型通过 LambdaMetafactory 生成 Supplier，
+ * 其余情况退化为 {@link BeanUtils#instantiateClass(Class)}。
+ *
+ * @author daiyi
+ */
+final class BeanInstantiator {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Class<?> type;
+    private final Supplier<Object> supplier;
+
+    private BeanInstantiator(Class<?> type, Supplier<Object> supplier) {
+        this.type = type;
+        this.supplier = supplier;
+    }
+
+    static BeanInstantiator of(Class<?> type) {
+        return new BeanInstantiator(type, spinSupplier(type));
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    Object newInstance() {
+        return supplier != null ? supplier.get() : BeanUtils.instantiateClass(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> spinSupplier(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers())
+                || type.isInterface() || (type.isMemberClass() && !Modifier.isStatic(type.getModifiers()))
+                || !ClassUtils.isVisible(type, BeanInstantiator.class.getClassLoader())) {
+            return null;
+        }
+        try {
+            MethodHandle constructor = LOOKUP.findConstructor(type, MethodType.methodType(void.class));
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructor,
+                    MethodType.methodType(type));
+            return (Supplier<Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+}
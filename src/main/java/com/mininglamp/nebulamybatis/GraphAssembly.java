@@ -0,0 +1,319 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.Node;
+import com.vesoft.nebula.client.graph.data.Relationship;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.session.Configuration;
+
+import java.io.UnsupportedEncodingException;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * MATCH 结果的对象图组装
+ * <p>
+ * ResultMap 中嵌套 ResultMap 的 association / collection 用 column 指定 RETURN 中的列，例如
+ * {@code MATCH (a:player)-[e:follow]->(b:player) RETURN a, e, b} 对应
+ * {@code <collection property="follows" column="e" resultMap="followMap"/>}，followMap 中再用
+ * {@code <association property="target" column="b" resultMap="playerMap"/>} 关联终点；
+ * 根对象取 RETURN 中第一个没有被嵌套映射引用的列。
+ * <p>
+ * 一次查询内按 ResultMap + VID（边为类型、起点、终点、rank）维护身份表，同一个点/边无论出现在多少行都只构建一次，
+ * 集合属性中同一个对象只加入一次，association 取第一次出现的对象，根对象按第一次出现的顺序去重返回。
+ * 双向的模式（如互相关注）会得到带环的对象图。
+ * <p>
+ * 每个节点只映射 ResultMap 中的非嵌套属性，需要能够直接映射（见 {@link MappingPlan}），否则仍按原来的方式处理。
+ *
+ * @author daiyi
+ */
+final class GraphAssembly {
+
+    /**
+     * 被引用的列中出现非点、边的值
+     */
+    private static final Object NOT_GRAPH = new Object();
+
+    private final Spec root;
+    /**
+     * 全部节点，根节点在第一个
+     */
+    private final List<Spec> specs;
+    private final ObjectFactory objectFactory;
+
+    private GraphAssembly(Spec root, List<Spec> specs, ObjectFactory objectFactory) {
+        this.root = root;
+        this.specs = specs;
+        this.objectFactory = objectFactory;
+    }
+
+    /**
+     * 构建对象图组装计划
+     *
+     * @param mappedStatement 映射语句
+     * @param resultMap       根 ResultMap
+     * @return 没有嵌套 ResultMap，或存在嵌套查询、多列 column、数组属性、无法直接映射的节点时返回 null
+     */
+    static GraphAssembly compile(MappedStatement mappedStatement, ResultMap resultMap) {
+        if (!resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries()) {
+            return null;
+        }
+        List<Spec> specs = new ArrayList<>();
+        Spec root = spec(mappedStatement, resultMap, null, new HashSet<>(), specs);
+        return root == null ? null : new GraphAssembly(root, Collections.unmodifiableList(specs),
+                mappedStatement.getConfiguration().getObjectFactory());
+    }
+
+    /**
+     * @param column      节点对应的 RETURN 列，根节点为 null
+     * @param pathColumns 从根节点到当前节点已经使用的列，嵌套映射引用这些列时不再展开，避免无限递归
+     */
+    private static Spec spec(MappedStatement mappedStatement, ResultMap resultMap, String column, Set<String> pathColumns, List<Spec> specs) {
+        Configuration configuration = mappedStatement.getConfiguration();
+        List<ResultMapping> flatMappings = new ArrayList<>();
+        List<ResultMapping> nestedMappings = new ArrayList<>();
+        for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+            if (resultMapping.getNestedQueryId() != null || resultMapping.getResultSet() != null) {
+                return null;
+            }
+            (resultMapping.getNestedResultMapId() != null ? nestedMappings : flatMappings).add(resultMapping);
+        }
+        ResultMap flatMap = new ResultMap.Builder(configuration, resultMap.getId(), resultMap.getType(), flatMappings, resultMap.getAutoMapping())
+                .discriminator(resultMap.getDiscriminator()).build();
+        MappingPlan plan = MappingPlan.compile(mappedStatement, flatMap);
+        if (!plan.isDirectMappingSupported()) {
+            return null;
+        }
+        Spec spec = new Spec(specs.size(), column, resultMap.getId(), plan);
+        specs.add(spec);
+        if (column != null) {
+            pathColumns.add(column);
+        }
+        for (ResultMapping nestedMapping : nestedMappings) {
+            String nestedColumn = nestedMapping.getColumn();
+            if (nestedColumn == null || nestedColumn.isEmpty() || !nestedMapping.getComposites().isEmpty()) {
+                return null;
+            }
+            if (pathColumns.contains(nestedColumn)) {
+                continue;
+            }
+            PropertyWriter writer = PropertyWriter.of(resultMap.getType(), nestedMapping.getProperty());
+            if (writer.isNoop() || writer.getPropertyType().isArray()) {
+                return null;
+            }
+            Spec child = spec(mappedStatement, configuration.getResultMap(nestedMapping.getNestedResultMapId()), nestedColumn,
+                    pathColumns, specs);
+            if (child == null) {
+                return null;
+            }
+            spec.links.add(new Link(child, writer, Collection.class.isAssignableFrom(writer.getPropertyType())));
+        }
+        if (column != null) {
+            pathColumns.remove(column);
+        }
+        return spec;
+    }
+
+    /**
+     * 为一次查询生成组装器
+     *
+     * @param labels     结果集的列名
+     * @param stats      结果映射统计，可为 null
+     * @param lazyDecode 是否延迟解码
+     * @param interner   字符串驻留表，未开启时为 null
+     * @return 嵌套映射引用的列不在结果中，或没有可作为根对象的列时返回 null
+     */
+    Assembler newAssembler(List<String> labels, NebulaMappingStats stats, boolean lazyDecode, StringInterner interner) {
+        Set<String> referenced = new HashSet<>();
+        for (Spec spec : specs) {
+            if (spec.column != null) {
+                referenced.add(spec.column);
+            }
+        }
+        int[] indexes = new int[specs.size()];
+        indexes[0] = -1;
+        for (int i = 0; i < labels.size() && indexes[0] < 0; i++) {
+            if (!referenced.contains(labels.get(i))) {
+                indexes[0] = i;
+            }
+        }
+        for (int i = 1; i < indexes.length; i++) {
+            indexes[i] = labels.indexOf(specs.get(i).column);
+        }
+        for (int index : indexes) {
+            if (index < 0) {
+                return null;
+            }
+        }
+        return new Assembler(indexes, stats, lazyDecode, interner);
+    }
+
+    /**
+     * 组装计划中的节点：一个 RETURN 列及其 ResultMap
+     */
+    private static final class Spec {
+
+        private final int index;
+        private final String column;
+        private final String resultMapId;
+        private final MappingPlan plan;
+        private final List<Link> links = new ArrayList<>();
+
+        private Spec(int index, String column, String resultMapId, MappingPlan plan) {
+            this.index = index;
+            this.column = column;
+            this.resultMapId = resultMapId;
+            this.plan = plan;
+        }
+    }
+
+    /**
+     * 父节点到子节点的 association / collection 属性
+     */
+    private static final class Link {
+
+        private final Spec child;
+        private final PropertyWriter writer;
+        private final boolean collection;
+
+        private Link(Spec child, PropertyWriter writer, boolean collection) {
+            this.child = child;
+            this.writer = writer;
+            this.collection = collection;
+        }
+    }
+
+    /**
+     * 父对象的一个关联属性已写入的对象，按对象身份比较
+     */
+    private static final class Members {
+
+        private final Set<Object> objects = Collections.newSetFromMap(new IdentityHashMap<>());
+        /**
+         * 写入父对象的集合，association 为 null
+         */
+        private final Collection<Object> collection;
+
+        private Members(Collection<Object> collection) {
+            this.collection = collection;
+        }
+    }
+
+    /**
+     * 一次查询的组装状态：身份表、已写入的关联和根对象，只在一个线程中使用
+     */
+    final class Assembler {
+
+        private final int[] indexes;
+        private final NebulaRowDecoder[] decoders;
+        /**
+         * ResultMap id + 点/边标识 -> 对象
+         */
+        private final Map<List<Object>, Object> identities = new HashMap<>();
+        /**
+         * 父对象 -> 关联属性 -> 已写入的对象
+         */
+        private final Map<Object, Map<Link, Members>> linked = new IdentityHashMap<>();
+        private final Set<Object> rootSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<Object> roots = new ArrayList<>();
+
+        private Assembler(int[] indexes, NebulaMappingStats stats, boolean lazyDecode, StringInterner interner) {
+            this.indexes = indexes;
+            this.decoders = new NebulaRowDecoder[specs.size()];
+            for (int i = 0; i < decoders.length; i++) {
+                decoders[i] = new NebulaRowDecoder(specs.get(i).plan, stats, lazyDecode, null, interner);
+            }
+        }
+
+        /**
+         * 组装一行
+         *
+         * @param cells 当前行的值
+         * @return 被引用的列中有非点、边的值时返回 false
+         */
+        boolean add(Object[] cells) throws UnsupportedEncodingException, SQLException {
+            Object rootObject = node(root, cells);
+            if (rootObject == NOT_GRAPH) {
+                return false;
+            }
+            if (rootObject != null && rootSet.add(rootObject)) {
+                roots.add(rootObject);
+            }
+            return true;
+        }
+
+        List<Object> getRoots() {
+            return roots;
+        }
+
+        /**
+         * 取得或构建节点对象，并递归写入子节点
+         *
+         * @return 值为 null 时返回 null，不是点、边时返回 {@link #NOT_GRAPH}
+         */
+        private Object node(Spec spec, Object[] cells) throws UnsupportedEncodingException, SQLException {
+            Object val = cells[indexes[spec.index]];
+            if (val == null || (val instanceof ValueWrapper && ((ValueWrapper) val).isNull())) {
+                return null;
+            }
+            if (!(val instanceof ValueWrapper)) {
+                return NOT_GRAPH;
+            }
+            ValueWrapper wrapper = (ValueWrapper) val;
+            Object object;
+            if (wrapper.isVertex()) {
+                Node node = wrapper.asNode();
+                List<Object> key = Arrays.asList(spec.resultMapId, node.getId());
+                object = identities.get(key);
+                if (object == null) {
+                    object = decoders[spec.index].decodeVertex(node);
+                    identities.put(key, object);
+                }
+            } else if (wrapper.isEdge()) {
+                Relationship relationship = wrapper.asRelationship();
+                List<Object> key = Arrays.asList(spec.resultMapId, relationship.edgeName(), relationship.srcId(),
+                        relationship.dstId(), relationship.ranking());
+                object = identities.get(key);
+                if (object == null) {
+                    object = decoders[spec.index].decodeEdge(relationship);
+                    identities.put(key, object);
+                }
+            } else {
+                return NOT_GRAPH;
+            }
+            for (Link link : spec.links) {
+                Object child = node(link.child, cells);
+                if (child == NOT_GRAPH) {
+                    return NOT_GRAPH;
+                }
+                if (child != null) {
+                    link(object, link, child);
+                }
+            }
+            return object;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void link(Object parent, Link link, Object child) {
+            Map<Link, Members> links = linked.computeIfAbsent(parent, p -> new HashMap<>());
+            Members members = links.get(link);
+            if (members == null) {
+                Collection<Object> collection = null;
+                if (link.collection) {
+                    collection = (Collection<Object>) objectFactory.create(link.writer.getPropertyType());
+                    link.writer.write(parent, collection);
+                } else {
+                    link.writer.write(parent, child);
+                }
+                members = new Members(collection);
+                links.put(link, members);
+            }
+            if (members.collection != null && members.objects.add(child)) {
+                members.collection.add(child);
+            }
+        }
+    }
+}
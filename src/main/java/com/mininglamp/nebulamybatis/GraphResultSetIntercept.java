@@ -1,40 +1,53 @@
 package com.mininglamp.nebulamybatis;
 
-import com.google.common.collect.Lists;
-import com.vesoft.nebula.Row;
-import com.vesoft.nebula.Value;
 import com.vesoft.nebula.client.graph.data.Node;
 import com.vesoft.nebula.client.graph.data.PathWrapper;
 import com.vesoft.nebula.client.graph.data.Relationship;
 import com.vesoft.nebula.client.graph.data.ValueWrapper;
 import com.vesoft.nebula.jdbc.NebulaStatement;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.result.DefaultResultContext;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetWrapper;
+import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.plugin.*;
-import org.springframework.beans.BeanUtils;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
 import org.springframework.jdbc.support.JdbcUtils;
 
-import java.beans.PropertyDescriptor;
-import java.io.UnsupportedEncodingException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Timestamp;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * mybatis interceptor扩展点
  * <p>
- * 扩展 ResultSetHandler接口 的 handleResultSets 方法
+ * 扩展 ResultSetHandler接口 的 handleResultSets、handleCursorResultSets 方法
  * 在mybatis调用该方法时，转换resultset ，解析 nebula 的 ValueWrapper ，返回正确的对象
+ * 返回 Cursor 或传入 ResultHandler 的查询逐行解码，不在内存中收集全部结果
+ * 需要二次映射的点/边结果保存在列式结果集 NebulaColumnarResultSet 中，不再逐行构造 Record
+ * 直接映射模式下可开启并行解码，大结果集分块在线程池中映射
+ * 配置多个 ResultMap 的查询，结果的每一列按对应的 ResultMap 映射，一次请求取回多种对象
+ * 带嵌套 ResultMap 的查询，按 association / collection 的 column 把同一行的点、边组装为去重的对象图
+ * 返回类型为 NebulaAdjacency 的查询，全部点、边、路径合并为一个紧凑的邻接表
+ * 设置了结果预算时，映射前先扫描结果集，超出行数或字节数上限的查询直接失败，或溢出到内存映射文件后再映射
  * <p>
  * MyBatis 允许你在映射语句执行过程中的某一点进行拦截调用。默认情况下，MyBatis 允许使用插件来拦截的方法调用包括：
  * Executor (update, query, flushStatements, commit, rollback, getTransaction, close, isClosed)
@@ -46,359 +59,1213 @@ import java.util.stream.Collectors;
  * @author Zhang Zhenhua
  */
 @Slf4j
-@Intercepts(@Signature(type = ResultSetHandler.class, method = "handleResultSets", args = Statement.class))
+@Intercepts({
+        @Signature(type = ResultSetHandler.class, method = "handleResultSets", args = Statement.class),
+        @Signature(type = ResultSetHandler.class, method = "handleCursorResultSets", args = Statement.class)
+})
 public class GraphResultSetIntercept implements Interceptor {
 
+    /**
+     * DefaultResultSetHandler 中私有字段的 getter，只反射一次
+     */
+    private static final MethodHandle MAPPED_STATEMENT_GETTER;
+    private static final MethodHandle RESULT_HANDLER_GETTER;
+    private static final MethodHandle ROW_BOUNDS_GETTER;
+    private static final MethodHandle BOUND_SQL_GETTER;
+    /**
+     * DefaultResultSetHandler 按单个 ResultMap 映射一个结果集、映射完成后清理嵌套映射状态的私有方法
+     */
+    private static final MethodHandle HANDLE_RESULT_SET;
+    private static final MethodHandle CLEAN_UP_AFTER_HANDLING_RESULT_SET;
+
+    private static final String HANDLE_CURSOR_RESULT_SETS = "handleCursorResultSets";
+
+    static {
+        try {
+            MAPPED_STATEMENT_GETTER = getter("mappedStatement");
+            RESULT_HANDLER_GETTER = getter("resultHandler");
+            ROW_BOUNDS_GETTER = getter("rowBounds");
+            BOUND_SQL_GETTER = getter("boundSql");
+            HANDLE_RESULT_SET = method("handleResultSet", ResultSetWrapper.class, ResultMap.class, List.class, ResultMapping.class);
+            CLEAN_UP_AFTER_HANDLING_RESULT_SET = method("cleanUpAfterHandlingResultSet");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 直接映射模式：点/边结果不再包装成 NebulaResultSet 交给 DefaultResultSetHandler 二次映射，
+     * 而是一遍从属性映射到对象（仍通过 ResultMapping 的 TypeHandler 取值）
+     */
+    private boolean directMapping;
+
+    /**
+     * 延迟解码：直接映射模式下返回返回类型的子类，属性在第一次调用 getter 时才从点/边的值转换
+     */
+    private boolean lazyDecode;
+
+    /**
+     * 并行解码：直接映射模式下，行数达到 parallelThreshold 时分块并行映射，结果顺序不变
+     */
+    private boolean parallelDecode;
+
+    /**
+     * 开启并行解码的最小行数，低于该行数仍在调用线程上解码
+     */
+    private int parallelThreshold = 10000;
+
+    /**
+     * 并行解码时每块的行数
+     */
+    private int parallelChunkSize = 2048;
+
+    /**
+     * 并行解码使用的线程池，未设置时使用 ForkJoinPool.commonPool()
+     */
+    private Executor decodeExecutor;
+
+    /**
+     * 字符串驻留：同一个结果集中重复的 VID、字符串属性只解码一次，返回同一个 String 实例
+     */
+    private boolean internStrings;
+
+    /**
+     * 每个结果集最多驻留的字符串个数
+     */
+    private int internCapacity = 4096;
+
+    /**
+     * 结果预算：每次查询的最大行数，小于等于 0 表示不限制
+     */
+    private long resultRowBudget;
+
+    /**
+     * 结果预算：每次查询的值的最大估算字节数，小于等于 0 表示不限制，见 {@link ResultBudget}
+     */
+    private long resultByteBudget;
+
+    /**
+     * 超出结果预算时的处理方式
+     */
+    private NebulaOverBudget resultOverBudget = NebulaOverBudget.FAIL;
+
+    /**
+     * 单独设置的结果预算：MappedStatement id 或 mapper 命名空间 -> 值
+     */
+    private Map<String, Long> resultRowBudgets = new ConcurrentHashMap<>();
+    private Map<String, Long> resultByteBudgets = new ConcurrentHashMap<>();
+    private Map<String, NebulaOverBudget> resultOverBudgets = new ConcurrentHashMap<>();
+
+    /**
+     * 溢出文件的目录，未设置时使用系统临时目录
+     */
+    private Path spillDirectory;
+
+    /**
+     * 结果映射指标，未设置时不做任何统计
+     */
+    private NebulaMybatisMetrics metrics;
+
+    /**
+     * 映射计划缓存：MappedStatement -> 映射计划，按对象本身区分，多个 Configuration 中同名的语句互不影响
+     */
+    private final ConcurrentMap<MappedStatement, MappingPlan> planCache = new ConcurrentHashMap<>();
+
+    /**
+     * 语句分类：非 nebula 数据源、标量结果的语句在 plugin 时不生成代理
+     */
+    private final StatementClassifier classifier = new StatementClassifier();
+
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
+        StatementCapture capture = StatementCapture.current();
+        long start = capture != null ? System.nanoTime() : 0L;
+        try {
+            KeysetPage page = getPage((DefaultResultSetHandler) invocation.getTarget());
+            if (page != null) {
+                return interceptPage(invocation, page);
+            }
+            return handleResultSets(invocation);
+        } finally {
+            if (capture != null) {
+                capture.handled(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * 处理键集分页的查询：按每页行数截取结果，用最后一行的点/边生成下一页的游标
+     * <p>
+     * 改写后的语句多取一行，多出的一行只用于判断是否有下一页；结果集在映射前先扫描一遍取得键，映射仍按原来的方式进行。
+     *
+     * @param invocation 调用
+     * @param page       键集分页
+     * @return 只有一个 NebulaPage 的列表
+     * @throws Throwable
+     */
+    private Object interceptPage(Invocation invocation, KeysetPage page) throws Throwable {
+        DefaultResultSetHandler target = (DefaultResultSetHandler) invocation.getTarget();
+        MappedStatement mappedStatement = (MappedStatement) MAPPED_STATEMENT_GETTER.invoke(target);
+        if (HANDLE_CURSOR_RESULT_SETS.equals(invocation.getMethod().getName()) || RESULT_HANDLER_GETTER.invoke(target) != null) {
+            throw new SQLException("语句 " + mappedStatement.getId() + " 使用键集分页，不支持 Cursor 和 ResultHandler");
+        }
+        Statement statement = (Statement) invocation.getArgs()[0];
+        ResultSet resultSet = statement.getResultSet();
+        String nextCursor = null;
+        if (resultSet != null) {
+            if (resultSet.getMetaData().getColumnCount() != 1) {
+                throw new SQLException("语句 " + mappedStatement.getId() + " 使用键集分页，结果只能有一列");
+            }
+            Object last = null;
+            int rows = 0;
+            while (resultSet.next()) {
+                if (rows == page.getSize()) {
+                    KeysetPage.Key key = last instanceof ValueWrapper ? KeysetPage.Key.of((ValueWrapper) last) : null;
+                    if (key == null) {
+                        throw new SQLException("语句 " + mappedStatement.getId() + " 使用键集分页，第 " + rows + " 行不是点或边");
+                    }
+                    nextCursor = key.encode();
+                    break;
+                }
+                last = JdbcUtils.getResultSetValue(resultSet, 1);
+                rows++;
+            }
+            resultSet.beforeFirst();
+        }
+        List<Object> items = new ArrayList<>((List<?>) handleResultSets(invocation));
+        if (items.size() > page.getSize()) {
+            items.subList(page.getSize(), items.size()).clear();
+        }
+        List<Object> result = new ArrayList<>(1);
+        result.add(new NebulaPage<>(items, nextCursor, page.getSize()));
+        return result;
+    }
+
+    private Object handleResultSets(Invocation invocation) throws Throwable {
         long start = System.currentTimeMillis();
         DefaultResultSetHandler target = (DefaultResultSetHandler) invocation.getTarget();
-        Field field = target.getClass().getDeclaredField("mappedStatement");
-        field.setAccessible(true);
-        MappedStatement mappedStatement = (MappedStatement) field.get(target);
-        List<ResultMap> resultMaps = mappedStatement.getResultMaps();
-        boolean isValueWrapper = false;
-        if (resultMaps != null && !resultMaps.isEmpty()) {
-            if (resultMaps.size() > 1) {
-                // 仅支持返回一种对象类型
-                resultMaps.forEach(r -> log.error(r.getId()));
-                throw new RuntimeException("不支持配置多项ResultMap或ResultType！");
+        MappedStatement mappedStatement = (MappedStatement) MAPPED_STATEMENT_GETTER.invoke(target);
+        MappingPlan plan = getPlan(mappedStatement);
+        if (plan.isNone()) {
+            return invocation.proceed();
+        }
+        RowBounds rowBounds = (RowBounds) ROW_BOUNDS_GETTER.invoke(target);
+        ReturnProjection projection = getProjection(target);
+        boolean cursor = HANDLE_CURSOR_RESULT_SETS.equals(invocation.getMethod().getName());
+        ResultHandler<?> resultHandler = cursor ? null : (ResultHandler<?>) RESULT_HANDLER_GETTER.invoke(target);
+        Statement statement = (Statement) invocation.getArgs()[0];
+        // sql返回值
+        ResultSet resultSet = statement.getResultSet();
+        ResultBudget budget = resultSet != null ? budgetOf(mappedStatement.getId()) : null;
+        boolean spill = false;
+        if (budget != null && budget.exceeds(resultSet)) {
+            if (budget.getOverBudget() != NebulaOverBudget.SPILL) {
+                throw budget.exceeded(null);
             }
-            for (ResultMap resultMap : resultMaps) {
-                // 返回对象类
-                Class<?> aClass = resultMap.getType();
-                List<ResultMapping> resultMappings = resultMap.getResultMappings();
-                if (!resultMappings.isEmpty()) {
-                    // 返回对象的字段映射：数据库字段->bean字段
-                    Map<String, String> propertiesMap = resultMappings.stream().collect(Collectors.toMap(ResultMapping::getColumn, ResultMapping::getProperty, (oldValue, newValue) -> oldValue, LinkedHashMap::new));
-                    Statement statement = (Statement) invocation.getArgs()[0];
-                    // sql返回值
-                    ResultSet resultSet = statement.getResultSet();
-                    if (!resultSet.next()) {
-                        return invocation.proceed();
+            // 游标逐行解码，不需要额外的缓冲；返回 List 时全部对象都在堆上，溢出也无法减少内存，
+            // 只有 Cursor、ResultHandler 能把结果逐行交给调用方
+            if (!cursor) {
+                if (resultHandler == null) {
+                    throw budget.exceeded("超出预算的结果需要使用 Cursor 或 ResultHandler 逐行读取");
+                }
+                if (plan.isMultiple() || plan.isAdjacency()) {
+                    throw budget.exceeded("多个 ResultMap、NebulaAdjacency 的结果不支持溢出");
+                }
+                spill = true;
+            }
+        }
+        if (cursor) {
+            return interceptCursor(invocation, plan, rowBounds, projection);
+        }
+        if (plan.isMultiple()) {
+            return interceptGroups(invocation, mappedStatement, plan, resultHandler, rowBounds);
+        }
+        if (plan.isAdjacency()) {
+            return interceptAdjacency(invocation, plan, resultHandler);
+        }
+        // 溢出后由 DefaultResultSetHandler 按嵌套 ResultMap 组装
+        if (!spill && plan.getGraphAssembly() != null && isDefaultRowBounds(rowBounds)) {
+            Object assembled = interceptAssembly(invocation, plan, resultHandler);
+            if (assembled != null) {
+                return assembled;
+            }
+        }
+        if (resultHandler != null && plan.isDirectMappingSupported()) {
+            return interceptResultHandler(invocation, plan, resultHandler, rowBounds, projection);
+        }
+        boolean isValueWrapper = false;
+        // 自定义 ResultHandler、RowBounds 分页仍交给 DefaultResultSetHandler 处理；
+        // 溢出时二次映射的列式缓冲写入溢出文件，DefaultResultSetHandler 逐行映射后交给 ResultHandler
+        boolean direct = !spill && directMapping && plan.isDirectMappingSupported() && resultHandler == null && isDefaultRowBounds(rowBounds);
+        if (!resultSet.next()) {
+            return invocation.proceed();
+        }
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        // 每条数据的列数
+        int columnCount = metaData.getColumnCount();
+        NebulaMappingStats stats = newStats();
+        if (projection != null && projection.getColumnCount() != columnCount) {
+            projection = null;
+        }
+        if (direct && parallelDecode) {
+            return interceptParallel(invocation, plan, resultSet, columnCount, stats, projection);
+        }
+        ResultBudget spillBudget = spill ? budget : null;
+        if (projection != null) {
+            return interceptProjected(invocation, plan, resultSet, columnCount, direct, stats, projection, spillBudget);
+        }
+        NebulaRowDecoder decoder = new NebulaRowDecoder(plan, stats, lazyDecode, null, newInterner());
+        List<Object> lists = new ArrayList<>();
+        RowSink sink = direct ? null : newSink(plan, decoder.getInterner(), spillBudget);
+        List<Object> directList = direct ? new ArrayList<>() : Collections.emptyList();
+        // 当前行的值，每行复用
+        Object[] cells = new Object[columnCount];
+        try {
+            do {
+                long fetchStart = stats != null ? System.nanoTime() : 0L;
+                for (int index = 1; index <= columnCount; index++) {
+                    cells[index - 1] = JdbcUtils.getResultSetValue(resultSet, index);
+                }
+                long decodeStart = stats != null ? System.nanoTime() : 0L;
+                // 用于塞入本条数据的对象，只有 path 结果才需要，按需生成
+                Object instantiateClass = null;
+                for (Object val : cells) {
+                    if (val == null) {
+                        continue;
                     }
-                    ResultSetMetaData metaData = resultSet.getMetaData();
-                    // 每条数据的列数
-                    int columnCount = metaData.getColumnCount();
-                    List<Object> lists = new ArrayList<>();
-                    List<com.vesoft.nebula.client.graph.data.ResultSet.Record> recordList = new ArrayList<>();
-                    do {
-                        // 生成一个对象，用于塞入本条数据
-                        Object instantiateClass = BeanUtils.instantiateClass(aClass);
-                        for (int index = 1; index <= columnCount; index++) {
-                            // 当前列名
-                            String column = JdbcUtils.lookupColumnName(metaData, index);
-                            // 当前列的值
-                            Object val = JdbcUtils.getResultSetValue(resultSet, index);
-                            if (val == null) {
-                                continue;
+                    //nebula的返回值都是ValueWrapper，根据返回类使用不同方式解析
+                    if (ValueWrapper.class.isAssignableFrom(val.getClass())) {
+                        ValueWrapper wrapper = (ValueWrapper) val;
+                        if (wrapper.isVertex()) {
+                            isValueWrapper = true;
+                            if (direct) {
+                                directList.add(decoder.decodeVertex(wrapper.asNode()));
+                            } else {
+                                decoder.appendVertex(wrapper.asNode(), sink);
                             }
-                            //nebula的返回值都是ValueWrapper，根据返回类使用不同方式解析
-                            if (ValueWrapper.class.isAssignableFrom(val.getClass())) {
-                                ValueWrapper wrapper = (ValueWrapper) val;
-                                List<Value> values = new ArrayList<>();
-                                Row row = new Row(values);
-                                String decodeType;
-                                int timezoneOffset;
-                                if (wrapper.isVertex()) {
-                                    isValueWrapper = true;
-                                    Node node = wrapper.asNode();
-                                    List<String> tags = node.tagNames();
-                                    if (tags.size() > 1) {
-                                        throw new RuntimeException("返回结果的包含多中tag，暂不支持");
-                                    }
-                                    values.add(node.getId().getValue());
-                                    HashMap<String, ValueWrapper> properties = node.properties(tags.get(0));
-                                    for (String v : propertiesMap.keySet()) {
-                                        ValueWrapper fieldValueWrapper = properties.get(v);
-                                        if ("id".equals(v)) {
-                                            continue;
-                                        }
-                                        values.add(fieldValueWrapper == null ? null : fieldValueWrapper.getValue());
-                                    }
-                                    decodeType = node.getDecodeType();
-                                    timezoneOffset = node.getTimezoneOffset();
-                                    com.vesoft.nebula.client.graph.data.ResultSet.Record record = new com.vesoft.nebula.client.graph.data.ResultSet.Record(propertiesMap.keySet().stream().collect(Collectors.toList()), row, decodeType, timezoneOffset);
-                                    recordList.add(record);
-                                } else if (wrapper.isEdge()) {
-                                    isValueWrapper = true;
-                                    Relationship relationship = wrapper.asRelationship();
-                                    values.add(relationship.srcId().getValue());
-                                    values.add(relationship.dstId().getValue());
-                                    HashMap<String, ValueWrapper> properties = relationship.properties();
-                                    for (String v : propertiesMap.keySet()) {
-                                        ValueWrapper fieldValueWrapper = properties.get(v);
-                                        if ("_dst".equals(v) || "_src".equals(v)) {
-                                            continue;
-                                        }
-                                        values.add(fieldValueWrapper == null ? null : fieldValueWrapper.getValue());
-                                    }
-                                    decodeType = relationship.getDecodeType();
-                                    timezoneOffset = relationship.getTimezoneOffset();
-                                    com.vesoft.nebula.client.graph.data.ResultSet.Record record = new com.vesoft.nebula.client.graph.data.ResultSet.Record(Lists.newArrayList(propertiesMap.keySet()), row, decodeType, timezoneOffset);
-                                    recordList.add(record);
-                                } else if (wrapper.isPath()) {
-                                    doPath(aClass, propertiesMap, instantiateClass, wrapper);
-                                } else {
-                                    resultSet.beforeFirst();
-                                    return invocation.proceed();
-                                }
+                        } else if (wrapper.isEdge()) {
+                            isValueWrapper = true;
+                            if (direct) {
+                                directList.add(decoder.decodeEdge(wrapper.asRelationship()));
                             } else {
-                                resultSet.beforeFirst();
-                                return invocation.proceed();
+                                decoder.appendEdge(wrapper.asRelationship(), sink);
                             }
+                        } else if (wrapper.isPath()) {
+                            if (spillBudget != null) {
+                                throw spillBudget.exceeded("路径结果不支持溢出");
+                            }
+                            if (instantiateClass == null) {
+                                instantiateClass = plan.newInstance();
+                            }
+                            decoder.decodePath(instantiateClass, wrapper);
+                        } else {
+                            return fallback(invocation, plan, resultSet, spillBudget);
                         }
-                        lists.add(instantiateClass);
-                    } while (resultSet.next());
-                    log.debug("interceptor 消耗时间 ： " + (System.currentTimeMillis() - start));
-                    if (isValueWrapper) {
-                        com.mininglamp.nebulamybatis.NebulaResultSet graphResultSet = new NebulaResultSet(recordList.size(), Lists.newArrayList(propertiesMap.keySet()), recordList);
-                        NebulaStatement graphStatement = new NebulaStatement(graphResultSet);
-                        Invocation newInvocation = new Invocation(target, invocation.getMethod(), new Object[]{graphStatement});
-                        return newInvocation.proceed();
+                    } else {
+                        return fallback(invocation, plan, resultSet, spillBudget);
                     }
-                    return lists;
                 }
+                // 点/边结果由 columnarBuilder 或 directList 返回，不再需要 lists
+                if (!isValueWrapper) {
+                    lists.add(instantiateClass != null ? instantiateClass : plan.newInstance());
+                }
+                if (stats != null) {
+                    long end = System.nanoTime();
+                    stats.fetched(1, columnCount, decodeStart - fetchStart);
+                    stats.decoded(end - decodeStart);
+                }
+            } while (resultSet.next());
+        } catch (Throwable e) {
+            abort(sink);
+            throw e;
+        }
+        log.debug("interceptor 消耗时间 ： {}", System.currentTimeMillis() - start);
+        if (isValueWrapper && !direct) {
+            return proceedColumnar(invocation, plan, sink, stats);
+        }
+        abort(sink);
+        // 点/边直接映射，或只有 path 的结果（总是由拦截器直接生成对象）
+        record(plan, NebulaMybatisMetrics.Mode.DIRECT, stats);
+        return isValueWrapper ? directList : lists;
+    }
+
+    /**
+     * 列式结果集或溢出文件交给 DefaultResultSetHandler 二次映射
+     */
+    private Object proceedColumnar(Invocation invocation, MappingPlan plan, RowSink sink, NebulaMappingStats stats) throws Throwable {
+        boolean spilled = sink instanceof NebulaSpilledResultSet.Writer;
+        AbstractNebulaResultSet graphResultSet = spilled ? ((NebulaSpilledResultSet.Writer) sink).finish()
+                : ((NebulaColumnarResultSet.Builder) sink).build();
+        NebulaStatement graphStatement = new NebulaStatement(graphResultSet);
+        Invocation newInvocation = new Invocation(invocation.getTarget(), invocation.getMethod(), new Object[]{graphStatement});
+        long populateStart = stats != null ? System.nanoTime() : 0L;
+        Object result;
+        try {
+            result = newInvocation.proceed();
+        } finally {
+            if (spilled) {
+                graphResultSet.close();
             }
         }
-        return invocation.proceed();
+        if (stats != null) {
+            stats.populated(System.nanoTime() - populateStart);
+        }
+        record(plan, spilled ? NebulaMybatisMetrics.Mode.SPILL : NebulaMybatisMetrics.Mode.TWO_PASS, stats);
+        return result;
     }
 
     /**
-     * 处理 PATH 类 ValueWrapper
+     * 二次映射的去处：内存中的列式结果集，超出预算时为溢出文件
+     *
+     * @param spillBudget 需要溢出时为超出的预算，否则为 null
+     */
+    private RowSink newSink(MappingPlan plan, StringInterner interner, ResultBudget spillBudget) throws SQLException {
+        if (spillBudget != null) {
+            return NebulaSpilledResultSet.writer(plan.getColumnNames(), plan.getColumnIndex(), spillDirectory).interner(interner);
+        }
+        return NebulaColumnarResultSet.builder(plan.getColumnNames(), plan.getColumnIndex()).interner(interner);
+    }
+
+    /**
+     * 未交给 DefaultResultSetHandler 的溢出文件，关闭并删除
+     */
+    private static void abort(RowSink sink) {
+        if (sink instanceof NebulaSpilledResultSet.Writer) {
+            ((NebulaSpilledResultSet.Writer) sink).abort();
+        }
+    }
+
+    /**
+     * 结果预算，先按 MappedStatement id，再按命名空间查找单独设置的值
+     *
+     * @return 没有限制时返回 null
+     */
+    private ResultBudget budgetOf(String statementId) {
+        long maxRows = ResultBudget.forStatement(resultRowBudgets, statementId, resultRowBudget);
+        long maxBytes = ResultBudget.forStatement(resultByteBudgets, statementId, resultByteBudget);
+        return ResultBudget.of(statementId, maxRows, maxBytes, ResultBudget.forStatement(resultOverBudgets, statementId, resultOverBudget));
+    }
+
+    /**
+     * 处理配置了多个 ResultMap 的查询：结果的第 i 列按第 i 个 ResultMap 映射，每个 ResultMap 得到一个列表
      * <p>
-     * Path比较特殊，提供了一种通用的对象接收【StringPathDO、LongPathDO】，也必须使用我们提供的path对象才能正确返回PathWrapper ，否则不能使用find path等语句
+     * nebula 一次请求只返回一个结果集（分号、管道连接的多条语句只返回最后一条的结果），
+     * 因此不按 mybatis 的多结果集处理，而是由一条语句 RETURN 多列，例如 {@code RETURN v, e} 同时取回点和它的边。
+     * 同一列中重复出现的点（按 VID）、边（按类型、起点、终点、rank）、路径（按经过的点和边）只映射一次，值为 null 的单元格（OPTIONAL MATCH）跳过。
+     * 每列可以直接映射或交给 DefaultResultSetHandler 按该列的 ResultMap 二次映射，返回值与 mybatis 多个 ResultMap 时一致：
+     * 没有 ResultHandler 时为每个 ResultMap 的结果列表组成的列表，有 ResultHandler 时全部结果交给 ResultHandler。
      *
-     * @param aClass           返回对象类型
-     * @param propertiesMap    字段映射
-     * @param instantiateClass 返回对象
-     * @param wrapper          数据
-     * @throws UnsupportedEncodingException
-     * @throws NoSuchFieldException
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
-     */
-    private void doPath(Class<?> aClass, Map<String, String> propertiesMap, Object instantiateClass, ValueWrapper wrapper) throws UnsupportedEncodingException, NoSuchFieldException, IllegalAccessException, InvocationTargetException {
-        // 转换 PathWrapper
-        PathWrapper path = wrapper.asPath();
-        //注入起点终点字段
-        writeField(aClass, propertiesMap, instantiateClass, "_start", path.getStartNode().getId());
-        writeField(aClass, propertiesMap, instantiateClass, "_end", path.getEndNode().getId());
-        //链路上所有的 节点id
-        List<Object> collect = path.getNodes().stream().map(Node::getId).map(valueWrapper -> {
-            try {
-                return valueWrapper.isString() ? valueWrapper.asString() : valueWrapper.asLong();
-            } catch (UnsupportedEncodingException e) {
-                log.error("参数转换异常");
-                e.printStackTrace();
-            }
-            return null;
-        }).collect(Collectors.toList());
-        //注入nodes
-        if (propertiesMap.containsKey("_nodes")) {
-            Field subField = aClass.getDeclaredField(propertiesMap.get("_nodes"));
-            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(aClass, subField.getName());
-            if (pd != null) {
-                Method writeMethod = pd.getWriteMethod();
-                writeMethod.invoke(instantiateClass, collect);
+     * @param invocation      调用
+     * @param mappedStatement 映射语句
+     * @param plan            多个 ResultMap 的映射计划
+     * @param resultHandler   结果处理器，可为 null
+     * @param rowBounds       分页参数，对每个 ResultMap 的结果分别生效
+     * @return 返回对象
+     * @throws Throwable
+     */
+    private Object interceptGroups(Invocation invocation, MappedStatement mappedStatement, MappingPlan plan,
+                                   ResultHandler<?> resultHandler, RowBounds rowBounds) throws Throwable {
+        Statement statement = (Statement) invocation.getArgs()[0];
+        ResultSet resultSet = statement.getResultSet();
+        if (resultSet == null) {
+            return invocation.proceed();
+        }
+        MappingPlan[] groups = plan.getGroups();
+        List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+        int columnCount = resultSet.getMetaData().getColumnCount();
+        if (columnCount != groups.length) {
+            throw new SQLException("语句 " + mappedStatement.getId() + " 配置了 " + groups.length + " 个 ResultMap，结果有 "
+                    + columnCount + " 列，每列需要对应一个 ResultMap");
+        }
+        NebulaMappingStats stats = newStats();
+        StringInterner interner = newInterner();
+        boolean[] direct = new boolean[groups.length];
+        NebulaRowDecoder[] decoders = new NebulaRowDecoder[groups.length];
+        NebulaColumnarResultSet.Builder[] columnarBuilders = new NebulaColumnarResultSet.Builder[groups.length];
+        List<List<Object>> directLists = new ArrayList<>(groups.length);
+        List<Set<Object>> seen = new ArrayList<>(groups.length);
+        for (int i = 0; i < groups.length; i++) {
+            MappingPlan group = groups[i];
+            direct[i] = directMapping && group.isDirectMappingSupported() && isDefaultRowBounds(rowBounds);
+            decoders[i] = group.isNone() ? null : new NebulaRowDecoder(group, stats, lazyDecode, null, interner);
+            if (!direct[i] && !group.isNone()) {
+                columnarBuilders[i] = NebulaColumnarResultSet.builder(group.getColumnNames(), group.getColumnIndex()).interner(interner);
             }
+            directLists.add(new ArrayList<>());
+            seen.add(new HashSet<>());
         }
-        //注入RelationShip
-        if (propertiesMap.containsKey("_relation_ships")) {
-            List<Object> relationShips = new ArrayList<>();
-            for (Relationship relationship : path.getRelationships()) {
-                //获取约定的内部类$RelationShip
-                Class<?> innerClass;
-                try {
-                    innerClass = Class.forName(aClass.getName() + "$RelationShip");
-                } catch (ClassNotFoundException e) {
-                    throw new RuntimeException("resultMap中的type类型请使用提供的StringPathDO、LongPathDO");
+        try {
+            while (resultSet.next()) {
+                long fetchStart = stats != null ? System.nanoTime() : 0L;
+                Object[] cells = new Object[columnCount];
+                for (int index = 1; index <= columnCount; index++) {
+                    cells[index - 1] = JdbcUtils.getResultSetValue(resultSet, index);
+                }
+                long decodeStart = stats != null ? System.nanoTime() : 0L;
+                for (int i = 0; i < columnCount; i++) {
+                    Object val = cells[i];
+                    if (val == null || (val instanceof ValueWrapper && ((ValueWrapper) val).isNull())) {
+                        continue;
+                    }
+                    if (decoders[i] == null || !isGraphValue(val)) {
+                        throw new SQLException("语句 " + mappedStatement.getId() + " 第 " + (i + 1) + " 列不是点、边、路径，无法按 ResultMap "
+                                + resultMaps.get(i).getId() + " 映射");
+                    }
+                    ValueWrapper wrapper = (ValueWrapper) val;
+                    if (wrapper.isVertex()) {
+                        Node node = wrapper.asNode();
+                        if (!seen.get(i).add(node.getId())) {
+                            continue;
+                        }
+                        if (direct[i]) {
+                            directLists.get(i).add(decoders[i].decodeVertex(node));
+                        } else {
+                            decoders[i].appendVertex(node, columnarBuilders[i]);
+                        }
+                    } else if (wrapper.isEdge()) {
+                        Relationship relationship = wrapper.asRelationship();
+                        if (!seen.get(i).add(Arrays.asList(relationship.edgeName(), relationship.srcId(), relationship.dstId(),
+                                relationship.ranking()))) {
+                            continue;
+                        }
+                        if (direct[i]) {
+                            directLists.get(i).add(decoders[i].decodeEdge(relationship));
+                        } else {
+                            decoders[i].appendEdge(relationship, columnarBuilders[i]);
+                        }
+                    } else {
+                        if (!seen.get(i).add(pathKey(wrapper.asPath()))) {
+                            continue;
+                        }
+                        // 路径总是由拦截器直接生成对象，RowBounds 在映射完成后截取
+                        Object instantiateClass = groups[i].newInstance();
+                        decoders[i].decodePath(instantiateClass, wrapper);
+                        directLists.get(i).add(instantiateClass);
+                    }
                 }
-                PropertyDescriptor src = BeanUtils.getPropertyDescriptor(innerClass, "src");
-                PropertyDescriptor dst = BeanUtils.getPropertyDescriptor(innerClass, "dst");
-                PropertyDescriptor ranking = BeanUtils.getPropertyDescriptor(innerClass, "ranking");
-                if (src == null || dst == null || ranking == null) {
-                    throw new RuntimeException("resultMap中的type类型请使用提供的StringPathDO、LongPathDO");
+                if (stats != null) {
+                    long end = System.nanoTime();
+                    stats.fetched(1, columnCount, decodeStart - fetchStart);
+                    stats.decoded(end - decodeStart);
                 }
-                Method srcWriteMethod = src.getWriteMethod();
-                Method dstWriteMethod = dst.getWriteMethod();
-                Method rankingWriteMethod = ranking.getWriteMethod();
-                if (srcWriteMethod == null || dstWriteMethod == null || rankingWriteMethod == null) {
-                    throw new RuntimeException("resultMap中的type类型请使用提供的StringPathDO、LongPathDO");
+            }
+        } finally {
+            resultSet.close();
+        }
+        DefaultResultSetHandler target = (DefaultResultSetHandler) invocation.getTarget();
+        List<Object> multipleResults = new ArrayList<>(groups.length);
+        boolean twoPass = false;
+        long populateStart = stats != null ? System.nanoTime() : 0L;
+        for (int i = 0; i < groups.length; i++) {
+            List<Object> results = new ArrayList<>();
+            if (columnarBuilders[i] != null) {
+                twoPass = true;
+                ResultSetWrapper rsw = new ResultSetWrapper(columnarBuilders[i].build(), mappedStatement.getConfiguration());
+                List<Object> handled = new ArrayList<>(1);
+                HANDLE_RESULT_SET.invoke(target, rsw, resultMaps.get(i), handled, (ResultMapping) null);
+                CLEAN_UP_AFTER_HANDLING_RESULT_SET.invoke(target);
+                if (!handled.isEmpty()) {
+                    results.addAll((List<?>) handled.get(0));
                 }
-                //依次注入所有的RelationShip
-                Object inner = BeanUtils.instantiateClass(innerClass);
-                if (relationship.srcId().isString()) {
-                    srcWriteMethod.invoke(inner, relationship.srcId().asString());
-                    dstWriteMethod.invoke(inner, relationship.dstId().asString());
-                } else {
-                    srcWriteMethod.invoke(inner, relationship.srcId().asLong());
-                    dstWriteMethod.invoke(inner, relationship.dstId().asLong());
+            }
+            List<Object> paths = directLists.get(i);
+            if (!direct[i] && !paths.isEmpty()) {
+                // 非直接映射时 directLists 中只有路径，点、边已由 DefaultResultSetHandler 按 RowBounds 截取
+                if (!results.isEmpty() && !isDefaultRowBounds(rowBounds)) {
+                    throw new SQLException("语句 " + mappedStatement.getId() + " 第 " + (i + 1) + " 列同时有路径和点/边，不支持 RowBounds 分页");
                 }
-                rankingWriteMethod.invoke(inner, relationship.ranking());
-                relationShips.add(inner);
+                paths = applyRowBounds(paths, rowBounds);
             }
-            //将以上统计的关系，注入RelationShips
-            Field subField = aClass.getDeclaredField(propertiesMap.get("_relation_ships"));
-            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(aClass, subField.getName());
-            if (pd != null) {
-                Method writeMethod = pd.getWriteMethod();
-                writeMethod.invoke(instantiateClass, relationShips);
+            results.addAll(paths);
+            if (resultHandler == null) {
+                multipleResults.add(results);
+            } else {
+                handleResults(resultHandler, results);
             }
         }
+        if (stats != null && twoPass) {
+            stats.populated(System.nanoTime() - populateStart);
+        }
+        record(plan, twoPass ? NebulaMybatisMetrics.Mode.TWO_PASS : NebulaMybatisMetrics.Mode.DIRECT, stats);
+        return multipleResults;
     }
 
     /**
-     * 处理 Relationship 类 ValueWrapper
-     * <p>
-     * 统一了边对象的定义，起点和终点在resultmap中的列名需要定义为_src，_dst ，rank需要定义为 _rank
+     * 把整个结果中的点、边、路径合并为一个 {@link NebulaAdjacency}，不为每条路径生成对象
      *
-     * @param aClass           返回对象类型
-     * @param propertiesMap    字段映射
-     * @param instantiateClass 返回对象
-     * @param wrapper          数据
-     * @throws NoSuchFieldException
-     * @throws UnsupportedEncodingException
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
-     */
-    @Deprecated
-    private void doEdge(Class<?> aClass, Map<String, String> propertiesMap, Object instantiateClass, ValueWrapper wrapper) throws NoSuchFieldException, UnsupportedEncodingException, IllegalAccessException, InvocationTargetException {
-        Relationship relationship = wrapper.asRelationship();
-        writeField(aClass, propertiesMap, instantiateClass, "_src", relationship.srcId());
-        writeField(aClass, propertiesMap, instantiateClass, "_dst", relationship.dstId());
-        if (propertiesMap.containsKey("_rank")) {
-            Field subField = aClass.getDeclaredField(propertiesMap.get("_rank"));
-            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(aClass, subField.getName());
-            if (pd != null) {
-                Method writeMethod = pd.getWriteMethod();
-                writeMethod.invoke(instantiateClass, relationship.ranking());
+     * @param invocation    调用
+     * @param plan          映射计划
+     * @param resultHandler 结果处理器，可为 null
+     * @return 只有一个 NebulaAdjacency 的列表，有 ResultHandler 时交给 ResultHandler
+     * @throws Throwable
+     */
+    private Object interceptAdjacency(Invocation invocation, MappingPlan plan, ResultHandler<?> resultHandler) throws Throwable {
+        Statement statement = (Statement) invocation.getArgs()[0];
+        ResultSet resultSet = statement.getResultSet();
+        NebulaMappingStats stats = newStats();
+        NebulaAdjacency.Builder builder = new NebulaAdjacency.Builder(plan.getAdjacencyColumns());
+        if (resultSet != null) {
+            int columnCount = resultSet.getMetaData().getColumnCount();
+            try {
+                while (resultSet.next()) {
+                    long fetchStart = stats != null ? System.nanoTime() : 0L;
+                    for (int index = 1; index <= columnCount; index++) {
+                        Object val = JdbcUtils.getResultSetValue(resultSet, index);
+                        if (val instanceof ValueWrapper) {
+                            builder.add((ValueWrapper) val);
+                        }
+                    }
+                    if (stats != null) {
+                        stats.fetched(1, columnCount, 0L);
+                        stats.decoded(System.nanoTime() - fetchStart);
+                    }
+                }
+            } finally {
+                resultSet.close();
             }
         }
-        HashMap<String, ValueWrapper> properties = relationship.properties();
-        for (String key : relationship.keys()) {
-            ValueWrapper fieldValueWrapper = properties.get(key);
-            writeField(aClass, propertiesMap, instantiateClass, key, fieldValueWrapper);
+        List<Object> result = new ArrayList<>(1);
+        result.add(builder.build());
+        record(plan, NebulaMybatisMetrics.Mode.DIRECT, stats);
+        if (resultHandler == null) {
+            return result;
         }
+        handleResults(resultHandler, result);
+        return new ArrayList<>();
     }
 
     /**
-     * 处理 Node 类 ValueWrapper
+     * 按嵌套 ResultMap 把每行的点、边组装为去重的对象图，见 {@link GraphAssembly}
      * <p>
-     * 需要resultmap中包含列名为id的列，否则无法注入id
+     * 结果中有非点、边的值时交给 mybatis 默认处理
      *
-     * @param aClass           返回对象类型
-     * @param propertiesMap    字段映射
-     * @param instantiateClass 返回对象
-     * @param wrapper          数据
-     * @throws UnsupportedEncodingException
-     * @throws NoSuchFieldException
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
+     * @param invocation    调用
+     * @param plan          映射计划
+     * @param resultHandler 结果处理器，可为 null
+     * @return 根对象列表，有 ResultHandler 时根对象交给 ResultHandler；嵌套映射引用的列不在结果中时返回 null，仍按原来的方式处理
+     * @throws Throwable
      */
-    @Deprecated
-    private void doVertex(Class<?> aClass, Map<String, String> propertiesMap, Object instantiateClass, ValueWrapper wrapper) throws UnsupportedEncodingException, NoSuchFieldException, IllegalAccessException, InvocationTargetException {
-        Node node = wrapper.asNode();
-        List<String> tags = node.tagNames();
-        if (tags.size() > 1) {
-            throw new RuntimeException("返回结果的包含多中tag，暂不支持");
+    private Object interceptAssembly(Invocation invocation, MappingPlan plan, ResultHandler<?> resultHandler) throws Throwable {
+        Statement statement = (Statement) invocation.getArgs()[0];
+        ResultSet resultSet = statement.getResultSet();
+        if (resultSet == null) {
+            return null;
+        }
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> labels = new ArrayList<>(columnCount);
+        for (int index = 1; index <= columnCount; index++) {
+            labels.add(JdbcUtils.lookupColumnName(metaData, index));
         }
-        writeField(aClass, propertiesMap, instantiateClass, "id", node.getId());
-        HashMap<String, ValueWrapper> properties = node.properties(tags.get(0));
-        for (String key : node.keys(tags.get(0))) {
-            ValueWrapper fieldValueWrapper = properties.get(key);
-            writeField(aClass, propertiesMap, instantiateClass, key, fieldValueWrapper);
+        NebulaMappingStats stats = newStats();
+        GraphAssembly.Assembler assembler = plan.getGraphAssembly().newAssembler(labels, stats, lazyDecode, newInterner());
+        if (assembler == null) {
+            log.debug("语句 {} 的结果列 {} 与嵌套 ResultMap 的列不匹配，不组装对象图", plan.getStatementId(), labels);
+            return null;
         }
+        Object[] cells = new Object[columnCount];
+        while (resultSet.next()) {
+            long fetchStart = stats != null ? System.nanoTime() : 0L;
+            for (int index = 1; index <= columnCount; index++) {
+                cells[index - 1] = JdbcUtils.getResultSetValue(resultSet, index);
+            }
+            long decodeStart = stats != null ? System.nanoTime() : 0L;
+            if (!assembler.add(cells)) {
+                resultSet.beforeFirst();
+                return fallback(invocation, plan);
+            }
+            if (stats != null) {
+                long end = System.nanoTime();
+                stats.fetched(1, columnCount, decodeStart - fetchStart);
+                stats.decoded(end - decodeStart);
+            }
+        }
+        record(plan, NebulaMybatisMetrics.Mode.DIRECT, stats);
+        if (resultHandler == null) {
+            return assembler.getRoots();
+        }
+        handleResults(resultHandler, assembler.getRoots());
+        return new ArrayList<>();
     }
 
     /**
-     * 注入字段
-     *
-     * @param aClass           返回对象类型
-     * @param propertiesMap    字段映射
-     * @param instantiateClass 返回对象
-     * @param column           列名
-     * @param wrapper          数据
-     * @throws NoSuchFieldException
-     * @throws UnsupportedEncodingException
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
-     */
-    private void writeField(Class<?> aClass, Map<String, String> propertiesMap, Object instantiateClass, String column, ValueWrapper wrapper) throws NoSuchFieldException, UnsupportedEncodingException, IllegalAccessException, InvocationTargetException {
-        if (!wrapper.isNull() && propertiesMap.containsKey(column)) {
-            Field subField = aClass.getDeclaredField(propertiesMap.get(column));
-            Object o = resolveValue(wrapper, subField);
-            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(aClass, subField.getName());
-            if (pd != null) {
-                Method writeMethod = pd.getWriteMethod();
-                writeMethod.invoke(instantiateClass, o);
+     * 直接映射的结果逐个交给 ResultHandler
+     */
+    @SuppressWarnings("unchecked")
+    private static void handleResults(ResultHandler<?> resultHandler, List<Object> results) {
+        ResultHandler<Object> handler = (ResultHandler<Object>) resultHandler;
+        DefaultResultContext<Object> resultContext = new DefaultResultContext<>();
+        for (Object result : results) {
+            if (resultContext.isStopped()) {
+                break;
             }
+            resultContext.nextResultObject(result);
+            handler.handleResult(resultContext);
         }
     }
 
     /**
-     * 解析基本数据类型ValueWrapper
+     * 处理 RETURN 投影的结果：每行是一个点/边按映射计划列顺序排列的属性值
      *
-     * @param valueWrapper 数据
-     * @param field        字段
-     * @return
-     * @throws UnsupportedEncodingException
-     */
-    private Object resolveValue(ValueWrapper valueWrapper, Field field) throws UnsupportedEncodingException {
-        if (valueWrapper.isBoolean()) {
-            return valueWrapper.asBoolean();
-        } else if (valueWrapper.isLong()) {
-            long l = valueWrapper.asLong();
-            if (field.getType().isAssignableFrom(Timestamp.class)) {
-                return (new Timestamp(l * 1000));
-            } else {
-                return l;
-            }
-        } else if (valueWrapper.isDate()) {
-            return valueWrapper.asDate();
-        } else if (valueWrapper.isDateTime()) {
-            return valueWrapper.asDateTime();
-        } else if (valueWrapper.isTime()) {
-            return valueWrapper.asTime();
-        } else if (valueWrapper.isDouble()) {
-            return valueWrapper.asDouble();
-        } else if (valueWrapper.isList()) {
-            ArrayList<ValueWrapper> valueWrappers = valueWrapper.asList();
-            List<Object> temp = new ArrayList<>();
-            for (ValueWrapper wrapper : valueWrappers) {
-                Object o = resolveValue(wrapper, field);
-                temp.add(o);
+     * @param invocation  调用
+     * @param plan        映射计划
+     * @param resultSet   结果集，已定位到第一行
+     * @param columnCount 列数
+     * @param direct      是否直接映射
+     * @param projection  RETURN 投影
+     * @param spillBudget 需要溢出时为超出的预算，否则为 null
+     * @return 返回对象
+     * @throws Throwable
+     */
+    private Object interceptProjected(Invocation invocation, MappingPlan plan, ResultSet resultSet, int columnCount, boolean direct,
+                                      NebulaMappingStats stats, ReturnProjection projection, ResultBudget spillBudget) throws Throwable {
+        NebulaRowDecoder decoder = new NebulaRowDecoder(plan, stats, lazyDecode, projection, newInterner());
+        RowSink sink = direct ? null : newSink(plan, decoder.getInterner(), spillBudget);
+        List<Object> directList = direct ? new ArrayList<>() : Collections.emptyList();
+        Object[] cells = new Object[columnCount];
+        try {
+            do {
+                long fetchStart = stats != null ? System.nanoTime() : 0L;
+                for (int index = 1; index <= columnCount; index++) {
+                    cells[index - 1] = JdbcUtils.getResultSetValue(resultSet, index);
+                }
+                long decodeStart = stats != null ? System.nanoTime() : 0L;
+                boolean decoded = direct ? decoder.decodeCells(cells, directList, directList) : decoder.appendProjected(cells, sink);
+                if (!decoded) {
+                    return fallback(invocation, plan, resultSet, spillBudget);
+                }
+                if (stats != null) {
+                    long end = System.nanoTime();
+                    stats.fetched(1, columnCount, decodeStart - fetchStart);
+                    stats.decoded(end - decodeStart);
+                }
+            } while (resultSet.next());
+        } catch (Throwable e) {
+            abort(sink);
+            throw e;
+        }
+        if (!direct) {
+            return proceedColumnar(invocation, plan, sink, stats);
+        }
+        record(plan, NebulaMybatisMetrics.Mode.DIRECT, stats);
+        return directList;
+    }
+
+    /**
+     * 并行解码：先读取全部行的值，行数达到阈值时分块并行映射
+     *
+     * @param invocation  调用
+     * @param plan        映射计划
+     * @param resultSet   结果集，已定位到第一行
+     * @param columnCount 列数
+     * @return 返回对象
+     * @throws Throwable
+     */
+    private Object interceptParallel(Invocation invocation, MappingPlan plan, ResultSet resultSet, int columnCount,
+                                     NebulaMappingStats stats, ReturnProjection projection) throws Throwable {
+        long fetchStart = stats != null ? System.nanoTime() : 0L;
+        List<Object[]> rows = new ArrayList<>();
+        do {
+            Object[] cells = new Object[columnCount];
+            for (int index = 1; index <= columnCount; index++) {
+                Object val = JdbcUtils.getResultSetValue(resultSet, index);
+                if (val != null && (projection != null ? !(val instanceof ValueWrapper) : !isGraphValue(val))) {
+                    resultSet.beforeFirst();
+                    return fallback(invocation, plan);
+                }
+                cells[index - 1] = val;
             }
-            return temp;
-        } else if (valueWrapper.isMap()) {
-            HashMap<String, ValueWrapper> stringValueWrapperHashMap = valueWrapper.asMap();
-            HashMap<String, Object> tmp = new HashMap<>(stringValueWrapperHashMap.size());
-            for (Map.Entry<String, ValueWrapper> stringValueWrapperEntry : stringValueWrapperHashMap.entrySet()) {
-                tmp.put(stringValueWrapperEntry.getKey(), resolveValue(stringValueWrapperEntry.getValue(), field));
+            rows.add(cells);
+        } while (resultSet.next());
+        if (stats != null) {
+            stats.fetched(rows.size(), (long) rows.size() * columnCount, System.nanoTime() - fetchStart);
+        }
+        Executor executor = decodeExecutor != null ? decodeExecutor : ForkJoinPool.commonPool();
+        List<Object> result = new ParallelRowDecoder(plan, executor, parallelThreshold, parallelChunkSize, stats, lazyDecode,
+                projection, internStrings ? internCapacity : 0).decode(rows);
+        record(plan, NebulaMybatisMetrics.Mode.PARALLEL, stats);
+        return result;
+    }
+
+    /**
+     * 处理返回 Cursor 的查询：逐行解码，不在内存中收集结果
+     * <p>
+     * 点/边结果需要映射计划支持直接映射，否则交给 mybatis 默认实现
+     *
+     * @param invocation 调用
+     * @param plan       映射计划
+     * @param rowBounds  分页参数
+     * @param projection RETURN 投影，未投影时为 null
+     * @return 游标
+     * @throws Throwable
+     */
+    private Object interceptCursor(Invocation invocation, MappingPlan plan, RowBounds rowBounds, ReturnProjection projection) throws Throwable {
+        Statement statement = (Statement) invocation.getArgs()[0];
+        ResultSet resultSet = statement.getResultSet();
+        if (resultSet == null || !plan.isDirectMappingSupported()) {
+            return invocation.proceed();
+        }
+        projection = checkProjection(projection, resultSet);
+        if (projection == null && !isGraphResult(resultSet)) {
+            return fallback(invocation, plan);
+        }
+        NebulaMappingStats stats = metrics != null ? new NebulaMappingStats() : null;
+        Runnable onClose = stats != null ? () -> record(plan, NebulaMybatisMetrics.Mode.CURSOR, stats) : null;
+        return new NebulaCursor<>(resultSet, new NebulaRowDecoder(plan, stats, lazyDecode, projection, newInterner()), rowBounds, onClose);
+    }
+
+    /**
+     * 处理带 ResultHandler 的查询：逐行解码后立即交给 ResultHandler，不在内存中收集结果
+     *
+     * @param invocation    调用
+     * @param plan          映射计划
+     * @param resultHandler 结果处理器
+     * @param rowBounds     分页参数
+     * @param projection    RETURN 投影，未投影时为 null
+     * @return 空列表，结果都已交给 ResultHandler
+     * @throws Throwable
+     */
+    @SuppressWarnings("unchecked")
+    private Object interceptResultHandler(Invocation invocation, MappingPlan plan, ResultHandler<?> resultHandler, RowBounds rowBounds,
+                                          ReturnProjection projection) throws Throwable {
+        Statement statement = (Statement) invocation.getArgs()[0];
+        ResultSet resultSet = statement.getResultSet();
+        if (resultSet == null) {
+            return invocation.proceed();
+        }
+        projection = checkProjection(projection, resultSet);
+        if (projection == null && !isGraphResult(resultSet)) {
+            return fallback(invocation, plan);
+        }
+        ResultHandler<Object> handler = (ResultHandler<Object>) resultHandler;
+        NebulaMappingStats stats = newStats();
+        NebulaRowDecoder decoder = new NebulaRowDecoder(plan, stats, lazyDecode, projection, newInterner());
+        int columnCount = resultSet.getMetaData().getColumnCount();
+        int limit = rowBounds == null ? RowBounds.NO_ROW_LIMIT : rowBounds.getLimit();
+        DefaultResultContext<Object> resultContext = new DefaultResultContext<>();
+        List<Object> rowObjects = new ArrayList<>(columnCount);
+        try {
+            skipRows(resultSet, rowBounds);
+            while (!resultContext.isStopped() && resultContext.getResultCount() < limit && resultSet.next()) {
+                rowObjects.clear();
+                if (!decoder.decodeRow(resultSet, columnCount, rowObjects)) {
+                    throw new SQLException("结果中包含非点、边、路径的数据，无法使用ResultHandler逐行处理");
+                }
+                for (Object rowObject : rowObjects) {
+                    if (resultContext.isStopped() || resultContext.getResultCount() >= limit) {
+                        break;
+                    }
+                    resultContext.nextResultObject(rowObject);
+                    handler.handleResult(resultContext);
+                }
             }
-            return tmp;
-        } else if (valueWrapper.isNull()) {
+        } finally {
+            resultSet.close();
+        }
+        record(plan, NebulaMybatisMetrics.Mode.RESULT_HANDLER, stats);
+        return new ArrayList<>();
+    }
+
+    /**
+     * 结果不是点/边/路径，交给 mybatis 默认处理
+     */
+    private Object fallback(Invocation invocation, MappingPlan plan) throws Throwable {
+        record(plan, NebulaMybatisMetrics.Mode.FALLBACK, null);
+        return invocation.proceed();
+    }
+
+    /**
+     * 读到不是点/边的值，结果集回到第一行之前交给 mybatis 默认处理；需要溢出时 mybatis 会把全部行读入内存，直接失败
+     *
+     * @param spillBudget 需要溢出时为超出的预算，否则为 null
+     */
+    private Object fallback(Invocation invocation, MappingPlan plan, ResultSet resultSet, ResultBudget spillBudget) throws Throwable {
+        if (spillBudget != null) {
+            throw spillBudget.exceeded("结果不是点/边，不支持溢出");
+        }
+        resultSet.beforeFirst();
+        return fallback(invocation, plan);
+    }
+
+    /**
+     * 每个结果集一个字符串驻留表，未开启时返回 null
+     */
+    private StringInterner newInterner() {
+        return internStrings ? StringInterner.create(internCapacity) : null;
+    }
+
+    /**
+     * 设置了指标或正在采集慢语句时统计映射
+     */
+    private NebulaMappingStats newStats() {
+        return metrics != null || StatementCapture.current() != null ? new NebulaMappingStats() : null;
+    }
+
+    private void record(MappingPlan plan, NebulaMybatisMetrics.Mode mode, NebulaMappingStats stats) {
+        if (metrics != null) {
+            metrics.record(plan.getStatementId(), mode, stats);
+        }
+        // Cursor 关闭时已不在语句执行的调用栈中
+        StatementCapture capture = mode != NebulaMybatisMetrics.Mode.CURSOR ? StatementCapture.current() : null;
+        if (capture != null) {
+            capture.mapped(mode, stats);
+        }
+    }
+
+    /**
+     * {@link NebulaProjectionIntercept} 改写了 RETURN 子句时，从 BoundSql 中取出投影
+     */
+    private static ReturnProjection getProjection(DefaultResultSetHandler target) throws Throwable {
+        BoundSql boundSql = (BoundSql) BOUND_SQL_GETTER.invoke(target);
+        if (boundSql == null || !boundSql.hasAdditionalParameter(NebulaProjectionIntercept.PROJECTION_PARAMETER)) {
             return null;
-        } else if (valueWrapper.isSet()) {
-            HashSet<ValueWrapper> valueWrappers = valueWrapper.asSet();
-            HashSet<Object> tmp = new HashSet<>();
-            for (ValueWrapper wrapper : valueWrappers) {
-                tmp.add(resolveValue(wrapper, field));
+        }
+        Object projection = boundSql.getAdditionalParameter(NebulaProjectionIntercept.PROJECTION_PARAMETER);
+        return projection instanceof ReturnProjection ? (ReturnProjection) projection : null;
+    }
+
+    private static KeysetPage getPage(DefaultResultSetHandler target) throws Throwable {
+        BoundSql boundSql = (BoundSql) BOUND_SQL_GETTER.invoke(target);
+        if (boundSql == null || !boundSql.hasAdditionalParameter(NebulaPageIntercept.PAGE_PARAMETER)) {
+            return null;
+        }
+        Object page = boundSql.getAdditionalParameter(NebulaPageIntercept.PAGE_PARAMETER);
+        return page instanceof KeysetPage ? (KeysetPage) page : null;
+    }
+
+    /**
+     * 投影列数与结果集列数不一致时不按投影处理
+     */
+    private static ReturnProjection checkProjection(ReturnProjection projection, ResultSet resultSet) throws SQLException {
+        return projection != null && projection.getColumnCount() == resultSet.getMetaData().getColumnCount() ? projection : null;
+    }
+
+    /**
+     * 探测结果集第一行是否为点/边/路径，探测后回到第一行之前
+     */
+    private static boolean isGraphResult(ResultSet resultSet) throws SQLException {
+        if (!resultSet.next()) {
+            resultSet.beforeFirst();
+            return false;
+        }
+        try {
+            int columnCount = resultSet.getMetaData().getColumnCount();
+            for (int index = 1; index <= columnCount; index++) {
+                Object val = JdbcUtils.getResultSetValue(resultSet, index);
+                if (val != null && !isGraphValue(val)) {
+                    return false;
+                }
             }
-            return tmp;
-        } else if (valueWrapper.isString()) {
-            return valueWrapper.asString();
-        } else {
-            throw new RuntimeException("未识别的valueWrapper");
+            return true;
+        } finally {
+            resultSet.beforeFirst();
+        }
+    }
+
+    private static boolean isGraphValue(Object val) {
+        if (!(val instanceof ValueWrapper)) {
+            return false;
         }
+        ValueWrapper wrapper = (ValueWrapper) val;
+        return wrapper.isVertex() || wrapper.isEdge() || wrapper.isPath();
     }
 
+    /**
+     * 路径的去重键：依次经过的点的 VID，以及每条边的类型、起点、终点、rank
+     */
+    private static List<Object> pathKey(PathWrapper path) {
+        List<Node> nodes = path.getNodes();
+        List<Relationship> relationships = path.getRelationships();
+        List<Object> key = new ArrayList<>(nodes.size() + relationships.size() * 4);
+        for (Node node : nodes) {
+            key.add(node.getId());
+        }
+        for (Relationship relationship : relationships) {
+            key.add(relationship.edgeName());
+            key.add(relationship.srcId());
+            key.add(relationship.dstId());
+            key.add(relationship.ranking());
+        }
+        return key;
+    }
+
+    private static List<Object> applyRowBounds(List<Object> results, RowBounds rowBounds) {
+        if (isDefaultRowBounds(rowBounds)) {
+            return results;
+        }
+        int from = Math.min(rowBounds.getOffset(), results.size());
+        int to = (int) Math.min((long) from + rowBounds.getLimit(), results.size());
+        return results.subList(from, to);
+    }
+
+    static void skipRows(ResultSet resultSet, RowBounds rowBounds) throws SQLException {
+        if (rowBounds == null) {
+            return;
+        }
+        for (int i = 0; i < rowBounds.getOffset(); i++) {
+            if (!resultSet.next()) {
+                break;
+            }
+        }
+    }
+
+    private static boolean isDefaultRowBounds(RowBounds rowBounds) {
+        return rowBounds == null || (rowBounds.getOffset() == RowBounds.NO_ROW_OFFSET && rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT);
+    }
+
+    /**
+     * 获取映射计划，同一个 MappedStatement 只构建一次
+     *
+     * @param mappedStatement 映射语句
+     * @return 映射计划
+     */
+    private MappingPlan getPlan(MappedStatement mappedStatement) {
+        // 先无锁读取，未命中时才进入 computeIfAbsent
+        MappingPlan plan = planCache.get(mappedStatement);
+        if (plan == null) {
+            plan = planCache.computeIfAbsent(mappedStatement, MappingPlan::compile);
+        }
+        return plan;
+    }
+
+    /**
+     * 只代理需要处理的 ResultSetHandler
+     * <p>
+     * mybatis 每次查询都会对 Executor、StatementHandler、ParameterHandler、ResultSetHandler 调用 plugin，
+     * 其余类型直接返回；非 nebula 数据源或标量结果的语句也直接返回，不再生成代理、不再进入 intercept
+     */
     @Override
     public Object plugin(Object target) {
+        if (!(target instanceof ResultSetHandler)) {
+            return target;
+        }
+        if (target instanceof DefaultResultSetHandler && !isGraphStatement(getMappedStatement(target))) {
+            return target;
+        }
         return Plugin.wrap(target, this);
     }
 
+    /**
+     * 预先分类 Configuration 中的全部语句并构建映射计划，避免首次查询时再构建
+     *
+     * @param configuration mybatis 配置，未注册本拦截器时不处理
+     * @return 需要拦截的语句数
+     */
+    public int warmUp(Configuration configuration) {
+        if (!configuration.getInterceptors().contains(this)) {
+            return 0;
+        }
+        Map<StatementClassifier.Kind, Integer> counts = new EnumMap<>(StatementClassifier.Kind.class);
+        Set<String> ids = new HashSet<>();
+        // StrictMap 中同一语句同时以全名和短名保存，短名冲突时值为 Ambiguity，按对象类型过滤
+        for (Object value : configuration.getMappedStatements()) {
+            if (!(value instanceof MappedStatement)) {
+                continue;
+            }
+            MappedStatement mappedStatement = (MappedStatement) value;
+            if (ids.add(mappedStatement.getId())) {
+                counts.merge(classify(mappedStatement), 1, Integer::sum);
+            }
+        }
+        int graph = counts.getOrDefault(StatementClassifier.Kind.GRAPH, 0);
+        log.info("nebula-mybatis 语句预分类完成：图结果 {} 个，nebula 标量结果 {} 个，非 nebula {} 个", graph,
+                counts.getOrDefault(StatementClassifier.Kind.NEBULA_SCALAR, 0),
+                counts.getOrDefault(StatementClassifier.Kind.NON_NEBULA, 0));
+        return graph;
+    }
+
+    private boolean isGraphStatement(MappedStatement mappedStatement) {
+        return mappedStatement == null || classify(mappedStatement) == StatementClassifier.Kind.GRAPH;
+    }
+
+    private StatementClassifier.Kind classify(MappedStatement mappedStatement) {
+        return classifier.classify(mappedStatement, statement -> {
+            try {
+                return getPlan(statement);
+            } catch (RuntimeException e) {
+                // 无法构建映射计划的语句仍然代理，查询时照常报错
+                log.warn("语句 {} 无法构建映射计划：{}", statement.getId(), e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    private static MappedStatement getMappedStatement(Object target) {
+        try {
+            return (MappedStatement) MAPPED_STATEMENT_GETTER.invoke(target);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle getter(String name) throws ReflectiveOperationException {
+        Field field = DefaultResultSetHandler.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectGetter(field);
+    }
+
+    private static MethodHandle method(String name, Class<?>... parameterTypes) throws ReflectiveOperationException {
+        Method method = DefaultResultSetHandler.class.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method);
+    }
+
+    public boolean isDirectMapping() {
+        return directMapping;
+    }
+
+    public void setDirectMapping(boolean directMapping) {
+        this.directMapping = directMapping;
+    }
+
+    public boolean isLazyDecode() {
+        return lazyDecode;
+    }
+
+    public void setLazyDecode(boolean lazyDecode) {
+        this.lazyDecode = lazyDecode;
+    }
+
+    public boolean isParallelDecode() {
+        return parallelDecode;
+    }
+
+    public void setParallelDecode(boolean parallelDecode) {
+        this.parallelDecode = parallelDecode;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getParallelChunkSize() {
+        return parallelChunkSize;
+    }
+
+    public void setParallelChunkSize(int parallelChunkSize) {
+        this.parallelChunkSize = parallelChunkSize;
+    }
+
+    public Executor getDecodeExecutor() {
+        return decodeExecutor;
+    }
+
+    public void setDecodeExecutor(Executor decodeExecutor) {
+        this.decodeExecutor = decodeExecutor;
+    }
+
+    public boolean isInternStrings() {
+        return internStrings;
+    }
+
+    public void setInternStrings(boolean internStrings) {
+        this.internStrings = internStrings;
+    }
+
+    public int getInternCapacity() {
+        return internCapacity;
+    }
+
+    public void setInternCapacity(int internCapacity) {
+        this.internCapacity = internCapacity;
+    }
+
+    public long getResultRowBudget() {
+        return resultRowBudget;
+    }
+
+    public void setResultRowBudget(long resultRowBudget) {
+        this.resultRowBudget = resultRowBudget;
+    }
+
+    public long getResultByteBudget() {
+        return resultByteBudget;
+    }
+
+    public void setResultByteBudget(long resultByteBudget) {
+        this.resultByteBudget = resultByteBudget;
+    }
+
+    public NebulaOverBudget getResultOverBudget() {
+        return resultOverBudget;
+    }
+
+    public void setResultOverBudget(NebulaOverBudget resultOverBudget) {
+        this.resultOverBudget = resultOverBudget;
+    }
+
+    public Map<String, Long> getResultRowBudgets() {
+        return resultRowBudgets;
+    }
+
+    public void setResultRowBudgets(Map<String, Long> resultRowBudgets) {
+        this.resultRowBudgets = new ConcurrentHashMap<>(resultRowBudgets);
+    }
+
+    public Map<String, Long> getResultByteBudgets() {
+        return resultByteBudgets;
+    }
+
+    public void setResultByteBudgets(Map<String, Long> resultByteBudgets) {
+        this.resultByteBudgets = new ConcurrentHashMap<>(resultByteBudgets);
+    }
+
+    public Map<String, NebulaOverBudget> getResultOverBudgets() {
+        return resultOverBudgets;
+    }
+
+    public void setResultOverBudgets(Map<String, NebulaOverBudget> resultOverBudgets) {
+        this.resultOverBudgets = new ConcurrentHashMap<>(resultOverBudgets);
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public void setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public NebulaMybatisMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(NebulaMybatisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 另外支持 resultRowBudget.&lt;MappedStatement id 或命名空间&gt; 形式单独设置的预算，resultByteBudget、resultOverBudget 同理
+     */
     @Override
     public void setProperties(Properties properties) {
+        directMapping = Boolean.parseBoolean(properties.getProperty("directMapping", String.valueOf(directMapping)));
+        lazyDecode = Boolean.parseBoolean(properties.getProperty("lazyDecode", String.valueOf(lazyDecode)));
+        parallelDecode = Boolean.parseBoolean(properties.getProperty("parallelDecode", String.valueOf(parallelDecode)));
+        parallelThreshold = Integer.parseInt(properties.getProperty("parallelThreshold", String.valueOf(parallelThreshold)));
+        parallelChunkSize = Integer.parseInt(properties.getProperty("parallelChunkSize", String.valueOf(parallelChunkSize)));
+        internStrings = Boolean.parseBoolean(properties.getProperty("internStrings", String.valueOf(internStrings)));
+        internCapacity = Integer.parseInt(properties.getProperty("internCapacity", String.valueOf(internCapacity)));
+        resultRowBudget = Long.parseLong(properties.getProperty("resultRowBudget", String.valueOf(resultRowBudget)));
+        resultByteBudget = Long.parseLong(properties.getProperty("resultByteBudget", String.valueOf(resultByteBudget)));
+        resultOverBudget = NebulaOverBudget.valueOf(properties.getProperty("resultOverBudget", resultOverBudget.name()).toUpperCase());
+        String directory = properties.getProperty("spillDirectory");
+        if (directory != null && !directory.isEmpty()) {
+            spillDirectory = Paths.get(directory);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name);
+            if (name.startsWith("resultRowBudget.")) {
+                resultRowBudgets.put(name.substring("resultRowBudget.".length()), Long.parseLong(value));
+            } else if (name.startsWith("resultByteBudget.")) {
+                resultByteBudgets.put(name.substring("resultByteBudget.".length()), Long.parseLong(value));
+            } else if (name.startsWith("resultOverBudget.")) {
+                resultOverBudgets.put(name.substring("resultOverBudget.".length()), NebulaOverBudget.valueOf(value.toUpperCase()));
+            }
+        }
     }
 }
@@ -0,0 +1,426 @@
+package com.mininglamp.nebulamybatis;
+
+import java.util.*;
+
+/**
+ * nGQL 语句读写的范围：涉及的 tag / edge type 和 VID
+ * <p>
+ * 查询只识别 FETCH PROP ON、LOOKUP ON、GO ... OVER，写入识别 INSERT / UPDATE / UPSERT / DELETE，
+ * 其余语句（MATCH、GET SUBGRAPH、FIND PATH 等）无法确定范围，视为全部。
+ * 两个范围的 tag / edge type 和 VID 都有交集时才相互影响，null 表示不限。
+ *
+ * @author daiyi
+ */
+final class GraphScope {
+
+    /**
+     * 全部 tag / edge type、全部 VID
+     */
+    static final GraphScope ALL = new GraphScope(null, null);
+
+    /**
+     * tag / edge type，null 表示全部
+     */
+    private final Set<String> types;
+
+    /**
+     * VID，null 表示全部
+     */
+    private final Set<String> vids;
+
+    private GraphScope(Set<String> types, Set<String> vids) {
+        this.types = types;
+        this.vids = vids;
+    }
+
+    Set<String> getTypes() {
+        return types;
+    }
+
+    Set<String> getVids() {
+        return vids;
+    }
+
+    boolean isAll() {
+        return types == null && vids == null;
+    }
+
+    /**
+     * @return 两个范围是否相互影响
+     */
+    boolean overlaps(GraphScope other) {
+        return intersects(types, other.types) && intersects(vids, other.vids);
+    }
+
+    private static boolean intersects(Set<String> a, Set<String> b) {
+        return a == null || b == null || !Collections.disjoint(a, b);
+    }
+
+    /**
+     * 查询语句读取的范围
+     *
+     * @param sql    带 ? 占位符的 nGQL
+     * @param params 按顺序对应占位符的参数值
+     * @return 范围，无法识别时返回 {@link #ALL}
+     */
+    static GraphScope ofQuery(String sql, List<?> params) {
+        return parse(sql, params, true);
+    }
+
+    /**
+     * 写入语句修改的范围
+     *
+     * @param sql    带 ? 占位符的 nGQL
+     * @param params 按顺序对应占位符的参数值
+     * @return 范围，无法识别时返回 {@link #ALL}
+     */
+    static GraphScope ofWrite(String sql, List<?> params) {
+        return parse(sql, params, false);
+    }
+
+    private static GraphScope parse(String sql, List<?> params, boolean query) {
+        List<Token> tokens;
+        try {
+            tokens = tokenize(sql, params);
+        } catch (IllegalArgumentException e) {
+            return ALL;
+        }
+        GraphScope scope = null;
+        int start = 0;
+        for (int i = 0; i <= tokens.size(); i++) {
+            // 管道、多条语句按各部分的并集
+            if (i == tokens.size() || tokens.get(i).is("|") || tokens.get(i).is(";")) {
+                if (i > start) {
+                    Parser parser = new Parser(tokens.subList(start, i));
+                    GraphScope part = query ? parser.query() : parser.write();
+                    if (part.isAll()) {
+                        return ALL;
+                    }
+                    scope = scope == null ? part : scope.union(part);
+                }
+                start = i + 1;
+            }
+        }
+        return scope == null ? ALL : scope;
+    }
+
+    private GraphScope union(GraphScope other) {
+        return new GraphScope(union(types, other.types), union(vids, other.vids));
+    }
+
+    private static Set<String> union(Set<String> a, Set<String> b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+
+    @Override
+    public String toString() {
+        return "GraphScope{types=" + (types == null ? "*" : types) + ", vids=" + (vids == null ? "*" : vids) + '}';
+    }
+
+    /**
+     * 分词：标识符、字符串、数字、参数、符号
+     */
+    private static List<Token> tokenize(String sql, List<?> params) {
+        List<Token> tokens = new ArrayList<>();
+        Iterator<?> parameters = params == null ? Collections.emptyIterator() : params.iterator();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                StringBuilder value = new StringBuilder();
+                int j = i + 1;
+                while (j < length && sql.charAt(j) != c) {
+                    if (sql.charAt(j) == '\\' && j + 1 < length) {
+                        j++;
+                    }
+                    value.append(sql.charAt(j++));
+                }
+                if (j >= length) {
+                    throw new IllegalArgumentException("字符串未结束");
+                }
+                tokens.add(new Token(Token.VALUE, value.toString()));
+                i = j + 1;
+            } else if (c == '`') {
+                int end = sql.indexOf('`', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("标识符未结束");
+                }
+                tokens.add(new Token(Token.IDENT, sql.substring(i + 1, end)));
+                i = end + 1;
+            } else if (c == '?') {
+                Object value = parameters.hasNext() ? parameters.next() : null;
+                tokens.add(new Token(value == null ? Token.SYMBOL : Token.VALUE, String.valueOf(value)));
+                i++;
+            } else if (Character.isDigit(c) || (c == '-' && i + 1 < length && Character.isDigit(sql.charAt(i + 1)))) {
+                int j = i + 1;
+                while (j < length && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '.')) {
+                    j++;
+                }
+                tokens.add(new Token(Token.VALUE, sql.substring(i, j)));
+                i = j;
+            } else if (Character.isLetter(c) || c == '_') {
+                int j = i + 1;
+                while (j < length && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '_')) {
+                    j++;
+                }
+                tokens.add(new Token(Token.IDENT, sql.substring(i, j)));
+                i = j;
+            } else if (sql.startsWith("->", i) || sql.startsWith("$$", i) || sql.startsWith("$^", i) || sql.startsWith("$-", i)) {
+                tokens.add(new Token(Token.SYMBOL, sql.substring(i, i + 2)));
+                i += 2;
+            } else {
+                tokens.add(new Token(Token.SYMBOL, String.valueOf(c)));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Token {
+
+        static final int IDENT = 0;
+        static final int VALUE = 1;
+        static final int SYMBOL = 2;
+
+        final int kind;
+        final String text;
+
+        Token(int kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+
+        boolean is(String symbol) {
+            return kind == SYMBOL && text.equals(symbol);
+        }
+
+        boolean isKeyword(String keyword) {
+            return kind == IDENT && text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    /**
+     * 单条语句的解析
+     */
+    private static final class Parser {
+
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        GraphScope query() {
+            if (accept("FETCH") && accept("PROP") && accept("ON")) {
+                Set<String> types = typeList();
+                return new GraphScope(types, vidList(false));
+            }
+            if (accept("LOOKUP") && accept("ON") && peek() != null && peek().kind == Token.IDENT) {
+                return new GraphScope(Collections.singleton(next().text), null);
+            }
+            if (accept("GO")) {
+                return go();
+            }
+            return ALL;
+        }
+
+        GraphScope write() {
+            if (accept("INSERT")) {
+                boolean vertex = accept("VERTEX");
+                if (!vertex && !accept("EDGE")) {
+                    return ALL;
+                }
+                if (accept("IF")) {
+                    accept("NOT");
+                    accept("EXISTS");
+                }
+                Set<String> types = new HashSet<>();
+                while (peek() != null && peek().kind == Token.IDENT && !peek().isKeyword("VALUES")) {
+                    types.add(next().text);
+                    skipParentheses();
+                    accept(",");
+                }
+                if (types.isEmpty() || !accept("VALUES")) {
+                    return ALL;
+                }
+                return new GraphScope(types, vidList(true));
+            }
+            if (accept("UPDATE") || accept("UPSERT")) {
+                if (!accept("VERTEX") && !accept("EDGE")) {
+                    return ALL;
+                }
+                Set<String> types = null;
+                if (accept("ON") && peek() != null && peek().kind == Token.IDENT) {
+                    types = Collections.singleton(next().text);
+                }
+                Set<String> vids = vidList(false);
+                // 旧语法 UPDATE EDGE src->dst OF e
+                if (types == null && accept("OF") && peek() != null && peek().kind == Token.IDENT) {
+                    types = Collections.singleton(next().text);
+                }
+                if (types == null) {
+                    types = propertyOwners();
+                }
+                return new GraphScope(types, vids);
+            }
+            if (accept("DELETE")) {
+                if (accept("VERTEX")) {
+                    return new GraphScope(null, vidList(false));
+                }
+                if (accept("EDGE") && peek() != null && peek().kind == Token.IDENT) {
+                    Set<String> types = Collections.singleton(next().text);
+                    return new GraphScope(types, vidList(false));
+                }
+                if (accept("TAG")) {
+                    Set<String> types = typeList();
+                    return accept("FROM") ? new GraphScope(types, vidList(false)) : ALL;
+                }
+            }
+            return ALL;
+        }
+
+        /**
+         * GO ... OVER e1, e2：edge type 加上 $$.tag、$^.tag 引用的 tag，VID 不限
+         */
+        private GraphScope go() {
+            Set<String> types = new HashSet<>();
+            boolean over = false;
+            while (peek() != null) {
+                Token token = next();
+                if (token.isKeyword("OVER")) {
+                    over = true;
+                    Set<String> edges = typeList();
+                    if (edges == null) {
+                        return ALL;
+                    }
+                    types.addAll(edges);
+                } else if (token.is("$$") || token.is("$^")) {
+                    if (!accept(".") || peek() == null || peek().kind != Token.IDENT) {
+                        return ALL;
+                    }
+                    types.add(next().text);
+                }
+            }
+            return over ? new GraphScope(types, null) : ALL;
+        }
+
+        /**
+         * t1, t2 或 *
+         *
+         * @return * 时返回 null
+         */
+        private Set<String> typeList() {
+            if (accept("*")) {
+                return null;
+            }
+            Set<String> types = new HashSet<>();
+            while (peek() != null && peek().kind == Token.IDENT) {
+                types.add(next().text);
+                // 逗号后仍是标识符才是下一个类型，否则是 VID 列表
+                if (!(peek() != null && peek().is(",") && peek(1) != null && peek(1).kind == Token.IDENT)) {
+                    break;
+                }
+                next();
+            }
+            return types.isEmpty() ? null : types;
+        }
+
+        /**
+         * v1, v2 或 src->dst[@rank], ...；插入时每项后面跟 :(值列表)
+         *
+         * @return 含表达式（$-.id 等）时返回 null
+         */
+        private Set<String> vidList(boolean values) {
+            Set<String> vids = new HashSet<>();
+            do {
+                if (!vid(vids)) {
+                    return null;
+                }
+                if (accept("->") && !vid(vids)) {
+                    return null;
+                }
+                if (accept("@")) {
+                    next();
+                }
+                if (values) {
+                    if (!accept(":")) {
+                        return null;
+                    }
+                    skipParentheses();
+                }
+            } while (accept(","));
+            return vids.isEmpty() ? null : vids;
+        }
+
+        private boolean vid(Set<String> vids) {
+            Token token = peek();
+            if (token == null || token.kind != Token.VALUE) {
+                return false;
+            }
+            vids.add(next().text);
+            return true;
+        }
+
+        /**
+         * SET t.prop = ... 中的 t
+         */
+        private Set<String> propertyOwners() {
+            if (!accept("SET")) {
+                return null;
+            }
+            Set<String> owners = new HashSet<>();
+            while (peek() != null && !peek().isKeyword("WHEN") && !peek().isKeyword("YIELD")) {
+                Token token = next();
+                if (token.kind == Token.IDENT && peek() != null && peek().is(".")) {
+                    owners.add(token.text);
+                }
+            }
+            return owners.isEmpty() ? null : owners;
+        }
+
+        private void skipParentheses() {
+            if (!accept("(")) {
+                return;
+            }
+            int depth = 1;
+            while (depth > 0 && peek() != null) {
+                Token token = next();
+                if (token.is("(")) {
+                    depth++;
+                } else if (token.is(")")) {
+                    depth--;
+                }
+            }
+        }
+
+        private boolean accept(String keywordOrSymbol) {
+            Token token = peek();
+            if (token != null && (token.isKeyword(keywordOrSymbol) || token.is(keywordOrSymbol))) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private Token peek() {
+            return peek(0);
+        }
+
+        private Token peek(int offset) {
+            return position + offset < tokens.size() ? tokens.get(position + offset) : null;
+        }
+
+        private Token next() {
+            return tokens.get(position++);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.jdbc.NebulaConnection;
+import com.vesoft.nebula.jdbc.NebulaPreparedStatement;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 一个 PreparedStatement 上累积的批量写入
+ * <p>
+ * 同一个 tag / edge type、同一组属性的 INSERT VERTEX / INSERT EDGE 合并为一条多值语句：
+ * {@code INSERT VERTEX t(a, b) VALUES "v1":(1, 2), "v2":(3, 4)}；
+ * 无法合并的写入（UPSERT、DELETE 等）以分号连接，在一次请求中依次执行。
+ * 每组达到 batchSize 行时立即执行，其余在 flushStatements / commit 时执行。
+ *
+ * @author daiyi
+ */
+@Slf4j
+final class InsertBatch {
+
+    /**
+     * INSERT 头部只有标识符，第一个 ") VALUES" 之前即为 tag / edge type 和属性列表
+     */
+    private static final Pattern INSERT = Pattern.compile(
+            "^\\s*(INSERT\\s+(?:VERTEX|EDGE)\\s.*?\\))\\s*VALUES\\s+(.+?)[\\s;]*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final String PIPELINE_DELIMITER = "; ";
+
+    private final NebulaPreparedStatement statement;
+    private final NebulaConnection connection;
+    /**
+     * 语句被其他插件代理、无法取得时为 null
+     */
+    private final MappedStatement mappedStatement;
+    private final String statementId;
+    private final String sql;
+    private final int batchSize;
+
+    /**
+     * 当前组的 INSERT 头部，null 表示当前组以分号连接
+     */
+    private String header;
+    private final StringBuilder pending = new StringBuilder();
+    private final List<Object> pendingParameters = new ArrayList<>();
+
+    /**
+     * 已成功执行的行数
+     */
+    private int executedRows;
+
+    InsertBatch(NebulaPreparedStatement statement, MappedStatement mappedStatement, String sql, int batchSize) throws SQLException {
+        this.statement = statement;
+        this.connection = statement.getConnection();
+        this.mappedStatement = mappedStatement;
+        this.statementId = mappedStatement != null ? mappedStatement.getId() : sql;
+        this.sql = sql;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * 追加一行写入，与当前组形状不同时先执行当前组
+     *
+     * @param ngql            已替换参数的 nGQL
+     * @param parameterObject 参数对象
+     * @throws NebulaBatchUpdateException 执行失败
+     */
+    void add(String ngql, Object parameterObject) throws NebulaBatchUpdateException {
+        Matcher matcher = INSERT.matcher(ngql);
+        String rowHeader = matcher.matches() ? matcher.group(1) : null;
+        if (!pendingParameters.isEmpty() && !Objects.equals(header, rowHeader)) {
+            execute();
+        }
+        if (pendingParameters.isEmpty()) {
+            header = rowHeader;
+            if (rowHeader != null) {
+                pending.append(rowHeader).append(" VALUES ");
+            }
+        } else {
+            pending.append(rowHeader != null ? ", " : PIPELINE_DELIMITER);
+        }
+        pending.append(rowHeader != null ? matcher.group(2) : ngql);
+        pendingParameters.add(parameterObject);
+        if (pendingParameters.size() >= batchSize) {
+            execute();
+        }
+    }
+
+    /**
+     * 执行当前组
+     *
+     * @throws NebulaBatchUpdateException 执行失败，updateCounts 覆盖已执行的行和失败的这一组
+     */
+    void execute() throws NebulaBatchUpdateException {
+        if (pendingParameters.isEmpty()) {
+            return;
+        }
+        int rows = pendingParameters.size();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("批量写入 {}：{} 行", statementId, rows);
+            }
+            statement.execute(pending.toString());
+        } catch (SQLException e) {
+            int[] updateCounts = new int[executedRows + rows];
+            Arrays.fill(updateCounts, 0, executedRows, Statement.SUCCESS_NO_INFO);
+            Arrays.fill(updateCounts, executedRows, updateCounts.length, Statement.EXECUTE_FAILED);
+            throw new NebulaBatchUpdateException(statementId, executedRows,
+                    new ArrayList<>(pendingParameters), updateCounts, e);
+        } finally {
+            pending.setLength(0);
+            pendingParameters.clear();
+            header = null;
+        }
+        executedRows += rows;
+    }
+
+    NebulaPreparedStatement getStatement() {
+        return statement;
+    }
+
+    NebulaConnection getConnection() {
+        return connection;
+    }
+
+    MappedStatement getMappedStatement() {
+        return mappedStatement;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    int getExecutedRows() {
+        return executedRows;
+    }
+}
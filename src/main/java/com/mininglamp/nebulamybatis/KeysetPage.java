@@ -0,0 +1,302 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.Node;
+import com.vesoft.nebula.client.graph.data.Relationship;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SKIP 分页改写为键集分页
+ * <p>
+ * {@code SKIP n LIMIT m} 需要 graphd 先走过前 n 行，页数越深越慢。键集分页按点的 VID（边为起点、终点、rank）排序，
+ * 每页只取上一页最后一个键之后的行，深页与第一页的代价相同：
+ * {@code MATCH (v:player) WHERE v.player.age > ? RETURN v SKIP ? LIMIT ?} 改写为
+ * {@code MATCH (v:player) WHERE (v.player.age > ?) AND id(v) > "cursor" WITH v, id(v) AS _nebula_key ORDER BY _nebula_key LIMIT 21 RETURN v}，
+ * 多取一行用于判断是否有下一页。
+ * <p>
+ * 只处理单条、只有一个 MATCH 子句的语句，且 RETURN 只有一个变量（后面只能跟 SKIP、LIMIT），该变量在模式中绑定为点
+ * 或单一类型的边；含 OPTIONAL MATCH、WITH、UNWIND、UNION、ORDER BY、管道、注释或多个 WHERE 的语句不改写。
+ *
+ * @author daiyi
+ */
+final class KeysetPage {
+
+    private static final Pattern MATCH = Pattern.compile("^\\s*MATCH\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MATCH_CLAUSE = Pattern.compile("\\bMATCH\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern UNSUPPORTED = Pattern.compile("\\b(?:OPTIONAL|WITH|UNWIND|UNION|CALL|ORDER|RETURN\\s+DISTINCT)\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern RETURN = Pattern.compile("\\bRETURN\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RETURN_VARIABLE = Pattern.compile(
+            "\\bRETURN\\s+([A-Za-z_][A-Za-z0-9_]*)(\\s*(?:SKIP\\s+(?:\\d+|\\?)\\s*)?(?:LIMIT\\s+(?:\\d+|\\?)\\s*)?;?\\s*)$",
+            Pattern.CASE_INSENSITIVE);
+
+    private final String sql;
+    private final boolean edge;
+    private final int removedParameters;
+    private final int size;
+
+    private KeysetPage(String sql, boolean edge, int removedParameters, int size) {
+        this.sql = sql;
+        this.edge = edge;
+        this.removedParameters = removedParameters;
+        this.size = size;
+    }
+
+    /**
+     * 改写后的语句
+     */
+    String getSql() {
+        return sql;
+    }
+
+    /**
+     * 按边还是按点分页
+     */
+    boolean isEdge() {
+        return edge;
+    }
+
+    /**
+     * 去掉的 SKIP、LIMIT 中 ? 占位符的个数，均位于语句末尾
+     */
+    int getRemovedParameters() {
+        return removedParameters;
+    }
+
+    /**
+     * 每页行数，改写后的语句多取一行
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * 改写为键集分页
+     *
+     * @param sql     带 ? 占位符的 nGQL
+     * @param request 分页参数
+     * @return 无法安全改写时返回 null
+     * @throws IllegalArgumentException 游标是点的键而语句按边分页，或相反
+     */
+    static KeysetPage rewrite(String sql, NebulaPageRequest request) {
+        if (sql == null) {
+            return null;
+        }
+        String masked = ReturnProjection.mask(sql);
+        if (masked == null || !MATCH.matcher(masked).find() || UNSUPPORTED.matcher(masked).find()) {
+            return null;
+        }
+        int end = masked.length();
+        while (end > 0 && (Character.isWhitespace(masked.charAt(end - 1)) || masked.charAt(end - 1) == ';')) {
+            end--;
+        }
+        if (masked.substring(0, end).indexOf(';') >= 0 || masked.indexOf('|') >= 0 || count(MATCH_CLAUSE, masked) != 1
+                || count(RETURN, masked) != 1) {
+            return null;
+        }
+        Matcher matcher = RETURN_VARIABLE.matcher(masked);
+        if (!matcher.find()) {
+            return null;
+        }
+        String variable = matcher.group(1);
+        String pattern = masked.substring(0, matcher.start());
+        boolean node = Pattern.compile("\\(\\s*" + variable + "\\s*[:){]").matcher(pattern).find();
+        boolean edge = Pattern.compile("\\[\\s*" + variable + "\\s*[:\\]{]").matcher(pattern).find();
+        if (node == edge) {
+            return null;
+        }
+        // 不限定类型或多种类型的边，起点、终点、rank 不能唯一确定一条边
+        if (edge) {
+            String edgeLabel = ReturnProjection.label(pattern, "\\[", variable, "[\\]{]");
+            if (edgeLabel == null || edgeLabel.isEmpty()) {
+                return null;
+            }
+        }
+        Matcher where = WHERE.matcher(pattern);
+        int whereEnd = -1;
+        if (where.find()) {
+            whereEnd = where.end();
+            if (where.find()) {
+                return null;
+            }
+        }
+        Key key = request.getKey();
+        if (key != null && key.edge != edge) {
+            throw new IllegalArgumentException("分页游标是" + (key.edge ? "边" : "点") + "的游标，语句按" + (edge ? "边" : "点") + "分页");
+        }
+        StringBuilder rewritten = new StringBuilder(sql.length() + 128);
+        String head = sql.substring(0, matcher.start());
+        if (key == null) {
+            rewritten.append(head);
+        } else if (whereEnd >= 0) {
+            rewritten.append(head, 0, whereEnd).append(" (").append(head.substring(whereEnd).trim()).append(") AND ")
+                    .append(key.predicate(variable)).append(' ');
+        } else {
+            rewritten.append(head);
+            if (!Character.isWhitespace(head.charAt(head.length() - 1))) {
+                rewritten.append(' ');
+            }
+            rewritten.append("WHERE ").append(key.predicate(variable)).append(' ');
+        }
+        if (edge) {
+            rewritten.append("WITH ").append(variable).append(", src(").append(variable).append(") AS _nebula_src, dst(")
+                    .append(variable).append(") AS _nebula_dst, rank(").append(variable)
+                    .append(") AS _nebula_rank ORDER BY _nebula_src, _nebula_dst, _nebula_rank");
+        } else {
+            rewritten.append("WITH ").append(variable).append(", id(").append(variable).append(") AS _nebula_key ORDER BY _nebula_key");
+        }
+        rewritten.append(" LIMIT ").append(request.getSize() + 1L).append(" RETURN ").append(variable);
+        int removed = 0;
+        for (int i = matcher.end(1); i < masked.length(); i++) {
+            if (masked.charAt(i) == '?') {
+                removed++;
+            }
+        }
+        return new KeysetPage(rewritten.toString(), edge, removed, request.getSize());
+    }
+
+    private static int count(Pattern pattern, String masked) {
+        Matcher matcher = pattern.matcher(masked);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 分页的键：点为 VID，边为起点、终点、rank；VID 为 String（string VID）或 Long（int64 VID）
+     */
+    static final class Key {
+
+        private final boolean edge;
+        private final Object[] values;
+
+        private Key(boolean edge, Object[] values) {
+            this.edge = edge;
+            this.values = values;
+        }
+
+        /**
+         * 一行的点或边的键
+         *
+         * @return 不是点、边时返回 null
+         */
+        static Key of(ValueWrapper value) throws UnsupportedEncodingException {
+            if (value.isVertex()) {
+                Node node = value.asNode();
+                return new Key(false, new Object[]{vid(node.getId())});
+            }
+            if (value.isEdge()) {
+                Relationship relationship = value.asRelationship();
+                return new Key(true, new Object[]{vid(relationship.srcId()), vid(relationship.dstId()), relationship.ranking()});
+            }
+            return null;
+        }
+
+        private static Object vid(ValueWrapper id) throws UnsupportedEncodingException {
+            return id.isLong() ? (Object) id.asLong() : id.asString();
+        }
+
+        /**
+         * 大于该键的条件
+         */
+        String predicate(String variable) {
+            if (!edge) {
+                return "id(" + variable + ") > " + literal(values[0]);
+            }
+            String src = "src(" + variable + ")";
+            String dst = "dst(" + variable + ")";
+            String rank = "rank(" + variable + ")";
+            return "(" + src + " > " + literal(values[0]) + " OR (" + src + " == " + literal(values[0]) + " AND (" + dst + " > "
+                    + literal(values[1]) + " OR (" + dst + " == " + literal(values[1]) + " AND " + rank + " > " + values[2] + "))))";
+        }
+
+        private static String literal(Object value) {
+            if (value instanceof Long) {
+                return value.toString();
+            }
+            String s = (String) value;
+            StringBuilder literal = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        literal.append('\\').append(c);
+                        break;
+                    case '\n':
+                        literal.append("\\n");
+                        break;
+                    case '\r':
+                        literal.append("\\r");
+                        break;
+                    case '\t':
+                        literal.append("\\t");
+                        break;
+                    default:
+                        literal.append(c);
+                }
+            }
+            return literal.append('"').toString();
+        }
+
+        /**
+         * 编码为 URL 安全的游标：类型（v / e）后每个值为 s长度:字符串 或 i数字;
+         */
+        String encode() {
+            StringBuilder text = new StringBuilder().append(edge ? 'e' : 'v');
+            for (Object value : values) {
+                if (value instanceof Long) {
+                    text.append('i').append(value).append(';');
+                } else {
+                    String s = (String) value;
+                    text.append('s').append(s.length()).append(':').append(s);
+                }
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @throws IllegalArgumentException 游标无效
+         */
+        static Key decode(String cursor) {
+            try {
+                String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                boolean edge = text.charAt(0) == 'e';
+                if (!edge && text.charAt(0) != 'v') {
+                    throw new IllegalArgumentException();
+                }
+                Object[] values = new Object[edge ? 3 : 1];
+                int pos = 1;
+                for (int i = 0; i < values.length; i++) {
+                    char type = text.charAt(pos++);
+                    if (type == 'i') {
+                        int semicolon = text.indexOf(';', pos);
+                        values[i] = Long.parseLong(text.substring(pos, semicolon));
+                        pos = semicolon + 1;
+                    } else if (type == 's' && i < 2) {
+                        int colon = text.indexOf(':', pos);
+                        int length = Integer.parseInt(text.substring(pos, colon));
+                        values[i] = text.substring(colon + 1, colon + 1 + length);
+                        pos = colon + 1 + length;
+                    } else {
+                        throw new IllegalArgumentException();
+                    }
+                }
+                if (pos != text.length()) {
+                    throw new IllegalArgumentException();
+                }
+                return new Key(edge, values);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("无效的分页游标：" + cursor, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.cglib.proxy.*;
+
+import java.beans.PropertyDescriptor;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 延迟解码的返回对象
+ * <p>
+ * 为返回类型生成 cglib 子类，直接映射时只保存每列的 ValueWrapper，第一次调用属性的 getter 时才转换并写入，之后直接返回已写入的值。
+ * 调用 setter 视为已加载，equals / hashCode / toString 调用前先加载全部属性。
+ * 只保存映射计划中的列，不持有整个 Node/Relationship；已加载的列随即释放。
+ * <p>
+ * 只有默认 TypeHandler 且有 getter 的属性延迟解码，自定义 TypeHandler、同一属性映射多列、final getter 仍然立即写入。
+ * 延迟对象不能序列化（如 readOnly=false 的二级缓存），直接读取字段的代码只能看到已加载的属性。
+ *
+ * @author daiyi
+ */
+@Slf4j
+final class LazyBeanFactory {
+
+    /**
+     * 返回类型 -> 生成的子类，同一类型的映射计划共用
+     */
+    private static final ConcurrentMap<Class<?>, Class<?>> SUBCLASSES = new ConcurrentHashMap<>();
+
+    /**
+     * 只拦截 getter / setter 和返回类型自己实现的 equals、hashCode、toString，其余方法直接调用父类；
+     * Object 的方法不读取属性，也无法在 java.lang 包中生成 FastClass，不拦截
+     */
+    private static final CallbackFilter FILTER = method -> {
+        if (method.getDeclaringClass() == Object.class) {
+            return 0;
+        }
+        String name = method.getName();
+        return name.startsWith("get") || name.startsWith("is") || name.startsWith("set")
+                || LazyState.isObjectMethod(method) ? 1 : 0;
+    };
+
+    private final MappingPlan plan;
+    private final Class<?> subclass;
+    private final BeanInstantiator instantiator;
+    /**
+     * getter -> 直接映射下标
+     */
+    private final Map<Method, Integer> getters;
+    /**
+     * setter -> 直接映射下标
+     */
+    private final Map<Method, Integer> setters;
+    /**
+     * 各直接映射是否延迟解码
+     */
+    private final boolean[] lazy;
+
+    private LazyBeanFactory(MappingPlan plan, Class<?> subclass, Map<Method, Integer> getters, Map<Method, Integer> setters, boolean[] lazy) {
+        this.plan = plan;
+        this.subclass = subclass;
+        this.instantiator = BeanInstantiator.of(subclass);
+        this.getters = getters;
+        this.setters = setters;
+        this.lazy = lazy;
+    }
+
+    /**
+     * 构建延迟对象工厂
+     *
+     * @param plan 映射计划，需要支持直接映射
+     * @return 返回类型无法生成子类（final、没有无参构造器、自定义 ObjectFactory）或没有可延迟的属性时返回 null
+     */
+    static LazyBeanFactory of(MappingPlan plan) {
+        Class<?> resultType = plan.getResultType();
+        if (!plan.isDirectMappingSupported() || plan.isCustomObjectFactory() || !canSubclass(resultType)) {
+            return null;
+        }
+        MappingPlan.DirectMapping[] mappings = plan.getDirectMappings();
+        Map<String, Integer> counts = new HashMap<>();
+        for (MappingPlan.DirectMapping mapping : mappings) {
+            counts.merge(mapping.getProperty(), 1, Integer::sum);
+        }
+        Map<Method, Integer> getters = new HashMap<>();
+        Map<Method, Integer> setters = new HashMap<>();
+        boolean[] lazy = new boolean[mappings.length];
+        for (int i = 0; i < mappings.length; i++) {
+            MappingPlan.DirectMapping mapping = mappings[i];
+            if (mapping.getConverters() == null || counts.get(mapping.getProperty()) > 1) {
+                continue;
+            }
+            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(resultType, mapping.getProperty());
+            Method getter = pd == null ? null : pd.getReadMethod();
+            Method setter = pd == null ? null : pd.getWriteMethod();
+            if (getter == null || setter == null || Modifier.isFinal(getter.getModifiers()) || Modifier.isFinal(setter.getModifiers())) {
+                continue;
+            }
+            getters.put(getter, i);
+            setters.put(setter, i);
+            lazy[i] = true;
+        }
+        if (getters.isEmpty()) {
+            return null;
+        }
+        Class<?> subclass;
+        try {
+            subclass = SUBCLASSES.computeIfAbsent(resultType, LazyBeanFactory::generate);
+        } catch (RuntimeException | LinkageError e) {
+            log.warn("{} 无法生成延迟解码子类，使用立即解码：{}", resultType.getName(), e.toString());
+            return null;
+        }
+        return new LazyBeanFactory(plan, subclass, getters, setters, lazy);
+    }
+
+    private static boolean canSubclass(Class<?> type) {
+        int modifiers = type.getModifiers();
+        if (Modifier.isFinal(modifiers) || Modifier.isAbstract(modifiers) || type.isInterface() || type.isArray()
+                || type.isPrimitive() || (type.isMemberClass() && !Modifier.isStatic(modifiers))) {
+            return false;
+        }
+        try {
+            return !Modifier.isPrivate(type.getDeclaredConstructor().getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> generate(Class<?> type) {
+        Enhancer enhancer = new Enhancer();
+        enhancer.setSuperclass(type);
+        // 不实现 cglib Factory 接口，避免 getCallbacks 等方法被 JSON 序列化当作属性
+        enhancer.setUseFactory(false);
+        enhancer.setCallbackTypes(new Class<?>[]{NoOp.class, MethodInterceptor.class});
+        enhancer.setCallbackFilter(FILTER);
+        return enhancer.createClass();
+    }
+
+    MappingPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * 直接映射是否延迟解码
+     *
+     * @param index 直接映射下标
+     */
+    boolean isLazy(int index) {
+        return lazy[index];
+    }
+
+    /**
+     * 生成一个延迟对象
+     *
+     * @return 延迟对象及保存未解码列的状态
+     */
+    LazyState newInstance() {
+        LazyState state = new LazyState(this, new ValueWrapper[lazy.length]);
+        Enhancer.registerCallbacks(subclass, new Callback[]{NoOp.INSTANCE, state});
+        try {
+            state.bean = instantiator.newInstance();
+        } finally {
+            Enhancer.registerCallbacks(subclass, null);
+        }
+        return state;
+    }
+
+    /**
+     * 单个延迟对象的状态：未解码的列，加载后置为 null
+     */
+    static final class LazyState implements MethodInterceptor {
+
+        private final LazyBeanFactory factory;
+        private final ValueWrapper[] cells;
+        private Object bean;
+
+        private LazyState(LazyBeanFactory factory, ValueWrapper[] cells) {
+            this.factory = factory;
+            this.cells = cells;
+        }
+
+        Object getBean() {
+            return bean;
+        }
+
+        /**
+         * 保存延迟解码的列
+         *
+         * @param index 直接映射下标
+         * @param cell  非空的值
+         */
+        void defer(int index, ValueWrapper cell) {
+            cells[index] = cell;
+        }
+
+        @Override
+        public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+            Integer index = factory.getters.get(method);
+            if (index != null) {
+                load(obj, index);
+            } else if ((index = factory.setters.get(method)) != null) {
+                synchronized (this) {
+                    cells[index] = null;
+                }
+            } else if (isObjectMethod(method)) {
+                for (int i = 0; i < cells.length; i++) {
+                    load(obj, i);
+                }
+            }
+            return proxy.invokeSuper(obj, args);
+        }
+
+        private synchronized void load(Object obj, int index) {
+            ValueWrapper cell = cells[index];
+            if (cell == null) {
+                return;
+            }
+            cells[index] = null;
+            MappingPlan.DirectMapping mapping = factory.plan.getDirectMappings()[index];
+            try {
+                mapping.getConverters().write(obj, cell, mapping.getWriter());
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException("属性 " + mapping.getProperty() + " 解码失败", e);
+            }
+        }
+
+        private static boolean isObjectMethod(Method method) {
+            switch (method.getName()) {
+                case "equals":
+                    return method.getParameterCount() == 1 && method.getParameterTypes()[0] == Object.class;
+                case "hashCode":
+                case "toString":
+                    return method.getParameterCount() == 0;
+                default:
+                    return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,652 @@
+package com.mininglamp.nebulamybatis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.Discriminator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.EnumTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.springframework.util.ClassUtils;
+
+import java.util.*;
+
+/**
+ * 预编译的映射计划
+ * <p>
+ * 每个 MappedStatement 只在第一次执行时解析一次 ResultMap，之后所有请求复用同一份计划：
+ * 列顺序、列名->bean属性写入器、vertex/edge 每一列的取值方式、Record 共用的只读列名列表，
+ * 以及 path 结果中约定的内部类 $RelationShip 的实例化器和写入器。
+ * 简单 ResultMap（没有嵌套、构造器映射、鉴别器）还会预先整理好直接映射所需的 TypeHandler、值转换表和写入器。
+ * 配置了多个 ResultMap 的语句，每个 ResultMap 各自构建一份计划（见 {@link #getGroups()}）。
+ * 计划构建完成后不可变，可以在多线程间无锁共享。
+ *
+ * @author daiyi
+ */
+@Slf4j
+final class MappingPlan {
+
+    /**
+     * 非 nebula 映射语句（没有 ResultMap 或没有字段映射），直接交给 mybatis 处理
+     */
+    static final MappingPlan NONE = new MappingPlan();
+
+    /**
+     * 普通属性列，从 Node/Relationship 的 properties 中取值
+     */
+    static final int SLOT_PROPERTY = 0;
+    /**
+     * 点的 id 列（列名 id）
+     */
+    static final int SLOT_VID = 1;
+    /**
+     * 边的起点列（列名 _src）
+     */
+    static final int SLOT_SRC = 2;
+    /**
+     * 边的终点列（列名 _dst）
+     */
+    static final int SLOT_DST = 3;
+    /**
+     * 点的 tag / 边的类型列（列名 _tag），多 tag 的点取第一个有对应 case 的 tag
+     */
+    static final int SLOT_TAG = 4;
+    /**
+     * 带 tag / 边类型限定的属性列（列名 tag.prop），只从该 tag 的属性中取值
+     */
+    static final int SLOT_QUALIFIED = 5;
+
+    /**
+     * tag / 边类型列名，用作鉴别列时按 tag 选择 case 的 ResultMap
+     */
+    static final String TAG_COLUMN = "_tag";
+
+    private final String statementId;
+    private final Class<?> resultType;
+    private final Map<String, String> propertiesMap;
+    private final List<String> columnNames;
+    private final String[] columns;
+    private final Map<String, Integer> columnIndex;
+    private final int[] vertexSlots;
+    private final int[] edgeSlots;
+    /**
+     * 限定列的 tag / 边类型，非限定列为 null
+     */
+    private final String[] qualifiers;
+    /**
+     * 限定列的属性名，非限定列为 null
+     */
+    private final String[] qualifiedProperties;
+    /**
+     * 鉴别列为 _tag 时，tag / 边类型 -> case 的映射计划
+     */
+    private final Map<String, MappingPlan> tagPlans;
+    /**
+     * 语句配置了多个 ResultMap 时，每个 ResultMap 的映射计划，按配置顺序；单个 ResultMap 时为 null
+     */
+    private final MappingPlan[] groups;
+    /**
+     * ResultMap 带嵌套 ResultMap 时的对象图组装计划，不支持时为 null
+     */
+    private final GraphAssembly graphAssembly;
+    /**
+     * 返回类型为 {@link NebulaAdjacency} 时的边属性列：属性名 -> javaType；其他返回类型为 null
+     */
+    private final Map<String, Class<?>> adjacencyColumns;
+    private final BeanInstantiator instantiator;
+    private final Map<String, PropertyWriter> writers;
+    private final Map<String, ValueConverter.Table> converters;
+    private final BeanInstantiator relationShipInstantiator;
+    private final PropertyWriter relationShipSrc;
+    private final PropertyWriter relationShipDst;
+    private final PropertyWriter relationShipRanking;
+    private final ObjectFactory objectFactory;
+    private final DirectMapping[] directMappings;
+    private final boolean callSettersOnNulls;
+    private final boolean returnInstanceForEmptyRow;
+    /**
+     * 延迟解码工厂只在开启延迟解码后生成
+     */
+    private volatile boolean lazyBeanFactoryResolved;
+    private LazyBeanFactory lazyBeanFactory;
+
+    private MappingPlan() {
+        this(null, null, null);
+    }
+
+    /**
+     * 多个 ResultMap 或返回 {@link NebulaAdjacency} 的映射计划，本身不映射任何列
+     *
+     * @param statementId      语句 id
+     * @param groups           每个 ResultMap 的映射计划
+     * @param adjacencyColumns 邻接表的边属性列
+     */
+    private MappingPlan(String statementId, MappingPlan[] groups, Map<String, Class<?>> adjacencyColumns) {
+        this.statementId = statementId;
+        this.resultType = null;
+        this.propertiesMap = Collections.emptyMap();
+        this.columnNames = Collections.emptyList();
+        this.columns = new String[0];
+        this.columnIndex = Collections.emptyMap();
+        this.vertexSlots = new int[0];
+        this.edgeSlots = new int[0];
+        this.qualifiers = new String[0];
+        this.qualifiedProperties = new String[0];
+        this.tagPlans = Collections.emptyMap();
+        this.groups = groups;
+        this.graphAssembly = null;
+        this.adjacencyColumns = adjacencyColumns;
+        this.instantiator = null;
+        this.writers = Collections.emptyMap();
+        this.converters = Collections.emptyMap();
+        this.relationShipInstantiator = null;
+        this.relationShipSrc = PropertyWriter.NOOP;
+        this.relationShipDst = PropertyWriter.NOOP;
+        this.relationShipRanking = PropertyWriter.NOOP;
+        this.objectFactory = null;
+        this.directMappings = null;
+        this.callSettersOnNulls = false;
+        this.returnInstanceForEmptyRow = false;
+    }
+
+    /**
+     * @param mappedStatement 映射语句
+     * @param resultMap       结果映射
+     * @param propertiesMap   数据库字段->bean字段
+     * @param dispatch        是否按 _tag 鉴别列构建 case 的映射计划，case 的映射计划不再向下展开
+     */
+    private MappingPlan(MappedStatement mappedStatement, ResultMap resultMap, Map<String, String> propertiesMap, boolean dispatch) {
+        Configuration configuration = mappedStatement.getConfiguration();
+        String statementId = mappedStatement.getId();
+        Class<?> resultType = resultMap.getType();
+        this.statementId = statementId;
+        this.resultType = resultType;
+        this.propertiesMap = Collections.unmodifiableMap(propertiesMap);
+        this.columnNames = Collections.unmodifiableList(new ArrayList<>(propertiesMap.keySet()));
+        this.columns = columnNames.toArray(new String[0]);
+        Map<String, Integer> indexMap = new HashMap<>(columns.length * 2);
+        for (int i = 0; i < columns.length; i++) {
+            indexMap.put(columns[i], i);
+        }
+        this.columnIndex = Collections.unmodifiableMap(indexMap);
+        this.vertexSlots = new int[columns.length];
+        this.edgeSlots = new int[columns.length];
+        this.qualifiers = new String[columns.length];
+        this.qualifiedProperties = new String[columns.length];
+        this.instantiator = BeanInstantiator.of(resultType);
+        Map<String, PropertyWriter> writerMap = new HashMap<>(propertiesMap.size() * 2);
+        Map<String, ValueConverter.Table> converterMap = new HashMap<>(propertiesMap.size() * 2);
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i];
+            vertexSlots[i] = "id".equals(column) ? SLOT_VID : SLOT_PROPERTY;
+            edgeSlots[i] = "_src".equals(column) ? SLOT_SRC : "_dst".equals(column) ? SLOT_DST : SLOT_PROPERTY;
+            int dot = column == null ? -1 : column.indexOf('.');
+            if (TAG_COLUMN.equals(column)) {
+                vertexSlots[i] = SLOT_TAG;
+                edgeSlots[i] = SLOT_TAG;
+            } else if (dot > 0 && dot < column.length() - 1) {
+                vertexSlots[i] = SLOT_QUALIFIED;
+                edgeSlots[i] = SLOT_QUALIFIED;
+                qualifiers[i] = column.substring(0, dot);
+                qualifiedProperties[i] = column.substring(dot + 1);
+            }
+            String property = propertiesMap.get(column);
+            PropertyWriter writer = property == null ? PropertyWriter.NOOP : PropertyWriter.of(resultType, property);
+            writerMap.put(column, writer);
+            if (!writer.isNoop()) {
+                converterMap.put(column, ValueConverter.tableOrNatural(writer.getGenericPropertyType()));
+            }
+        }
+        this.writers = Collections.unmodifiableMap(writerMap);
+        this.converters = Collections.unmodifiableMap(converterMap);
+        // 约定的内部类$RelationShip，只有映射了 _relation_ships 才需要
+        Class<?> relationShipType = null;
+        if (propertiesMap.containsKey("_relation_ships")) {
+            try {
+                relationShipType = ClassUtils.forName(resultType.getName() + "$RelationShip", resultType.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                relationShipType = null;
+            }
+        }
+        PropertyWriter src = PropertyWriter.NOOP;
+        PropertyWriter dst = PropertyWriter.NOOP;
+        PropertyWriter ranking = PropertyWriter.NOOP;
+        if (relationShipType != null) {
+            src = PropertyWriter.of(relationShipType, "src");
+            dst = PropertyWriter.of(relationShipType, "dst");
+            ranking = PropertyWriter.of(relationShipType, "ranking");
+        }
+        boolean relationShipSupported = !src.isNoop() && !dst.isNoop() && !ranking.isNoop();
+        this.relationShipInstantiator = relationShipSupported ? BeanInstantiator.of(relationShipType) : null;
+        this.relationShipSrc = src;
+        this.relationShipDst = dst;
+        this.relationShipRanking = ranking;
+        // 自定义 ObjectFactory 时交给 mybatis 创建对象
+        ObjectFactory factory = configuration.getObjectFactory();
+        this.objectFactory = factory == null || factory.getClass() == DefaultObjectFactory.class ? null : factory;
+        this.tagPlans = dispatch ? compileTagPlans(mappedStatement, resultMap) : Collections.emptyMap();
+        this.groups = null;
+        this.graphAssembly = dispatch ? GraphAssembly.compile(mappedStatement, resultMap) : null;
+        this.adjacencyColumns = null;
+        this.directMappings = compileDirectMappings(resultMap, configuration.getTypeHandlerRegistry());
+        this.callSettersOnNulls = configuration.isCallSettersOnNulls();
+        this.returnInstanceForEmptyRow = configuration.isReturnInstanceForEmptyRow();
+    }
+
+    /**
+     * 整理直接映射：列下标 + TypeHandler + 值转换表 + 写入器
+     *
+     * @param resultMap 结果映射
+     * @param registry  TypeHandler 注册表
+     * @return 不支持直接映射时返回 null
+     */
+    private DirectMapping[] compileDirectMappings(ResultMap resultMap, TypeHandlerRegistry registry) {
+        if (resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries() || !resultMap.getConstructorResultMappings().isEmpty()) {
+            return null;
+        }
+        // 只有按 _tag 鉴别、且每个 case 都能直接映射时才直接映射，其余鉴别器交给 DefaultResultSetHandler
+        if (resultMap.getDiscriminator() != null) {
+            if (tagPlans.isEmpty() || tagPlans.values().stream().anyMatch(casePlan -> !casePlan.isDirectMappingSupported())) {
+                return null;
+            }
+        }
+        List<ResultMapping> propertyResultMappings = resultMap.getPropertyResultMappings();
+        DirectMapping[] mappings = new DirectMapping[propertyResultMappings.size()];
+        for (int i = 0; i < mappings.length; i++) {
+            ResultMapping resultMapping = propertyResultMappings.get(i);
+            Integer index = columnIndex.get(resultMapping.getColumn());
+            if (index == null || resultMapping.getTypeHandler() == null || resultMapping.getProperty() == null) {
+                return null;
+            }
+            PropertyWriter writer = PropertyWriter.of(resultType, resultMapping.getProperty());
+            ValueConverter.Table table = isDefaultTypeHandler(resultMapping, registry) && !writer.isNoop()
+                    ? ValueConverter.table(writer.getGenericPropertyType()) : null;
+            mappings[i] = new DirectMapping(index + 1, resultMapping.getProperty(), resultMapping.getTypeHandler(), table, writer);
+        }
+        return mappings;
+    }
+
+    /**
+     * 按 _tag 鉴别时，为每个 case 的 ResultMap 构建映射计划
+     *
+     * @return 鉴别列不是 _tag 时返回空表
+     */
+    private static Map<String, MappingPlan> compileTagPlans(MappedStatement mappedStatement, ResultMap resultMap) {
+        Discriminator discriminator = resultMap.getDiscriminator();
+        if (discriminator == null || !TAG_COLUMN.equals(discriminator.getResultMapping().getColumn())) {
+            return Collections.emptyMap();
+        }
+        Configuration configuration = mappedStatement.getConfiguration();
+        Map<String, MappingPlan> plans = new HashMap<>();
+        for (Map.Entry<String, String> entry : discriminator.getDiscriminatorMap().entrySet()) {
+            ResultMap caseMap = configuration.getResultMap(entry.getValue());
+            plans.put(entry.getKey(), new MappingPlan(mappedStatement, caseMap, columnsOf(configuration, caseMap), false));
+        }
+        return Collections.unmodifiableMap(plans);
+    }
+
+    /**
+     * 是否使用 mybatis 为该 Java 类型默认注册的 TypeHandler，只有这时值转换表的结果与 TypeHandler 一致，可以替代 TypeHandler；
+     * 自定义 TypeHandler、Object 属性（UnknownTypeHandler 返回 ValueWrapper）仍然通过 TypeHandler 取值
+     */
+    private static boolean isDefaultTypeHandler(ResultMapping resultMapping, TypeHandlerRegistry registry) {
+        Class<?> javaType = resultMapping.getJavaType();
+        TypeHandler<?> typeHandler = resultMapping.getTypeHandler();
+        if (javaType == null || javaType == Object.class || resultMapping.getJdbcType() != null) {
+            return false;
+        }
+        if (javaType.isEnum()) {
+            return typeHandler.getClass() == EnumTypeHandler.class;
+        }
+        TypeHandler<?> defaultHandler = registry.getTypeHandler(javaType);
+        return defaultHandler != null && defaultHandler.getClass() == typeHandler.getClass();
+    }
+
+    /**
+     * 根据 MappedStatement 的 ResultMap 构建映射计划
+     *
+     * @param mappedStatement 映射语句
+     * @return 映射计划，不需要处理的语句返回 {@link #NONE}
+     */
+    static MappingPlan compile(MappedStatement mappedStatement) {
+        List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+        if (resultMaps == null || resultMaps.isEmpty()) {
+            return NONE;
+        }
+        if (resultMaps.size() > 1) {
+            // 每个 ResultMap 单独构建映射计划，对应同一个结果中的一列
+            MappingPlan[] groups = new MappingPlan[resultMaps.size()];
+            boolean none = true;
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = compile(mappedStatement, resultMaps.get(i));
+                none &= groups[i].isNone();
+            }
+            return none ? NONE : new MappingPlan(mappedStatement.getId(), groups, null);
+        }
+        ResultMap resultMap = resultMaps.get(0);
+        if (resultMap.getType() == NebulaAdjacency.class) {
+            // 邻接表：ResultMap 的列为边属性列
+            Map<String, Class<?>> adjacencyColumns = new LinkedHashMap<>();
+            for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
+                if (resultMapping.getColumn() != null) {
+                    adjacencyColumns.putIfAbsent(resultMapping.getColumn(), resultMapping.getJavaType());
+                }
+            }
+            return new MappingPlan(mappedStatement.getId(), null, Collections.unmodifiableMap(adjacencyColumns));
+        }
+        return compile(mappedStatement, resultMap);
+    }
+
+    /**
+     * 根据单个 ResultMap 构建映射计划
+     *
+     * @param mappedStatement 映射语句
+     * @param resultMap       结果映射
+     * @return 映射计划，没有字段映射时返回 {@link #NONE}
+     */
+    static MappingPlan compile(MappedStatement mappedStatement, ResultMap resultMap) {
+        if (resultMap.getResultMappings().isEmpty() && resultMap.getDiscriminator() == null) {
+            return NONE;
+        }
+        return new MappingPlan(mappedStatement, resultMap, columnsOf(mappedStatement.getConfiguration(), resultMap), true);
+    }
+
+    /**
+     * 返回对象的字段映射：数据库字段->bean字段，重复列保留第一个；
+     * 有鉴别器时加上鉴别列和各 case 的列，二次映射时 DefaultResultSetHandler 从同一个结果集中按 case 取值
+     */
+    private static Map<String, String> columnsOf(Configuration configuration, ResultMap resultMap) {
+        Map<String, String> propertiesMap = new LinkedHashMap<>();
+        for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+            propertiesMap.putIfAbsent(resultMapping.getColumn(), resultMapping.getProperty());
+        }
+        Discriminator discriminator = resultMap.getDiscriminator();
+        if (discriminator != null) {
+            propertiesMap.putIfAbsent(discriminator.getResultMapping().getColumn(), null);
+            for (String caseMapId : discriminator.getDiscriminatorMap().values()) {
+                if (configuration.hasResultMap(caseMapId)) {
+                    for (ResultMapping resultMapping : configuration.getResultMap(caseMapId).getResultMappings()) {
+                        propertiesMap.putIfAbsent(resultMapping.getColumn(), resultMapping.getProperty());
+                    }
+                }
+            }
+        }
+        return propertiesMap;
+    }
+
+    boolean isNone() {
+        return this == NONE;
+    }
+
+    /**
+     * 是否配置了多个 ResultMap
+     */
+    boolean isMultiple() {
+        return groups != null;
+    }
+
+    /**
+     * @return 每个 ResultMap 的映射计划，没有字段映射的 ResultMap 为 {@link #NONE}
+     */
+    MappingPlan[] getGroups() {
+        return groups;
+    }
+
+    /**
+     * 返回类型是否为 {@link NebulaAdjacency}
+     */
+    boolean isAdjacency() {
+        return adjacencyColumns != null;
+    }
+
+    /**
+     * @return 邻接表的边属性列：属性名 -> javaType
+     */
+    Map<String, Class<?>> getAdjacencyColumns() {
+        return adjacencyColumns;
+    }
+
+    /**
+     * @return 对象图组装计划，ResultMap 没有嵌套 ResultMap 或无法组装时为 null
+     */
+    GraphAssembly getGraphAssembly() {
+        return graphAssembly;
+    }
+
+    String getStatementId() {
+        return statementId;
+    }
+
+    Class<?> getResultType() {
+        return resultType;
+    }
+
+    Map<String, String> getPropertiesMap() {
+        return propertiesMap;
+    }
+
+    /**
+     * 只读列名列表，所有 Record 共用同一个实例
+     */
+    List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * 列名 -> 列下标（从0开始）
+     */
+    Map<String, Integer> getColumnIndex() {
+        return columnIndex;
+    }
+
+    int[] getVertexSlots() {
+        return vertexSlots;
+    }
+
+    int[] getEdgeSlots() {
+        return edgeSlots;
+    }
+
+    /**
+     * 限定列的 tag / 边类型
+     *
+     * @param index 列下标（从0开始）
+     */
+    String getQualifier(int index) {
+        return qualifiers[index];
+    }
+
+    /**
+     * 限定列的属性名
+     *
+     * @param index 列下标（从0开始）
+     */
+    String getQualifiedProperty(int index) {
+        return qualifiedProperties[index];
+    }
+
+    /**
+     * 是否按 _tag 鉴别列选择 case 的映射计划
+     */
+    boolean hasTagDispatch() {
+        return !tagPlans.isEmpty();
+    }
+
+    /**
+     * 按 tag / 边类型选择 case 的映射计划，多个 tag 时取第一个有对应 case 的 tag
+     *
+     * @param tags 点的 tag 或边的类型
+     * @return 没有对应的 case 时返回 null
+     */
+    MappingPlan dispatch(List<String> tags) {
+        for (String tag : tags) {
+            MappingPlan casePlan = tagPlans.get(tag);
+            if (casePlan != null) {
+                return casePlan;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * _tag 列的值：第一个有对应 case 的 tag，没有时取第一个 tag
+     *
+     * @param tags 点的 tag 或边的类型
+     * @return 没有 tag 时返回 null
+     */
+    String dispatchTag(List<String> tags) {
+        for (String tag : tags) {
+            if (tagPlans.containsKey(tag)) {
+                return tag;
+            }
+        }
+        return tags.isEmpty() ? null : tags.get(0);
+    }
+
+    /**
+     * 生成一个返回对象
+     */
+    Object newInstance() {
+        return objectFactory != null ? objectFactory.create(resultType) : instantiator.newInstance();
+    }
+
+    /**
+     * 是否使用自定义 ObjectFactory 创建返回对象
+     */
+    boolean isCustomObjectFactory() {
+        return objectFactory != null;
+    }
+
+    /**
+     * 延迟解码的返回对象工厂，第一次调用时生成
+     *
+     * @return 不支持延迟解码时返回 null
+     */
+    LazyBeanFactory getLazyBeanFactory() {
+        if (!lazyBeanFactoryResolved) {
+            synchronized (this) {
+                if (!lazyBeanFactoryResolved) {
+                    lazyBeanFactory = LazyBeanFactory.of(this);
+                    lazyBeanFactoryResolved = true;
+                }
+            }
+        }
+        return lazyBeanFactory;
+    }
+
+    /**
+     * 是否可以跳过 DefaultResultSetHandler，直接从点/边属性映射到对象
+     */
+    boolean isDirectMappingSupported() {
+        return directMappings != null;
+    }
+
+    DirectMapping[] getDirectMappings() {
+        return directMappings;
+    }
+
+    boolean isCallSettersOnNulls() {
+        return callSettersOnNulls;
+    }
+
+    boolean isReturnInstanceForEmptyRow() {
+        return returnInstanceForEmptyRow;
+    }
+
+    /**
+     * 列对应的 bean 属性写入器
+     *
+     * @param column 列名
+     * @return 写入器，未映射或没有 setter 时返回 {@link PropertyWriter#NOOP}
+     */
+    PropertyWriter getWriter(String column) {
+        PropertyWriter writer = writers.get(column);
+        return writer == null ? PropertyWriter.NOOP : writer;
+    }
+
+    /**
+     * 列对应属性的值转换表
+     *
+     * @param column 列名
+     * @return 转换表，未映射或没有 setter 时返回 null
+     */
+    ValueConverter.Table getConverters(String column) {
+        return converters.get(column);
+    }
+
+    /**
+     * 生成一个 $RelationShip 对象
+     */
+    Object newRelationShip() {
+        if (relationShipInstantiator == null) {
+            throw new RuntimeException("resultMap中的type类型请使用提供的StringPathDO、LongPathDO");
+        }
+        return relationShipInstantiator.newInstance();
+    }
+
+    PropertyWriter getRelationShipSrc() {
+        return relationShipSrc;
+    }
+
+    PropertyWriter getRelationShipDst() {
+        return relationShipDst;
+    }
+
+    PropertyWriter getRelationShipRanking() {
+        return relationShipRanking;
+    }
+
+    /**
+     * 直接映射的一列：默认 TypeHandler 的列直接用值转换表转换并写入，其余与 DefaultResultSetHandler 一样通过 TypeHandler 取值，再由写入器注入对象
+     */
+    static final class DirectMapping {
+
+        private final int columnIndex;
+        private final String property;
+        private final TypeHandler<?> typeHandler;
+        private final ValueConverter.Table converters;
+        private final PropertyWriter writer;
+
+        DirectMapping(int columnIndex, String property, TypeHandler<?> typeHandler, ValueConverter.Table converters, PropertyWriter writer) {
+            this.columnIndex = columnIndex;
+            this.property = property;
+            this.typeHandler = typeHandler;
+            this.converters = converters;
+            this.writer = writer;
+        }
+
+        /**
+         * 列下标，从1开始
+         */
+        int getColumnIndex() {
+            return columnIndex;
+        }
+
+        String getProperty() {
+            return property;
+        }
+
+        TypeHandler<?> getTypeHandler() {
+            return typeHandler;
+        }
+
+        /**
+         * 值转换表，需要通过 TypeHandler 取值时为 null
+         */
+        ValueConverter.Table getConverters() {
+            return converters;
+        }
+
+        PropertyWriter getWriter() {
+            return writer;
+        }
+    }
+}
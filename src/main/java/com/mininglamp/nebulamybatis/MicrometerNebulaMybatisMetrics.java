@@ -0,0 +1,91 @@
+package com.mininglamp.nebulamybatis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Micrometer 的结果映射指标，按 MappedStatement 打 statement 标签：
+ * <ul>
+ * <li>nebula.mybatis.mapping.fetch / decode / populate：各阶段耗时</li>
+ * <li>nebula.mybatis.mapping.rows / cells：读取的行数、单元格数</li>
+ * <li>nebula.mybatis.mapping.elements：解码的点、边、路径数，type 标签区分</li>
+ * <li>nebula.mybatis.mapping.results：映射次数，mode 标签区分映射方式，two-pass、parallel 为需要保存全部行的方式，fallback 为交回 mybatis 处理</li>
+ * </ul>
+ * 每个 MappedStatement 的 Meter 只注册一次。
+ *
+ * @author daiyi
+ */
+public class MicrometerNebulaMybatisMetrics implements NebulaMybatisMetrics {
+
+    private static final String PREFIX = "nebula.mybatis.mapping.";
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, StatementMeters> meters = new ConcurrentHashMap<>();
+
+    public MicrometerNebulaMybatisMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void record(String statementId, Mode mode, NebulaMappingStats stats) {
+        StatementMeters statementMeters = meters.get(statementId);
+        if (statementMeters == null) {
+            statementMeters = meters.computeIfAbsent(statementId, id -> new StatementMeters(registry, id));
+        }
+        statementMeters.results[mode.ordinal()].increment();
+        if (stats == null) {
+            return;
+        }
+        statementMeters.fetch.record(stats.getFetchNanos(), TimeUnit.NANOSECONDS);
+        statementMeters.decode.record(Math.max(0, stats.getDecodeNanos()), TimeUnit.NANOSECONDS);
+        statementMeters.populate.record(stats.getPopulateNanos(), TimeUnit.NANOSECONDS);
+        statementMeters.rows.increment(stats.getRows());
+        statementMeters.cells.increment(stats.getCells());
+        statementMeters.vertices.increment(stats.getVertices());
+        statementMeters.edges.increment(stats.getEdges());
+        statementMeters.paths.increment(stats.getPaths());
+    }
+
+    private static final class StatementMeters {
+
+        private final Timer fetch;
+        private final Timer decode;
+        private final Timer populate;
+        private final Counter rows;
+        private final Counter cells;
+        private final Counter vertices;
+        private final Counter edges;
+        private final Counter paths;
+        private final Counter[] results;
+
+        StatementMeters(MeterRegistry registry, String statementId) {
+            this.fetch = timer(registry, "fetch", statementId, "从 ResultSet 读取值的耗时");
+            this.decode = timer(registry, "decode", statementId, "点/边/路径解码耗时");
+            this.populate = timer(registry, "populate", statementId, "生成对象并写入属性的耗时");
+            this.rows = Counter.builder(PREFIX + "rows").tag("statement", statementId).register(registry);
+            this.cells = Counter.builder(PREFIX + "cells").tag("statement", statementId).register(registry);
+            this.vertices = element(registry, statementId, "vertex");
+            this.edges = element(registry, statementId, "edge");
+            this.paths = element(registry, statementId, "path");
+            Mode[] modes = Mode.values();
+            this.results = new Counter[modes.length];
+            for (Mode mode : modes) {
+                results[mode.ordinal()] = Counter.builder(PREFIX + "results")
+                        .tag("statement", statementId).tag("mode", mode.getTag()).register(registry);
+            }
+        }
+
+        private static Timer timer(MeterRegistry registry, String phase, String statementId, String description) {
+            return Timer.builder(PREFIX + phase).description(description).tag("statement", statementId).register(registry);
+        }
+
+        private static Counter element(MeterRegistry registry, String statementId, String type) {
+            return Counter.builder(PREFIX + "elements").tag("statement", statementId).tag("type", type).register(registry);
+        }
+    }
+}
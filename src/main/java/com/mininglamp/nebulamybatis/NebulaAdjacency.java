@@ -0,0 +1,490 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.Node;
+import com.vesoft.nebula.client.graph.data.PathWrapper;
+import com.vesoft.nebula.client.graph.data.Relationship;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+
+import java.io.UnsupportedEncodingException;
+import java.util.*;
+
+/**
+ * 紧凑的邻接表返回类型，用于 FIND PATH、GET SUBGRAPH 等返回大量路径、点、边的查询
+ * <p>
+ * resultType（或 ResultMap 的 type）为本类时，拦截器把整个结果中的点、边、路径（包括 GET SUBGRAPH 的点、边列表）
+ * 合并为一个对象返回，不再为每条路径生成节点 id 列表和 $RelationShip 对象：
+ * <ul>
+ *     <li>VID 字典：每个点只出现一次，按第一次出现的顺序编号，string VID 保存在 String[]，int64 VID 保存在 long[]</li>
+ *     <li>CSR 出边：{@link #getOffsets()} 长度为点数 + 1，点 i 的出边下标为 [offsets[i], offsets[i + 1])，
+ *     {@link #getTargets()}、{@link #getRanks()}、{@link #getEdgeTypes()} 及属性列按出边下标排列</li>
+ *     <li>同一条边（类型、起点、终点、rank 相同）只保存一次</li>
+ *     <li>路径：{@link #getPathOffsets()}、{@link #getPathNodes()} 按同样的方式保存每条路径经过的点编号</li>
+ *     <li>边属性列：ResultMap 中的 result 列，javaType 为 long/int 时保存为 long[]，double/float 时保存为 double[]，
+ *     其余保存为 Object[]，边没有该属性时为 0 或 null</li>
+ * </ul>
+ * 结果中的其他值（如 length(p)）忽略。返回的数组直接暴露给调用方，不要修改。
+ *
+ * @author daiyi
+ */
+public final class NebulaAdjacency {
+
+    private final String[] stringVids;
+    private final long[] longVids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final long[] ranks;
+    private final int[] edgeTypes;
+    private final String[] edgeTypeNames;
+    private final int[] pathOffsets;
+    private final int[] pathNodes;
+    private final Map<String, Object> columns;
+
+    private NebulaAdjacency(Builder builder, int[] offsets, int[] order) {
+        int nodeCount = builder.nodeCount;
+        this.stringVids = builder.stringVids != null ? Arrays.copyOf(builder.stringVids, nodeCount) : null;
+        this.longVids = builder.longVids != null ? Arrays.copyOf(builder.longVids, nodeCount) : new long[0];
+        this.offsets = offsets;
+        int edgeCount = order.length;
+        this.targets = new int[edgeCount];
+        this.ranks = new long[edgeCount];
+        this.edgeTypes = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            int edge = order[i];
+            targets[i] = builder.dsts[edge];
+            ranks[i] = builder.ranks[edge];
+            edgeTypes[i] = builder.types[edge];
+        }
+        this.edgeTypeNames = builder.typeNames.toArray(new String[0]);
+        this.pathOffsets = Arrays.copyOf(builder.pathOffsets, builder.pathCount + 1);
+        this.pathNodes = Arrays.copyOf(builder.pathNodes, builder.pathOffsets[builder.pathCount]);
+        Map<String, Object> columnMap = new LinkedHashMap<>();
+        for (Column column : builder.columns) {
+            columnMap.put(column.name, column.reorder(order));
+        }
+        this.columns = Collections.unmodifiableMap(columnMap);
+    }
+
+    /**
+     * 点数
+     */
+    public int getNodeCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * 边数
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * VID 是否为 int64
+     */
+    public boolean isLongVid() {
+        return stringVids == null;
+    }
+
+    /**
+     * 点的 VID
+     *
+     * @param node 点编号
+     * @return String 或 Long
+     */
+    public Object getVid(int node) {
+        return stringVids != null ? stringVids[node] : (Object) longVids[node];
+    }
+
+    /**
+     * string VID，int64 VID 时为 null
+     */
+    public String[] getStringVids() {
+        return stringVids;
+    }
+
+    /**
+     * int64 VID，string VID 时为空数组
+     */
+    public long[] getLongVids() {
+        return longVids;
+    }
+
+    /**
+     * 点 i 的出边下标为 [offsets[i], offsets[i + 1])
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * 出边的终点编号
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * 出边的 rank
+     */
+    public long[] getRanks() {
+        return ranks;
+    }
+
+    /**
+     * 出边类型在 {@link #getEdgeTypeNames()} 中的下标
+     */
+    public int[] getEdgeTypes() {
+        return edgeTypes;
+    }
+
+    public String[] getEdgeTypeNames() {
+        return edgeTypeNames;
+    }
+
+    /**
+     * 路径 i 经过的点为 pathNodes[pathOffsets[i]] 到 pathNodes[pathOffsets[i + 1] - 1]
+     */
+    public int[] getPathOffsets() {
+        return pathOffsets;
+    }
+
+    public int[] getPathNodes() {
+        return pathNodes;
+    }
+
+    /**
+     * 路径数
+     */
+    public int getPathCount() {
+        return pathOffsets.length - 1;
+    }
+
+    /**
+     * 点的出度
+     */
+    public int outDegree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    /**
+     * long 类型的边属性列
+     *
+     * @param name 属性名
+     * @return 没有该列或类型不是 long 时返回 null
+     */
+    public long[] getLongColumn(String name) {
+        Object column = columns.get(name);
+        return column instanceof long[] ? (long[]) column : null;
+    }
+
+    /**
+     * double 类型的边属性列
+     *
+     * @param name 属性名
+     * @return 没有该列或类型不是 double 时返回 null
+     */
+    public double[] getDoubleColumn(String name) {
+        Object column = columns.get(name);
+        return column instanceof double[] ? (double[]) column : null;
+    }
+
+    /**
+     * 其他类型的边属性列
+     *
+     * @param name 属性名
+     * @return 没有该列或类型为 long、double 时返回 null
+     */
+    public Object[] getColumn(String name) {
+        Object column = columns.get(name);
+        return column instanceof Object[] ? (Object[]) column : null;
+    }
+
+    /**
+     * 边属性列名
+     */
+    public Set<String> getColumnNames() {
+        return columns.keySet();
+    }
+
+    @Override
+    public String toString() {
+        return "NebulaAdjacency{nodes=" + getNodeCount() + ", edges=" + getEdgeCount() + ", paths=" + getPathCount() + '}';
+    }
+
+    /**
+     * 逐个加入结果中的值，最后按起点排序生成 CSR，只在一个线程中使用
+     */
+    static final class Builder {
+
+        private final Map<Object, Integer> nodeIndex = new HashMap<>();
+        private String[] stringVids;
+        private long[] longVids;
+        private int nodeCount;
+
+        private final Map<String, Integer> typeIndex = new HashMap<>();
+        private final List<String> typeNames = new ArrayList<>();
+        private final Set<EdgeKey> edgeKeys = new HashSet<>();
+        private int[] srcs = new int[16];
+        private int[] dsts = new int[16];
+        private int[] types = new int[16];
+        private long[] ranks = new long[16];
+        private int edgeCount;
+
+        private int[] pathOffsets = new int[16];
+        private int[] pathNodes = new int[16];
+        private int pathCount;
+
+        private final Column[] columns;
+
+        /**
+         * @param columnTypes 边属性名 -> javaType
+         */
+        Builder(Map<String, Class<?>> columnTypes) {
+            this.columns = new Column[columnTypes.size()];
+            int i = 0;
+            for (Map.Entry<String, Class<?>> entry : columnTypes.entrySet()) {
+                columns[i++] = new Column(entry.getKey(), entry.getValue());
+            }
+        }
+
+        /**
+         * 加入一个值：点、边、路径，或点、边、路径的列表（GET SUBGRAPH）
+         *
+         * @return 值不是点、边、路径或其列表时返回 false，值被忽略
+         */
+        boolean add(ValueWrapper value) throws UnsupportedEncodingException {
+            if (value.isVertex()) {
+                node(value.asNode().getId());
+            } else if (value.isEdge()) {
+                edge(value.asRelationship());
+            } else if (value.isPath()) {
+                path(value.asPath());
+            } else if (value.isList()) {
+                boolean added = false;
+                for (ValueWrapper element : value.asList()) {
+                    added |= add(element);
+                }
+                return added;
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private void path(PathWrapper path) throws UnsupportedEncodingException {
+            List<Node> nodes = path.getNodes();
+            int start = pathOffsets[pathCount];
+            if (start + nodes.size() > pathNodes.length) {
+                pathNodes = Arrays.copyOf(pathNodes, Math.max(pathNodes.length * 2, start + nodes.size()));
+            }
+            for (Node node : nodes) {
+                pathNodes[start++] = node(node.getId());
+            }
+            if (pathCount + 2 > pathOffsets.length) {
+                pathOffsets = Arrays.copyOf(pathOffsets, pathOffsets.length * 2);
+            }
+            pathOffsets[++pathCount] = start;
+            for (Relationship relationship : path.getRelationships()) {
+                edge(relationship);
+            }
+        }
+
+        private int node(ValueWrapper vid) throws UnsupportedEncodingException {
+            Object key = vid.isString() ? vid.asString() : (Object) vid.asLong();
+            Integer index = nodeIndex.get(key);
+            if (index != null) {
+                return index;
+            }
+            if (stringVids == null && longVids == null) {
+                if (key instanceof String) {
+                    stringVids = new String[16];
+                } else {
+                    longVids = new long[16];
+                }
+            }
+            if ((key instanceof String) != (stringVids != null)) {
+                throw new IllegalStateException("结果中同时存在 string 和 int64 类型的 VID：" + key);
+            }
+            if (stringVids != null) {
+                if (nodeCount == stringVids.length) {
+                    stringVids = Arrays.copyOf(stringVids, nodeCount * 2);
+                }
+                stringVids[nodeCount] = (String) key;
+            } else {
+                if (nodeCount == longVids.length) {
+                    longVids = Arrays.copyOf(longVids, nodeCount * 2);
+                }
+                longVids[nodeCount] = (Long) key;
+            }
+            nodeIndex.put(key, nodeCount);
+            return nodeCount++;
+        }
+
+        private void edge(Relationship relationship) throws UnsupportedEncodingException {
+            int src = node(relationship.srcId());
+            int dst = node(relationship.dstId());
+            String typeName = relationship.edgeName();
+            Integer type = typeIndex.get(typeName);
+            if (type == null) {
+                type = typeNames.size();
+                typeNames.add(typeName);
+                typeIndex.put(typeName, type);
+            }
+            long rank = relationship.ranking();
+            if (!edgeKeys.add(new EdgeKey(src, dst, type, rank))) {
+                return;
+            }
+            if (edgeCount == srcs.length) {
+                int capacity = edgeCount * 2;
+                srcs = Arrays.copyOf(srcs, capacity);
+                dsts = Arrays.copyOf(dsts, capacity);
+                types = Arrays.copyOf(types, capacity);
+                ranks = Arrays.copyOf(ranks, capacity);
+            }
+            srcs[edgeCount] = src;
+            dsts[edgeCount] = dst;
+            types[edgeCount] = type;
+            ranks[edgeCount] = rank;
+            if (columns.length > 0) {
+                Map<String, ValueWrapper> properties = relationship.properties();
+                for (Column column : columns) {
+                    column.set(edgeCount, properties.get(column.name));
+                }
+            }
+            edgeCount++;
+        }
+
+        /**
+         * 按起点计数排序生成 CSR，同一起点的边保持加入顺序
+         */
+        NebulaAdjacency build() {
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                offsets[srcs[i] + 1]++;
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] next = Arrays.copyOf(offsets, nodeCount);
+            int[] order = new int[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                order[next[srcs[i]]++] = i;
+            }
+            return new NebulaAdjacency(this, offsets, order);
+        }
+    }
+
+    /**
+     * 边的标识
+     */
+    private static final class EdgeKey {
+
+        private final int src;
+        private final int dst;
+        private final int type;
+        private final long rank;
+
+        private EdgeKey(int src, int dst, int type, long rank) {
+            this.src = src;
+            this.dst = dst;
+            this.type = type;
+            this.rank = rank;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EdgeKey)) {
+                return false;
+            }
+            EdgeKey other = (EdgeKey) o;
+            return src == other.src && dst == other.dst && type == other.type && rank == other.rank;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((src * 31 + dst) * 31 + type) * 31 + Long.hashCode(rank);
+        }
+    }
+
+    /**
+     * 边属性列，按加入顺序保存，生成时按 CSR 顺序重排
+     */
+    private static final class Column {
+
+        private final String name;
+        private long[] longs;
+        private double[] doubles;
+        private Object[] objects;
+
+        private Column(String name, Class<?> javaType) {
+            this.name = name;
+            if (javaType == long.class || javaType == Long.class || javaType == int.class || javaType == Integer.class) {
+                longs = new long[16];
+            } else if (javaType == double.class || javaType == Double.class || javaType == float.class || javaType == Float.class) {
+                doubles = new double[16];
+            } else {
+                objects = new Object[16];
+            }
+        }
+
+        private void set(int index, ValueWrapper value) throws UnsupportedEncodingException {
+            if (longs != null) {
+                if (index == longs.length) {
+                    longs = Arrays.copyOf(longs, index * 2);
+                }
+                longs[index] = value != null && value.isLong() ? value.asLong() : 0L;
+            } else if (doubles != null) {
+                if (index == doubles.length) {
+                    doubles = Arrays.copyOf(doubles, index * 2);
+                }
+                doubles[index] = value == null ? 0D : value.isDouble() ? value.asDouble() : value.isLong() ? value.asLong() : 0D;
+            } else {
+                if (index == objects.length) {
+                    objects = Arrays.copyOf(objects, index * 2);
+                }
+                objects[index] = toObject(value);
+            }
+        }
+
+        private Object reorder(int[] order) {
+            if (longs != null) {
+                long[] sorted = new long[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    sorted[i] = longs[order[i]];
+                }
+                return sorted;
+            }
+            if (doubles != null) {
+                double[] sorted = new double[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    sorted[i] = doubles[order[i]];
+                }
+                return sorted;
+            }
+            Object[] sorted = new Object[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sorted[i] = objects[order[i]];
+            }
+            return sorted;
+        }
+
+        private static Object toObject(ValueWrapper value) throws UnsupportedEncodingException {
+            if (value == null || value.isNull() || value.isEmpty()) {
+                return null;
+            }
+            if (value.isString()) {
+                return value.asString();
+            }
+            if (value.isLong()) {
+                return value.asLong();
+            }
+            if (value.isDouble()) {
+                return value.asDouble();
+            }
+            if (value.isBoolean()) {
+                return value.asBoolean();
+            }
+            return value;
+        }
+    }
+}
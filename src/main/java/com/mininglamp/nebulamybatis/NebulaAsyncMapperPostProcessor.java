@@ -0,0 +1,67 @@
+package com.mininglamp.nebulamybatis;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 为含有 CompletableFuture 返回值的 mapper bean 包装异步代理
+ * <p>
+ * 线程池在第一次异步调用时才获取：优先使用名为 nebulaMapperExecutor 的 Executor bean，没有时按配置自行创建，
+ * 自行创建的线程池不注册为 bean（避免被当作应用的默认 Executor），容器关闭时一并关闭
+ *
+ * @author daiyi
+ * @see NebulaAsyncMappers
+ */
+public class NebulaAsyncMapperPostProcessor implements BeanPostProcessor, DisposableBean {
+
+    private final ObjectProvider<Executor> customExecutor;
+    private final ObjectProvider<NebulaMybatisProperties> properties;
+    private final Executor executor = this::execute;
+    private volatile Executor resolved;
+    private ExecutorService created;
+
+    /**
+     * @param customExecutor 名为 nebulaMapperExecutor 的 Executor bean
+     * @param properties     没有 customExecutor 时按配置创建线程池
+     */
+    public NebulaAsyncMapperPostProcessor(ObjectProvider<Executor> customExecutor, ObjectProvider<NebulaMybatisProperties> properties) {
+        this.customExecutor = customExecutor;
+        this.properties = properties;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return NebulaAsyncMappers.wrap(bean, executor);
+    }
+
+    private void execute(Runnable command) {
+        Executor current = resolved;
+        if (current == null) {
+            synchronized (this) {
+                if (resolved == null) {
+                    Executor custom = customExecutor.getIfAvailable();
+                    if (custom == null) {
+                        NebulaMybatisProperties config = properties.getIfAvailable(NebulaMybatisProperties::new);
+                        created = NebulaMapperExecutors.create(config.getAsyncPoolSize(), config.getAsyncQueueCapacity(),
+                                config.isAsyncVirtualThreads());
+                        custom = created;
+                    }
+                    resolved = custom;
+                }
+                current = resolved;
+            }
+        }
+        current.execute(command);
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (created != null) {
+            created.shutdown();
+        }
+    }
+}
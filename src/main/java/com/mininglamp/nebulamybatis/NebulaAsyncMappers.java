@@ -0,0 +1,106 @@
+package com.mininglamp.nebulamybatis;
+
+import org.apache.ibatis.binding.MapperProxy;
+import org.apache.ibatis.session.SqlSession;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 支持返回 {@link CompletableFuture} 的 mapper
+ * <p>
+ * mybatis 的 MapperProxy 不支持 CompletableFuture 返回值，{@link #wrap(Object, Executor)} 在 mapper 外再包一层代理：
+ * 返回 CompletableFuture 的方法在线程池中执行对应的语句，其余方法仍交给原 mapper。
+ * 语句在其他线程上通过原 mapper 的 SqlSession 执行，该 SqlSession 必须是线程安全的（如 SqlSessionTemplate），
+ * 且异步执行不参与调用线程上的事务。
+ *
+ * @author daiyi
+ */
+public final class NebulaAsyncMappers {
+
+    private static final MethodHandle SQL_SESSION_GETTER;
+    private static final MethodHandle MAPPER_INTERFACE_GETTER;
+
+    static {
+        try {
+            SQL_SESSION_GETTER = getter("sqlSession");
+            MAPPER_INTERFACE_GETTER = getter("mapperInterface");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private NebulaAsyncMappers() {
+    }
+
+    /**
+     * 包装 mapper
+     *
+     * @param mapper   SqlSession.getMapper 返回的 mapper
+     * @param executor 异步方法使用的线程池
+     * @return 没有返回 CompletableFuture 的方法时返回原 mapper
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T wrap(T mapper, Executor executor) {
+        if (mapper == null || !Proxy.isProxyClass(mapper.getClass()) || !(Proxy.getInvocationHandler(mapper) instanceof MapperProxy)) {
+            return mapper;
+        }
+        InvocationHandler mapperProxy = Proxy.getInvocationHandler(mapper);
+        SqlSession sqlSession;
+        Class<?> mapperInterface;
+        try {
+            sqlSession = (SqlSession) SQL_SESSION_GETTER.invoke(mapperProxy);
+            mapperInterface = (Class<?>) MAPPER_INTERFACE_GETTER.invoke(mapperProxy);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        Map<Method, AsyncMapperMethod> asyncMethods = new HashMap<>();
+        for (Method method : mapperInterface.getMethods()) {
+            if (!method.isDefault() && method.getReturnType() == CompletableFuture.class) {
+                asyncMethods.put(method, new AsyncMapperMethod(sqlSession, mapperInterface, method));
+            }
+        }
+        if (asyncMethods.isEmpty()) {
+            return mapper;
+        }
+        return (T) Proxy.newProxyInstance(mapperInterface.getClassLoader(), new Class<?>[]{mapperInterface},
+                new AsyncMapperProxy(mapper, asyncMethods, executor));
+    }
+
+    private static MethodHandle getter(String name) throws ReflectiveOperationException {
+        Field field = MapperProxy.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectGetter(field);
+    }
+
+    private static final class AsyncMapperProxy implements InvocationHandler {
+
+        private final Object mapper;
+        private final Map<Method, AsyncMapperMethod> asyncMethods;
+        private final Executor executor;
+
+        AsyncMapperProxy(Object mapper, Map<Method, AsyncMapperMethod> asyncMethods, Executor executor) {
+            this.mapper = mapper;
+            this.asyncMethods = asyncMethods;
+            this.executor = executor;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            AsyncMapperMethod asyncMethod = asyncMethods.get(method);
+            if (asyncMethod != null) {
+                return asyncMethod.execute(args, executor);
+            }
+            try {
+                return method.invoke(mapper, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.jdbc.NebulaConnection;
+import com.vesoft.nebula.jdbc.NebulaPreparedStatement;
+import com.vesoft.nebula.jdbc.PlaceholderUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.BaseStatementHandler;
+import org.apache.ibatis.executor.statement.RoutingStatementHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * BATCH 模式下的 nebula 批量写入
+ * <p>
+ * nebula-jdbc 的 PreparedStatement 不支持 addBatch / executeBatch（参数只保存、不执行），
+ * 该拦截器接管 {@link StatementHandler#batch(Statement)}：按驱动的规则替换参数后交给 {@link InsertBatch}，
+ * 同一 tag / edge type 的 INSERT 合并为多值语句，每 batchSize 行一次请求；
+ * 在 Executor 的 flushStatements、commit、query 前执行剩余的行，rollback、close 时丢弃；
+ * 同一连接上开始新语句的批量时先执行更早语句剩余的行，写入顺序与调用顺序一致。
+ * 驱动不支持 get/setQueryTimeout，BatchExecutor 复用语句时会调用，prepare 返回的语句包装后忽略超时设置。
+ * <p>
+ * 只代理 {@link BatchExecutor}（包括外层的 CachingExecutor）以及由它创建的 INSERT / UPDATE / DELETE StatementHandler，
+ * SIMPLE、REUSE 模式和查询不生成代理。
+ *
+ * @author daiyi
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}),
+        @Signature(type = StatementHandler.class, method = "batch", args = Statement.class),
+        @Signature(type = Executor.class, method = "flushStatements", args = {}),
+        @Signature(type = Executor.class, method = "commit", args = boolean.class),
+        @Signature(type = Executor.class, method = "rollback", args = boolean.class),
+        @Signature(type = Executor.class, method = "close", args = boolean.class),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class NebulaBatchInsertIntercept implements Interceptor {
+
+    /**
+     * mybatis、nebula-jdbc 中私有字段的 getter，只反射一次
+     */
+    private static final MethodHandle CACHING_DELEGATE_GETTER;
+    private static final MethodHandle EXECUTOR_GETTER;
+    private static final MethodHandle PARAMETERS_GETTER;
+
+    private static final String PREPARE = "prepare";
+    private static final String FLUSH_STATEMENTS = "flushStatements";
+    private static final String GET_QUERY_TIMEOUT = "getQueryTimeout";
+    private static final String SET_QUERY_TIMEOUT = "setQueryTimeout";
+    private static final String ROLLBACK = "rollback";
+    private static final String CLOSE = "close";
+
+    static {
+        try {
+            CACHING_DELEGATE_GETTER = StatementHandlers.getter(CachingExecutor.class, "delegate");
+            EXECUTOR_GETTER = StatementHandlers.getter(BaseStatementHandler.class, "executor");
+            PARAMETERS_GETTER = StatementHandlers.getter(NebulaPreparedStatement.class, "parameters");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 每条合并语句的最大行数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 当前线程上未执行完的批量写入，按创建顺序执行；SqlSession 不是线程安全的，同一批量只会在一个线程上写入
+     */
+    private final ThreadLocal<List<InsertBatch>> pendingBatches = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (invocation.getTarget() instanceof StatementHandler) {
+            return PREPARE.equals(invocation.getMethod().getName()) ? prepare(invocation) : batch(invocation);
+        }
+        List<InsertBatch> pending = pendingBatches.get();
+        if (pending.isEmpty()) {
+            return invocation.proceed();
+        }
+        String method = invocation.getMethod().getName();
+        List<InsertBatch> batches = take(pending, (Executor) invocation.getTarget());
+        if (ROLLBACK.equals(method) || CLOSE.equals(method)) {
+            // 与 BatchExecutor 一致，回滚、关闭时未刷新的批量直接丢弃
+            return invocation.proceed();
+        }
+        for (int i = 0; i < batches.size(); i++) {
+            try {
+                batches.get(i).execute();
+            } catch (NebulaBatchUpdateException e) {
+                log.warn("批量写入失败，丢弃其后 {} 个语句的批量：{}", batches.size() - i - 1, e.getMessage());
+                throw e;
+            }
+        }
+        Object result = invocation.proceed();
+        if (FLUSH_STATEMENTS.equals(method)) {
+            fillUpdateCounts(result, batches);
+        }
+        return result;
+    }
+
+    /**
+     * nebula 语句包装一层，get/setQueryTimeout 不再抛出 SQLFeatureNotSupportedException
+     */
+    private static Object prepare(Invocation invocation) throws Throwable {
+        Statement statement = (Statement) invocation.proceed();
+        if (!(statement instanceof PreparedStatement) || !statement.isWrapperFor(NebulaPreparedStatement.class)) {
+            return statement;
+        }
+        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+            if (GET_QUERY_TIMEOUT.equals(method.getName())) {
+                return 0;
+            }
+            if (SET_QUERY_TIMEOUT.equals(method.getName())) {
+                return null;
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    /**
+     * 替换参数后交给 InsertBatch，不再调用驱动的 addBatch
+     */
+    private Object batch(Invocation invocation) throws Throwable {
+        Statement statement = (Statement) invocation.getArgs()[0];
+        if (!statement.isWrapperFor(NebulaPreparedStatement.class)) {
+            return invocation.proceed();
+        }
+        NebulaPreparedStatement nebulaStatement = statement.unwrap(NebulaPreparedStatement.class);
+        StatementHandler handler = (StatementHandler) invocation.getTarget();
+        BoundSql boundSql = handler.getBoundSql();
+        @SuppressWarnings("unchecked")
+        Map<Integer, Object> parameters = (Map<Integer, Object>) PARAMETERS_GETTER.invoke(nebulaStatement);
+        // NebulaTemplateIntercept 渲染过的语句只有一个占位符
+        String ngql = PlaceholderUtil.replacePlaceholders(NebulaTemplateIntercept.currentSql(nebulaStatement), parameters);
+        parameters.clear();
+        getBatch(nebulaStatement, StatementHandlers.getMappedStatement(handler), boundSql.getSql())
+                .add(ngql, handler.getParameterHandler().getParameterObject());
+        return null;
+    }
+
+    private InsertBatch getBatch(NebulaPreparedStatement statement, MappedStatement mappedStatement, String sql) throws SQLException {
+        List<InsertBatch> pending = pendingBatches.get();
+        // 一个批量会话中不同的语句很少，顺序查找即可
+        for (InsertBatch batch : pending) {
+            if (batch.getStatement() == statement) {
+                return batch;
+            }
+        }
+        InsertBatch batch = new InsertBatch(statement, mappedStatement, sql, batchSize);
+        // BatchExecutor 只复用最后一个语句，同一连接上更早的批量不会再追加行：先按顺序执行其剩余的行，
+        // 新批量提前执行的组才不会越过更早的写入
+        for (InsertBatch earlier : pending) {
+            if (earlier.getConnection() != batch.getConnection()) {
+                continue;
+            }
+            try {
+                earlier.execute();
+            } catch (NebulaBatchUpdateException e) {
+                // 与 flushStatements 失败时一致，丢弃该连接上其余的批量
+                pending.removeIf(other -> other.getConnection() == batch.getConnection());
+                log.warn("批量写入失败，丢弃该连接上其余的批量：{}", e.getMessage());
+                throw e;
+            }
+        }
+        pending.add(batch);
+        return batch;
+    }
+
+    /**
+     * 取出属于该 Executor 连接的批量；无法确定连接时取出当前线程上的全部批量
+     */
+    private static List<InsertBatch> take(List<InsertBatch> pending, Executor executor) {
+        NebulaConnection connection = getConnection(executor);
+        List<InsertBatch> batches = new ArrayList<>(pending.size());
+        for (Iterator<InsertBatch> iterator = pending.iterator(); iterator.hasNext(); ) {
+            InsertBatch batch = iterator.next();
+            if (connection == null || connection == batch.getConnection()) {
+                batches.add(batch);
+                iterator.remove();
+            }
+        }
+        return batches;
+    }
+
+    private static NebulaConnection getConnection(Executor executor) {
+        try {
+            Connection connection = executor.getTransaction().getConnection();
+            return connection.isWrapperFor(NebulaConnection.class) ? connection.unwrap(NebulaConnection.class) : null;
+        } catch (SQLException | RuntimeException e) {
+            log.debug("无法获取 Executor 的 nebula 连接", e);
+            return null;
+        }
+    }
+
+    /**
+     * 驱动的 executeBatch 返回空数组，按实际写入的行数补全 updateCounts
+     */
+    private static void fillUpdateCounts(Object result, List<InsertBatch> batches) {
+        if (!(result instanceof List)) {
+            return;
+        }
+        List<InsertBatch> unmatched = new LinkedList<>(batches);
+        for (Object item : (List<?>) result) {
+            if (!(item instanceof BatchResult)) {
+                continue;
+            }
+            BatchResult batchResult = (BatchResult) item;
+            for (Iterator<InsertBatch> iterator = unmatched.iterator(); iterator.hasNext(); ) {
+                InsertBatch batch = iterator.next();
+                if (batch.getMappedStatement() == batchResult.getMappedStatement() && batch.getSql().equals(batchResult.getSql())) {
+                    int[] updateCounts = new int[batch.getExecutedRows()];
+                    Arrays.fill(updateCounts, Statement.SUCCESS_NO_INFO);
+                    batchResult.setUpdateCounts(updateCounts);
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 只代理 BatchExecutor 及其创建的写语句 StatementHandler
+     */
+    @Override
+    public Object plugin(Object target) {
+        if (target instanceof Executor) {
+            return isBatchExecutor(target) ? Plugin.wrap(target, this) : target;
+        }
+        if (target instanceof StatementHandler) {
+            return isBatchWrite(target) ? Plugin.wrap(target, this) : target;
+        }
+        return target;
+    }
+
+    private static boolean isBatchExecutor(Object executor) {
+        try {
+            if (executor instanceof CachingExecutor) {
+                executor = CACHING_DELEGATE_GETTER.invoke(executor);
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        // 已被其他插件代理时无法判断，仍然代理
+        return executor instanceof BatchExecutor || Proxy.isProxyClass(executor.getClass());
+    }
+
+    private static boolean isBatchWrite(Object handler) {
+        if (!(handler instanceof RoutingStatementHandler)) {
+            return Proxy.isProxyClass(handler.getClass());
+        }
+        try {
+            StatementHandler delegate = StatementHandlers.delegate((StatementHandler) handler);
+            if (!(delegate instanceof BaseStatementHandler)) {
+                return true;
+            }
+            SqlCommandType commandType = StatementHandlers.getMappedStatement(delegate).getSqlCommandType();
+            return EXECUTOR_GETTER.invoke(delegate) instanceof BatchExecutor
+                    && (commandType == SqlCommandType.INSERT || commandType == SqlCommandType.UPDATE || commandType == SqlCommandType.DELETE);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        batchSize = Integer.parseInt(properties.getProperty("batchSize", String.valueOf(batchSize)));
+    }
+}
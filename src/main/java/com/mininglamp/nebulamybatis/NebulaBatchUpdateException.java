@@ -0,0 +1,54 @@
+package com.mininglamp.nebulamybatis;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量写入失败
+ * <p>
+ * updateCounts 与写入的行一一对应：失败前已写入的行为 {@link java.sql.Statement#SUCCESS_NO_INFO}，
+ * 失败的那一组为 {@link java.sql.Statement#EXECUTE_FAILED}，之后的行未执行、不包含在内。
+ * 失败那一组的参数对象按写入顺序保存，用于定位出错的行。
+ *
+ * @author daiyi
+ */
+public class NebulaBatchUpdateException extends BatchUpdateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String statementId;
+    private final int firstFailedRow;
+    private final transient List<Object> failedParameterObjects;
+
+    NebulaBatchUpdateException(String statementId, int firstFailedRow, List<Object> failedParameterObjects,
+                               int[] updateCounts, SQLException cause) {
+        super(String.format("批量写入失败：%s 第 %d-%d 行，%s", statementId, firstFailedRow,
+                firstFailedRow + failedParameterObjects.size() - 1, cause.getMessage()), updateCounts, cause);
+        this.statementId = statementId;
+        this.firstFailedRow = firstFailedRow;
+        this.failedParameterObjects = Collections.unmodifiableList(failedParameterObjects);
+    }
+
+    /**
+     * @return 失败的 MappedStatement id
+     */
+    public String getStatementId() {
+        return statementId;
+    }
+
+    /**
+     * @return 失败的第一行在该语句本次批量中的序号，从0开始
+     */
+    public int getFirstFailedRow() {
+        return firstFailedRow;
+    }
+
+    /**
+     * @return 失败那一组的参数对象
+     */
+    public List<Object> getFailedParameterObjects() {
+        return failedParameterObjects;
+    }
+}
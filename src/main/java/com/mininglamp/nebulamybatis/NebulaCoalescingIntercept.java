@@ -0,0 +1,300 @@
+package com.mininglamp.nebulamybatis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.io.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并同时执行的相同查询
+ * <p>
+ * 拦截 Executor.query，MappedStatement id、分页参数、SQL 和参数值都相同（与一级缓存相同的 CacheKey）的查询，
+ * 同一时刻只由第一个调用方执行，其余调用方等待它的结果，不再各自请求 graphd、各自经过 {@link GraphResultSetIntercept} 解码。
+ * 执行结束即从合并表中移除，之后的调用重新执行，不是缓存，没有过期时间。
+ * <p>
+ * 每个等待方得到各自的结果列表：默认把结果序列化一次，每个等待方反序列化出一份独立的对象（与 mybatis readOnly="false" 的二级缓存相同），
+ * 某个语句的结果第一次不能序列化后，该语句不再合并，各自执行；readOnly 为 true 时只复制列表，对象由全部调用方共享，调用方不能修改。
+ * 执行失败时全部等待方收到同一个异常。
+ * <p>
+ * 同时拦截 Executor.update 记录写入的序号：当前线程写入之后的查询，只等待在这次写入完成之后才开始执行的执行方，
+ * 更早开始的执行方的结果可能不包含这次写入，此时自己执行。
+ * <p>
+ * 只合并 nebula 连接上的 SELECT，其他连接（关系库有事务）上的语句、传入 ResultHandler 的查询、键集分页查询照常执行。
+ * nebula 没有事务，合并不会读到其他会话未提交的写入；但 BATCH 模式下尚未 flush 的写入对合并后的查询不可见。
+ *
+ * @author daiyi
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class NebulaCoalescingIntercept implements Interceptor {
+
+    /**
+     * 执行中的查询：CacheKey -> 执行方
+     */
+    private final ConcurrentMap<CacheKey, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 写入序号，每次 update 完成后加一
+     */
+    private final AtomicLong writeEpoch = new AtomicLong();
+
+    /**
+     * 当前线程最近一次写入 nebula 完成后的序号
+     */
+    private final ThreadLocal<Long> lastWrite = new ThreadLocal<>();
+
+    /**
+     * 结果不能序列化、不再合并的语句
+     */
+    private final Set<MappedStatement> notSerializable = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 被合并、没有自己执行的查询次数
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 等待方与执行方共享结果对象，不做序列化拷贝
+     */
+    private boolean readOnly;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement mappedStatement = (MappedStatement) args[0];
+        Object parameterObject = args[1];
+        Executor executor = (Executor) invocation.getTarget();
+        // 只合并 nebula 连接上的语句；关系库有事务，合并可能读到其他事务未提交的写入
+        if (!StatementClassifier.isNebulaConnection(executor.getTransaction().getConnection())) {
+            return invocation.proceed();
+        }
+        if (args.length == 2) {
+            return update(invocation);
+        }
+        if (mappedStatement.getSqlCommandType() != SqlCommandType.SELECT || args[3] != null
+                || NebulaPageRequest.find(parameterObject) != null
+                || !readOnly && notSerializable.contains(mappedStatement)) {
+            return invocation.proceed();
+        }
+        CacheKey key = executor.createCacheKey(mappedStatement, parameterObject, (RowBounds) args[2],
+                mappedStatement.getBoundSql(parameterObject));
+        // 同一个拦截器注册到多个 SqlSessionFactory 时，语句 id 和环境可能相同
+        key.update(mappedStatement.getConfiguration());
+        Long written = lastWrite.get();
+        while (true) {
+            InFlight call = new InFlight(writeEpoch.get());
+            InFlight existing = inFlight.putIfAbsent(key, call);
+            if (existing == null) {
+                return lead(invocation, mappedStatement, key, call);
+            }
+            // 执行方的嵌套查询再次进入时直接执行，避免等待自己；
+            // 执行方在当前线程最近一次写入完成前开始时，结果可能不包含这次写入
+            if (existing.leader == Thread.currentThread() || written != null && existing.epoch < written) {
+                return invocation.proceed();
+            }
+            if (existing.join()) {
+                return follow(invocation, mappedStatement, existing);
+            }
+            // 执行方刚刚结束，已从合并表中移除，重新竞争
+        }
+    }
+
+    private Object update(Invocation invocation) throws Throwable {
+        try {
+            return invocation.proceed();
+        } finally {
+            // 失败的写入也可能已经部分生效
+            lastWrite.set(writeEpoch.incrementAndGet());
+        }
+    }
+
+    private Object lead(Invocation invocation, MappedStatement mappedStatement, CacheKey key, InFlight call) throws Throwable {
+        Object result = null;
+        Throwable error = null;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            error = e;
+        }
+        // 先移除再关闭，关闭后加入的调用方重新执行
+        inFlight.remove(key, call);
+        int followers = call.close();
+        Object shared = null;
+        byte[] serialized = null;
+        if (followers > 0 && error == null) {
+            // 在返回给调用方之前取得副本，调用方之后修改列表不影响等待方
+            if (readOnly) {
+                shared = result instanceof List ? new ArrayList<>((List<?>) result) : result;
+            } else {
+                serialized = serialize(result);
+                if (serialized == null && notSerializable.add(mappedStatement)) {
+                    log.warn("查询 {} 的结果不能序列化，不再合并；可以开启 readOnly 共享结果对象", mappedStatement.getId());
+                }
+            }
+        }
+        call.complete(shared, serialized, error);
+        if (error != null) {
+            throw error;
+        }
+        return result;
+    }
+
+    private Object follow(Invocation invocation, MappedStatement mappedStatement, InFlight call) throws Throwable {
+        try {
+            call.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待合并的查询 " + mappedStatement.getId() + " 时被中断", e);
+        }
+        if (call.error != null) {
+            throw call.error;
+        }
+        if (readOnly) {
+            coalesced.increment();
+            return call.result instanceof List ? new ArrayList<>((List<?>) call.result) : call.result;
+        }
+        if (call.serialized == null) {
+            // 第一次发现不能序列化，之后该语句不再合并
+            return invocation.proceed();
+        }
+        coalesced.increment();
+        return deserialize(call.serialized);
+    }
+
+    /**
+     * @return 不能序列化时返回 null
+     */
+    private static byte[] serialize(Object result) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(result);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Object deserialize(byte[] serialized) throws SQLException {
+        try (ObjectInputStream in = new ClassResolvingInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SQLException("无法复制合并查询的结果", e);
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor ? Plugin.wrap(target, this) : target;
+    }
+
+    /**
+     * @return 被合并、没有自己执行的查询次数
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        readOnly = Boolean.parseBoolean(properties.getProperty("readOnly", String.valueOf(readOnly)));
+    }
+
+    /**
+     * 一次执行中的查询
+     */
+    private static final class InFlight {
+
+        private final Thread leader = Thread.currentThread();
+        /**
+         * 开始执行时的写入序号
+         */
+        private final long epoch;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int followers;
+        private boolean closed;
+        private Object result;
+        private byte[] serialized;
+        private Throwable error;
+
+        InFlight(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * @return 执行方已经结束时返回 false
+         */
+        synchronized boolean join() {
+            if (closed) {
+                return false;
+            }
+            followers++;
+            return true;
+        }
+
+        /**
+         * @return 等待方的个数
+         */
+        synchronized int close() {
+            closed = true;
+            return followers;
+        }
+
+        void complete(Object result, byte[] serialized, Throwable error) {
+            this.result = result;
+            this.serialized = serialized;
+            this.error = error;
+            // CountDownLatch 保证等待方看到上面的写入
+            done.countDown();
+        }
+    }
+
+    /**
+     * 与 mybatis SerializedCache 相同，按 mybatis 的 ClassLoader 查找结果类
+     */
+    private static final class ClassResolvingInputStream extends ObjectInputStream {
+
+        ClassResolvingInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Resources.classForName(desc.getName());
+            } catch (ClassNotFoundException e) {
+                // 基本类型及其数组
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
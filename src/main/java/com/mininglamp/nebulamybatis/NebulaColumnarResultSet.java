@@ -0,0 +1,426 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 列式存储的 nebula ResultSet
+ * <p>
+ * 按列保存解码后的值：整数、浮点、布尔列使用 long[]/double[]/boolean[] 加空值位图，
+ * 其余类型（字符串、日期、集合等）才保存 ValueWrapper。列名通过预先计算好的哈希索引定位，
+ * 数组由 {@link Builder} 直接移交，不再复制。
+ * <p>
+ * 同类型的 getter 直接读取原始数组；类型不匹配的读取会临时还原成 ValueWrapper，
+ * 行为与 {@link NebulaResultSet} 保持一致。
+ *
+ * @author daiyi
+ */
+public class NebulaColumnarResultSet extends AbstractNebulaResultSet {
+
+    static final byte KIND_UNKNOWN = 0;
+    static final byte KIND_LONG = 1;
+    static final byte KIND_DOUBLE = 2;
+    static final byte KIND_BOOLEAN = 3;
+    static final byte KIND_OBJECT = 4;
+
+    private final int size;
+    private final List<String> columnNames;
+    private final Map<String, Integer> columnIndex;
+    private final byte[] kinds;
+    private final long[][] longColumns;
+    private final double[][] doubleColumns;
+    private final boolean[][] booleanColumns;
+    private final ValueWrapper[][] objectColumns;
+    private final long[][] nullBitmaps;
+    private final String decodeType;
+    private final int timezoneOffset;
+    private int cursor = -1;
+    private boolean isClosed;
+
+    private NebulaColumnarResultSet(Builder builder) {
+        this.size = builder.size;
+        this.columnNames = builder.columnNames;
+        this.columnIndex = builder.columnIndex;
+        this.kinds = builder.kinds;
+        this.longColumns = builder.longColumns;
+        this.doubleColumns = builder.doubleColumns;
+        this.booleanColumns = builder.booleanColumns;
+        this.objectColumns = builder.objectColumns;
+        this.nullBitmaps = builder.nullBitmaps;
+        this.decodeType = builder.decodeType;
+        this.timezoneOffset = builder.timezoneOffset;
+    }
+
+    /**
+     * @param columnNames 列名，只读
+     * @param columnIndex 列名 -> 列下标（从0开始），只读
+     */
+    public static Builder builder(List<String> columnNames, Map<String, Integer> columnIndex) {
+        return new Builder(columnNames, columnIndex);
+    }
+
+    /**
+     * @param columnNames 列名
+     */
+    public static Builder builder(List<String> columnNames) {
+        Map<String, Integer> index = new HashMap<>(columnNames.size() * 2);
+        for (int i = 0; i < columnNames.size(); i++) {
+            index.putIfAbsent(columnNames.get(i), i);
+        }
+        return new Builder(Collections.unmodifiableList(columnNames), index);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void beforeFirst() throws SQLException {
+        cursor = -1;
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (cursor + 1 < size) {
+            cursor++;
+            return true;
+        }
+        cursor = size;
+        return false;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        isClosed = true;
+    }
+
+    @Override
+    public int findColumn(String columnLabel) throws SQLException {
+        Integer index = columnIndex.get(columnLabel);
+        return index == null ? 0 : index + 1;
+    }
+
+    @Override
+    public int getRow() throws SQLException {
+        return cursor + 1;
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return isClosed;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    protected ValueWrapper value(int columnIndex) throws SQLException {
+        return materialize(columnIndex - 1);
+    }
+
+    @Override
+    protected ValueWrapper value(String columnLabel) throws SQLException {
+        Integer index = columnIndex.get(columnLabel);
+        return index == null ? null : materialize(index);
+    }
+
+    @Override
+    public long getLong(int columnIndex) throws SQLException {
+        int col = columnIndex - 1;
+        if (kinds[col] == KIND_LONG) {
+            return isNullCell(col) ? 0 : longColumns[col][cursor];
+        }
+        return super.getLong(columnIndex);
+    }
+
+    @Override
+    public long getLong(String columnLabel) throws SQLException {
+        return getLong(requireColumn(columnLabel));
+    }
+
+    @Override
+    public double getDouble(int columnIndex) throws SQLException {
+        int col = columnIndex - 1;
+        if (kinds[col] == KIND_DOUBLE) {
+            return isNullCell(col) ? 0 : doubleColumns[col][cursor];
+        }
+        return super.getDouble(columnIndex);
+    }
+
+    @Override
+    public double getDouble(String columnLabel) throws SQLException {
+        return getDouble(requireColumn(columnLabel));
+    }
+
+    @Override
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        int col = columnIndex - 1;
+        if (kinds[col] == KIND_BOOLEAN) {
+            return !isNullCell(col) && booleanColumns[col][cursor];
+        }
+        return super.getBoolean(columnIndex);
+    }
+
+    @Override
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        return getBoolean(requireColumn(columnLabel));
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        int col = columnIndex - 1;
+        if (kinds[col] == KIND_LONG) {
+            return isNullCell(col) ? null : new Timestamp(longColumns[col][cursor] * 1000);
+        }
+        return super.getTimestamp(columnIndex);
+    }
+
+    @Override
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        return getTimestamp(requireColumn(columnLabel));
+    }
+
+    /**
+     * 列名转下标（从1开始），未知列名抛出 SQLException
+     */
+    private int requireColumn(String columnLabel) throws SQLException {
+        int index = findColumn(columnLabel);
+        if (index == 0) {
+            throw new SQLException("列不存在：" + columnLabel);
+        }
+        return index;
+    }
+
+    private boolean isNullCell(int col) {
+        boolean isNull = (nullBitmaps[col][cursor >>> 6] & (1L << cursor)) != 0;
+        setWasNull(isNull);
+        return isNull;
+    }
+
+    /**
+     * 把当前行的一个单元格还原成 ValueWrapper
+     */
+    private ValueWrapper materialize(int col) {
+        if ((nullBitmaps[col][cursor >>> 6] & (1L << cursor)) != 0) {
+            return null;
+        }
+        switch (kinds[col]) {
+            case KIND_LONG:
+                return new ValueWrapper(Value.iVal(longColumns[col][cursor]), decodeType, timezoneOffset);
+            case KIND_DOUBLE:
+                return new ValueWrapper(Value.fVal(doubleColumns[col][cursor]), decodeType, timezoneOffset);
+            case KIND_BOOLEAN:
+                return new ValueWrapper(Value.bVal(booleanColumns[col][cursor]), decodeType, timezoneOffset);
+            case KIND_OBJECT:
+                return objectColumns[col][cursor];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 按行追加、按列存储的构建器，非线程安全
+     */
+    public static final class Builder implements RowSink {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final List<String> columnNames;
+        private final Map<String, Integer> columnIndex;
+        private final int cols;
+        private final byte[] kinds;
+        private final long[][] longColumns;
+        private final double[][] doubleColumns;
+        private final boolean[][] booleanColumns;
+        private final ValueWrapper[][] objectColumns;
+        private final long[][] nullBitmaps;
+        private int capacity;
+        private int size;
+        private String decodeType = "utf-8";
+        private int timezoneOffset;
+        private StringInterner interner;
+        private boolean built;
+
+        private Builder(List<String> columnNames, Map<String, Integer> columnIndex) {
+            this.columnNames = columnNames;
+            this.columnIndex = columnIndex;
+            this.cols = columnNames.size();
+            this.kinds = new byte[cols];
+            this.longColumns = new long[cols][];
+            this.doubleColumns = new double[cols][];
+            this.booleanColumns = new boolean[cols][];
+            this.objectColumns = new ValueWrapper[cols][];
+            this.nullBitmaps = new long[cols][];
+            this.capacity = INITIAL_CAPACITY;
+            for (int col = 0; col < cols; col++) {
+                nullBitmaps[col] = new long[words(capacity)];
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 追加一行
+         *
+         * @param cells          按列顺序排列的值，null 表示空值；调用方可以复用该数组
+         * @param decodeType     字符串解码方式
+         * @param timezoneOffset 时区偏移
+         */
+        @Override
+        public Builder append(ValueWrapper[] cells, String decodeType, int timezoneOffset) {
+            if (built) {
+                throw new IllegalStateException("NebulaColumnarResultSet 已构建");
+            }
+            if (size == 0) {
+                this.decodeType = decodeType;
+                this.timezoneOffset = timezoneOffset;
+            }
+            if (size == capacity) {
+                grow();
+            }
+            int row = size;
+            for (int col = 0; col < cols; col++) {
+                ValueWrapper cell = col < cells.length ? cells[col] : null;
+                if (cell == null || cell.isNull() || cell.isEmpty()) {
+                    nullBitmaps[col][row >>> 6] |= 1L << row;
+                    continue;
+                }
+                byte kind = kindOf(cell);
+                if (kinds[col] == KIND_UNKNOWN) {
+                    allocate(col, kind);
+                } else if (kinds[col] != kind && kinds[col] != KIND_OBJECT) {
+                    promote(col, row);
+                }
+                switch (kinds[col]) {
+                    case KIND_LONG:
+                        longColumns[col][row] = cell.asLong();
+                        break;
+                    case KIND_DOUBLE:
+                        doubleColumns[col][row] = cell.asDouble();
+                        break;
+                    case KIND_BOOLEAN:
+                        booleanColumns[col][row] = cell.asBoolean();
+                        break;
+                    default:
+                        objectColumns[col][row] = cell;
+                        break;
+                }
+            }
+            size++;
+            return this;
+        }
+
+        /**
+         * 开启字符串驻留，见 {@link StringInterner}
+         */
+        Builder interner(StringInterner interner) {
+            this.interner = interner;
+            return this;
+        }
+
+        /**
+         * 构建结果集，列数组直接移交，不复制
+         */
+        public NebulaColumnarResultSet build() {
+            built = true;
+            NebulaColumnarResultSet resultSet = new NebulaColumnarResultSet(this);
+            resultSet.setInterner(interner);
+            return resultSet;
+        }
+
+        private static byte kindOf(ValueWrapper cell) {
+            if (cell.isLong()) {
+                return KIND_LONG;
+            } else if (cell.isDouble()) {
+                return KIND_DOUBLE;
+            } else if (cell.isBoolean()) {
+                return KIND_BOOLEAN;
+            }
+            return KIND_OBJECT;
+        }
+
+        private void allocate(int col, byte kind) {
+            kinds[col] = kind;
+            switch (kind) {
+                case KIND_LONG:
+                    longColumns[col] = new long[capacity];
+                    break;
+                case KIND_DOUBLE:
+                    doubleColumns[col] = new double[capacity];
+                    break;
+                case KIND_BOOLEAN:
+                    booleanColumns[col] = new boolean[capacity];
+                    break;
+                default:
+                    objectColumns[col] = new ValueWrapper[capacity];
+                    break;
+            }
+        }
+
+        /**
+         * 同一列出现不同类型时退化为 ValueWrapper 列，已写入的值还原为 ValueWrapper
+         */
+        private void promote(int col, int rows) {
+            ValueWrapper[] objects = new ValueWrapper[capacity];
+            for (int row = 0; row < rows; row++) {
+                if ((nullBitmaps[col][row >>> 6] & (1L << row)) != 0) {
+                    continue;
+                }
+                switch (kinds[col]) {
+                    case KIND_LONG:
+                        objects[row] = new ValueWrapper(Value.iVal(longColumns[col][row]), decodeType, timezoneOffset);
+                        break;
+                    case KIND_DOUBLE:
+                        objects[row] = new ValueWrapper(Value.fVal(doubleColumns[col][row]), decodeType, timezoneOffset);
+                        break;
+                    case KIND_BOOLEAN:
+                        objects[row] = new ValueWrapper(Value.bVal(booleanColumns[col][row]), decodeType, timezoneOffset);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            longColumns[col] = null;
+            doubleColumns[col] = null;
+            booleanColumns[col] = null;
+            objectColumns[col] = objects;
+            kinds[col] = KIND_OBJECT;
+        }
+
+        private void grow() {
+            int newCapacity = capacity << 1;
+            for (int col = 0; col < cols; col++) {
+                nullBitmaps[col] = Arrays.copyOf(nullBitmaps[col], words(newCapacity));
+                if (longColumns[col] != null) {
+                    longColumns[col] = Arrays.copyOf(longColumns[col], newCapacity);
+                }
+                if (doubleColumns[col] != null) {
+                    doubleColumns[col] = Arrays.copyOf(doubleColumns[col], newCapacity);
+                }
+                if (booleanColumns[col] != null) {
+                    booleanColumns[col] = Arrays.copyOf(booleanColumns[col], newCapacity);
+                }
+                if (objectColumns[col] != null) {
+                    objectColumns[col] = Arrays.copyOf(objectColumns[col], newCapacity);
+                }
+            }
+            capacity = newCapacity;
+        }
+
+        private static int words(int bits) {
+            return (bits + 63) >>> 6;
+        }
+    }
+}
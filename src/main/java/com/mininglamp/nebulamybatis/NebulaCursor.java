@@ -0,0 +1,153 @@
+package com.mininglamp.nebulamybatis;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.RowBounds;
+
+import java.io.UnsupportedEncodingException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * nebula 结果游标
+ * <p>
+ * 与 mybatis 的 DefaultCursor 语义一致：只能获取一次迭代器，遍历结束或 close 后关闭结果集。
+ * 每次只解码一行，已返回的对象不再被游标引用。
+ *
+ * @author daiyi
+ */
+final class NebulaCursor<T> implements Cursor<T> {
+
+    private final ResultSet resultSet;
+    private final NebulaRowDecoder decoder;
+    private final RowBounds rowBounds;
+    private final int columnCount;
+    /**
+     * 关闭时的回调，用于记录指标，可以为 null
+     */
+    private final Runnable onClose;
+    /**
+     * 当前行解码出、尚未返回的对象（一行可能包含多个点/边列，空行的对象可能为 null）
+     */
+    private final LinkedList<Object> pending = new LinkedList<>();
+
+    private boolean iteratorRetrieved;
+    private boolean opened;
+    private boolean consumed;
+    private boolean closed;
+    private int indexWithRowBound = -1;
+
+    NebulaCursor(ResultSet resultSet, NebulaRowDecoder decoder, RowBounds rowBounds, Runnable onClose) throws SQLException {
+        this.resultSet = resultSet;
+        this.onClose = onClose;
+        this.decoder = decoder;
+        this.rowBounds = rowBounds == null ? RowBounds.DEFAULT : rowBounds;
+        this.columnCount = resultSet.getMetaData().getColumnCount();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return opened && !closed;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return rowBounds.getOffset() + indexWithRowBound;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        if (closed) {
+            throw new IllegalStateException("A Cursor is already closed.");
+        }
+        iteratorRetrieved = true;
+        return new CursorIterator();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pending.clear();
+        try {
+            resultSet.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+
+    /**
+     * 准备下一个对象，没有更多数据或达到 RowBounds 上限时返回 false
+     */
+    private boolean fetchNext() {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (!opened) {
+                opened = true;
+                GraphResultSetIntercept.skipRows(resultSet, rowBounds);
+            }
+            if (indexWithRowBound + 1 >= rowBounds.getLimit()) {
+                finish();
+                return false;
+            }
+            while (pending.isEmpty()) {
+                if (!resultSet.next()) {
+                    finish();
+                    return false;
+                }
+                if (!decoder.decodeRow(resultSet, columnCount, pending)) {
+                    throw new SQLException("结果中包含非点、边、路径的数据，无法使用游标逐行处理");
+                }
+            }
+            return true;
+        } catch (SQLException | UnsupportedEncodingException e) {
+            close();
+            throw new RuntimeException("游标读取nebula结果失败", e);
+        }
+    }
+
+    private void finish() {
+        consumed = true;
+        close();
+    }
+
+    private final class CursorIterator implements Iterator<T> {
+
+        @Override
+        public boolean hasNext() {
+            return fetchNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            indexWithRowBound++;
+            return (T) pending.poll();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Cannot remove element from Cursor");
+        }
+    }
+}
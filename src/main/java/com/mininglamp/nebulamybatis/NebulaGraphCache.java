@@ -0,0 +1,342 @@
+package com.mininglamp.nebulamybatis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * 按 tag / edge type 和 VID 失效的二级缓存
+ * <p>
+ * 用法：{@code <cache type="com.mininglamp.nebulamybatis.NebulaGraphCache"><property name="size" value="4096"/></cache>}
+ * 或 {@code @CacheNamespace(implementation = NebulaGraphCache.class)}。
+ * <p>
+ * 缓存项按查询语句读取的范围（{@link GraphScope}）建立索引，
+ * 写入语句由 {@link NebulaGraphCacheIntercept} 解析出修改的范围后，只清除范围有交集的缓存项，
+ * 所有 NebulaGraphCache 实例都会收到失效通知，不限于写入语句所在的 namespace。
+ * mybatis 在 commit 时对写入语句所在 namespace 的缓存调用 {@link #clear()}，此时只清除该 namespace 本次提交中写入影响的缓存项；
+ * 提交之外的 clear、本次提交中有 flushCache="true" 的查询或无法识别的写入时仍然全部清除。
+ * <p>
+ * 容量满时按 LRU 淘汰，ttl 大于 0 时缓存项过期后不再返回。
+ * 缓存的对象直接返回给调用方，不做序列化拷贝，相当于 readOnly="true"。
+ *
+ * @author daiyi
+ */
+@Slf4j
+public class NebulaGraphCache implements Cache {
+
+    /**
+     * CacheKey 的组成：MappedStatement id、offset、limit、sql、参数值...
+     */
+    private static final MethodHandle UPDATE_LIST_GETTER;
+    private static final int SQL_INDEX = 3;
+
+    /**
+     * 全部实例，写入时逐个通知
+     */
+    private static final Set<NebulaGraphCache> CACHES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /**
+     * 当前线程上次提交以来的写入范围：写入语句所在 namespace -> 写入范围，commit 时的 clear 据此只清除受影响的缓存项
+     */
+    private static final ThreadLocal<Map<String, List<GraphScope>>> WRITES = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * 当前线程是否正在提交，只有提交时 TransactionalCache 调用的 clear 才按写入范围清除
+     */
+    private static final ThreadLocal<Boolean> COMMITTING = new ThreadLocal<>();
+
+    static {
+        try {
+            Field field = CacheKey.class.getDeclaredField("updateList");
+            field.setAccessible(true);
+            UPDATE_LIST_GETTER = MethodHandles.lookup().unreflectGetter(field);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String id;
+
+    /**
+     * 最大缓存项数
+     */
+    private int size = 1024;
+
+    /**
+     * 缓存项有效期，毫秒，0 表示不过期
+     */
+    private long ttl;
+
+    private final LinkedHashMap<Object, NebulaGraphCache.Entry> entries = new LinkedHashMap<Object, NebulaGraphCache.Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, NebulaGraphCache.Entry> eldest) {
+            if (size() > size) {
+                unindex(eldest.getKey(), eldest.getValue().scope);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * tag / edge type -> 缓存项
+     */
+    private final Map<String, Set<Object>> typeIndex = new HashMap<>();
+    /**
+     * VID -> 缓存项
+     */
+    private final Map<String, Set<Object>> vidIndex = new HashMap<>();
+    /**
+     * 不限 tag / edge type 的缓存项
+     */
+    private final Set<Object> anyType = new HashSet<>();
+    /**
+     * 不限 VID 的缓存项
+     */
+    private final Set<Object> anyVid = new HashSet<>();
+
+    public NebulaGraphCache(String id) {
+        this.id = id;
+        CACHES.add(this);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public synchronized void putObject(Object key, Object value) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            unindex(key, previous.scope);
+        }
+        // TransactionalCache 提交时会把未命中的 key 以 null 写入，不占用容量
+        if (value == null) {
+            return;
+        }
+        GraphScope scope = scopeOf(key);
+        entries.put(key, new Entry(value, scope, ttl > 0 ? System.currentTimeMillis() + ttl : Long.MAX_VALUE));
+        index(key, scope);
+    }
+
+    @Override
+    public synchronized Object getObject(Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            unindex(key, entry.scope);
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public synchronized Object removeObject(Object key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        unindex(key, entry.scope);
+        return entry.value;
+    }
+
+    /**
+     * 提交时当前线程在该 namespace 有已记录的写入则只清除受影响的缓存项，否则全部清除
+     */
+    @Override
+    public void clear() {
+        List<GraphScope> writes = COMMITTING.get() != null ? WRITES.get().get(id) : null;
+        if (writes == null) {
+            clearAll();
+            return;
+        }
+        for (GraphScope write : writes) {
+            invalidate(write);
+        }
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * 清除与写入范围有交集的缓存项
+     *
+     * @param write 写入范围
+     * @return 清除的缓存项数
+     */
+    synchronized int invalidate(GraphScope write) {
+        if (write.isAll()) {
+            int removed = entries.size();
+            clearAll();
+            return removed;
+        }
+        Set<Object> candidates = new HashSet<>();
+        if (write.getTypes() != null) {
+            for (String type : write.getTypes()) {
+                candidates.addAll(typeIndex.getOrDefault(type, Collections.emptySet()));
+            }
+            candidates.addAll(anyType);
+        } else {
+            for (String vid : write.getVids()) {
+                candidates.addAll(vidIndex.getOrDefault(vid, Collections.emptySet()));
+            }
+            candidates.addAll(anyVid);
+        }
+        int removed = 0;
+        for (Object key : candidates) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.scope.overlaps(write)) {
+                entries.remove(key);
+                unindex(key, entry.scope);
+                removed++;
+            }
+        }
+        if (removed > 0 && log.isDebugEnabled()) {
+            log.debug("{} 清除 {} 个缓存项：{}", id, removed, write);
+        }
+        return removed;
+    }
+
+    private synchronized void clearAll() {
+        entries.clear();
+        typeIndex.clear();
+        vidIndex.clear();
+        anyType.clear();
+        anyVid.clear();
+    }
+
+    /**
+     * 写入后通知全部实例
+     */
+    static void invalidateAll(GraphScope write) {
+        List<NebulaGraphCache> caches;
+        synchronized (CACHES) {
+            caches = new ArrayList<>(CACHES);
+        }
+        for (NebulaGraphCache cache : caches) {
+            cache.invalidate(write);
+        }
+    }
+
+    /**
+     * 记录当前线程的写入，commit 时的 clear 使用
+     *
+     * @param namespace 写入语句所在 namespace 的缓存 id
+     * @param write     写入范围，{@link GraphScope#ALL} 表示提交时全部清除
+     */
+    static void recordWrite(String namespace, GraphScope write) {
+        WRITES.get().computeIfAbsent(namespace, n -> new ArrayList<>()).add(write);
+    }
+
+    /**
+     * commit、rollback、close 开始，之后的 clear 来自 TransactionalCache 的提交
+     */
+    static void startCommit() {
+        COMMITTING.set(Boolean.TRUE);
+    }
+
+    /**
+     * commit、rollback、close 之后清空当前线程记录的写入
+     */
+    static void resetWrites() {
+        COMMITTING.remove();
+        WRITES.get().clear();
+    }
+
+    static boolean hasInstances() {
+        return !CACHES.isEmpty();
+    }
+
+    private static GraphScope scopeOf(Object key) {
+        if (!(key instanceof CacheKey)) {
+            return GraphScope.ALL;
+        }
+        List<?> updateList;
+        try {
+            updateList = (List<?>) UPDATE_LIST_GETTER.invoke(key);
+        } catch (Throwable e) {
+            return GraphScope.ALL;
+        }
+        if (updateList.size() <= SQL_INDEX || !(updateList.get(SQL_INDEX) instanceof String)) {
+            return GraphScope.ALL;
+        }
+        return GraphScope.ofQuery((String) updateList.get(SQL_INDEX), updateList.subList(SQL_INDEX + 1, updateList.size()));
+    }
+
+    private void index(Object key, GraphScope scope) {
+        if (scope.getTypes() == null) {
+            anyType.add(key);
+        } else {
+            for (String type : scope.getTypes()) {
+                typeIndex.computeIfAbsent(type, t -> new HashSet<>()).add(key);
+            }
+        }
+        if (scope.getVids() == null) {
+            anyVid.add(key);
+        } else {
+            for (String vid : scope.getVids()) {
+                vidIndex.computeIfAbsent(vid, v -> new HashSet<>()).add(key);
+            }
+        }
+    }
+
+    private void unindex(Object key, GraphScope scope) {
+        if (scope.getTypes() == null) {
+            anyType.remove(key);
+        } else {
+            for (String type : scope.getTypes()) {
+                remove(typeIndex, type, key);
+            }
+        }
+        if (scope.getVids() == null) {
+            anyVid.remove(key);
+        } else {
+            for (String vid : scope.getVids()) {
+                remove(vidIndex, vid, key);
+            }
+        }
+    }
+
+    private static void remove(Map<String, Set<Object>> index, String name, Object key) {
+        Set<Object> keys = index.get(name);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            index.remove(name);
+        }
+    }
+
+    public void setSize(int size) {
+        this.size = Math.max(1, size);
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final GraphScope scope;
+        private final long expireAt;
+
+        Entry(Object value, GraphScope scope, long expireAt) {
+            this.value = value;
+            this.scope = scope;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.mininglamp.nebulamybatis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * {@link NebulaGraphCache} 的写入失效
+ * <p>
+ * 拦截 Executor.update，按 BoundSql 和参数值解析出写入的 tag / edge type 和 VID，
+ * 写入成功后通知全部 NebulaGraphCache 清除受影响的缓存项，并按语句所在 namespace 记录到当前线程，
+ * 使 commit 时 mybatis 对该 namespace 缓存的 clear 也只清除受影响的缓存项；commit、rollback、close 之后清空记录。
+ * 非 nebula 连接上的写入（如关系库）不涉及图数据，照常执行，不清除任何缓存项；
+ * flushCache="true" 的查询记录为全部，提交时该 namespace 的缓存仍然全部清除。
+ * 没有使用 NebulaGraphCache 时不生成代理。
+ *
+ * @author daiyi
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = Executor.class, method = "commit", args = boolean.class),
+        @Signature(type = Executor.class, method = "rollback", args = boolean.class),
+        @Signature(type = Executor.class, method = "close", args = boolean.class)
+})
+public class NebulaGraphCacheIntercept implements Interceptor {
+
+    private static final String UPDATE = "update";
+    private static final String QUERY = "query";
+    private static final String QUERY_CURSOR = "queryCursor";
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        String method = invocation.getMethod().getName();
+        if (UPDATE.equals(method)) {
+            return update(invocation);
+        }
+        if (QUERY.equals(method) || QUERY_CURSOR.equals(method)) {
+            MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+            if (mappedStatement.isFlushCacheRequired() && mappedStatement.getCache() != null) {
+                NebulaGraphCache.recordWrite(mappedStatement.getCache().getId(), GraphScope.ALL);
+            }
+            return invocation.proceed();
+        }
+        NebulaGraphCache.startCommit();
+        try {
+            return invocation.proceed();
+        } finally {
+            NebulaGraphCache.resetWrites();
+        }
+    }
+
+    private static Object update(Invocation invocation) throws Throwable {
+        Executor executor = (Executor) invocation.getTarget();
+        if (!StatementClassifier.isNebulaConnection(executor.getTransaction().getConnection())) {
+            return invocation.proceed();
+        }
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        Object parameterObject = invocation.getArgs()[1];
+        GraphScope write = scopeOf(mappedStatement, parameterObject);
+        // 先记录再执行，写入失败时 commit 的 clear 也不必清空整个缓存
+        if (mappedStatement.getCache() != null) {
+            NebulaGraphCache.recordWrite(mappedStatement.getCache().getId(), write);
+        }
+        Object result = invocation.proceed();
+        NebulaGraphCache.invalidateAll(write);
+        return result;
+    }
+
+    /**
+     * 与 DefaultParameterHandler 相同的方式取参数值
+     */
+    private static GraphScope scopeOf(MappedStatement mappedStatement, Object parameterObject) {
+        try {
+            BoundSql boundSql = mappedStatement.getBoundSql(parameterObject);
+            Configuration configuration = mappedStatement.getConfiguration();
+            List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+            List<Object> params = new ArrayList<>(parameterMappings.size());
+            MetaObject metaObject = null;
+            for (ParameterMapping parameterMapping : parameterMappings) {
+                if (parameterMapping.getMode() == ParameterMode.OUT) {
+                    continue;
+                }
+                String property = parameterMapping.getProperty();
+                Object value;
+                if (boundSql.hasAdditionalParameter(property)) {
+                    value = boundSql.getAdditionalParameter(property);
+                } else if (parameterObject == null) {
+                    value = null;
+                } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                    value = parameterObject;
+                } else {
+                    if (metaObject == null) {
+                        metaObject = configuration.newMetaObject(parameterObject);
+                    }
+                    value = metaObject.getValue(property);
+                }
+                params.add(value);
+            }
+            return GraphScope.ofWrite(boundSql.getSql(), params);
+        } catch (RuntimeException e) {
+            log.debug("无法解析写入范围，清除全部缓存：{}", mappedStatement.getId(), e);
+            return GraphScope.ALL;
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor && NebulaGraphCache.hasInstances() ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
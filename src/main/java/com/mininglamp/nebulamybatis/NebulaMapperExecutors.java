@@ -0,0 +1,112 @@
+package com.mininglamp.nebulamybatis;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步 mapper 的线程池
+ * <p>
+ * 默认为固定大小的线程池和有界队列，队列满时拒绝，由调用方感知背压；
+ * 开启虚拟线程且 JVM 支持（JDK 21+）时每个任务一个虚拟线程，同时执行的任务数不超过 poolSize + queueCapacity，超出时同样拒绝。
+ *
+ * @author daiyi
+ */
+@Slf4j
+final class NebulaMapperExecutors {
+
+    private static final String THREAD_NAME_PREFIX = "nebula-mapper-";
+
+    private NebulaMapperExecutors() {
+    }
+
+    static ExecutorService create(int poolSize, int queueCapacity, boolean virtualThreads) {
+        int threads = Math.max(1, poolSize);
+        int capacity = Math.max(1, queueCapacity);
+        if (virtualThreads) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) {
+                return new BoundedExecutorService(virtual, threads + capacity);
+            }
+            log.warn("当前 JVM 不支持虚拟线程，异步 mapper 使用普通线程池");
+        }
+        AtomicInteger index = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(capacity), runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 限制同时执行的任务数
+     */
+    private static final class BoundedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+        private final int limit;
+
+        BoundedExecutorService(ExecutorService delegate, int limit) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(limit);
+            this.limit = limit;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("异步 mapper 任务数已达上限 " + limit);
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.mininglamp.nebulamybatis;
+
+/**
+ * 一次结果映射的统计
+ * <p>
+ * 只在设置了 {@link NebulaMybatisMetrics} 时创建，由处理该次映射的线程独占，不做同步；
+ * 并行解码时每个分块单独统计，结束后合并。
+ *
+ * @author daiyi
+ */
+public final class NebulaMappingStats {
+
+    private long rows;
+    private long cells;
+    private long vertices;
+    private long edges;
+    private long paths;
+    private long fetchNanos;
+    private long decodeNanos;
+    private long populateNanos;
+
+    /**
+     * 读取的行数
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * 读取的单元格数（行数 × 列数）
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    public long getVertices() {
+        return vertices;
+    }
+
+    public long getEdges() {
+        return edges;
+    }
+
+    public long getPaths() {
+        return paths;
+    }
+
+    /**
+     * 从 ResultSet 读取值的耗时
+     */
+    public long getFetchNanos() {
+        return fetchNanos;
+    }
+
+    /**
+     * 把点/边/路径解码为行的耗时，不含写入对象的耗时；并行解码时为各分块耗时之和
+     */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * 生成对象并写入属性的耗时（直接映射为写入耗时，二次映射为 DefaultResultSetHandler 的耗时）
+     */
+    public long getPopulateNanos() {
+        return populateNanos;
+    }
+
+    void fetched(long rows, long cells, long nanos) {
+        this.rows += rows;
+        this.cells += cells;
+        this.fetchNanos += nanos;
+    }
+
+    void decoded(long nanos) {
+        this.decodeNanos += nanos;
+    }
+
+    /**
+     * 独立于解码阶段的写入耗时
+     */
+    void populated(long nanos) {
+        this.populateNanos += nanos;
+    }
+
+    /**
+     * 解码过程中发生的写入耗时，从解码耗时中扣除
+     */
+    void populatedDuringDecode(long nanos) {
+        this.populateNanos += nanos;
+        this.decodeNanos -= nanos;
+    }
+
+    void vertex() {
+        vertices++;
+    }
+
+    void edge() {
+        edges++;
+    }
+
+    void path() {
+        paths++;
+    }
+
+    void merge(NebulaMappingStats other) {
+        rows += other.rows;
+        cells += other.cells;
+        vertices += other.vertices;
+        edges += other.edges;
+        paths += other.paths;
+        fetchNanos += other.fetchNanos;
+        decodeNanos += other.decodeNanos;
+        populateNanos += other.populateNanos;
+    }
+}
@@ -1,21 +1,165 @@
 package com.mininglamp.nebulamybatis;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
+import java.nio.file.Paths;
+import java.util.concurrent.Executor;
 
 /**
  * @author zzh
  */
 @Configuration
 @ConditionalOnClass(DataSource.class)
+@EnableConfigurationProperties(NebulaMybatisProperties.class)
 public class NebulaMybatisAutoConfiguration {
 
     @Bean
-    public GraphResultSetIntercept graphResultSetIntercept() {
-        return new GraphResultSetIntercept();
+    public GraphResultSetIntercept graphResultSetIntercept(NebulaMybatisProperties properties,
+                                                           @Qualifier("nebulaDecodeExecutor") ObjectProvider<Executor> decodeExecutor,
+                                                           ObjectProvider<NebulaMybatisMetrics> metrics) {
+        GraphResultSetIntercept intercept = new GraphResultSetIntercept();
+        intercept.setDirectMapping(properties.isDirectMapping());
+        intercept.setLazyDecode(properties.isLazyDecode());
+        intercept.setInternStrings(properties.isInternStrings());
+        intercept.setInternCapacity(properties.getInternCapacity());
+        intercept.setParallelDecode(properties.isParallelDecode());
+        intercept.setParallelThreshold(properties.getParallelThreshold());
+        intercept.setParallelChunkSize(properties.getParallelChunkSize());
+        intercept.setResultRowBudget(properties.getResultRowBudget());
+        intercept.setResultByteBudget(properties.getResultByteBudget());
+        intercept.setResultOverBudget(properties.getResultOverBudget());
+        intercept.setResultRowBudgets(properties.getResultRowBudgets());
+        intercept.setResultByteBudgets(properties.getResultByteBudgets());
+        intercept.setResultOverBudgets(properties.getResultOverBudgets());
+        if (StringUtils.hasText(properties.getResultSpillDirectory())) {
+            intercept.setSpillDirectory(Paths.get(properties.getResultSpillDirectory()));
+        }
+        decodeExecutor.ifAvailable(intercept::setDecodeExecutor);
+        metrics.ifAvailable(intercept::setMetrics);
+        return intercept;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "nebula.mybatis", name = "batch-insert", havingValue = "true")
+    public NebulaBatchInsertIntercept nebulaBatchInsertIntercept(NebulaMybatisProperties properties) {
+        NebulaBatchInsertIntercept intercept = new NebulaBatchInsertIntercept();
+        intercept.setBatchSize(properties.getBatchInsertSize());
+        return intercept;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "nebula.mybatis", name = "projection-pushdown", havingValue = "true")
+    public NebulaProjectionIntercept nebulaProjectionIntercept(NebulaMybatisProperties properties) {
+        NebulaProjectionIntercept intercept = new NebulaProjectionIntercept();
+        intercept.setTagQualified(properties.isProjectionTagQualified());
+        return intercept;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "nebula.mybatis", name = "slow-statement", havingValue = "true")
+    public NebulaSlowStatementLog nebulaSlowStatementLog(NebulaMybatisProperties properties) {
+        return new NebulaSlowStatementLog(properties.getSlowStatementCapacity());
+    }
+
+    /**
+     * 可以声明 NebulaProfiler bean 替换默认的 PROFILE 采集
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "nebula.mybatis", name = "slow-statement", havingValue = "true")
+    public NebulaSlowStatementIntercept nebulaSlowStatementIntercept(NebulaMybatisProperties properties, NebulaSlowStatementLog slowLog,
+                                                                     ObjectProvider<NebulaProfiler> profiler) {
+        NebulaSlowStatementIntercept intercept = new NebulaSlowStatementIntercept(slowLog);
+        intercept.setThreshold(properties.getSlowStatementThreshold());
+        intercept.setThresholds(properties.getSlowStatementThresholds());
+        intercept.setSampleRate(properties.getSlowStatementSampleRate());
+        intercept.setProfileInterval(properties.getSlowStatementProfileInterval());
+        profiler.ifAvailable(intercept::setProfiler);
+        return intercept;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "nebula.mybatis", name = "ngql-templates", havingValue = "true")
+    public NebulaTemplateIntercept nebulaTemplateIntercept(NebulaMybatisProperties properties) {
+        NebulaTemplateIntercept intercept = new NebulaTemplateIntercept();
+        intercept.setCacheSize(properties.getNgqlTemplateCacheSize());
+        return intercept;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "nebula.mybatis", name = "coalesce-queries", havingValue = "true")
+    public NebulaCoalescingIntercept nebulaCoalescingIntercept(NebulaMybatisProperties properties) {
+        NebulaCoalescingIntercept intercept = new NebulaCoalescingIntercept();
+        intercept.setReadOnly(properties.isCoalesceReadOnly());
+        return intercept;
+    }
+
+    /**
+     * 只处理参数中有 NebulaPageRequest 的查询
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "nebula.mybatis", name = "keyset-paging", havingValue = "true")
+    public NebulaPageIntercept nebulaPageIntercept() {
+        return new NebulaPageIntercept();
+    }
+
+    /**
+     * 没有 mapper 使用 NebulaGraphCache 时不生成代理
+     */
+    @Bean
+    public NebulaGraphCacheIntercept nebulaGraphCacheIntercept() {
+        return new NebulaGraphCacheIntercept();
+    }
+
+    /**
+     * BeanPostProcessor 使用静态方法注册，避免提前初始化配置类。
+     * 默认线程池由 post-processor 自行创建，不注册为 Executor bean，不影响 Spring Boot 的 applicationTaskExecutor
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "nebula.mybatis", name = "async", havingValue = "true")
+    public static NebulaAsyncMapperPostProcessor nebulaAsyncMapperPostProcessor(@Qualifier("nebulaMapperExecutor") ObjectProvider<Executor> executor,
+                                                                                ObjectProvider<NebulaMybatisProperties> properties) {
+        return new NebulaAsyncMapperPostProcessor(executor, properties);
+    }
+
+    /**
+     * 全部单例创建完成后，对注册了拦截器的 SqlSessionFactory 预先分类语句
+     */
+    @Bean
+    public SmartInitializingSingleton graphResultSetInterceptWarmUp(NebulaMybatisProperties properties,
+                                                                    GraphResultSetIntercept intercept,
+                                                                    ObjectProvider<SqlSessionFactory> sqlSessionFactories) {
+        return () -> {
+            if (properties.isWarmUp()) {
+                sqlSessionFactories.orderedStream().forEach(factory -> intercept.warmUp(factory.getConfiguration()));
+            }
+        };
+    }
+
+    /**
+     * classpath 中有 Micrometer 时注册结果映射指标，没有 MeterRegistry bean 时使用全局注册表
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    static class MicrometerMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(NebulaMybatisMetrics.class)
+        public NebulaMybatisMetrics nebulaMybatisMetrics(ObjectProvider<MeterRegistry> registry) {
+            return new MicrometerNebulaMybatisMetrics(registry.getIfAvailable(() -> Metrics.globalRegistry));
+        }
     }
 
 }
@@ -0,0 +1,65 @@
+package com.mininglamp.nebulamybatis;
+
+/**
+ * 结果映射指标
+ * <p>
+ * 拦截器每完成一次映射调用一次 {@link #record}，未设置时拦截器不做任何统计。
+ * classpath 中有 Micrometer 时由自动配置注册 {@link MicrometerNebulaMybatisMetrics}，也可以自行实现。
+ *
+ * @author daiyi
+ */
+public interface NebulaMybatisMetrics {
+
+    /**
+     * 记录一次映射
+     *
+     * @param statementId MappedStatement id
+     * @param mode        映射方式
+     * @param stats       统计，{@link Mode#FALLBACK} 时为 null
+     */
+    void record(String statementId, Mode mode, NebulaMappingStats stats);
+
+    /**
+     * 映射方式
+     */
+    enum Mode {
+        /**
+         * 拦截器直接映射为对象
+         */
+        DIRECT("direct"),
+        /**
+         * 写入列式结果集后交给 DefaultResultSetHandler 映射，需要额外保存全部行
+         */
+        TWO_PASS("two-pass"),
+        /**
+         * 并行解码，需要先读取并保存全部行
+         */
+        PARALLEL("parallel"),
+        /**
+         * Cursor 逐行映射，关闭游标时记录
+         */
+        CURSOR("cursor"),
+        /**
+         * ResultHandler 逐行映射
+         */
+        RESULT_HANDLER("result-handler"),
+        /**
+         * 结果不是点/边/路径，交回 mybatis 默认处理（invocation.proceed()）
+         */
+        FALLBACK("fallback"),
+        /**
+         * 超出结果预算，溢出到内存映射文件后交给 DefaultResultSetHandler 映射
+         */
+        SPILL("spill");
+
+        private final String tag;
+
+        Mode(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.mininglamp.nebulamybatis;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * nebula-mybatis 配置项，前缀 nebula.mybatis
+ *
+ * @author daiyi
+ */
+@Data
+@ConfigurationProperties(prefix = "nebula.mybatis")
+public class NebulaMybatisProperties {
+
+    /**
+     * 直接映射模式：点/边结果由拦截器一遍映射到对象，不再交给 DefaultResultSetHandler 二次映射。
+     * 仅对没有嵌套映射、构造器映射、鉴别器的 ResultMap 生效
+     */
+    private boolean directMapping = false;
+
+    /**
+     * 延迟解码：直接映射模式下返回返回类型的 cglib 子类，只保存点/边的原始值，属性在第一次调用 getter 时才转换。
+     * 适合属性很多、只读取其中少数属性的宽 tag；返回类型需要有非 private 的无参构造器且不是 final
+     */
+    private boolean lazyDecode = false;
+
+    /**
+     * 字符串驻留：同一个结果集中重复的 VID 和短字符串属性只解码一次，共用同一个 String 实例。
+     * 适合大量行指向少数几个点、字符串属性基数低的扇出查询
+     */
+    private boolean internStrings = false;
+
+    /**
+     * 每个结果集最多驻留的字符串个数
+     */
+    private int internCapacity = 4096;
+
+    /**
+     * 结果预算：每次查询的最大行数，0 表示不限制。映射前检查结果集，用于拦住缺少 LIMIT 的大查询
+     */
+    private long resultRowBudget = 0L;
+
+    /**
+     * 结果预算：每次查询的值的最大估算字节数（按 nebula 值编码后的大小、从抽样的行推算），0 表示不限制
+     */
+    private long resultByteBudget = 0L;
+
+    /**
+     * 超出结果预算时的处理方式：FAIL 抛出 NebulaResultTooLargeException；
+     * SPILL 只允许 Cursor、ResultHandler 查询继续逐行读取，需要二次映射时点/边写入临时文件、通过内存映射逐行交给 mybatis；
+     * 返回 List 的查询、多个 ResultMap、NebulaAdjacency、路径结果仍然失败
+     */
+    private NebulaOverBudget resultOverBudget = NebulaOverBudget.FAIL;
+
+    /**
+     * 单独设置的最大行数：MappedStatement id 或 mapper 命名空间 -> 行数
+     */
+    private Map<String, Long> resultRowBudgets = new HashMap<>();
+
+    /**
+     * 单独设置的最大估算字节数：MappedStatement id 或 mapper 命名空间 -> 字节数
+     */
+    private Map<String, Long> resultByteBudgets = new HashMap<>();
+
+    /**
+     * 单独设置的超出预算处理方式：MappedStatement id 或 mapper 命名空间 -> FAIL / SPILL
+     */
+    private Map<String, NebulaOverBudget> resultOverBudgets = new HashMap<>();
+
+    /**
+     * 溢出文件的目录，为空时使用系统临时目录
+     */
+    private String resultSpillDirectory;
+
+    /**
+     * 并行解码：直接映射模式下，行数达到 parallelThreshold 时分块并行映射，结果顺序不变。
+     * 默认使用 ForkJoinPool.commonPool()，可以声明名为 nebulaDecodeExecutor 的 Executor bean 替换
+     */
+    private boolean parallelDecode = false;
+
+    /**
+     * 开启并行解码的最小行数
+     */
+    private int parallelThreshold = 10000;
+
+    /**
+     * 并行解码时每块的行数
+     */
+    private int parallelChunkSize = 2048;
+
+    /**
+     * 启动时预先分类全部 MappedStatement 并构建映射计划。
+     * 非 nebula 数据源、标量结果的语句不再生成拦截器代理；关闭后在首次查询时按需分类
+     */
+    private boolean warmUp = true;
+
+    /**
+     * RETURN 投影下推：MATCH ... RETURN v / RETURN e 按 ResultMap 的列改写为属性投影，只传输、解码映射用到的属性
+     */
+    private boolean projectionPushdown = false;
+
+    /**
+     * 投影下推时点属性带 tag 限定（v.t.a，nebula 3.x 语法），关闭后为 v.a（nebula 2.x 语法）
+     */
+    private boolean projectionTagQualified = true;
+
+    /**
+     * BATCH 模式批量写入：同一 tag / edge type 的 INSERT 合并为多值语句，其余写入以分号连接后一次请求执行
+     */
+    private boolean batchInsert = false;
+
+    /**
+     * 批量写入时每条合并语句的最大行数
+     */
+    private int batchInsertSize = 500;
+
+    /**
+     * 支持返回 CompletableFuture 的 mapper 方法，在线程池中执行对应的语句
+     */
+    private boolean async = false;
+
+    /**
+     * 返回 CompletableFuture 的 mapper 方法使用的线程数。
+     * 可以声明名为 nebulaMapperExecutor 的 Executor bean 替换默认线程池
+     */
+    private int asyncPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 异步 mapper 线程池的队列长度，队列满时 CompletableFuture 以 RejectedExecutionException 失败
+     */
+    private int asyncQueueCapacity = 1024;
+
+    /**
+     * 异步 mapper 使用虚拟线程（需要 JDK 21+，不支持时使用普通线程池），
+     * 同时执行的任务数不超过 asyncPoolSize + asyncQueueCapacity
+     */
+    private boolean asyncVirtualThreads = false;
+
+    /**
+     * 键集分页：参数中有 NebulaPageRequest 的 MATCH 查询改写为按 VID 的键集分页，返回 NebulaPage
+     */
+    private boolean keysetPaging = false;
+
+    /**
+     * nGQL 模板渲染：语句编译为缓存的模板，参数按类型直接渲染为 nGQL 字面量，不再由驱动逐个转义、扫描替换。
+     * 同时支持 List、Set、数组参数，IN #{ids} 渲染为列表字面量，GO FROM #{ids} 渲染为逗号分隔的 VID
+     */
+    private boolean ngqlTemplates = false;
+
+    /**
+     * 最多缓存的 nGQL 模板数
+     */
+    private int ngqlTemplateCacheSize = 1024;
+
+    /**
+     * 合并同时执行的相同查询（MappedStatement id、SQL 和参数值相同），只执行一次，结果分发给全部等待方
+     */
+    private boolean coalesceQueries = false;
+
+    /**
+     * 合并查询的等待方与执行方共享结果对象；关闭时结果序列化后为每个等待方复制一份，结果不能序列化的语句之后不再合并
+     */
+    private boolean coalesceReadOnly = false;
+
+    /**
+     * 慢语句采集：耗时达到阈值的语句记录到 NebulaSlowStatementLog（可注入后导出为 JSON），
+     * 包括 graphd 执行、网络、结果映射的耗时拆分，抽样的查询在后台重新执行 PROFILE 取得执行计划
+     */
+    private boolean slowStatement = false;
+
+    /**
+     * 慢语句阈值，毫秒
+     */
+    private long slowStatementThreshold = 1000L;
+
+    /**
+     * 单独设置的慢语句阈值：MappedStatement id 或 mapper 命名空间 -> 毫秒
+     */
+    private Map<String, Long> slowStatementThresholds = new HashMap<>();
+
+    /**
+     * 慢查询重新执行 PROFILE 的比例，0 ~ 1，默认不执行；PROFILE 会在 graphd 上再次完整执行语句，并占用一个连接
+     */
+    private double slowStatementSampleRate = 0D;
+
+    /**
+     * 同一个 MappedStatement 两次 PROFILE 的最小间隔，毫秒
+     */
+    private long slowStatementProfileInterval = 60000L;
+
+    /**
+     * 最多保留的慢语句条数
+     */
+    private int slowStatementCapacity = 256;
+
+}
@@ -0,0 +1,19 @@
+package com.mininglamp.nebulamybatis;
+
+/**
+ * 结果超出行数、字节预算时的处理方式
+ *
+ * @author daiyi
+ */
+public enum NebulaOverBudget {
+    /**
+     * 抛出 {@link NebulaResultTooLargeException}，不做映射
+     */
+    FAIL,
+    /**
+     * Cursor、ResultHandler 查询继续逐行交给调用方，需要 mybatis 二次映射时按映射计划的列编码后写入临时文件，
+     * 映射时通过内存映射逐行读回，见 {@link NebulaSpilledResultSet}；返回 List 的查询仍然抛出
+     * {@link NebulaResultTooLargeException}，映射后的对象全部在堆上，溢出无法减少内存
+     */
+    SPILL
+}
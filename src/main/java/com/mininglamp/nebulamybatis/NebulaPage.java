@@ -0,0 +1,54 @@
+package com.mininglamp.nebulamybatis;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 键集分页的一页结果，见 {@link NebulaPageRequest}
+ *
+ * @author daiyi
+ */
+public final class NebulaPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+    private final int size;
+
+    NebulaPage(List<T> items, String nextCursor, int size) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+        this.size = size;
+    }
+
+    /**
+     * 本页的对象，按 VID（边为起点、终点、rank）升序
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * 下一页的游标，取自本页最后一行；没有下一页时为 null
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * 下一页的分页参数，每页行数与本页相同
+     *
+     * @return 没有下一页时返回 null
+     */
+    public NebulaPageRequest next() {
+        return nextCursor == null ? null : NebulaPageRequest.after(nextCursor, size);
+    }
+
+    @Override
+    public String toString() {
+        return "NebulaPage(items=" + items + ", nextCursor=" + nextCursor + ")";
+    }
+}
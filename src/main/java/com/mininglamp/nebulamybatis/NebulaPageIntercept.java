@@ -0,0 +1,97 @@
+package com.mininglamp.nebulamybatis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 键集分页
+ * <p>
+ * 参数中有 {@link NebulaPageRequest} 的查询，在 Executor.query 时把语句改写为键集分页（见 {@link KeysetPage}），
+ * 用改写后的 BoundSql 执行：去掉的 SKIP、LIMIT 占位符不再绑定，一级、二级缓存的 key 包含游标。
+ * 改写结果放入 BoundSql 的附加参数，{@link GraphResultSetIntercept} 按每页行数截取结果，
+ * 用最后一行的点/边生成下一页的游标，返回只有一个 {@link NebulaPage} 的列表，mapper 方法的返回类型需要声明为 NebulaPage。
+ * <p>
+ * 无法改写的语句抛出异常，不会退回 SKIP 分页。需要同时注册 GraphResultSetIntercept。
+ *
+ * @author daiyi
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+})
+public class NebulaPageIntercept implements Interceptor {
+
+    /**
+     * BoundSql 附加参数名，值为 {@link KeysetPage}
+     */
+    static final String PAGE_PARAMETER = "_nebula_page";
+
+    /**
+     * BoundSql 中私有字段的 getter，只反射一次
+     */
+    private static final MethodHandle ADDITIONAL_PARAMETERS_GETTER;
+
+    static {
+        try {
+            Field additionalParameters = BoundSql.class.getDeclaredField("additionalParameters");
+            additionalParameters.setAccessible(true);
+            ADDITIONAL_PARAMETERS_GETTER = MethodHandles.lookup().unreflectGetter(additionalParameters);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement mappedStatement = (MappedStatement) args[0];
+        Object parameterObject = args[1];
+        NebulaPageRequest request = NebulaPageRequest.find(parameterObject);
+        if (request == null) {
+            return invocation.proceed();
+        }
+        BoundSql boundSql = mappedStatement.getBoundSql(parameterObject);
+        KeysetPage page = KeysetPage.rewrite(boundSql.getSql(), request);
+        if (page == null) {
+            throw new IllegalArgumentException("语句 " + mappedStatement.getId() + " 无法改写为键集分页，"
+                    + "需要是只有一个 MATCH 子句、RETURN 单个点或单一类型边变量的查询：" + boundSql.getSql());
+        }
+        log.debug("语句 {} 改写为键集分页：{}", mappedStatement.getId(), page.getSql());
+        List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+        List<ParameterMapping> pageMappings = new ArrayList<>(parameterMappings.subList(0, parameterMappings.size() - page.getRemovedParameters()));
+        BoundSql pageSql = new BoundSql(mappedStatement.getConfiguration(), page.getSql(), pageMappings, parameterObject);
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) ADDITIONAL_PARAMETERS_GETTER.invoke(boundSql)).entrySet()) {
+            pageSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+        }
+        pageSql.setAdditionalParameter(PAGE_PARAMETER, page);
+        Executor executor = (Executor) invocation.getTarget();
+        RowBounds rowBounds = (RowBounds) args[2];
+        CacheKey cacheKey = executor.createCacheKey(mappedStatement, parameterObject, rowBounds, pageSql);
+        return executor.query(mappedStatement, parameterObject, rowBounds, (ResultHandler<?>) args[3], cacheKey, pageSql);
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
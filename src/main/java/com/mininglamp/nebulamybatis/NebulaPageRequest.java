@@ -0,0 +1,92 @@
+package com.mininglamp.nebulamybatis;
+
+import java.util.Map;
+
+/**
+ * 键集分页参数
+ * <p>
+ * 作为 mapper 方法的参数（或多个参数之一）传入，返回类型声明为 {@link NebulaPage}，例如
+ * {@code NebulaPage<Player> listPlayers(@Param("page") NebulaPageRequest page, @Param("age") int age)}。
+ * 语句中原有的 {@code SKIP ... LIMIT ...} 会被 {@link NebulaPageIntercept} 去掉，改为从上一页最后一行的 VID（边为起点、终点、rank）
+ * 之后按顺序取 size 行，见 {@link KeysetPage}。第一页使用 {@link #first(int)}，之后使用上一页返回的
+ * {@link NebulaPage#getNextCursor()}。
+ * <p>
+ * 需要注册 NebulaPageIntercept，使用自动配置时设置 {@code nebula.mybatis.keyset-paging=true}。
+ *
+ * @author daiyi
+ */
+public final class NebulaPageRequest {
+
+    private final String cursor;
+    private final int size;
+    /**
+     * 游标解析出的键：点为 VID，边为起点、终点、rank；第一页为 null
+     */
+    private final KeysetPage.Key key;
+
+    private NebulaPageRequest(String cursor, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("分页大小必须大于 0：" + size);
+        }
+        this.cursor = cursor;
+        this.size = size;
+        this.key = cursor == null ? null : KeysetPage.Key.decode(cursor);
+    }
+
+    /**
+     * 第一页
+     *
+     * @param size 每页行数
+     */
+    public static NebulaPageRequest first(int size) {
+        return new NebulaPageRequest(null, size);
+    }
+
+    /**
+     * 游标之后的一页
+     *
+     * @param cursor 上一页的 {@link NebulaPage#getNextCursor()}，为 null 时为第一页
+     * @param size   每页行数
+     * @throws IllegalArgumentException 游标无效
+     */
+    public static NebulaPageRequest after(String cursor, int size) {
+        return new NebulaPageRequest(cursor, size);
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    KeysetPage.Key getKey() {
+        return key;
+    }
+
+    /**
+     * 从 mapper 参数中查找分页参数
+     *
+     * @param parameterObject mapper 参数，多个参数时为 ParamMap
+     * @return 没有分页参数时返回 null
+     */
+    static NebulaPageRequest find(Object parameterObject) {
+        if (parameterObject instanceof NebulaPageRequest) {
+            return (NebulaPageRequest) parameterObject;
+        }
+        if (parameterObject instanceof Map) {
+            for (Object value : ((Map<?, ?>) parameterObject).values()) {
+                if (value instanceof NebulaPageRequest) {
+                    return (NebulaPageRequest) value;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "NebulaPageRequest(cursor=" + cursor + ", size=" + size + ")";
+    }
+}
@@ -0,0 +1,28 @@
+package com.mininglamp.nebulamybatis;
+
+import org.apache.ibatis.session.Configuration;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 慢语句的执行计划采集
+ * <p>
+ * {@link NebulaSlowStatementIntercept} 在后台线程调用。默认实现从 mybatis 环境的 DataSource 取连接，
+ * 以 {@code PROFILE FORMAT="row"} 重新执行语句；测试中可以替换为本地实现，不访问 graphd。
+ *
+ * @author daiyi
+ */
+@FunctionalInterface
+public interface NebulaProfiler {
+
+    /**
+     * 采集执行计划
+     *
+     * @param configuration 语句所属的 mybatis 配置
+     * @param ngql          已替换占位符的 nGQL
+     * @return 执行计划的每一行，列名 -> 值
+     * @throws Exception 采集失败，记录到慢语句的 profileError
+     */
+    List<Map<String, String>> profile(Configuration configuration, String ngql) throws Exception;
+}
@@ -0,0 +1,138 @@
+package com.mininglamp.nebulamybatis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * RETURN 投影下推
+ * <p>
+ * {@code MATCH ... RETURN v} 会让 graphd 序列化点的全部属性，而 ResultMap 只用到其中几列。
+ * 该拦截器在 {@link StatementHandler#prepare(Connection, Integer)} 前按 ResultMap 的列把 RETURN 改写为属性投影
+ * （见 {@link ReturnProjection}），并把投影放入 BoundSql 的附加参数；{@link GraphResultSetIntercept} 把投影的每一行
+ * 按原来的列映射解码，返回对象与改写前一致。没有注册 GraphResultSetIntercept 时，投影列的别名与 ResultMap 的列相同，
+ * mybatis 也能直接映射。
+ * <p>
+ * 只处理 nebula 连接上、ResultMap 支持直接映射（没有嵌套映射、构造器映射、鉴别器）的查询，无法安全解析的语句保持不变。
+ *
+ * @author daiyi
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})
+})
+public class NebulaProjectionIntercept implements Interceptor {
+
+    /**
+     * BoundSql 附加参数名，值为 {@link ReturnProjection}
+     */
+    static final String PROJECTION_PARAMETER = "_nebula_projection";
+
+    /**
+     * mybatis 中私有字段的 setter，只反射一次
+     */
+    private static final MethodHandle SQL_SETTER;
+
+    static {
+        try {
+            Field sql = BoundSql.class.getDeclaredField("sql");
+            sql.setAccessible(true);
+            SQL_SETTER = MethodHandles.lookup().unreflectSetter(sql);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 点属性带 tag 限定（v.t.a，nebula 3.x 语法），关闭后为 v.a（nebula 2.x 语法）
+     */
+    private boolean tagQualified = true;
+
+    /**
+     * 映射计划缓存：MappedStatement -> 映射计划，按对象本身区分，多个 Configuration 中同名的语句互不影响
+     */
+    private final ConcurrentMap<MappedStatement, MappingPlan> planCache = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        StatementHandler handler = (StatementHandler) invocation.getTarget();
+        Connection connection = (Connection) invocation.getArgs()[0];
+        MappedStatement mappedStatement = StatementHandlers.getMappedStatement(handler);
+        if (mappedStatement == null || !StatementClassifier.isNebulaConnection(connection)) {
+            return invocation.proceed();
+        }
+        MappingPlan plan = getPlan(mappedStatement);
+        BoundSql boundSql = handler.getBoundSql();
+        // 键集分页改写后的语句按 VID 排序、取下一页的游标，需要 RETURN 整个点/边，不再投影
+        if (plan.isDirectMappingSupported() && !boundSql.hasAdditionalParameter(PROJECTION_PARAMETER)
+                && !boundSql.hasAdditionalParameter(NebulaPageIntercept.PAGE_PARAMETER)) {
+            ReturnProjection projection = ReturnProjection.rewrite(boundSql.getSql(), plan.getColumns(), tagQualified);
+            if (projection != null) {
+                log.debug("语句 {} RETURN 改写为投影：{}", mappedStatement.getId(), projection.getSql());
+                SQL_SETTER.invoke(boundSql, projection.getSql());
+                boundSql.setAdditionalParameter(PROJECTION_PARAMETER, projection);
+            }
+        }
+        return invocation.proceed();
+    }
+
+    /**
+     * 只代理查询语句的 StatementHandler
+     */
+    @Override
+    public Object plugin(Object target) {
+        if (!(target instanceof StatementHandler)) {
+            return target;
+        }
+        try {
+            MappedStatement mappedStatement = StatementHandlers.getMappedStatement((StatementHandler) target);
+            // 已被其他插件代理时无法判断，仍然代理
+            if (mappedStatement != null && (mappedStatement.getSqlCommandType() != SqlCommandType.SELECT
+                    || !getPlan(mappedStatement).isDirectMappingSupported())) {
+                return target;
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        return Plugin.wrap(target, this);
+    }
+
+    private MappingPlan getPlan(MappedStatement mappedStatement) {
+        MappingPlan plan = planCache.get(mappedStatement);
+        if (plan == null) {
+            plan = planCache.computeIfAbsent(mappedStatement, statement -> {
+                try {
+                    return MappingPlan.compile(statement);
+                } catch (RuntimeException e) {
+                    // 无法构建映射计划的语句不改写
+                    return MappingPlan.NONE;
+                }
+            });
+        }
+        return plan;
+    }
+
+    public boolean isTagQualified() {
+        return tagQualified;
+    }
+
+    public void setTagQualified(boolean tagQualified) {
+        this.tagQualified = tagQualified;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        tagQualified = Boolean.parseBoolean(properties.getProperty("tagQualified", String.valueOf(tagQualified)));
+    }
+}
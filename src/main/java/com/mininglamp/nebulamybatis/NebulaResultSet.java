@@ -1,28 +1,22 @@
 package com.mininglamp.nebulamybatis;
 
 import com.vesoft.nebula.client.graph.data.ResultSet;
-import com.vesoft.nebula.client.graph.data.TimeWrapper;
 import com.vesoft.nebula.client.graph.data.ValueWrapper;
-import com.vesoft.nebula.jdbc.BaseResultSet;
-import com.vesoft.nebula.jdbc.NebulaResultSetMetaData;
 
-import java.io.UnsupportedEncodingException;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /**
  * @author Wang Xiaofeng
  */
-public class NebulaResultSet implements BaseResultSet {
+public class NebulaResultSet extends AbstractNebulaResultSet {
 
     private int cursor;
     private int size;
     private ResultSet.Record curRecord;
     private List<ResultSet.Record> recordList;
     private List<String> columnNames;
-    private int cols;
+    private Map<String, Integer> columnIndex;
     private boolean isClosed;
 
     public NebulaResultSet(int size, List<String> columnNames, List<ResultSet.Record> recordList) {
@@ -32,7 +26,10 @@ public class NebulaResultSet implements BaseResultSet {
         if (columnNames == null) {
             this.columnNames = Collections.emptyList();
         }
-        this.cols = columnNames.size();
+        this.columnIndex = new HashMap<>(this.columnNames.size() * 2);
+        for (int i = 0; i < this.columnNames.size(); i++) {
+            this.columnIndex.putIfAbsent(this.columnNames.get(i), i);
+        }
         this.recordList = new ArrayList<>(recordList);
     }
 
@@ -57,177 +54,20 @@ public class NebulaResultSet implements BaseResultSet {
     }
 
     @Override
-    public boolean wasNull() throws SQLException {
-        return curRecord.get(cols - 1) == null;
-    }
-
-    @Override
-    public String getString(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        if (value.isNull() || value.isEmpty()) {
-            return null;
-        }
-        try {
-            return value.isString() ? value.asString() : value.toString();
-        } catch (UnsupportedEncodingException e) {
-            throw new SQLException(e);
-        }
-    }
-
-    @Override
-    public boolean getBoolean(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        return !value.isNull() && !value.isEmpty() && value.asBoolean();
-    }
-
-    @Override
-    public short getShort(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        return value.isNull() || value.isEmpty() ? 0 : (short) value.asLong();
-    }
-
-    @Override
-    public int getInt(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        return value.isNull() || value.isEmpty() ? 0 : (int) value.asLong();
-    }
-
-    @Override
-    public long getLong(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        return value.isNull() || value.isEmpty() ? 0 : value.asLong();
-    }
-
-    @Override
-    public float getFloat(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        return value.isNull() || value.isEmpty() ? 0 : (float) value.asDouble();
-    }
-
-    @Override
-    public double getDouble(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        return value.isNull() || value.isEmpty() ? 0 : value.asDouble();
-    }
-
-    @Override
-    public Date getDate(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        return value.isNull() || value.isEmpty() ? null : Date.valueOf(value.asDate().toString());
-    }
-
-    @Override
-    public Time getTime(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        final TimeWrapper wrapper = value.asTime();
-        return value.isNull() || value.isEmpty() ? null : new Time(wrapper.getHour(), wrapper.getMinute(), wrapper.getSecond());
-    }
-
-    @Override
-    public Time getTime(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        final TimeWrapper wrapper = value.asTime();
-        return value.isNull() || value.isEmpty() ? null : new Time(wrapper.getHour(), wrapper.getMinute(), wrapper.getSecond());
-    }
-
-    @Override
-    public Date getDate(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        return value.isNull() || value.isEmpty() ? null : Date.valueOf(value.asDate().toString());
-    }
-
-    @Override
-    public Timestamp getTimestamp(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        return value.isNull() || value.isEmpty() ? null : new Timestamp(value.asLong() * 1000);
-    }
-
-    @Override
-    public Timestamp getTimestamp(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        return value.isNull() || value.isEmpty() ? null : new Timestamp(value.asLong() * 1000);
-    }
-
-    @Override
-    public String getString(String columnLabel) throws SQLException {
-        try {
-            final ValueWrapper value = curRecord.get(columnLabel);
-            return value.isNull() || value.isEmpty() ? null : value.asString();
-        } catch (UnsupportedEncodingException e) {
-            throw new SQLException(e);
-        }
-    }
-
-    @Override
-    public boolean getBoolean(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        return !value.isNull() && !value.isEmpty() && value.asBoolean();
-    }
-
-    @Override
-    public short getShort(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        return value.isNull() || value.isEmpty() ? 0 : (short) value.asLong();
-    }
-
-    @Override
-    public int getInt(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        return value.isNull() || value.isEmpty() ? 0 : (int) value.asLong();
-    }
-
-    @Override
-    public long getLong(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        return value.isNull() || value.isEmpty() ? 0 : value.asLong();
-    }
-
-    @Override
-    public float getFloat(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        return value.isNull() || value.isEmpty() ? 0 : (float) value.asDouble();
-    }
-
-    @Override
-    public double getDouble(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        return value.isNull() || value.isEmpty() ? 0 : value.asDouble();
-    }
-
-    @Override
-    public ResultSetMetaData getMetaData() throws SQLException {
-        return new NebulaResultSetMetaData(this);
-    }
-
-    /**
-     * cast to {@link ValueWrapper}
-     *
-     * @param columnIndex index of column
-     * @return {@link ValueWrapper}
-     * @throws SQLException
-     */
-    @Override
-    public Object getObject(int columnIndex) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnIndex - 1);
-        return value.isNull() || value.isEmpty() ? null : value;
+    protected ValueWrapper value(int columnIndex) throws SQLException {
+        return curRecord.get(columnIndex - 1);
     }
 
-    /**
-     * cast to {@link ValueWrapper}
-     *
-     * @param columnLabel name of column
-     * @return {@link ValueWrapper}
-     * @throws SQLException
-     */
     @Override
-    public Object getObject(String columnLabel) throws SQLException {
-        final ValueWrapper value = curRecord.get(columnLabel);
-        return value.isNull() || value.isEmpty() ? null : value;
+    protected ValueWrapper value(String columnLabel) throws SQLException {
+        Integer index = columnIndex.get(columnLabel);
+        return index == null ? curRecord.get(columnLabel) : curRecord.get(index);
     }
 
     @Override
     public int findColumn(String columnLabel) throws SQLException {
-        return columnNames.indexOf(columnLabel) + 1;
+        Integer index = columnIndex.get(columnLabel);
+        return index == null ? 0 : index + 1;
     }
 
     @Override
@@ -0,0 +1,50 @@
+package com.mininglamp.nebulamybatis;
+
+import java.sql.SQLException;
+
+/**
+ * 查询结果超出行数或字节预算
+ * <p>
+ * 行数是结果的总行数；字节数是抽样推算的估算值，行数已经超出时不再估算。
+ * 不是 nebula-jdbc 的结果集时逐行扫描，超出预算后不再继续统计，行数、字节数是发现超出时的值。
+ *
+ * @author daiyi
+ */
+public class NebulaResultTooLargeException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String statementId;
+    private final long rows;
+    private final long bytes;
+
+    NebulaResultTooLargeException(String statementId, long rows, long bytes, long maxRows, long maxBytes, String reason) {
+        super(String.format("语句 %s 的结果超出预算（行数上限 %s，字节上限 %s）：已检查 %d 行、约 %d 字节%s", statementId,
+                maxRows > 0 ? String.valueOf(maxRows) : "无", maxBytes > 0 ? String.valueOf(maxBytes) : "无", rows, bytes,
+                reason == null ? "" : "，" + reason));
+        this.statementId = statementId;
+        this.rows = rows;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return 超出预算的 MappedStatement id
+     */
+    public String getStatementId() {
+        return statementId;
+    }
+
+    /**
+     * @return 结果的行数，逐行扫描时为发现超出时已读取的行数
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return 值的估算字节数，逐行扫描时为发现超出时已读取的部分
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,520 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.client.graph.data.Node;
+import com.vesoft.nebula.client.graph.data.PathWrapper;
+import com.vesoft.nebula.client.graph.data.Relationship;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * nebula 行解码器
+ * <p>
+ * 按映射计划把一个点/边/路径解码为列式结果集的一行或返回对象，一次查询一个实例（持有复用的单行视图，非线程安全）。
+ * 列表、游标、ResultHandler、并行解码几种返回方式共用同一套解码逻辑。
+ *
+ * @author daiyi
+ */
+@Slf4j
+final class NebulaRowDecoder {
+
+    private final MappingPlan plan;
+    private final String[] columns;
+    /**
+     * 统计，未开启指标时为 null
+     */
+    private final NebulaMappingStats stats;
+    /**
+     * 延迟解码工厂，未开启延迟解码或返回类型不支持时为 null
+     */
+    private final LazyBeanFactory lazyBeans;
+    /**
+     * RETURN 投影，结果每行是按映射计划列顺序排列的属性值；未投影时为 null
+     */
+    private final ReturnProjection projection;
+    private final boolean lazyDecode;
+    /**
+     * 字符串驻留表，未开启时为 null
+     */
+    private final StringInterner interner;
+    /**
+     * 按 _tag 鉴别时各 case 的解码器，按需生成
+     */
+    private Map<MappingPlan, NebulaRowDecoder> caseDecoders;
+    private NebulaRowResultSet rowView;
+    private Object[] cellBuffer;
+
+    /**
+     * @param plan       映射计划
+     * @param stats      统计，未开启指标时为 null
+     * @param lazyDecode 直接映射时返回延迟解码的对象，见 {@link LazyBeanFactory}
+     * @param projection RETURN 投影，见 {@link NebulaProjectionIntercept}；未投影时为 null
+     * @param interner   字符串驻留表，见 {@link StringInterner}；未开启时为 null
+     */
+    NebulaRowDecoder(MappingPlan plan, NebulaMappingStats stats, boolean lazyDecode, ReturnProjection projection,
+                     StringInterner interner) {
+        this.plan = plan;
+        this.columns = plan.getColumns();
+        this.stats = stats;
+        this.lazyBeans = lazyDecode && plan.isDirectMappingSupported() ? plan.getLazyBeanFactory() : null;
+        this.projection = projection;
+        this.lazyDecode = lazyDecode;
+        this.interner = interner;
+    }
+
+    MappingPlan getPlan() {
+        return plan;
+    }
+
+    NebulaMappingStats getStats() {
+        return stats;
+    }
+
+    StringInterner getInterner() {
+        return interner;
+    }
+
+    /**
+     * 点追加到列式结果集或溢出文件，交给 DefaultResultSetHandler 映射
+     *
+     * @param node 点
+     * @param sink 列式结果集或溢出文件，列与映射计划一致
+     * @throws UnsupportedEncodingException
+     * @throws SQLException                 写入溢出文件失败
+     */
+    void appendVertex(Node node, RowSink sink) throws UnsupportedEncodingException, SQLException {
+        if (stats != null) {
+            stats.vertex();
+        }
+        sink.append(fillVertex(node), node.getDecodeType(), node.getTimezoneOffset());
+    }
+
+    /**
+     * 边追加到列式结果集或溢出文件，交给 DefaultResultSetHandler 映射
+     *
+     * @param relationship 边
+     * @param sink         列式结果集或溢出文件，列与映射计划一致
+     * @throws UnsupportedEncodingException
+     * @throws SQLException                 写入溢出文件失败
+     */
+    void appendEdge(Relationship relationship, RowSink sink) throws UnsupportedEncodingException, SQLException {
+        if (stats != null) {
+            stats.edge();
+        }
+        sink.append(fillEdge(relationship), relationship.getDecodeType(), relationship.getTimezoneOffset());
+    }
+
+    /**
+     * 投影行追加到列式结果集或溢出文件，交给 DefaultResultSetHandler 映射
+     *
+     * @param cells 一行的值，按映射计划的列顺序排列
+     * @param sink  列式结果集或溢出文件，列与映射计划一致
+     * @return 包含非 ValueWrapper 的值时返回 false
+     * @throws SQLException 写入溢出文件失败
+     */
+    boolean appendProjected(Object[] cells, RowSink sink) throws SQLException {
+        if (!fillProjected(cells)) {
+            return false;
+        }
+        // 列式结果集只用解码方式、时区还原 long/double/boolean 列，溢出文件取单元格自身的设置，与这两项无关
+        sink.append(rowView.row(), "utf-8", 0);
+        return true;
+    }
+
+    /**
+     * 直接映射一个点，需要映射计划支持直接映射
+     *
+     * @param node 点
+     * @return 返回对象
+     * @throws UnsupportedEncodingException
+     * @throws SQLException
+     */
+    Object decodeVertex(Node node) throws UnsupportedEncodingException, SQLException {
+        if (plan.hasTagDispatch()) {
+            MappingPlan casePlan = plan.dispatch(node.tagNames());
+            if (casePlan != null) {
+                return caseDecoder(casePlan).decodeVertex(node);
+            }
+        }
+        if (stats != null) {
+            stats.vertex();
+        }
+        fillVertex(node);
+        return mapDirect();
+    }
+
+    /**
+     * 直接映射一条边，需要映射计划支持直接映射
+     *
+     * @param relationship 边
+     * @return 返回对象
+     * @throws UnsupportedEncodingException
+     * @throws SQLException
+     */
+    Object decodeEdge(Relationship relationship) throws UnsupportedEncodingException, SQLException {
+        if (plan.hasTagDispatch()) {
+            MappingPlan casePlan = plan.dispatch(Collections.singletonList(relationship.edgeName()));
+            if (casePlan != null) {
+                return caseDecoder(casePlan).decodeEdge(relationship);
+            }
+        }
+        if (stats != null) {
+            stats.edge();
+        }
+        fillEdge(relationship);
+        return mapDirect();
+    }
+
+    private NebulaRowDecoder caseDecoder(MappingPlan casePlan) {
+        if (caseDecoders == null) {
+            caseDecoders = new IdentityHashMap<>();
+        }
+        NebulaRowDecoder decoder = caseDecoders.get(casePlan);
+        if (decoder == null) {
+            decoder = new NebulaRowDecoder(casePlan, stats, lazyDecode, null, interner);
+            caseDecoders.put(casePlan, decoder);
+        }
+        return decoder;
+    }
+
+    /**
+     * 按映射计划的列顺序，把点的 id、tag 和属性填入复用的单行数组
+     * <p>
+     * 多 tag 的点：tag.prop 列只取该 tag 的属性，未限定的列按 tag 的顺序取第一个有该属性的 tag
+     */
+    private ValueWrapper[] fillVertex(Node node) throws UnsupportedEncodingException {
+        List<String> tags = node.tagNames();
+        HashMap<String, ValueWrapper> properties = vertexProperties(node, tags);
+        int[] slots = plan.getVertexSlots();
+        ValueWrapper[] cells = rowView().row();
+        Map<String, HashMap<String, ValueWrapper>> tagProperties = null;
+        for (int i = 0; i < columns.length; i++) {
+            switch (slots[i]) {
+                case MappingPlan.SLOT_VID:
+                    cells[i] = node.getId();
+                    break;
+                case MappingPlan.SLOT_TAG:
+                    cells[i] = stringValue(plan.dispatchTag(tags), node.getDecodeType(), node.getTimezoneOffset());
+                    break;
+                case MappingPlan.SLOT_QUALIFIED:
+                    String tag = plan.getQualifier(i);
+                    if (tags.size() == 1) {
+                        cells[i] = tag.equals(tags.get(0)) ? properties.get(plan.getQualifiedProperty(i)) : null;
+                        break;
+                    }
+                    if (tagProperties == null) {
+                        tagProperties = new HashMap<>();
+                    }
+                    HashMap<String, ValueWrapper> ofTag = tagProperties.get(tag);
+                    if (ofTag == null && tags.contains(tag)) {
+                        ofTag = node.properties(tag);
+                        tagProperties.put(tag, ofTag);
+                    }
+                    cells[i] = ofTag == null ? null : ofTag.get(plan.getQualifiedProperty(i));
+                    break;
+                default:
+                    cells[i] = properties.get(columns[i]);
+                    break;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * 按映射计划的列顺序，把边的起点、终点、类型和属性填入复用的单行数组
+     */
+    private ValueWrapper[] fillEdge(Relationship relationship) throws UnsupportedEncodingException {
+        HashMap<String, ValueWrapper> properties = relationship.properties();
+        int[] slots = plan.getEdgeSlots();
+        ValueWrapper[] cells = rowView().row();
+        for (int i = 0; i < columns.length; i++) {
+            switch (slots[i]) {
+                case MappingPlan.SLOT_SRC:
+                    cells[i] = relationship.srcId();
+                    break;
+                case MappingPlan.SLOT_DST:
+                    cells[i] = relationship.dstId();
+                    break;
+                case MappingPlan.SLOT_TAG:
+                    cells[i] = stringValue(relationship.edgeName(), relationship.getDecodeType(), relationship.getTimezoneOffset());
+                    break;
+                case MappingPlan.SLOT_QUALIFIED:
+                    cells[i] = plan.getQualifier(i).equals(relationship.edgeName()) ? properties.get(plan.getQualifiedProperty(i)) : null;
+                    break;
+                default:
+                    cells[i] = properties.get(columns[i]);
+                    break;
+            }
+        }
+        return cells;
+    }
+
+    private static ValueWrapper stringValue(String value, String decodeType, int timezoneOffset) throws UnsupportedEncodingException {
+        return value == null ? null : new ValueWrapper(Value.sVal(value.getBytes(decodeType)), decodeType, timezoneOffset);
+    }
+
+    /**
+     * 按映射计划的列顺序，把投影行的值填入复用的单行数组
+     *
+     * @return 包含非 ValueWrapper 的值时返回 false
+     */
+    private boolean fillProjected(Object[] cells) {
+        ValueWrapper[] row = rowView().row();
+        for (int i = 0; i < row.length; i++) {
+            Object cell = i < cells.length ? cells[i] : null;
+            if (cell != null && !(cell instanceof ValueWrapper)) {
+                return false;
+            }
+            row[i] = (ValueWrapper) cell;
+        }
+        if (stats != null) {
+            if (projection.isEdge()) {
+                stats.edge();
+            } else {
+                stats.vertex();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 逐行解码：把 resultSet 当前行解码出的对象依次放入 out，用于游标和 ResultHandler 的流式返回
+     * <p>
+     * 每个点/边列产生一个对象；path 列写入同一个行对象，整行产生一个对象
+     *
+     * @param resultSet   结果集，已定位到当前行
+     * @param columnCount 列数
+     * @param out         解码结果
+     * @return 当前行包含非图数据（非 ValueWrapper 或非点/边/路径）时返回 false
+     * @throws SQLException
+     * @throws UnsupportedEncodingException
+     */
+    boolean decodeRow(ResultSet resultSet, int columnCount, Collection<Object> out) throws SQLException, UnsupportedEncodingException {
+        if (cellBuffer == null || cellBuffer.length != columnCount) {
+            cellBuffer = new Object[columnCount];
+        }
+        long fetchStart = stats != null ? System.nanoTime() : 0L;
+        for (int index = 1; index <= columnCount; index++) {
+            cellBuffer[index - 1] = JdbcUtils.getResultSetValue(resultSet, index);
+        }
+        if (stats == null) {
+            return decodeCells(cellBuffer, out, out);
+        }
+        long decodeStart = System.nanoTime();
+        stats.fetched(1, columnCount, decodeStart - fetchStart);
+        boolean decoded = decodeCells(cellBuffer, out, out);
+        stats.decoded(System.nanoTime() - decodeStart);
+        return decoded;
+    }
+
+    /**
+     * 解码已读取的一行：点/边列每列产生一个对象放入 graphOut；没有点/边的行（只有 path 或为空）整行产生一个对象放入 rowOut；
+     * RETURN 投影的行整行是一个点/边，产生一个对象放入 graphOut
+     *
+     * @param cells    一行的值
+     * @param graphOut 点/边对象
+     * @param rowOut   行对象
+     * @return 当前行包含非图数据（非 ValueWrapper 或非点/边/路径）时返回 false
+     * @throws SQLException
+     * @throws UnsupportedEncodingException
+     */
+    boolean decodeCells(Object[] cells, Collection<Object> graphOut, Collection<Object> rowOut) throws SQLException, UnsupportedEncodingException {
+        if (projection != null) {
+            if (!fillProjected(cells)) {
+                return false;
+            }
+            graphOut.add(mapDirect());
+            return true;
+        }
+        Object instantiateClass = null;
+        boolean graphElement = false;
+        for (Object val : cells) {
+            if (val == null) {
+                continue;
+            }
+            if (!(val instanceof ValueWrapper)) {
+                return false;
+            }
+            ValueWrapper wrapper = (ValueWrapper) val;
+            if (wrapper.isVertex()) {
+                graphElement = true;
+                graphOut.add(decodeVertex(wrapper.asNode()));
+            } else if (wrapper.isEdge()) {
+                graphElement = true;
+                graphOut.add(decodeEdge(wrapper.asRelationship()));
+            } else if (wrapper.isPath()) {
+                if (instantiateClass == null) {
+                    instantiateClass = plan.newInstance();
+                }
+                decodePath(instantiateClass, wrapper);
+            } else {
+                return false;
+            }
+        }
+        if (!graphElement) {
+            rowOut.add(instantiateClass != null ? instantiateClass : plan.newInstance());
+        }
+        return true;
+    }
+
+    /**
+     * 点的属性，多个 tag 时合并，同名属性取排在前面的 tag
+     */
+    private static HashMap<String, ValueWrapper> vertexProperties(Node node, List<String> tags) throws UnsupportedEncodingException {
+        if (tags.size() == 1) {
+            return node.properties(tags.get(0));
+        }
+        HashMap<String, ValueWrapper> properties = new HashMap<>();
+        for (String tag : tags) {
+            node.properties(tag).forEach(properties::putIfAbsent);
+        }
+        return properties;
+    }
+
+    private NebulaRowResultSet rowView() {
+        if (rowView == null) {
+            rowView = new NebulaRowResultSet(plan);
+            rowView.setInterner(interner);
+        }
+        return rowView;
+    }
+
+    /**
+     * 直接映射当前单行视图中的点/边：按 ResultMapping 的 TypeHandler 取值并写入对象，
+     * 空值、空行的处理与 DefaultResultSetHandler 保持一致
+     *
+     * @return 返回对象，没有任何值且未开启 returnInstanceForEmptyRow 时返回 null
+     * @throws SQLException
+     */
+    private Object mapDirect() throws SQLException {
+        if (stats == null) {
+            return populate();
+        }
+        long start = System.nanoTime();
+        Object rowValue = populate();
+        stats.populatedDuringDecode(System.nanoTime() - start);
+        return rowValue;
+    }
+
+    private Object populate() throws SQLException {
+        LazyBeanFactory.LazyState lazyState = lazyBeans != null ? lazyBeans.newInstance() : null;
+        Object rowValue = lazyState != null ? lazyState.getBean() : plan.newInstance();
+        boolean foundValues = false;
+        ValueWrapper[] row = rowView.row();
+        MappingPlan.DirectMapping[] mappings = plan.getDirectMappings();
+        for (int i = 0; i < mappings.length; i++) {
+            MappingPlan.DirectMapping mapping = mappings[i];
+            PropertyWriter writer = mapping.getWriter();
+            ValueConverter.Table converters = mapping.getConverters();
+            Object value;
+            if (converters != null) {
+                ValueWrapper cell = row[mapping.getColumnIndex() - 1];
+                if (cell != null && !cell.isNull() && !cell.isEmpty()) {
+                    foundValues = true;
+                    // 延迟解码只保存值，第一次调用 getter 时再转换
+                    if (lazyState != null && lazyBeans.isLazy(i)) {
+                        lazyState.defer(i, cell);
+                        continue;
+                    }
+                    try {
+                        converters.write(rowValue, cell, writer, interner);
+                    } catch (UnsupportedEncodingException e) {
+                        throw new SQLException(e);
+                    }
+                    continue;
+                }
+                value = null;
+            } else {
+                value = mapping.getTypeHandler().getResult(rowView, mapping.getColumnIndex());
+            }
+            if (value != null) {
+                foundValues = true;
+                writer.write(rowValue, value);
+            } else if (plan.isCallSettersOnNulls() && !writer.getPropertyType().isPrimitive()) {
+                writer.write(rowValue, null);
+            }
+        }
+        return foundValues || plan.isReturnInstanceForEmptyRow() ? rowValue : null;
+    }
+
+    /**
+     * 处理 PATH 类 ValueWrapper
+     * <p>
+     * Path比较特殊，提供了一种通用的对象接收【StringPathDO、LongPathDO】，也必须使用我们提供的path对象才能正确返回PathWrapper ，否则不能使用find path等语句
+     *
+     * @param instantiateClass 返回对象
+     * @param wrapper          数据
+     * @throws UnsupportedEncodingException
+     */
+    void decodePath(Object instantiateClass, ValueWrapper wrapper) throws UnsupportedEncodingException {
+        if (stats != null) {
+            stats.path();
+        }
+        // 转换 PathWrapper
+        PathWrapper path = wrapper.asPath();
+        //注入起点终点字段
+        writeField(instantiateClass, "_start", path.getStartNode().getId());
+        writeField(instantiateClass, "_end", path.getEndNode().getId());
+        //注入nodes：链路上所有的 节点id
+        PropertyWriter nodesWriter = plan.getWriter("_nodes");
+        if (!nodesWriter.isNoop()) {
+            List<Node> nodes = path.getNodes();
+            List<Object> collect = new ArrayList<>(nodes.size());
+            for (Node node : nodes) {
+                ValueWrapper valueWrapper = node.getId();
+                try {
+                    collect.add(valueWrapper.isString() ? valueWrapper.asString() : valueWrapper.asLong());
+                } catch (UnsupportedEncodingException e) {
+                    log.error("参数转换异常", e);
+                    collect.add(null);
+                }
+            }
+            nodesWriter.write(instantiateClass, collect);
+        }
+        //注入RelationShip
+        PropertyWriter relationShipsWriter = plan.getWriter("_relation_ships");
+        if (!relationShipsWriter.isNoop()) {
+            List<Relationship> relationships = path.getRelationships();
+            List<Object> relationShips = new ArrayList<>(relationships.size());
+            PropertyWriter srcWriter = plan.getRelationShipSrc();
+            PropertyWriter dstWriter = plan.getRelationShipDst();
+            PropertyWriter rankingWriter = plan.getRelationShipRanking();
+            for (Relationship relationship : relationships) {
+                //依次注入所有的RelationShip，内部类$RelationShip及其写入器在映射计划中已解析
+                Object inner = plan.newRelationShip();
+                if (relationship.srcId().isString()) {
+                    srcWriter.write(inner, relationship.srcId().asString());
+                    dstWriter.write(inner, relationship.dstId().asString());
+                } else {
+                    srcWriter.write(inner, relationship.srcId().asLong());
+                    dstWriter.write(inner, relationship.dstId().asLong());
+                }
+                rankingWriter.write(inner, relationship.ranking());
+                relationShips.add(inner);
+            }
+            //将以上统计的关系，注入RelationShips
+            relationShipsWriter.write(instantiateClass, relationShips);
+        }
+    }
+
+    /**
+     * 注入字段
+     *
+     * @param instantiateClass 返回对象
+     * @param column           列名
+     * @param wrapper          数据
+     * @throws UnsupportedEncodingException
+     */
+    private void writeField(Object instantiateClass, String column, ValueWrapper wrapper) throws UnsupportedEncodingException {
+        ValueConverter.Table converters = plan.getConverters(column);
+        if (converters != null && wrapper != null && !wrapper.isNull()) {
+            converters.write(instantiateClass, wrapper, plan.getWriter(column));
+        }
+    }
+}
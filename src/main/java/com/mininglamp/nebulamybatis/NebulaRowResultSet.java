@@ -0,0 +1,78 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单行 ResultSet 视图
+ * <p>
+ * 直接映射模式下，每个点/边只把属性引用填进同一个数组，再通过这个视图交给 TypeHandler 读取，
+ * 一次查询只创建一个实例，不再为每行构造 Row/Record。
+ *
+ * @author daiyi
+ */
+final class NebulaRowResultSet extends AbstractNebulaResultSet {
+
+    private final List<String> columnNames;
+    private final Map<String, Integer> columnIndex;
+    private final ValueWrapper[] row;
+    private boolean isClosed;
+
+    NebulaRowResultSet(MappingPlan plan) {
+        this.columnNames = plan.getColumnNames();
+        this.columnIndex = plan.getColumnIndex();
+        this.row = new ValueWrapper[columnNames.size()];
+    }
+
+    /**
+     * 当前行的值，下标与映射计划的列顺序一致，每行复用
+     */
+    ValueWrapper[] row() {
+        return row;
+    }
+
+    @Override
+    protected ValueWrapper value(int columnIndex) throws SQLException {
+        return row[columnIndex - 1];
+    }
+
+    @Override
+    protected ValueWrapper value(String columnLabel) throws SQLException {
+        Integer index = columnIndex.get(columnLabel);
+        return index == null ? null : row[index];
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        return false;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        isClosed = true;
+    }
+
+    @Override
+    public int findColumn(String columnLabel) throws SQLException {
+        Integer index = columnIndex.get(columnLabel);
+        return index == null ? 0 : index + 1;
+    }
+
+    @Override
+    public int getRow() throws SQLException {
+        return 1;
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return isClosed;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+}
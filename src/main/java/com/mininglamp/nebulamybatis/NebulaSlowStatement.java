@@ -0,0 +1,139 @@
+package com.mininglamp.nebulamybatis;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一条慢语句记录
+ * <p>
+ * 耗时拆分为：graphd 执行（服务端返回的 latency）、网络与驱动（执行耗时减去服务端耗时）、拦截器处理结果集
+ * （读取、解码、写入对象，见 {@link NebulaMappingStats}）。无法取得的部分为 -1。
+ * 抽样的记录在后台线程 PROFILE 完成后才有执行计划。
+ *
+ * @author daiyi
+ */
+public final class NebulaSlowStatement {
+
+    private final long timestamp;
+    private final String statementId;
+    private final String ngql;
+    private final long elapsedNanos;
+    private final long executeNanos;
+    private final long serverLatencyMicros;
+    private final long handleNanos;
+    private final NebulaMybatisMetrics.Mode mode;
+    private final NebulaMappingStats stats;
+    private final boolean sampled;
+    private volatile List<Map<String, String>> plan;
+    private volatile String profileError;
+
+    NebulaSlowStatement(long timestamp, String statementId, String ngql, long elapsedNanos, long executeNanos, long serverLatencyMicros,
+                        long handleNanos, NebulaMybatisMetrics.Mode mode, NebulaMappingStats stats, boolean sampled) {
+        this.timestamp = timestamp;
+        this.statementId = statementId;
+        this.ngql = ngql;
+        this.elapsedNanos = elapsedNanos;
+        this.executeNanos = executeNanos;
+        this.serverLatencyMicros = serverLatencyMicros;
+        this.handleNanos = handleNanos;
+        this.mode = mode;
+        this.stats = stats;
+        this.sampled = sampled;
+    }
+
+    /**
+     * 语句开始执行的时间，毫秒
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    /**
+     * 已替换占位符的 nGQL
+     */
+    public String getNgql() {
+        return ngql;
+    }
+
+    /**
+     * StatementHandler.query 的总耗时
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * 执行语句的耗时（总耗时减去处理结果集的耗时），包括 graphd 执行和网络
+     */
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    /**
+     * graphd 返回的执行耗时，微秒；无法取得时为 -1
+     */
+    public long getServerLatencyMicros() {
+        return serverLatencyMicros;
+    }
+
+    /**
+     * 网络与驱动的耗时，无法取得服务端耗时时为 -1
+     */
+    public long getNetworkNanos() {
+        return serverLatencyMicros < 0 ? -1L : Math.max(0L, executeNanos - serverLatencyMicros * 1000L);
+    }
+
+    /**
+     * {@link GraphResultSetIntercept} 处理结果集的耗时，结果集没有经过拦截器时为 -1
+     */
+    public long getHandleNanos() {
+        return handleNanos;
+    }
+
+    /**
+     * 映射方式，没有经过拦截器时为 null
+     */
+    public NebulaMybatisMetrics.Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 行数和读取、解码、写入耗时，没有经过拦截器或交回 mybatis 处理时为 null
+     */
+    public NebulaMappingStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 是否抽中 PROFILE
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * PROFILE 的执行计划，未抽中、尚未完成或失败时为 null
+     */
+    public List<Map<String, String>> getPlan() {
+        return plan;
+    }
+
+    /**
+     * PROFILE 失败的原因
+     */
+    public String getProfileError() {
+        return profileError;
+    }
+
+    void profiled(List<Map<String, String>> plan) {
+        this.plan = plan;
+    }
+
+    void profileFailed(String error) {
+        this.profileError = error;
+    }
+}
@@ -0,0 +1,341 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import com.vesoft.nebula.jdbc.NebulaPreparedStatement;
+import com.vesoft.nebula.jdbc.PlaceholderUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+
+import javax.sql.DataSource;
+import java.lang.invoke.MethodHandle;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 慢语句采集
+ * <p>
+ * 拦截 {@link StatementHandler#query}、{@link StatementHandler#queryCursor} 和 {@link StatementHandler#update}，耗时达到阈值（可按 MappedStatement id 或 mapper 命名空间单独设置）的语句
+ * 记录到 {@link NebulaSlowStatementLog}：替换占位符后的 nGQL、graphd 执行耗时、网络耗时、{@link GraphResultSetIntercept}
+ * 处理结果集的耗时及行数和读取、解码、写入的拆分（见 {@link NebulaSlowStatement}）。
+ * queryCursor 的行在返回后才读取，只计入执行语句和打开游标的耗时；BATCH 模式下 {@link StatementHandler#batch}
+ * 只把语句加入批次，不记录。
+ * <p>
+ * 查询语句按 sampleRate 抽样（默认 0，不抽样），抽中的在后台线程用 {@link NebulaProfiler} 重新执行 PROFILE，执行计划写回记录；
+ * 写入语句只记录，不重新执行。PROFILE 会在 graphd 上把慢查询完整地再执行一次，并占用应用 DataSource 的一个连接，
+ * 所以同一个 MappedStatement 在 profileInterval 内最多 PROFILE 一次，后台队列已满时放弃本次 PROFILE。
+ * 只采集 nebula-jdbc 的 PreparedStatement，其他数据源的语句照常执行，不记录、不 PROFILE。
+ * 采集失败不影响语句本身的结果。
+ *
+ * @author daiyi
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+        @Signature(type = StatementHandler.class, method = "queryCursor", args = {Statement.class}),
+        @Signature(type = StatementHandler.class, method = "update", args = {Statement.class})
+})
+public class NebulaSlowStatementIntercept implements Interceptor {
+
+    private static final String THRESHOLD_PREFIX = "threshold.";
+
+    /**
+     * nebula-jdbc 中私有字段的 getter，只反射一次
+     */
+    private static final MethodHandle PARAMETERS_GETTER;
+
+    static {
+        try {
+            PARAMETERS_GETTER = StatementHandlers.getter(NebulaPreparedStatement.class, "parameters");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final NebulaSlowStatementLog slowLog;
+
+    /**
+     * 默认阈值，毫秒
+     */
+    private long threshold = 1000L;
+
+    /**
+     * 单独设置的阈值：MappedStatement id 或 mapper 命名空间 -> 毫秒
+     */
+    private Map<String, Long> thresholds = new ConcurrentHashMap<>();
+
+    /**
+     * 慢查询语句重新执行 PROFILE 的比例，0 ~ 1，默认不执行
+     */
+    private double sampleRate = 0D;
+
+    /**
+     * 同一个 MappedStatement 两次 PROFILE 的最小间隔，毫秒
+     */
+    private long profileInterval = 60000L;
+
+    /**
+     * MappedStatement id -> 上次 PROFILE 的时间，System.nanoTime()
+     */
+    private final Map<String, Long> lastProfiled = new ConcurrentHashMap<>();
+
+    private NebulaProfiler profiler = NebulaSlowStatementIntercept::profileWithDataSource;
+
+    /**
+     * 执行 PROFILE 的线程池，默认单个后台线程、队列长度 16
+     */
+    private Executor profileExecutor;
+
+    /**
+     * 在 mybatis 配置文件中声明时使用，保留最近 256 条
+     */
+    public NebulaSlowStatementIntercept() {
+        this(new NebulaSlowStatementLog(256));
+    }
+
+    public NebulaSlowStatementIntercept(NebulaSlowStatementLog slowLog) {
+        this.slowLog = slowLog;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        StatementHandler handler = (StatementHandler) invocation.getTarget();
+        Statement statement = (Statement) invocation.getArgs()[0];
+        if (!isNebula(statement)) {
+            return invocation.proceed();
+        }
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
+        StatementCapture capture = StatementCapture.begin();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } finally {
+            capture.end();
+        }
+        long elapsed = System.nanoTime() - start;
+        try {
+            MappedStatement mappedStatement = StatementHandlers.getMappedStatement(handler);
+            if (mappedStatement != null && elapsed >= TimeUnit.MILLISECONDS.toNanos(thresholdOf(mappedStatement.getId()))) {
+                record(mappedStatement, handler, statement, capture, timestamp, elapsed);
+            }
+        } catch (Throwable e) {
+            log.debug("慢语句采集失败", e);
+        }
+        return result;
+    }
+
+    private void record(MappedStatement mappedStatement, StatementHandler handler, Statement statement, StatementCapture capture,
+                        long timestamp, long elapsed) throws Throwable {
+        String ngql = render(handler.getBoundSql().getSql(), statement);
+        long handleNanos = capture.getHandleNanos();
+        boolean sampled = mappedStatement.getSqlCommandType() == SqlCommandType.SELECT && sampleRate > 0
+                && ThreadLocalRandom.current().nextDouble() < sampleRate && acquireProfile(mappedStatement.getId());
+        NebulaSlowStatement entry = new NebulaSlowStatement(timestamp, mappedStatement.getId(), ngql, elapsed,
+                handleNanos < 0 ? elapsed : elapsed - handleNanos, serverLatency(statement), handleNanos, capture.getMode(),
+                capture.getStats(), sampled);
+        slowLog.add(entry);
+        log.warn("慢语句 {} 耗时 {} ms：{}", mappedStatement.getId(), TimeUnit.NANOSECONDS.toMillis(elapsed), ngql);
+        if (sampled) {
+            Configuration configuration = mappedStatement.getConfiguration();
+            try {
+                getProfileExecutor().execute(() -> {
+                    try {
+                        entry.profiled(profiler.profile(configuration, ngql));
+                    } catch (Exception e) {
+                        entry.profileFailed(e.toString());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                entry.profileFailed("PROFILE 队列已满");
+            }
+        }
+    }
+
+    /**
+     * 同一个 MappedStatement 在 profileInterval 内只允许一次 PROFILE
+     */
+    private boolean acquireProfile(String statementId) {
+        long now = System.nanoTime();
+        Long last = lastProfiled.get(statementId);
+        if (last == null) {
+            return lastProfiled.putIfAbsent(statementId, now) == null;
+        }
+        return now - last >= TimeUnit.MILLISECONDS.toNanos(profileInterval) && lastProfiled.replace(statementId, last, now);
+    }
+
+    /**
+     * 阈值：先按 MappedStatement id，再按命名空间查找
+     */
+    private long thresholdOf(String statementId) {
+        Long value = thresholds.get(statementId);
+        if (value == null) {
+            int dot = statementId.lastIndexOf('.');
+            value = dot > 0 ? thresholds.get(statementId.substring(0, dot)) : null;
+        }
+        return value != null ? value : threshold;
+    }
+
+    private static boolean isNebula(Statement statement) {
+        try {
+            return statement.isWrapperFor(NebulaPreparedStatement.class);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 与 nebula-jdbc 相同的方式替换占位符，{@link NebulaTemplateIntercept} 渲染过的语句只有一个占位符
+     */
+    private static String render(String sql, Statement statement) {
+        try {
+            NebulaPreparedStatement nebulaStatement = statement.unwrap(NebulaPreparedStatement.class);
+            @SuppressWarnings("unchecked")
+            Map<Integer, Object> parameters = (Map<Integer, Object>) PARAMETERS_GETTER.invoke(nebulaStatement);
+            return PlaceholderUtil.replacePlaceholders(NebulaTemplateIntercept.currentSql(nebulaStatement), parameters);
+        } catch (Throwable e) {
+            log.debug("无法替换占位符：{}", sql, e);
+        }
+        return sql;
+    }
+
+    /**
+     * graphd 返回的执行耗时
+     *
+     * @return 微秒，无法取得时返回 -1
+     */
+    private static long serverLatency(Statement statement) {
+        try {
+            com.vesoft.nebula.client.graph.data.ResultSet clientResultSet = StatementHandlers.clientResultSet(statement.getResultSet());
+            if (clientResultSet != null) {
+                return clientResultSet.getLatency();
+            }
+        } catch (Throwable e) {
+            log.debug("无法取得 graphd 执行耗时", e);
+        }
+        return -1L;
+    }
+
+    /**
+     * 默认的执行计划采集：从 mybatis 环境的 DataSource 取连接执行 {@code PROFILE FORMAT="row"}
+     */
+    static List<Map<String, String>> profileWithDataSource(Configuration configuration, String ngql) throws SQLException {
+        DataSource dataSource = configuration.getEnvironment().getDataSource();
+        List<Map<String, String>> plan = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PROFILE FORMAT=\"row\" " + ngql)) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            while (resultSet.next()) {
+                Map<String, String> row = new LinkedHashMap<>(columnCount * 2);
+                for (int i = 1; i <= columnCount; i++) {
+                    Object value = resultSet.getObject(i);
+                    String text;
+                    if (value instanceof ValueWrapper && ((ValueWrapper) value).isString()) {
+                        text = ((ValueWrapper) value).asString();
+                    } else if (value instanceof ValueWrapper && ((ValueWrapper) value).isNull()) {
+                        text = null;
+                    } else {
+                        text = value == null ? null : String.valueOf(value);
+                    }
+                    row.put(metaData.getColumnName(i), text);
+                }
+                plan.add(row);
+            }
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new SQLException(e);
+        }
+        return plan;
+    }
+
+    private Executor getProfileExecutor() {
+        Executor executor = profileExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (profileExecutor == null) {
+                    profileExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(16), runnable -> {
+                        Thread thread = new Thread(runnable, "nebula-profile");
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+                }
+                executor = profileExecutor;
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof StatementHandler ? Plugin.wrap(target, this) : target;
+    }
+
+    public NebulaSlowStatementLog getSlowLog() {
+        return slowLog;
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(long threshold) {
+        this.threshold = threshold;
+    }
+
+    public Map<String, Long> getThresholds() {
+        return thresholds;
+    }
+
+    public void setThresholds(Map<String, Long> thresholds) {
+        this.thresholds = new ConcurrentHashMap<>(thresholds);
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public long getProfileInterval() {
+        return profileInterval;
+    }
+
+    public void setProfileInterval(long profileInterval) {
+        this.profileInterval = profileInterval;
+    }
+
+    public NebulaProfiler getProfiler() {
+        return profiler;
+    }
+
+    public void setProfiler(NebulaProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public void setProfileExecutor(Executor profileExecutor) {
+        this.profileExecutor = profileExecutor;
+    }
+
+    /**
+     * threshold、sampleRate、profileInterval，以及 threshold.&lt;MappedStatement id 或命名空间&gt; 单独设置的阈值
+     */
+    @Override
+    public void setProperties(Properties properties) {
+        threshold = Long.parseLong(properties.getProperty("threshold", String.valueOf(threshold)));
+        sampleRate = Double.parseDouble(properties.getProperty("sampleRate", String.valueOf(sampleRate)));
+        profileInterval = Long.parseLong(properties.getProperty("profileInterval", String.valueOf(profileInterval)));
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(THRESHOLD_PREFIX)) {
+                thresholds.put(name.substring(THRESHOLD_PREFIX.length()), Long.parseLong(properties.getProperty(name)));
+            }
+        }
+    }
+}
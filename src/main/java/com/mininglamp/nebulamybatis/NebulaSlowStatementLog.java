@@ -0,0 +1,173 @@
+package com.mininglamp.nebulamybatis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 慢语句的环形缓冲区
+ * <p>
+ * 只保留最近 capacity 条，写满后覆盖最早的记录。{@link #toJson()} 导出为 JSON 数组，按时间先后排列，
+ * 可以由应用自己的管理端点返回。
+ *
+ * @author daiyi
+ */
+public class NebulaSlowStatementLog {
+
+    private final NebulaSlowStatement[] entries;
+    private int next;
+    private int size;
+
+    /**
+     * @param capacity 最多保留的记录数
+     */
+    public NebulaSlowStatementLog(int capacity) {
+        this.entries = new NebulaSlowStatement[Math.max(1, capacity)];
+    }
+
+    synchronized void add(NebulaSlowStatement entry) {
+        entries[next] = entry;
+        next = (next + 1) % entries.length;
+        if (size < entries.length) {
+            size++;
+        }
+    }
+
+    /**
+     * @return 当前保留的记录，按时间先后排列
+     */
+    public synchronized List<NebulaSlowStatement> getEntries() {
+        List<NebulaSlowStatement> list = new ArrayList<>(size);
+        int first = (next - size + entries.length) % entries.length;
+        for (int i = 0; i < size; i++) {
+            list.add(entries[(first + i) % entries.length]);
+        }
+        return list;
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * 导出为 JSON 数组，耗时单位为微秒
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(256).append('[');
+        List<NebulaSlowStatement> list = getEntries();
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            append(json, list.get(i));
+        }
+        return json.append(']').toString();
+    }
+
+    private static void append(StringBuilder json, NebulaSlowStatement entry) {
+        json.append("{\"timestamp\":").append(entry.getTimestamp());
+        json.append(",\"statementId\":");
+        string(json, entry.getStatementId());
+        json.append(",\"ngql\":");
+        string(json, entry.getNgql());
+        json.append(",\"elapsedMicros\":").append(micros(entry.getElapsedNanos()));
+        json.append(",\"executeMicros\":").append(micros(entry.getExecuteNanos()));
+        json.append(",\"serverLatencyMicros\":").append(entry.getServerLatencyMicros());
+        json.append(",\"networkMicros\":").append(micros(entry.getNetworkNanos()));
+        json.append(",\"handleMicros\":").append(micros(entry.getHandleNanos()));
+        json.append(",\"mode\":");
+        string(json, entry.getMode() == null ? null : entry.getMode().getTag());
+        NebulaMappingStats stats = entry.getStats();
+        json.append(",\"decode\":");
+        if (stats == null) {
+            json.append("null");
+        } else {
+            json.append("{\"rows\":").append(stats.getRows())
+                    .append(",\"cells\":").append(stats.getCells())
+                    .append(",\"vertices\":").append(stats.getVertices())
+                    .append(",\"edges\":").append(stats.getEdges())
+                    .append(",\"paths\":").append(stats.getPaths())
+                    .append(",\"fetchMicros\":").append(micros(stats.getFetchNanos()))
+                    .append(",\"decodeMicros\":").append(micros(stats.getDecodeNanos()))
+                    .append(",\"populateMicros\":").append(micros(stats.getPopulateNanos()))
+                    .append('}');
+        }
+        json.append(",\"sampled\":").append(entry.isSampled());
+        json.append(",\"plan\":");
+        List<Map<String, String>> plan = entry.getPlan();
+        if (plan == null) {
+            json.append("null");
+        } else {
+            json.append('[');
+            for (int i = 0; i < plan.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append('{');
+                boolean first = true;
+                for (Map.Entry<String, String> column : plan.get(i).entrySet()) {
+                    if (!first) {
+                        json.append(',');
+                    }
+                    first = false;
+                    string(json, column.getKey());
+                    json.append(':');
+                    string(json, column.getValue());
+                }
+                json.append('}');
+            }
+            json.append(']');
+        }
+        json.append(",\"profileError\":");
+        string(json, entry.getProfileError());
+        json.append('}');
+    }
+
+    private static long micros(long nanos) {
+        return nanos < 0 ? -1L : TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static void string(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
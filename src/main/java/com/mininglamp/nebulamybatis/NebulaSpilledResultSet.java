@@ -0,0 +1,341 @@
+package com.mininglamp.nebulamybatis;
+
+import com.facebook.thrift.TException;
+import com.facebook.thrift.protocol.TCompactProtocol;
+import com.facebook.thrift.transport.TIOStreamTransport;
+import com.facebook.thrift.transport.TMemoryInputTransport;
+import com.vesoft.nebula.NullType;
+import com.vesoft.nebula.Row;
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 溢出到内存映射文件的 nebula ResultSet
+ * <p>
+ * 结果超出预算时，每行按映射计划的列编码为 nebula Row（thrift compact 协议）顺序写入临时文件，
+ * 写完后以只读方式映射，映射时逐行解码，同一时刻只有当前行在堆上。只用于带 ResultHandler 的查询：
+ * 它替换的只是二次映射的列式缓冲，返回 List 时映射后的对象仍然全部在堆上，因此不会溢出。文件在映射后即删除，
+ * 映射的内存由操作系统按需换入换出，结果集关闭、不再被引用后随 GC 释放。
+ * <p>
+ * 文件按段映射，一行不跨段，单行编码后不能超过一个段的大小。
+ *
+ * @author daiyi
+ */
+public class NebulaSpilledResultSet extends AbstractNebulaResultSet {
+
+    /**
+     * 单个映射段的最大字节数
+     */
+    static final int SEGMENT_SIZE = 1 << 30;
+
+    private final int size;
+    private final List<String> columnNames;
+    private final Map<String, Integer> columnIndex;
+    private final String decodeType;
+    private final int timezoneOffset;
+    private MappedByteBuffer[] segments;
+    /**
+     * 各段的行数
+     */
+    private final int[] segmentRows;
+    private final TMemoryInputTransport input = new TMemoryInputTransport();
+    private final TCompactProtocol protocol = new TCompactProtocol(input);
+    private byte[] buffer = new byte[256];
+    private ValueWrapper[] current;
+    private int cursor = -1;
+    private int segment;
+    private int segmentRow;
+    private boolean isClosed;
+
+    private NebulaSpilledResultSet(Writer writer, MappedByteBuffer[] segments, int[] segmentRows) {
+        this.size = writer.size;
+        this.columnNames = writer.columnNames;
+        this.columnIndex = writer.columnIndex;
+        this.decodeType = writer.decodeType;
+        this.timezoneOffset = writer.timezoneOffset;
+        this.segments = segments;
+        this.segmentRows = segmentRows;
+    }
+
+    /**
+     * @param columnNames 列名，只读
+     * @param columnIndex 列名 -> 列下标（从0开始），只读
+     * @param directory   临时文件目录，为 null 时使用系统临时目录
+     */
+    static Writer writer(List<String> columnNames, Map<String, Integer> columnIndex, Path directory) throws SQLException {
+        return new Writer(columnNames, columnIndex, directory);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void beforeFirst() throws SQLException {
+        cursor = -1;
+        segment = 0;
+        segmentRow = 0;
+        current = null;
+        for (MappedByteBuffer mapped : segments) {
+            mapped.position(0);
+        }
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (isClosed) {
+            throw new SQLException("结果集已关闭");
+        }
+        if (cursor + 1 >= size) {
+            cursor = size;
+            current = null;
+            return false;
+        }
+        while (segmentRow == segmentRows[segment]) {
+            segment++;
+            segmentRow = 0;
+        }
+        ByteBuffer mapped = segments[segment];
+        int length = mapped.getInt();
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        mapped.get(buffer, 0, length);
+        input.reset(buffer, 0, length);
+        Row row = new Row();
+        try {
+            row.read(protocol);
+        } catch (TException e) {
+            throw new SQLException("溢出文件第 " + (cursor + 2) + " 行解码失败", e);
+        }
+        List<Value> values = row.getValues();
+        ValueWrapper[] cells = new ValueWrapper[values.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new ValueWrapper(values.get(i), decodeType, timezoneOffset);
+        }
+        current = cells;
+        segmentRow++;
+        cursor++;
+        return true;
+    }
+
+    /**
+     * 释放映射的引用，映射的内存在 GC 后归还
+     */
+    @Override
+    public void close() throws SQLException {
+        isClosed = true;
+        current = null;
+        segments = new MappedByteBuffer[0];
+    }
+
+    @Override
+    protected ValueWrapper value(int columnIndex) throws SQLException {
+        if (current == null) {
+            throw new SQLException("没有当前行");
+        }
+        return current[columnIndex - 1];
+    }
+
+    @Override
+    protected ValueWrapper value(String columnLabel) throws SQLException {
+        Integer index = columnIndex.get(columnLabel);
+        return index == null ? null : value(index + 1);
+    }
+
+    @Override
+    public int findColumn(String columnLabel) throws SQLException {
+        Integer index = columnIndex.get(columnLabel);
+        return index == null ? 0 : index + 1;
+    }
+
+    @Override
+    public int getRow() throws SQLException {
+        return cursor + 1;
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return isClosed;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * 按行写入溢出文件，非线程安全；{@link #finish()} 或 {@link #abort()} 之后不能再写入
+     */
+    static final class Writer implements RowSink {
+
+        private static final Value NULL = Value.nVal(NullType.__NULL__);
+
+        /**
+         * ValueWrapper 中私有字段的 getter，只反射一次
+         */
+        private static final MethodHandle DECODE_TYPE_GETTER;
+        private static final MethodHandle TIMEZONE_OFFSET_GETTER;
+
+        static {
+            try {
+                DECODE_TYPE_GETTER = getter("decodeType");
+                TIMEZONE_OFFSET_GETTER = getter("timezoneOffset");
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final List<String> columnNames;
+        private final Map<String, Integer> columnIndex;
+        private final int cols;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream encoded = new ByteArrayOutputStream(256);
+        private final TCompactProtocol protocol = new TCompactProtocol(new TIOStreamTransport(encoded));
+        private final List<Long> segmentStarts = new ArrayList<>();
+        private final List<Integer> segmentRows = new ArrayList<>();
+        private long position;
+        private int size;
+        private String decodeType = "utf-8";
+        private int timezoneOffset;
+        private boolean settled;
+        private StringInterner interner;
+
+        private Writer(List<String> columnNames, Map<String, Integer> columnIndex, Path directory) throws SQLException {
+            this.columnNames = columnNames;
+            this.columnIndex = columnIndex;
+            this.cols = columnNames.size();
+            try {
+                Path file = directory != null ? Files.createTempFile(directory, "nebula-spill-", ".bin")
+                        : Files.createTempFile("nebula-spill-", ".bin");
+                // 关闭时删除，映射在通道关闭后仍然有效
+                this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            } catch (IOException e) {
+                throw new SQLException("无法创建溢出文件", e);
+            }
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        }
+
+        Writer interner(StringInterner interner) {
+            this.interner = interner;
+            return this;
+        }
+
+        /**
+         * 文件中只保存 Value，读取时按同一个解码方式、时区还原 ValueWrapper；
+         * 投影行传入的是默认值，因此优先取第一个非空单元格自身的设置
+         */
+        @Override
+        public Writer append(ValueWrapper[] cells, String decodeType, int timezoneOffset) throws SQLException {
+            if (size == 0) {
+                this.decodeType = decodeType;
+                this.timezoneOffset = timezoneOffset;
+            }
+            Value[] values = new Value[cols];
+            for (int col = 0; col < cols; col++) {
+                ValueWrapper cell = col < cells.length ? cells[col] : null;
+                if (cell != null && !settled) {
+                    settle(cell);
+                }
+                values[col] = cell == null ? NULL : cell.getValue();
+            }
+            encoded.reset();
+            try {
+                new Row(Arrays.asList(values)).write(protocol);
+                int length = encoded.size();
+                if (length + 4 > SEGMENT_SIZE) {
+                    throw new SQLException("单行编码后 " + length + " 字节，超过溢出文件段的大小");
+                }
+                if (segmentStarts.isEmpty() || position + 4 + length - segmentStarts.get(segmentStarts.size() - 1) > SEGMENT_SIZE) {
+                    segmentStarts.add(position);
+                    segmentRows.add(0);
+                }
+                out.writeInt(length);
+                encoded.writeTo(out);
+            } catch (TException | IOException e) {
+                abort();
+                throw new SQLException("写入溢出文件失败", e);
+            }
+            position += 4 + encoded.size();
+            segmentRows.set(segmentRows.size() - 1, segmentRows.get(segmentRows.size() - 1) + 1);
+            size++;
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void settle(ValueWrapper cell) throws SQLException {
+            try {
+                decodeType = (String) DECODE_TYPE_GETTER.invoke(cell);
+                timezoneOffset = (int) TIMEZONE_OFFSET_GETTER.invoke(cell);
+            } catch (Throwable e) {
+                throw new SQLException(e);
+            }
+            settled = true;
+        }
+
+        private static MethodHandle getter(String name) throws ReflectiveOperationException {
+            Field field = ValueWrapper.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field);
+        }
+
+        /**
+         * 结束写入并映射文件
+         */
+        NebulaSpilledResultSet finish() throws SQLException {
+            try {
+                out.flush();
+                MappedByteBuffer[] segments = new MappedByteBuffer[segmentStarts.size()];
+                int[] rows = new int[segments.length];
+                for (int i = 0; i < segments.length; i++) {
+                    long start = segmentStarts.get(i);
+                    long end = i + 1 < segments.length ? segmentStarts.get(i + 1) : position;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    rows[i] = segmentRows.get(i);
+                }
+                NebulaSpilledResultSet resultSet = new NebulaSpilledResultSet(this, segments, rows);
+                resultSet.setInterner(interner);
+                return resultSet;
+            } catch (IOException e) {
+                throw new SQLException("映射溢出文件失败", e);
+            } finally {
+                abort();
+            }
+        }
+
+        /**
+         * 关闭并删除文件，已经建立的映射不受影响
+         */
+        void abort() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // 关闭失败时文件随 JVM 退出不再被引用，忽略
+            }
+        }
+    }
+}
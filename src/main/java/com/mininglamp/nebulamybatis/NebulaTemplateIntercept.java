@@ -0,0 +1,268 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.jdbc.NebulaPreparedStatement;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * nGQL 模板渲染
+ * <p>
+ * nebula-jdbc 没有服务端预编译，每个参数在 setXxx 时转义成独立的字符串，执行时再逐字符扫描语句替换占位符。
+ * 拦截 {@link StatementHandler#parameterize}，语句按 SQL 编译为 {@link NgqlTemplate} 并缓存，
+ * 参数按 TypeHandler 确定类型后直接渲染到当前线程复用的缓冲区，整条 nGQL 作为驱动语句 {@code ?} 的唯一参数，
+ * 驱动只需替换一个占位符。渲染结果与 mybatis 内置 TypeHandler 调用驱动 setXxx 的结果相同。
+ * <p>
+ * 另外支持集合、数组参数（{@code @Param} 或 Map 中的 List、Set、数组，见 {@link NgqlTemplate}），
+ * {@code id(v) IN #{ids}}、{@code GO FROM #{ids}} 一个占位符渲染全部 VID，不再需要 foreach 为每个 VID 生成占位符和参数映射。
+ * <p>
+ * 自定义 TypeHandler、OUT 参数、不支持的参数类型交给 mybatis 默认的 ParameterHandler 处理。
+ *
+ * @author daiyi
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "parameterize", args = Statement.class)
+})
+public class NebulaTemplateIntercept implements Interceptor {
+
+    /**
+     * 渲染后的 nGQL 在驱动中的语句
+     */
+    private static final String RENDERED_STATEMENT = "?";
+
+    /**
+     * 缓冲区超过该长度（字符）后不再复用，避免一次超长语句长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    /**
+     * mybatis 内置 TypeHandler -> 渲染类型
+     */
+    private static final Map<Class<?>, Byte> HANDLER_KINDS = new HashMap<>();
+
+    /**
+     * mybatis、nebula-jdbc 中私有字段的 getter、setter，只反射一次
+     */
+    private static final MethodHandle PARAMETERS_GETTER;
+    private static final MethodHandle STMT_GETTER;
+    private static final MethodHandle STMT_SETTER;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    static {
+        HANDLER_KINDS.put(StringTypeHandler.class, NgqlTemplate.KIND_STRING);
+        HANDLER_KINDS.put(CharacterTypeHandler.class, NgqlTemplate.KIND_STRING);
+        HANDLER_KINDS.put(ByteTypeHandler.class, NgqlTemplate.KIND_INTEGER);
+        HANDLER_KINDS.put(ShortTypeHandler.class, NgqlTemplate.KIND_INTEGER);
+        HANDLER_KINDS.put(IntegerTypeHandler.class, NgqlTemplate.KIND_INTEGER);
+        HANDLER_KINDS.put(LongTypeHandler.class, NgqlTemplate.KIND_INTEGER);
+        HANDLER_KINDS.put(FloatTypeHandler.class, NgqlTemplate.KIND_FLOAT);
+        HANDLER_KINDS.put(DoubleTypeHandler.class, NgqlTemplate.KIND_FLOAT);
+        HANDLER_KINDS.put(BooleanTypeHandler.class, NgqlTemplate.KIND_BOOLEAN);
+        HANDLER_KINDS.put(DateTypeHandler.class, NgqlTemplate.KIND_TIMESTAMP);
+        HANDLER_KINDS.put(SqlTimestampTypeHandler.class, NgqlTemplate.KIND_TIMESTAMP);
+        HANDLER_KINDS.put(DateOnlyTypeHandler.class, NgqlTemplate.KIND_DATE);
+        HANDLER_KINDS.put(SqlDateTypeHandler.class, NgqlTemplate.KIND_DATE);
+        HANDLER_KINDS.put(TimeOnlyTypeHandler.class, NgqlTemplate.KIND_TIME);
+        HANDLER_KINDS.put(SqlTimeTypeHandler.class, NgqlTemplate.KIND_TIME);
+        HANDLER_KINDS.put(LocalDateTypeHandler.class, NgqlTemplate.KIND_LOCAL_DATE);
+        HANDLER_KINDS.put(LocalTimeTypeHandler.class, NgqlTemplate.KIND_LOCAL_TIME);
+        HANDLER_KINDS.put(LocalDateTimeTypeHandler.class, NgqlTemplate.KIND_LOCAL_DATE_TIME);
+        HANDLER_KINDS.put(EnumTypeHandler.class, NgqlTemplate.KIND_ENUM_NAME);
+        HANDLER_KINDS.put(EnumOrdinalTypeHandler.class, NgqlTemplate.KIND_ENUM_ORDINAL);
+        try {
+            PARAMETERS_GETTER = StatementHandlers.getter(NebulaPreparedStatement.class, "parameters");
+            Field stmt = NebulaPreparedStatement.class.getDeclaredField("stmt");
+            stmt.setAccessible(true);
+            STMT_GETTER = MethodHandles.lookup().unreflectGetter(stmt);
+            STMT_SETTER = MethodHandles.lookup().unreflectSetter(stmt);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 最多缓存的模板数，foreach 生成的语句随元素个数变化，超出后淘汰约四分之一的模板
+     */
+    private int cacheSize = 1024;
+
+    /**
+     * 模板缓存：SQL -> 模板，不记录访问顺序，命中时不加锁
+     */
+    private final ConcurrentMap<String, NgqlTemplate> templates = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        StatementHandler handler = (StatementHandler) invocation.getTarget();
+        Statement statement = (Statement) invocation.getArgs()[0];
+        if (!statement.isWrapperFor(NebulaPreparedStatement.class)) {
+            return invocation.proceed();
+        }
+        NebulaPreparedStatement nebulaStatement = statement.unwrap(NebulaPreparedStatement.class);
+        BoundSql boundSql = handler.getBoundSql();
+        String ngql = render(handler, boundSql);
+        if (ngql == null) {
+            // 复用的语句上次可能是渲染后执行的
+            STMT_SETTER.invoke(nebulaStatement, boundSql.getSql());
+            return invocation.proceed();
+        }
+        @SuppressWarnings("unchecked")
+        Map<Integer, Object> parameters = (Map<Integer, Object>) PARAMETERS_GETTER.invoke(nebulaStatement);
+        parameters.clear();
+        parameters.put(1, ngql);
+        STMT_SETTER.invoke(nebulaStatement, RENDERED_STATEMENT);
+        return null;
+    }
+
+    /**
+     * 与 DefaultParameterHandler 相同的方式取参数值，按 TypeHandler 确定类型后渲染
+     *
+     * @return 不能渲染时返回 null
+     */
+    private String render(StatementHandler handler, BoundSql boundSql) throws Throwable {
+        List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+        MappedStatement mappedStatement = StatementHandlers.getMappedStatement(handler);
+        if (parameterMappings.isEmpty() || mappedStatement == null) {
+            return null;
+        }
+        // 键集分页的游标以字面量写入语句，每一页的 SQL 都不同，不缓存
+        NgqlTemplate template = boundSql.hasAdditionalParameter(NebulaPageIntercept.PAGE_PARAMETER)
+                ? NgqlTemplate.compile(boundSql.getSql()) : template(boundSql.getSql());
+        if (template.getSlotCount() != parameterMappings.size()) {
+            return null;
+        }
+        Configuration configuration = mappedStatement.getConfiguration();
+        TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        Object parameterObject = handler.getParameterHandler().getParameterObject();
+        byte[] kinds = new byte[parameterMappings.size()];
+        Object[] values = new Object[kinds.length];
+        MetaObject metaObject = null;
+        for (int i = 0; i < kinds.length; i++) {
+            ParameterMapping parameterMapping = parameterMappings.get(i);
+            if (parameterMapping.getMode() != ParameterMode.IN) {
+                return null;
+            }
+            String property = parameterMapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                value = null;
+            } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+                value = parameterObject;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameterObject);
+                }
+                value = metaObject.getValue(property);
+            }
+            byte kind = kindOf(typeHandlerRegistry, parameterMapping, value);
+            if (kind < 0) {
+                return null;
+            }
+            kinds[i] = kind;
+            values[i] = value;
+        }
+        StringBuilder out = BUFFER.get();
+        try {
+            // 与 nebula-jdbc 默认的 Calendar 相同，使用当前的默认时区
+            return template.render(out, kinds, values, TimeZone.getDefault().toZoneId()) ? out.toString() : null;
+        } finally {
+            if (out.capacity() > MAX_RETAINED_BUFFER) {
+                BUFFER.remove();
+            } else {
+                out.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * 参数的渲染类型，UnknownTypeHandler 与 mybatis 相同按值的类型查找 TypeHandler
+     *
+     * @return 自定义 TypeHandler 等不能渲染时返回 -1
+     */
+    private static byte kindOf(TypeHandlerRegistry typeHandlerRegistry, ParameterMapping parameterMapping, Object value) {
+        if (value == null) {
+            return NgqlTemplate.KIND_NULL;
+        }
+        TypeHandler<?> typeHandler = parameterMapping.getTypeHandler();
+        if (typeHandler instanceof UnknownTypeHandler) {
+            typeHandler = typeHandlerRegistry.getTypeHandler(value.getClass(), parameterMapping.getJdbcType());
+        }
+        if (typeHandler == null || typeHandler instanceof UnknownTypeHandler || typeHandler instanceof ObjectTypeHandler) {
+            // 驱动的 setObject 不支持集合，其余类型仍交给驱动
+            return value instanceof Collection || (value.getClass().isArray() && !(value instanceof byte[])) ? NgqlTemplate.KIND_LIST : -1;
+        }
+        if (typeHandler instanceof EnumTypeHandler && parameterMapping.getJdbcType() != null) {
+            return -1;
+        }
+        Byte kind = HANDLER_KINDS.get(typeHandler.getClass());
+        return kind != null ? kind : -1;
+    }
+
+    private NgqlTemplate template(String sql) {
+        NgqlTemplate template = templates.get(sql);
+        if (template != null) {
+            return template;
+        }
+        template = NgqlTemplate.compile(sql);
+        if (templates.size() >= cacheSize) {
+            evict();
+        }
+        // 并发切分同一条语句时保留先放入的
+        NgqlTemplate existing = templates.putIfAbsent(sql, template);
+        return existing != null ? existing : template;
+    }
+
+    /**
+     * 按哈希顺序淘汰约四分之一的模板，近似的容量限制：并发淘汰时可能多淘汰几个，被淘汰的常用语句下次重新切分
+     */
+    private void evict() {
+        int target = cacheSize - Math.max(1, cacheSize / 4);
+        for (Iterator<String> iterator = templates.keySet().iterator(); iterator.hasNext() && templates.size() > target; ) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 驱动当前要执行的语句：渲染后为 {@code ?}，参数是整条 nGQL；否则为原 SQL
+     */
+    static String currentSql(NebulaPreparedStatement statement) throws Throwable {
+        return (String) STMT_GETTER.invoke(statement);
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof StatementHandler ? Plugin.wrap(target, this) : target;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        cacheSize = Integer.parseInt(properties.getProperty("cacheSize", String.valueOf(cacheSize)));
+    }
+}
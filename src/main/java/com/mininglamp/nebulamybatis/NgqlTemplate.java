@@ -0,0 +1,313 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.jdbc.DateTimeUtil;
+
+import java.lang.reflect.Array;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 预先切分好的 nGQL 模板
+ * <p>
+ * 按引号外的 {@code ?} 把语句切分为常量片段和参数槽，渲染时片段和参数字面量直接追加到同一个缓冲区，
+ * 不再像 nebula-jdbc 那样每个参数先转义成独立的字符串、渲染时再逐字符扫描整条语句。
+ * 与 nebula-jdbc 不同，引号内的反斜杠转义（{@code \'}）不会被误认为字符串结束。
+ * <p>
+ * 参数按槽的类型渲染，结果与 nebula-jdbc 对应的 setXxx 相同（见 {@link #append(StringBuilder, byte, Object, ZoneId)}）；
+ * 另外支持集合、数组：紧跟在 {@code IN} 之后的槽渲染为 {@code [a, b, ...]}，其余位置渲染为 {@code a, b, ...}，
+ * 用于 {@code GO FROM ?}、{@code FETCH PROP ON t ?}，大量 VID 不再需要 foreach 逐个生成占位符。
+ *
+ * @author daiyi
+ */
+final class NgqlTemplate {
+
+    static final byte KIND_NULL = 0;
+    /**
+     * 字符串：单引号包围，与 nebula-jdbc 的 setString 相同转义 \ ' 和换行
+     */
+    static final byte KIND_STRING = 1;
+    static final byte KIND_INTEGER = 2;
+    static final byte KIND_FLOAT = 3;
+    static final byte KIND_BOOLEAN = 4;
+    /**
+     * java.util.Date 按日期渲染为 date("...")
+     */
+    static final byte KIND_DATE = 5;
+    /**
+     * java.util.Date 按时间渲染为 time("...")
+     */
+    static final byte KIND_TIME = 6;
+    /**
+     * java.util.Date 渲染为秒级时间戳，与 nebula-jdbc 的 setTimestamp 相同
+     */
+    static final byte KIND_TIMESTAMP = 7;
+    static final byte KIND_LOCAL_DATE = 8;
+    static final byte KIND_LOCAL_TIME = 9;
+    static final byte KIND_LOCAL_DATE_TIME = 10;
+    static final byte KIND_ENUM_NAME = 11;
+    static final byte KIND_ENUM_ORDINAL = 12;
+    /**
+     * 集合、数组，元素按自身的类型渲染
+     */
+    static final byte KIND_LIST = 13;
+
+    private final String sql;
+    /**
+     * 常量片段，比参数槽多一个
+     */
+    private final String[] segments;
+    /**
+     * 各参数槽是否紧跟在 IN 之后，集合需要渲染为列表字面量
+     */
+    private final boolean[] inList;
+    private final int constantLength;
+
+    private NgqlTemplate(String sql, List<String> segments, List<Boolean> inList) {
+        this.sql = sql;
+        this.segments = segments.toArray(new String[0]);
+        this.inList = new boolean[inList.size()];
+        for (int i = 0; i < this.inList.length; i++) {
+            this.inList[i] = inList.get(i);
+        }
+        int length = 0;
+        for (String segment : this.segments) {
+            length += segment.length();
+        }
+        this.constantLength = length;
+    }
+
+    /**
+     * 切分语句，跳过单引号、双引号、反引号内的内容
+     */
+    static NgqlTemplate compile(String sql) {
+        List<String> segments = new ArrayList<>();
+        List<Boolean> inList = new ArrayList<>();
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '?') {
+                segments.add(sql.substring(start, i));
+                inList.add(followsIn(sql, i));
+                start = i + 1;
+            }
+        }
+        segments.add(sql.substring(start));
+        return new NgqlTemplate(sql, segments, inList);
+    }
+
+    private static boolean followsIn(String sql, int slot) {
+        int end = slot;
+        while (end > 0 && Character.isWhitespace(sql.charAt(end - 1))) {
+            end--;
+        }
+        if (end < 2 || !sql.regionMatches(true, end - 2, "IN", 0, 2)) {
+            return false;
+        }
+        return end == 2 || !Character.isJavaIdentifierPart(sql.charAt(end - 3));
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    int getSlotCount() {
+        return inList.length;
+    }
+
+    /**
+     * 渲染到缓冲区末尾
+     *
+     * @param kinds  各参数槽的类型
+     * @param values 各参数槽的值
+     * @param zone   日期、时间按该时区格式化，与 nebula-jdbc 默认的 Calendar 一致
+     * @return 集合中有不支持的元素类型时返回 false，缓冲区内容不可用
+     */
+    boolean render(StringBuilder out, byte[] kinds, Object[] values, ZoneId zone) {
+        out.ensureCapacity(out.length() + constantLength + kinds.length * 8);
+        out.append(segments[0]);
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == KIND_LIST && values[i] != null) {
+                if (!appendList(out, values[i], inList[i], zone)) {
+                    return false;
+                }
+            } else {
+                append(out, kinds[i], values[i], zone);
+            }
+            out.append(segments[i + 1]);
+        }
+        return true;
+    }
+
+    /**
+     * 按类型追加一个字面量，null 渲染为 null
+     */
+    static void append(StringBuilder out, byte kind, Object value, ZoneId zone) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        switch (kind) {
+            case KIND_STRING:
+                appendString(out, value.toString());
+                break;
+            case KIND_INTEGER:
+                out.append(((Number) value).longValue());
+                break;
+            case KIND_FLOAT:
+                if (value instanceof Float) {
+                    out.append(((Float) value).floatValue());
+                } else {
+                    out.append(((Number) value).doubleValue());
+                }
+                break;
+            case KIND_BOOLEAN:
+                out.append(((Boolean) value).booleanValue());
+                break;
+            case KIND_DATE:
+                out.append("date(\"").append(DateTimeUtil.formatDate(((java.util.Date) value).getTime(), zone)).append("\")");
+                break;
+            case KIND_TIME:
+                out.append("time(\"").append(DateTimeUtil.formatTime(((java.util.Date) value).getTime(), zone)).append("\")");
+                break;
+            case KIND_TIMESTAMP:
+                out.append(((java.util.Date) value).getTime() / 1000L);
+                break;
+            case KIND_LOCAL_DATE:
+                append(out, KIND_DATE, java.sql.Date.valueOf((LocalDate) value), zone);
+                break;
+            case KIND_LOCAL_TIME:
+                append(out, KIND_TIME, java.sql.Time.valueOf((LocalTime) value), zone);
+                break;
+            case KIND_LOCAL_DATE_TIME:
+                append(out, KIND_TIMESTAMP, java.sql.Timestamp.valueOf((LocalDateTime) value), zone);
+                break;
+            case KIND_ENUM_NAME:
+                appendString(out, ((Enum<?>) value).name());
+                break;
+            case KIND_ENUM_ORDINAL:
+                out.append(((Enum<?>) value).ordinal());
+                break;
+            case KIND_LIST:
+                appendList(out, value, true, zone);
+                break;
+            default:
+                out.append(value);
+                break;
+        }
+    }
+
+    /**
+     * 集合、数组逐个元素追加，元素类型按值判断
+     *
+     * @param bracket 是否用 [] 包围
+     * @return 有不支持的元素类型时返回 false
+     */
+    private static boolean appendList(StringBuilder out, Object value, boolean bracket, ZoneId zone) {
+        if (bracket) {
+            out.append('[');
+        }
+        boolean first = true;
+        if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    out.append(", ");
+                }
+                first = false;
+                if (!appendElement(out, element, zone)) {
+                    return false;
+                }
+            }
+        } else {
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                if (!appendElement(out, Array.get(value, i), zone)) {
+                    return false;
+                }
+            }
+        }
+        if (bracket) {
+            out.append(']');
+        }
+        return true;
+    }
+
+    private static boolean appendElement(StringBuilder out, Object element, ZoneId zone) {
+        byte kind = kindOfElement(element);
+        if (kind < 0) {
+            return false;
+        }
+        if (kind == KIND_LIST) {
+            return appendList(out, element, true, zone);
+        }
+        append(out, kind, element, zone);
+        return true;
+    }
+
+    /**
+     * 集合元素的类型
+     *
+     * @return 不支持时返回 -1
+     */
+    static byte kindOfElement(Object element) {
+        if (element == null) {
+            return KIND_NULL;
+        } else if (element instanceof String || element instanceof Character) {
+            return KIND_STRING;
+        } else if (element instanceof Long || element instanceof Integer || element instanceof Short || element instanceof Byte) {
+            return KIND_INTEGER;
+        } else if (element instanceof Double || element instanceof Float) {
+            return KIND_FLOAT;
+        } else if (element instanceof Boolean) {
+            return KIND_BOOLEAN;
+        } else if (element instanceof Enum) {
+            return KIND_ENUM_NAME;
+        } else if (element instanceof LocalDate) {
+            return KIND_LOCAL_DATE;
+        } else if (element instanceof Collection || (element.getClass().isArray() && !(element instanceof byte[]))) {
+            return KIND_LIST;
+        }
+        return -1;
+    }
+
+    /**
+     * 与 nebula-jdbc 的 setString 相同：单引号包围，\ 和 ' 前加反斜杠，换行写作 \n
+     */
+    private static void appendString(StringBuilder out, String value) {
+        out.append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\'':
+                    out.append("\\'");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+        out.append('\'');
+    }
+}
@@ -0,0 +1,170 @@
+package com.mininglamp.nebulamybatis;
+
+import java.io.UnsupportedEncodingException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 并行行解码
+ * <p>
+ * 直接映射模式下，已读取的行按固定大小分块，每块由独立的 {@link NebulaRowDecoder} 在线程池中解码，
+ * 最后一块在调用线程上解码，结果按块的顺序拼接，与逐行解码的顺序一致。
+ * 行数低于阈值时直接在调用线程上解码，不提交任何任务。
+ *
+ * @author daiyi
+ */
+final class ParallelRowDecoder {
+
+    private final MappingPlan plan;
+    private final Executor executor;
+    private final int threshold;
+    private final int chunkSize;
+    /**
+     * 统计，未开启指标时为 null；各分块单独统计，结束后合并
+     */
+    private final NebulaMappingStats stats;
+    private final boolean lazyDecode;
+    private final ReturnProjection projection;
+    /**
+     * 字符串驻留容量，0 表示不驻留；驻留表非线程安全，每块单独驻留
+     */
+    private final int internCapacity;
+
+    ParallelRowDecoder(MappingPlan plan, Executor executor, int threshold, int chunkSize, NebulaMappingStats stats,
+                       boolean lazyDecode, ReturnProjection projection, int internCapacity) {
+        this.plan = plan;
+        this.internCapacity = internCapacity;
+        this.lazyDecode = lazyDecode;
+        this.projection = projection;
+        this.executor = executor;
+        this.threshold = threshold;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.stats = stats;
+    }
+
+    /**
+     * 解码全部行
+     *
+     * @param rows 已读取的行，只包含点/边/路径或空值
+     * @return 有点/边时返回点/边对象，否则每行一个对象
+     * @throws SQLException
+     * @throws UnsupportedEncodingException
+     */
+    List<Object> decode(List<Object[]> rows) throws SQLException, UnsupportedEncodingException {
+        int size = rows.size();
+        if (size < threshold || size <= chunkSize) {
+            Chunk chunk = decodeChunk(rows, 0, size);
+            mergeStats(chunk);
+            return chunk.result();
+        }
+        int chunks = (size + chunkSize - 1) / chunkSize;
+        List<CompletableFuture<Chunk>> futures = new ArrayList<>(chunks - 1);
+        for (int i = 0; i < chunks - 1; i++) {
+            int from = i * chunkSize;
+            int to = from + chunkSize;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return decodeChunk(rows, from, to);
+                } catch (SQLException | UnsupportedEncodingException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        Chunk last = decodeChunk(rows, (chunks - 1) * chunkSize, size);
+        List<Chunk> decoded = new ArrayList<>(chunks);
+        for (CompletableFuture<Chunk> future : futures) {
+            decoded.add(join(future));
+        }
+        decoded.add(last);
+        for (Chunk chunk : decoded) {
+            mergeStats(chunk);
+        }
+        return merge(decoded);
+    }
+
+    private Chunk decodeChunk(List<Object[]> rows, int from, int to) throws SQLException, UnsupportedEncodingException {
+        NebulaMappingStats chunkStats = stats != null ? new NebulaMappingStats() : null;
+        NebulaRowDecoder decoder = new NebulaRowDecoder(plan, chunkStats, lazyDecode, projection, StringInterner.create(internCapacity));
+        Chunk chunk = new Chunk(to - from, chunkStats);
+        long start = chunkStats != null ? System.nanoTime() : 0L;
+        for (int i = from; i < to; i++) {
+            if (!decoder.decodeCells(rows.get(i), chunk.graphObjects, chunk.rowObjects)) {
+                throw new SQLException("结果中包含非点、边、路径的数据，无法并行解码");
+            }
+        }
+        if (chunkStats != null) {
+            chunkStats.decoded(System.nanoTime() - start);
+        }
+        return chunk;
+    }
+
+    private void mergeStats(Chunk chunk) {
+        if (stats != null) {
+            stats.merge(chunk.stats);
+        }
+    }
+
+    /**
+     * 与逐行解码一致：只要有一个点/边，就只返回点/边对象
+     */
+    private static List<Object> merge(List<Chunk> chunks) {
+        boolean graphElement = false;
+        int graphSize = 0;
+        int rowSize = 0;
+        for (Chunk chunk : chunks) {
+            graphElement |= !chunk.graphObjects.isEmpty();
+            graphSize += chunk.graphObjects.size();
+            rowSize += chunk.rowObjects.size();
+        }
+        List<Object> result = new ArrayList<>(graphElement ? graphSize : rowSize);
+        for (Chunk chunk : chunks) {
+            result.addAll(graphElement ? chunk.graphObjects : chunk.rowObjects);
+        }
+        return result;
+    }
+
+    private static Chunk join(CompletableFuture<Chunk> future) throws SQLException, UnsupportedEncodingException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof UnsupportedEncodingException) {
+                throw (UnsupportedEncodingException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 一块行的解码结果
+     */
+    private static final class Chunk {
+
+        private final List<Object> graphObjects;
+        private final List<Object> rowObjects;
+        private final NebulaMappingStats stats;
+
+        Chunk(int rows, NebulaMappingStats stats) {
+            this.graphObjects = new ArrayList<>(rows);
+            this.rowObjects = new ArrayList<>();
+            this.stats = stats;
+        }
+
+        List<Object> result() {
+            return graphObjects.isEmpty() ? rowObjects : graphObjects;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.mininglamp.nebulamybatis;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * bean 属性写入器
+ * <p>
+ * 每个 (bean类型, 属性) 只解析一次 setter，之后写值不再有任何反射查找：
+ * 优先用 LambdaMetafactory 生成 BiConsumer，调用开销等同于直接调用 setter；
+ * bean 类对当前 ClassLoader 不可见或 setter 不是 public 时，退化为 MethodHandle 调用。
+ * long/int/double/boolean 类型的 setter 另外提供不装箱的写入方法。
+ *
+ * @author daiyi
+ */
+abstract class PropertyWriter {
+
+    /**
+     * 没有 setter 的属性，写入时直接忽略
+     */
+    static final PropertyWriter NOOP = new PropertyWriter(Object.class, Object.class) {
+        @Override
+        void write(Object bean, Object value) {
+        }
+    };
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Class<?> propertyType;
+    private final Type genericPropertyType;
+
+    private PropertyWriter(Class<?> propertyType, Type genericPropertyType) {
+        this.propertyType = propertyType;
+        this.genericPropertyType = genericPropertyType;
+    }
+
+    /**
+     * setter 参数类型
+     */
+    Class<?> getPropertyType() {
+        return propertyType;
+    }
+
+    /**
+     * setter 参数的泛型类型，用于集合元素的类型转换
+     */
+    Type getGenericPropertyType() {
+        return genericPropertyType;
+    }
+
+    boolean isNoop() {
+        return this == NOOP;
+    }
+
+    /**
+     * @return 是否通过 LambdaMetafactory 生成的实现写入
+     */
+    boolean isGenerated() {
+        return false;
+    }
+
+    /**
+     * 写入属性值
+     *
+     * @param bean  目标对象
+     * @param value 属性值
+     */
+    abstract void write(Object bean, Object value);
+
+    /**
+     * 写入 long 属性，只能用于 long/Long 类型的 setter
+     */
+    void writeLong(Object bean, long value) {
+        write(bean, value);
+    }
+
+    /**
+     * 写入 int 属性，只能用于 int/Integer 类型的 setter
+     */
+    void writeInt(Object bean, int value) {
+        write(bean, value);
+    }
+
+    /**
+     * 写入 double 属性，只能用于 double/Double 类型的 setter
+     */
+    void writeDouble(Object bean, double value) {
+        write(bean, value);
+    }
+
+    /**
+     * 写入 boolean 属性，只能用于 boolean/Boolean 类型的 setter
+     */
+    void writeBoolean(Object bean, boolean value) {
+        write(bean, value);
+    }
+
+    /**
+     * 解析属性的写入器
+     *
+     * @param beanType bean类型
+     * @param property 属性名
+     * @return 写入器，属性不存在或没有 setter 时返回 {@link #NOOP}
+     */
+    static PropertyWriter of(Class<?> beanType, String property) {
+        PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(beanType, property);
+        Method writeMethod = pd == null ? null : pd.getWriteMethod();
+        if (writeMethod == null) {
+            return NOOP;
+        }
+        Class<?> propertyType = writeMethod.getParameterTypes()[0];
+        Type genericPropertyType = writeMethod.getGenericParameterTypes()[0];
+        try {
+            ReflectionUtils.makeAccessible(writeMethod);
+            MethodHandle setter = LOOKUP.unreflect(writeMethod);
+            if (canSpinLambda(beanType, writeMethod)) {
+                try {
+                    return spinWriter(beanType, setter, propertyType, genericPropertyType);
+                } catch (Throwable e) {
+                    // 生成失败时使用 MethodHandle
+                }
+            }
+            MethodHandle generic = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            MethodHandle primitive = propertyType.isPrimitive()
+                    ? setter.asType(MethodType.methodType(void.class, Object.class, propertyType)) : null;
+            return new MethodHandlePropertyWriter(propertyType, genericPropertyType, generic, primitive);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("无法访问属性 " + beanType.getName() + "." + property + " 的 setter", e);
+        }
+    }
+
+    /**
+     * 生成的 lambda 类由本类的 ClassLoader 加载，只有 bean、setter 参数类型对其可见且为 public 时才能直接链接；
+     * 基本类型没有 ClassLoader，总是可见
+     */
+    private static boolean canSpinLambda(Class<?> beanType, Method writeMethod) {
+        ClassLoader classLoader = PropertyWriter.class.getClassLoader();
+        Class<?> declaringClass = writeMethod.getDeclaringClass();
+        Class<?> paramType = writeMethod.getParameterTypes()[0];
+        return Modifier.isPublic(beanType.getModifiers())
+                && Modifier.isPublic(declaringClass.getModifiers())
+                && Modifier.isPublic(writeMethod.getModifiers())
+                && ClassUtils.isVisible(beanType, classLoader)
+                && ClassUtils.isVisible(declaringClass, classLoader)
+                && (paramType.isPrimitive() || ClassUtils.isVisible(paramType, classLoader));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PropertyWriter spinWriter(Class<?> beanType, MethodHandle setter, Class<?> propertyType, Type genericPropertyType) throws Throwable {
+        BiConsumer<Object, Object> consumer = (BiConsumer<Object, Object>) spinLambda(BiConsumer.class, "accept", Object.class,
+                beanType, setter, ClassUtils.resolvePrimitiveIfNecessary(propertyType));
+        if (propertyType == long.class) {
+            ObjLongConsumer<Object> primitive = (ObjLongConsumer<Object>) spinLambda(ObjLongConsumer.class, "accept", long.class, beanType, setter, long.class);
+            return new LambdaPropertyWriter(propertyType, genericPropertyType, consumer) {
+                @Override
+                void writeLong(Object bean, long value) {
+                    primitive.accept(bean, value);
+                }
+            };
+        }
+        if (propertyType == int.class) {
+            ObjIntConsumer<Object> primitive = (ObjIntConsumer<Object>) spinLambda(ObjIntConsumer.class, "accept", int.class, beanType, setter, int.class);
+            return new LambdaPropertyWriter(propertyType, genericPropertyType, consumer) {
+                @Override
+                void writeInt(Object bean, int value) {
+                    primitive.accept(bean, value);
+                }
+            };
+        }
+        if (propertyType == double.class) {
+            ObjDoubleConsumer<Object> primitive = (ObjDoubleConsumer<Object>) spinLambda(ObjDoubleConsumer.class, "accept", double.class, beanType, setter, double.class);
+            return new LambdaPropertyWriter(propertyType, genericPropertyType, consumer) {
+                @Override
+                void writeDouble(Object bean, double value) {
+                    primitive.accept(bean, value);
+                }
+            };
+        }
+        if (propertyType == boolean.class) {
+            BooleanSetter primitive = (BooleanSetter) spinLambda(BooleanSetter.class, "set", boolean.class, beanType, setter, boolean.class);
+            return new LambdaPropertyWriter(propertyType, genericPropertyType, consumer) {
+                @Override
+                void writeBoolean(Object bean, boolean value) {
+                    primitive.set(bean, value);
+                }
+            };
+        }
+        return new LambdaPropertyWriter(propertyType, genericPropertyType, consumer);
+    }
+
+    /**
+     * 生成函数式接口实现，接口方法签名为 (Object, valueType)void
+     */
+    private static Object spinLambda(Class<?> functionType, String methodName, Class<?> valueType,
+                                     Class<?> beanType, MethodHandle setter, Class<?> instantiatedValueType) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP, methodName,
+                MethodType.methodType(functionType),
+                MethodType.methodType(void.class, Object.class, valueType),
+                setter,
+                MethodType.methodType(void.class, beanType, instantiatedValueType));
+        return site.getTarget().invoke();
+    }
+
+    /**
+     * boolean setter，JDK 没有对应的函数式接口
+     */
+    interface BooleanSetter {
+        void set(Object bean, boolean value);
+    }
+
+    private static class LambdaPropertyWriter extends PropertyWriter {
+
+        private final BiConsumer<Object, Object> consumer;
+
+        LambdaPropertyWriter(Class<?> propertyType, Type genericPropertyType, BiConsumer<Object, Object> consumer) {
+            super(propertyType, genericPropertyType);
+            this.consumer = consumer;
+        }
+
+        @Override
+        void write(Object bean, Object value) {
+            consumer.accept(bean, value);
+        }
+
+        @Override
+        boolean isGenerated() {
+            return true;
+        }
+    }
+
+    private static final class MethodHandlePropertyWriter extends PropertyWriter {
+
+        private final MethodHandle setter;
+        /**
+         * 基本类型 setter，类型为 (Object, 基本类型)void，非基本类型时为 null
+         */
+        private final MethodHandle primitive;
+
+        MethodHandlePropertyWriter(Class<?> propertyType, Type genericPropertyType, MethodHandle setter, MethodHandle primitive) {
+            super(propertyType, genericPropertyType);
+            this.setter = setter;
+            this.primitive = primitive;
+        }
+
+        @Override
+        void write(Object bean, Object value) {
+            try {
+                setter.invokeExact(bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+
+        @Override
+        void writeLong(Object bean, long value) {
+            if (getPropertyType() != long.class) {
+                super.writeLong(bean, value);
+                return;
+            }
+            try {
+                primitive.invokeExact(bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+
+        @Override
+        void writeInt(Object bean, int value) {
+            if (getPropertyType() != int.class) {
+                super.writeInt(bean, value);
+                return;
+            }
+            try {
+                primitive.invokeExact(bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+
+        @Override
+        void writeDouble(Object bean, double value) {
+            if (getPropertyType() != double.class) {
+                super.writeDouble(bean, value);
+                return;
+            }
+            try {
+                primitive.invokeExact(bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+
+        @Override
+        void writeBoolean(Object bean, boolean value) {
+            if (getPropertyType() != boolean.class) {
+                super.writeBoolean(bean, value);
+                return;
+            }
+            try {
+                primitive.invokeExact(bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+    }
+}
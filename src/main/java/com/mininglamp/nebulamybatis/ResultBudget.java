@@ -0,0 +1,216 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.*;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次查询的结果预算
+ * <p>
+ * 映射前检查结果的行数和值的估算字节数。nebula-jdbc 的结果集直接取客户端 ResultSet 的行数，
+ * 字节数从原始的 nebula Row 估算，不经过 ValueWrapper、不解码；行数超过 {@link #SAMPLE_ROWS} 时等间隔抽样，
+ * 按抽样行的平均大小推算总量。字节数按 nebula 值编码后的大小估算（字符串按字节长度、数值按 8 字节、
+ * 点边按 VID、名称和属性累加），不是 JVM 中对象的实际大小，只用于识别缺少 LIMIT 之类异常大的结果。
+ *
+ * @author daiyi
+ */
+final class ResultBudget {
+
+    /**
+     * 日期、时间等定长值的估算字节数
+     */
+    private static final int FIXED_SIZE = 16;
+
+    /**
+     * 估算字节数时最多抽样的行数
+     */
+    static final int SAMPLE_ROWS = 256;
+
+    private final String statementId;
+    private final long maxRows;
+    private final long maxBytes;
+    private final NebulaOverBudget overBudget;
+    private long rows;
+    private long bytes;
+
+    private ResultBudget(String statementId, long maxRows, long maxBytes, NebulaOverBudget overBudget) {
+        this.statementId = statementId;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.overBudget = overBudget;
+    }
+
+    /**
+     * @param maxRows  行数上限，小于等于 0 表示不限制
+     * @param maxBytes 字节上限，小于等于 0 表示不限制
+     * @return 都不限制时返回 null
+     */
+    static ResultBudget of(String statementId, long maxRows, long maxBytes, NebulaOverBudget overBudget) {
+        return maxRows > 0 || maxBytes > 0 ? new ResultBudget(statementId, maxRows, maxBytes, overBudget) : null;
+    }
+
+    /**
+     * 按 MappedStatement id、mapper 命名空间的顺序查找单独设置的值
+     */
+    static <V> V forStatement(Map<String, V> values, String statementId, V defaultValue) {
+        V value = values.get(statementId);
+        if (value == null) {
+            int dot = statementId.lastIndexOf('.');
+            value = dot > 0 ? values.get(statementId.substring(0, dot)) : null;
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    NebulaOverBudget getOverBudget() {
+        return overBudget;
+    }
+
+    /**
+     * 检查结果集，不移动结果集的位置
+     *
+     * @param resultSet 尚未读取的结果集
+     * @return 超出预算时返回 true
+     */
+    boolean exceeds(ResultSet resultSet) throws SQLException {
+        com.vesoft.nebula.client.graph.data.ResultSet clientResultSet = StatementHandlers.clientResultSet(resultSet);
+        if (clientResultSet == null) {
+            return scan(resultSet);
+        }
+        int size = clientResultSet.rowsSize();
+        rows = size;
+        if (maxRows > 0 && rows > maxRows) {
+            return true;
+        }
+        if (maxBytes <= 0 || size == 0) {
+            return false;
+        }
+        List<Row> data = clientResultSet.getRows();
+        int step = Math.max(1, size / SAMPLE_ROWS);
+        long sampled = 0;
+        int sampledRows = 0;
+        for (int i = 0; i < size; i += step) {
+            sampled += estimate(data.get(i).getValues());
+            sampledRows++;
+        }
+        bytes = sampledRows == size ? sampled : (long) ((double) sampled / sampledRows * size);
+        return bytes > maxBytes;
+    }
+
+    /**
+     * 不是 nebula-jdbc 的结果集时逐行扫描，扫描后回到第一行之前
+     */
+    private boolean scan(ResultSet resultSet) throws SQLException {
+        int columnCount = resultSet.getMetaData().getColumnCount();
+        try {
+            while (resultSet.next()) {
+                rows++;
+                if (maxRows > 0 && rows > maxRows) {
+                    return true;
+                }
+                if (maxBytes > 0) {
+                    for (int index = 1; index <= columnCount; index++) {
+                        Object val = JdbcUtils.getResultSetValue(resultSet, index);
+                        bytes += val instanceof ValueWrapper ? estimate(((ValueWrapper) val).getValue()) : 8;
+                    }
+                    if (bytes > maxBytes) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            resultSet.beforeFirst();
+        }
+    }
+
+    NebulaResultTooLargeException exceeded(String reason) {
+        return new NebulaResultTooLargeException(statementId, rows, bytes, maxRows, maxBytes, reason);
+    }
+
+    /**
+     * 估算一个值编码后的字节数
+     */
+    static long estimate(Value value) {
+        if (value == null) {
+            return 1;
+        }
+        switch (value.getSetField()) {
+            case Value.NVAL:
+            case Value.BVAL:
+                return 1;
+            case Value.IVAL:
+            case Value.FVAL:
+                return 8;
+            case Value.SVAL:
+                return value.getSVal().length;
+            case Value.DVAL:
+            case Value.TVAL:
+            case Value.DTVAL:
+                return FIXED_SIZE;
+            case Value.VVAL:
+                return estimate(value.getVVal());
+            case Value.EVAL:
+                return estimate(value.getEVal());
+            case Value.PVAL:
+                Path path = value.getPVal();
+                long size = estimate(path.getSrc());
+                for (Step step : path.getSteps()) {
+                    size += estimate(step.getDst()) + step.getName().length + 12 + estimate(step.getProps());
+                }
+                return size;
+            case Value.LVAL:
+                return estimate(value.getLVal().getValues());
+            case Value.UVAL:
+                long setSize = 0;
+                for (Value element : value.getUVal().getValues()) {
+                    setSize += estimate(element);
+                }
+                return setSize;
+            case Value.MVAL:
+                return estimate(value.getMVal().getKvs());
+            case Value.GVAL:
+                long dataSetSize = 0;
+                for (Row row : value.getGVal().getRows()) {
+                    dataSetSize += estimate(row.getValues());
+                }
+                return dataSetSize;
+            default:
+                return FIXED_SIZE;
+        }
+    }
+
+    private static long estimate(Vertex vertex) {
+        long size = estimate(vertex.getVid());
+        for (Tag tag : vertex.getTags()) {
+            size += tag.getName().length + estimate(tag.getProps());
+        }
+        return size;
+    }
+
+    private static long estimate(Edge edge) {
+        return estimate(edge.getSrc()) + estimate(edge.getDst()) + edge.getName().length + 12 + estimate(edge.getProps());
+    }
+
+    private static long estimate(List<Value> values) {
+        long size = 0;
+        for (Value element : values) {
+            size += estimate(element);
+        }
+        return size;
+    }
+
+    private static long estimate(Map<byte[], Value> props) {
+        long size = 0;
+        if (props != null) {
+            for (Map.Entry<byte[], Value> entry : props.entrySet()) {
+                size += entry.getKey().length + estimate(entry.getValue());
+            }
+        }
+        return size;
+    }
+}
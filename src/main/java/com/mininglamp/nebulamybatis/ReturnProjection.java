@@ -0,0 +1,207 @@
+package com.mininglamp.nebulamybatis;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * RETURN 整个点/边改写为按映射列投影
+ * <p>
+ * 只处理单条 MATCH 语句，且 RETURN 只有一个变量（后面只能跟 SKIP、LIMIT），该变量在模式中绑定为单一 tag 的点
+ * {@code (v:t)} 或单一类型的边 {@code [e:t]}：
+ * {@code RETURN v} 改写为 {@code RETURN id(v) AS `id`, v.t.a AS `a`, ...}，
+ * {@code RETURN e} 改写为 {@code RETURN src(e) AS `_src`, dst(e) AS `_dst`, e.a AS `a`, ...}。
+ * 投影列的顺序与映射计划的列顺序一致。映射了 _tag 或 tag.prop 列的语句、含 WITH、UNWIND、UNION、管道、多条语句、注释或无法确定绑定的语句不改写。
+ *
+ * @author daiyi
+ */
+final class ReturnProjection {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern MATCH = Pattern.compile("^\\s*(?:OPTIONAL\\s+)?MATCH\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern UNSUPPORTED = Pattern.compile("\\b(?:WITH|UNWIND|UNION|CALL|RETURN\\s+DISTINCT)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RETURN = Pattern.compile("\\bRETURN\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RETURN_VARIABLE = Pattern.compile(
+            "\\bRETURN\\s+([A-Za-z_][A-Za-z0-9_]*)(\\s*(?:SKIP\\s+(?:\\d+|\\?)\\s*)?(?:LIMIT\\s+(?:\\d+|\\?)\\s*)?;?\\s*)$",
+            Pattern.CASE_INSENSITIVE);
+
+    private final String sql;
+    private final boolean edge;
+    private final int columnCount;
+
+    private ReturnProjection(String sql, boolean edge, int columnCount) {
+        this.sql = sql;
+        this.edge = edge;
+        this.columnCount = columnCount;
+    }
+
+    /**
+     * 改写后的语句
+     */
+    String getSql() {
+        return sql;
+    }
+
+    /**
+     * 投影的是边还是点
+     */
+    boolean isEdge() {
+        return edge;
+    }
+
+    /**
+     * 投影列数，与映射计划的列数一致
+     */
+    int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * 改写 RETURN 子句
+     *
+     * @param sql          带 ? 占位符的 nGQL
+     * @param columns      映射计划的列
+     * @param tagQualified 点属性是否带 tag 限定（v.t.a，nebula 3.x 语法），否则为 v.a
+     * @return 无法安全改写时返回 null
+     */
+    static ReturnProjection rewrite(String sql, String[] columns, boolean tagQualified) {
+        if (sql == null || columns.length == 0) {
+            return null;
+        }
+        String masked = mask(sql);
+        if (masked == null || !MATCH.matcher(masked).find() || UNSUPPORTED.matcher(masked).find()) {
+            return null;
+        }
+        int end = masked.length();
+        while (end > 0 && (Character.isWhitespace(masked.charAt(end - 1)) || masked.charAt(end - 1) == ';')) {
+            end--;
+        }
+        if (masked.substring(0, end).indexOf(';') >= 0 || masked.indexOf('|') >= 0) {
+            return null;
+        }
+        Matcher returns = RETURN.matcher(masked);
+        if (!returns.find() || returns.find()) {
+            return null;
+        }
+        Matcher matcher = RETURN_VARIABLE.matcher(masked);
+        if (!matcher.find()) {
+            return null;
+        }
+        String variable = matcher.group(1);
+        String pattern = masked.substring(0, matcher.start());
+        String nodeLabel = label(pattern, "\\(", variable, "[){]");
+        String edgeLabel = label(pattern, "\\[", variable, "[\\]{]");
+        // 只能绑定为点或边之一，且标签唯一
+        if ((nodeLabel == null) == (edgeLabel == null) || (nodeLabel != null && nodeLabel.isEmpty())
+                || (edgeLabel != null && edgeLabel.isEmpty())) {
+            return null;
+        }
+        boolean edge = edgeLabel != null;
+        String projection = edge ? edgeProjection(variable, columns) : vertexProjection(variable, nodeLabel, columns, tagQualified);
+        if (projection == null) {
+            return null;
+        }
+        String rewritten = sql.substring(0, matcher.start(1)) + projection + sql.substring(matcher.end(1));
+        return new ReturnProjection(rewritten, edge, columns.length);
+    }
+
+    /**
+     * 模式中变量绑定的 tag / edge type
+     *
+     * @return 没有带标签的绑定时返回 null，标签不唯一或存在无法识别的绑定时返回空字符串
+     */
+    static String label(String pattern, String open, String variable, String close) {
+        Matcher bound = Pattern.compile(open + "\\s*" + variable + "\\s*:").matcher(pattern);
+        Matcher labeled = Pattern.compile(open + "\\s*" + variable + "\\s*:\\s*([A-Za-z_][A-Za-z0-9_]*)\\s*(?=" + close + ")").matcher(pattern);
+        int bindings = 0;
+        while (bound.find()) {
+            bindings++;
+        }
+        Set<String> labels = new HashSet<>();
+        int matched = 0;
+        while (labeled.find()) {
+            matched++;
+            labels.add(labeled.group(1));
+        }
+        if (bindings == 0) {
+            return null;
+        }
+        return matched == bindings && labels.size() == 1 ? labels.iterator().next() : "";
+    }
+
+    private static String vertexProjection(String variable, String tag, String[] columns, boolean tagQualified) {
+        StringBuilder projection = new StringBuilder();
+        for (String column : columns) {
+            if (!IDENTIFIER.matcher(column).matches() || MappingPlan.TAG_COLUMN.equals(column)) {
+                return null;
+            }
+            if (projection.length() > 0) {
+                projection.append(", ");
+            }
+            if ("id".equals(column)) {
+                projection.append("id(").append(variable).append(')');
+            } else {
+                projection.append(variable).append('.');
+                if (tagQualified) {
+                    projection.append(tag).append('.');
+                }
+                projection.append(column);
+            }
+            projection.append(" AS `").append(column).append('`');
+        }
+        return projection.toString();
+    }
+
+    private static String edgeProjection(String variable, String[] columns) {
+        StringBuilder projection = new StringBuilder();
+        for (String column : columns) {
+            if (!IDENTIFIER.matcher(column).matches() || MappingPlan.TAG_COLUMN.equals(column)) {
+                return null;
+            }
+            if (projection.length() > 0) {
+                projection.append(", ");
+            }
+            if ("_src".equals(column)) {
+                projection.append("src(").append(variable).append(')');
+            } else if ("_dst".equals(column)) {
+                projection.append("dst(").append(variable).append(')');
+            } else {
+                projection.append(variable).append('.').append(column);
+            }
+            projection.append(" AS `").append(column).append('`');
+        }
+        return projection.toString();
+    }
+
+    /**
+     * 把字符串、反引号标识符的内容替换为空格，位置与原语句一致
+     *
+     * @return 含注释或引号未结束时返回 null
+     */
+    static String mask(String sql) {
+        char[] chars = sql.toCharArray();
+        int i = 0;
+        while (i < chars.length) {
+            char c = chars[i];
+            if (c == '\'' || c == '"' || c == '`') {
+                int j = i + 1;
+                while (j < chars.length && chars[j] != c) {
+                    if (chars[j] == '\\' && c != '`' && j + 1 < chars.length) {
+                        chars[j++] = ' ';
+                    }
+                    chars[j++] = ' ';
+                }
+                if (j >= chars.length) {
+                    return null;
+                }
+                i = j + 1;
+            } else if (c == '#' || (c == '/' && i + 1 < chars.length && (chars[i + 1] == '/' || chars[i + 1] == '*'))) {
+                return null;
+            } else {
+                i++;
+            }
+        }
+        return new String(chars);
+    }
+}
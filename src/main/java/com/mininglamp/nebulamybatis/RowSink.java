@@ -0,0 +1,25 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+
+import java.sql.SQLException;
+
+/**
+ * 二次映射前按映射计划的列逐行写入：内存中的 {@link NebulaColumnarResultSet.Builder}，
+ * 或超出结果预算时溢出到文件的 {@link NebulaSpilledResultSet.Writer}
+ *
+ * @author daiyi
+ */
+interface RowSink {
+
+    /**
+     * 追加一行
+     *
+     * @param cells          按列顺序排列的值，null 表示空值；调用方可以复用该数组
+     * @param decodeType     字符串解码方式
+     * @param timezoneOffset 时区偏移
+     * @return this
+     * @throws SQLException 写入失败
+     */
+    RowSink append(ValueWrapper[] cells, String decodeType, int timezoneOffset) throws SQLException;
+}
@@ -0,0 +1,73 @@
+package com.mininglamp.nebulamybatis;
+
+/**
+ * 一次语句执行中由 {@link GraphResultSetIntercept} 记录的映射耗时，供 {@link NebulaSlowStatementIntercept} 拆分耗时
+ * <p>
+ * 按线程保存，嵌套查询（如 association 的 select）执行时压栈，结束后恢复外层语句的采集。
+ *
+ * @author daiyi
+ */
+final class StatementCapture {
+
+    private static final ThreadLocal<StatementCapture> CURRENT = new ThreadLocal<>();
+
+    private final StatementCapture outer;
+    /**
+     * 拦截器处理结果集的耗时，未经过拦截器时为 -1
+     */
+    private long handleNanos = -1L;
+    private NebulaMybatisMetrics.Mode mode;
+    private NebulaMappingStats stats;
+
+    private StatementCapture(StatementCapture outer) {
+        this.outer = outer;
+    }
+
+    /**
+     * 开始采集当前线程的一次语句执行
+     */
+    static StatementCapture begin() {
+        StatementCapture capture = new StatementCapture(CURRENT.get());
+        CURRENT.set(capture);
+        return capture;
+    }
+
+    /**
+     * 结束采集，恢复外层语句的采集
+     */
+    void end() {
+        if (outer != null) {
+            CURRENT.set(outer);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * @return 当前线程没有在采集时返回 null
+     */
+    static StatementCapture current() {
+        return CURRENT.get();
+    }
+
+    void handled(long nanos) {
+        handleNanos = handleNanos < 0 ? nanos : handleNanos + nanos;
+    }
+
+    void mapped(NebulaMybatisMetrics.Mode mode, NebulaMappingStats stats) {
+        this.mode = mode;
+        this.stats = stats;
+    }
+
+    long getHandleNanos() {
+        return handleNanos;
+    }
+
+    NebulaMybatisMetrics.Mode getMode() {
+        return mode;
+    }
+
+    NebulaMappingStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,145 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.jdbc.NebulaConnection;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * MappedStatement 分类
+ * <p>
+ * 按 Configuration 的数据源和 ResultMap 把语句分为图结果、nebula 标量结果和非 nebula 三类，
+ * 后两类不需要拦截，{@link GraphResultSetIntercept#plugin(Object)} 直接返回原对象，不生成代理。
+ * 启动时由自动配置预先分类并构建映射计划，运行时遇到未分类的语句再按需分类。
+ *
+ * @author daiyi
+ */
+@Slf4j
+final class StatementClassifier {
+
+    /**
+     * nebula-jdbc 的连接串前缀
+     */
+    private static final String NEBULA_URL_PREFIX = "jdbc:nebula:";
+
+    private static final String[] URL_GETTERS = {"getJdbcUrl", "getUrl"};
+
+    /**
+     * 语句分类
+     */
+    enum Kind {
+        /**
+         * nebula 数据源（或无法判断数据源），ResultMap 有字段映射，结果可能是点/边/路径，需要拦截
+         */
+        GRAPH,
+        /**
+         * nebula 数据源，没有 ResultMap 或没有字段映射（count 等标量结果），直接交给 mybatis
+         */
+        NEBULA_SCALAR,
+        /**
+         * 非 nebula 数据源，直接交给 mybatis
+         */
+        NON_NEBULA
+    }
+
+    /**
+     * MappedStatement -> 分类，按对象本身区分，多个 Configuration 中同名的语句互不影响
+     */
+    private final Map<MappedStatement, Kind> kinds = new ConcurrentHashMap<>();
+
+    /**
+     * Configuration -> 是否 nebula 数据源
+     */
+    private final Map<Configuration, Boolean> nebulaConfigurations = new ConcurrentHashMap<>();
+
+    /**
+     * 语句分类，未分类的语句按需分类
+     *
+     * @param mappedStatement 映射语句
+     * @param planProvider    映射计划，只有 nebula 数据源的语句才会构建；无法构建时返回 null
+     * @return 分类
+     */
+    Kind classify(MappedStatement mappedStatement, Function<MappedStatement, MappingPlan> planProvider) {
+        Kind kind = kinds.get(mappedStatement);
+        if (kind == null) {
+            if (!isNebula(mappedStatement.getConfiguration())) {
+                kind = Kind.NON_NEBULA;
+            } else {
+                MappingPlan plan = planProvider.apply(mappedStatement);
+                kind = plan != null && plan.isNone() ? Kind.NEBULA_SCALAR : Kind.GRAPH;
+            }
+            kinds.put(mappedStatement, kind);
+        }
+        return kind;
+    }
+
+    private boolean isNebula(Configuration configuration) {
+        Boolean nebula = nebulaConfigurations.get(configuration);
+        if (nebula == null) {
+            Environment environment = configuration.getEnvironment();
+            Boolean detected = environment == null ? null : isNebulaDataSource(environment.getDataSource());
+            // 无法判断数据源时按 nebula 处理，与不分类时的行为一致
+            nebula = detected == null || detected;
+            nebulaConfigurations.put(configuration, nebula);
+        }
+        return nebula;
+    }
+
+    /**
+     * 判断数据源是否为 nebula：数据源类名包含 nebula，或连接串以 jdbc:nebula: 开头
+     *
+     * @param dataSource 数据源
+     * @return 无法判断（如动态路由数据源）时返回 null
+     */
+    static Boolean isNebulaDataSource(DataSource dataSource) {
+        while (dataSource instanceof DelegatingDataSource) {
+            dataSource = ((DelegatingDataSource) dataSource).getTargetDataSource();
+        }
+        if (dataSource == null) {
+            return null;
+        }
+        if (dataSource.getClass().getName().toLowerCase().contains("nebula")) {
+            return Boolean.TRUE;
+        }
+        for (String getter : URL_GETTERS) {
+            Method method = ReflectionUtils.findMethod(dataSource.getClass(), getter);
+            if (method == null || method.getReturnType() != String.class) {
+                continue;
+            }
+            try {
+                Object url = ReflectionUtils.invokeMethod(method, dataSource);
+                if (url != null) {
+                    return ((String) url).startsWith(NEBULA_URL_PREFIX);
+                }
+            } catch (RuntimeException e) {
+                log.debug("读取数据源连接串失败：{}", dataSource.getClass().getName(), e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 判断连接是否为 nebula-jdbc 连接，连接池、Spring 事务代理包装的连接通过 isWrapperFor 判断
+     *
+     * @param connection 连接
+     * @return 是否 nebula 连接
+     */
+    static boolean isNebulaConnection(Connection connection) {
+        try {
+            return connection.isWrapperFor(NebulaConnection.class);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mininglamp.nebulamybatis;
+
+import org.apache.ibatis.executor.statement.BaseStatementHandler;
+import org.apache.ibatis.executor.statement.RoutingStatementHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * StatementHandler 拦截器共用的反射访问
+ * <p>
+ * mybatis 没有公开 StatementHandler 对应的 MappedStatement，从 RoutingStatementHandler、BaseStatementHandler 的私有字段读取；
+ * nebula-jdbc 没有公开结果集底层的客户端 ResultSet，同样从私有字段读取
+ *
+ * @author daiyi
+ */
+final class StatementHandlers {
+
+    /**
+     * mybatis、nebula-jdbc 中私有字段的 getter，只反射一次
+     */
+    private static final MethodHandle ROUTING_DELEGATE_GETTER;
+    private static final MethodHandle MAPPED_STATEMENT_GETTER;
+    private static final MethodHandle CLIENT_RESULT_SET_GETTER;
+
+    static {
+        try {
+            ROUTING_DELEGATE_GETTER = getter(RoutingStatementHandler.class, "delegate");
+            MAPPED_STATEMENT_GETTER = getter(BaseStatementHandler.class, "mappedStatement");
+            CLIENT_RESULT_SET_GETTER = getter(com.vesoft.nebula.jdbc.NebulaResultSet.class, "resultSet");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private StatementHandlers() {
+    }
+
+    /**
+     * @return RoutingStatementHandler 实际委托的 StatementHandler，其他 StatementHandler 原样返回
+     */
+    static StatementHandler delegate(StatementHandler handler) throws Throwable {
+        return handler instanceof RoutingStatementHandler ? (StatementHandler) ROUTING_DELEGATE_GETTER.invoke(handler) : handler;
+    }
+
+    /**
+     * @return 不是 mybatis 内置的 StatementHandler 时返回 null
+     */
+    static MappedStatement getMappedStatement(StatementHandler handler) throws Throwable {
+        StatementHandler delegate = delegate(handler);
+        return delegate instanceof BaseStatementHandler ? (MappedStatement) MAPPED_STATEMENT_GETTER.invoke(delegate) : null;
+    }
+
+    /**
+     * @return nebula-jdbc 结果集底层的客户端 ResultSet，不是 nebula-jdbc 的结果集时返回 null
+     */
+    static com.vesoft.nebula.client.graph.data.ResultSet clientResultSet(ResultSet resultSet) throws SQLException {
+        if (resultSet == null || !resultSet.isWrapperFor(com.vesoft.nebula.jdbc.NebulaResultSet.class)) {
+            return null;
+        }
+        try {
+            return (com.vesoft.nebula.client.graph.data.ResultSet) CLIENT_RESULT_SET_GETTER.invoke(
+                    resultSet.unwrap(com.vesoft.nebula.jdbc.NebulaResultSet.class));
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * 私有字段的 getter
+     */
+    static MethodHandle getter(Class<?> type, String name) throws ReflectiveOperationException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectGetter(field);
+    }
+}
@@ -0,0 +1,119 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * 单个结果集内的字符串驻留
+ * <p>
+ * 扇出查询中同一个起点 VID、低基数的字符串属性（类型、状态、标签）会在成千上万行中重复出现，
+ * {@link ValueWrapper#asString()} 每次都会生成新的 String。驻留表按 nebula 字符串的原始字节查找，
+ * 命中时直接返回已解码的 String，不再解码、不再分配。
+ * <p>
+ * 只驻留不超过 {@link #MAX_LENGTH} 字节的字符串，条目数达到容量后不再加入新条目，已有条目仍可命中。
+ * 一个结果集中的值使用同一种编码，驻留表只在一次查询的一个线程中使用，非线程安全。
+ *
+ * @author daiyi
+ */
+final class StringInterner {
+
+    /**
+     * 驻留的最大字节数，更长的字符串很少重复
+     */
+    static final int MAX_LENGTH = 64;
+
+    private static final int INITIAL_SLOTS = 64;
+
+    private static final int MAX_CAPACITY = 1 << 20;
+
+    private final int capacity;
+    private byte[][] keys;
+    private String[] values;
+    private int size;
+
+    /**
+     * @param capacity 最多驻留的字符串个数
+     */
+    StringInterner(int capacity) {
+        this.capacity = Math.min(capacity, MAX_CAPACITY);
+        int slots = Math.min(INITIAL_SLOTS, tableSize(this.capacity));
+        this.keys = new byte[slots][];
+        this.values = new String[slots];
+    }
+
+    /**
+     * @param capacity 最多驻留的字符串个数，小于等于 0 时不驻留
+     * @return 不驻留时返回 null
+     */
+    static StringInterner create(int capacity) {
+        return capacity > 0 ? new StringInterner(capacity) : null;
+    }
+
+    /**
+     * 字符串值解码为 String，重复的值返回同一个实例
+     *
+     * @param value 字符串类型的 nebula 值
+     * @return 解码结果
+     * @throws UnsupportedEncodingException
+     */
+    String intern(ValueWrapper value) throws UnsupportedEncodingException {
+        byte[] bytes = value.getValue().getSVal();
+        if (bytes.length > MAX_LENGTH) {
+            return value.asString();
+        }
+        int hash = Arrays.hashCode(bytes);
+        int mask = keys.length - 1;
+        int slot = spread(hash) & mask;
+        byte[] key;
+        while ((key = keys[slot]) != null) {
+            if (Arrays.equals(key, bytes)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        String decoded = value.asString();
+        if (size < capacity) {
+            keys[slot] = bytes;
+            values[slot] = decoded;
+            if (++size * 2 > keys.length && keys.length < tableSize(capacity)) {
+                resize();
+            }
+        }
+        return decoded;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = spread(Arrays.hashCode(oldKeys[i])) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * 装载因子不超过 0.5 的槽数，2 的幂
+     */
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,503 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.Value;
+import com.vesoft.nebula.client.graph.data.DateTimeWrapper;
+import com.vesoft.nebula.client.graph.data.DateWrapper;
+import com.vesoft.nebula.client.graph.data.TimeWrapper;
+import com.vesoft.nebula.client.graph.data.ValueWrapper;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * nebula 值转换器
+ * <p>
+ * 每个 (目标类型, nebula 值类型) 组合只选择一次转换器，按 {@link Value#getSetField()} 编号放入转换表并缓存，
+ * 之后每个值的转换只是一次数组下标访问加一次虚方法调用，不再逐个 isXxx() 判断。
+ * long/int/double/boolean 属性通过 {@link PropertyWriter} 的基本类型写入方法写入，不装箱；
+ * List/Set/Map 按目标的泛型元素类型逐个转换，并按源集合大小预先分配容量。
+ *
+ * @author daiyi
+ */
+abstract class ValueConverter {
+
+    /**
+     * 转换表长度，覆盖 Value 的全部 setField 编号（0 表示空值）
+     */
+    private static final int KINDS = Value.GVAL + 1;
+
+    private static final String[] KIND_NAMES = {"EMPTY", "NULL", "BOOL", "INT", "FLOAT", "STRING", "DATE", "TIME",
+            "DATETIME", "VERTEX", "EDGE", "PATH", "LIST", "MAP", "SET", "DATASET"};
+
+    private static final ConcurrentMap<Type, Table> TABLES = new ConcurrentHashMap<>();
+
+    /**
+     * 空值：基本类型属性保持默认值，其余写入 null
+     */
+    private static final ValueConverter NULL = new ValueConverter() {
+        @Override
+        Object convert(ValueWrapper value) {
+            return null;
+        }
+
+        @Override
+        void write(Object bean, ValueWrapper value, PropertyWriter writer) {
+            if (!writer.getPropertyType().isPrimitive()) {
+                writer.write(bean, null);
+            }
+        }
+    };
+
+    private static final ValueConverter IDENTITY = of(value -> value);
+
+    /**
+     * nebula 字符串直接解码为 String，开启字符串驻留时可以替换为驻留表中的实例
+     */
+    private static final ValueConverter AS_STRING = of(ValueWrapper::asString);
+
+    /**
+     * 不支持的目标类型，缓存占位
+     */
+    private static final Table UNSUPPORTED = new Table(Object.class, new ValueConverter[0]);
+
+    /**
+     * 转换为目标类型
+     *
+     * @param value 非空的 nebula 值
+     * @return 转换结果
+     * @throws UnsupportedEncodingException
+     */
+    abstract Object convert(ValueWrapper value) throws UnsupportedEncodingException;
+
+    /**
+     * 转换并写入属性，基本类型的转换器会覆盖这个方法避免装箱
+     */
+    void write(Object bean, ValueWrapper value, PropertyWriter writer) throws UnsupportedEncodingException {
+        writer.write(bean, convert(value));
+    }
+
+    /**
+     * 目标类型的转换表
+     *
+     * @param targetType 目标类型，可以是带泛型参数的集合类型
+     * @return 转换表，不支持的目标类型返回 null
+     */
+    static Table table(Type targetType) {
+        Table table = TABLES.get(targetType);
+        if (table == null) {
+            // 集合元素的转换表在构建时递归获取，不能在 computeIfAbsent 中构建
+            ValueConverter[] converters = build(targetType);
+            table = converters == null ? UNSUPPORTED : new Table(targetType, converters);
+            Table existing = TABLES.putIfAbsent(targetType, table);
+            table = existing != null ? existing : table;
+        }
+        return table == UNSUPPORTED ? null : table;
+    }
+
+    /**
+     * 目标类型的转换表，不支持的目标类型按值本身的类型转换（与 Object 相同）
+     */
+    static Table tableOrNatural(Type targetType) {
+        Table table = table(targetType);
+        return table != null ? table : table(Object.class);
+    }
+
+    private static ValueConverter[] build(Type targetType) {
+        Class<?> raw = rawClass(targetType);
+        if (raw == null) {
+            return null;
+        }
+        ValueConverter[] converters = new ValueConverter[KINDS];
+        converters[0] = NULL;
+        converters[Value.NVAL] = NULL;
+        if (raw == Object.class) {
+            natural(converters);
+        } else if (raw == ValueWrapper.class) {
+            for (int kind = Value.BVAL; kind < KINDS; kind++) {
+                converters[kind] = IDENTITY;
+            }
+        } else if (raw == String.class) {
+            for (int kind = Value.BVAL; kind < KINDS; kind++) {
+                converters[kind] = of(ValueWrapper::toString);
+            }
+            converters[Value.SVAL] = AS_STRING;
+        } else if (raw == long.class || raw == Long.class) {
+            converters[Value.IVAL] = longs(ValueWrapper::asLong);
+            converters[Value.FVAL] = longs(value -> (long) value.asDouble());
+            converters[Value.SVAL] = longs(value -> Long.parseLong(value.asString().trim()));
+        } else if (raw == int.class || raw == Integer.class) {
+            converters[Value.IVAL] = ints(value -> (int) value.asLong());
+            converters[Value.FVAL] = ints(value -> (int) value.asDouble());
+            converters[Value.SVAL] = ints(value -> Integer.parseInt(value.asString().trim()));
+        } else if (raw == double.class || raw == Double.class) {
+            converters[Value.FVAL] = doubles(ValueWrapper::asDouble);
+            converters[Value.IVAL] = doubles(value -> (double) value.asLong());
+            converters[Value.SVAL] = doubles(value -> Double.parseDouble(value.asString().trim()));
+        } else if (raw == boolean.class || raw == Boolean.class) {
+            converters[Value.BVAL] = booleans(ValueWrapper::asBoolean);
+            converters[Value.IVAL] = booleans(value -> value.asLong() != 0);
+            converters[Value.SVAL] = booleans(value -> Boolean.parseBoolean(value.asString().trim()));
+        } else if (raw == short.class || raw == Short.class) {
+            converters[Value.IVAL] = of(value -> (short) value.asLong());
+            converters[Value.FVAL] = of(value -> (short) value.asDouble());
+            converters[Value.SVAL] = of(value -> Short.parseShort(value.asString().trim()));
+        } else if (raw == byte.class || raw == Byte.class) {
+            converters[Value.IVAL] = of(value -> (byte) value.asLong());
+            converters[Value.FVAL] = of(value -> (byte) value.asDouble());
+            converters[Value.SVAL] = of(value -> Byte.parseByte(value.asString().trim()));
+        } else if (raw == float.class || raw == Float.class) {
+            converters[Value.FVAL] = of(value -> (float) value.asDouble());
+            converters[Value.IVAL] = of(value -> (float) value.asLong());
+            converters[Value.SVAL] = of(value -> Float.parseFloat(value.asString().trim()));
+        } else if (raw == BigDecimal.class) {
+            converters[Value.IVAL] = of(value -> BigDecimal.valueOf(value.asLong()));
+            converters[Value.FVAL] = of(value -> BigDecimal.valueOf(value.asDouble()));
+            converters[Value.SVAL] = of(value -> new BigDecimal(value.asString().trim()));
+        } else if (raw == BigInteger.class) {
+            converters[Value.IVAL] = of(value -> BigInteger.valueOf(value.asLong()));
+            converters[Value.SVAL] = of(value -> new BigInteger(value.asString().trim()));
+        } else if (raw == Timestamp.class) {
+            // 整数按秒级时间戳处理，与 AbstractNebulaResultSet#getTimestamp 一致
+            converters[Value.IVAL] = of(value -> new Timestamp(value.asLong() * 1000));
+            converters[Value.DTVAL] = of(value -> Timestamp.from(instant(value.asDateTime())));
+            converters[Value.DVAL] = of(value -> Timestamp.valueOf(localDate(value.asDate()).atStartOfDay()));
+        } else if (raw == java.sql.Date.class) {
+            converters[Value.DVAL] = of(value -> java.sql.Date.valueOf(localDate(value.asDate())));
+            converters[Value.DTVAL] = of(value -> java.sql.Date.valueOf(localDateTime(value.asDateTime()).toLocalDate()));
+        } else if (raw == Time.class) {
+            // 与 AbstractNebulaResultSet#getTime 一致，取原始时分秒
+            converters[Value.TVAL] = of(value -> {
+                TimeWrapper time = value.asTime();
+                return Time.valueOf(LocalTime.of(time.getHour(), time.getMinute(), time.getSecond()));
+            });
+        } else if (raw == Date.class) {
+            converters[Value.IVAL] = of(value -> new Date(value.asLong() * 1000));
+            converters[Value.DTVAL] = of(value -> Date.from(instant(value.asDateTime())));
+            converters[Value.DVAL] = of(value -> new Date(Timestamp.valueOf(localDate(value.asDate()).atStartOfDay()).getTime()));
+        } else if (raw == LocalDate.class) {
+            converters[Value.DVAL] = of(value -> localDate(value.asDate()));
+            converters[Value.DTVAL] = of(value -> localDateTime(value.asDateTime()).toLocalDate());
+            converters[Value.SVAL] = of(value -> LocalDate.parse(value.asString().trim()));
+        } else if (raw == LocalDateTime.class) {
+            converters[Value.DTVAL] = of(value -> localDateTime(value.asDateTime()));
+            converters[Value.DVAL] = of(value -> localDate(value.asDate()).atStartOfDay());
+            converters[Value.IVAL] = of(value -> LocalDateTime.ofInstant(Instant.ofEpochSecond(value.asLong()), ZoneId.systemDefault()));
+            converters[Value.SVAL] = of(value -> LocalDateTime.parse(value.asString().trim()));
+        } else if (raw == LocalTime.class) {
+            converters[Value.TVAL] = of(value -> {
+                com.vesoft.nebula.Time time = value.asTime().getLocalTime();
+                return LocalTime.of(time.getHour(), time.getMinute(), time.getSec(), time.getMicrosec() * 1000);
+            });
+            converters[Value.DTVAL] = of(value -> localDateTime(value.asDateTime()).toLocalTime());
+            converters[Value.SVAL] = of(value -> LocalTime.parse(value.asString().trim()));
+        } else if (raw == Instant.class) {
+            converters[Value.DTVAL] = of(value -> instant(value.asDateTime()));
+            converters[Value.IVAL] = of(value -> Instant.ofEpochSecond(value.asLong()));
+            converters[Value.SVAL] = of(value -> Instant.parse(value.asString().trim()));
+        } else if (raw.isEnum()) {
+            converters[Value.SVAL] = enums(raw);
+        } else if (raw == List.class || raw == ArrayList.class || raw == Collection.class || raw == Iterable.class) {
+            Table element = tableOrNatural(typeArgument(targetType, 0));
+            converters[Value.LVAL] = of(value -> toList(value.asList(), element));
+            converters[Value.UVAL] = of(value -> toList(value.asSet(), element));
+        } else if (raw == Set.class || raw == HashSet.class) {
+            Table element = tableOrNatural(typeArgument(targetType, 0));
+            converters[Value.UVAL] = of(value -> toSet(value.asSet(), element));
+            converters[Value.LVAL] = of(value -> toSet(value.asList(), element));
+        } else if (raw == Map.class || raw == HashMap.class) {
+            Table element = tableOrNatural(typeArgument(targetType, 1));
+            converters[Value.MVAL] = of(value -> toMap(value.asMap(), element));
+        } else {
+            return null;
+        }
+        for (int kind = Value.BVAL; kind < KINDS; kind++) {
+            if (converters[kind] == null) {
+                converters[kind] = unsupported(kind, targetType);
+            }
+        }
+        return converters;
+    }
+
+    /**
+     * 转换表之外的值类型（更新的 nebula-java 中 GVAL 之后的 geography、duration 等）使用的转换器：
+     * ValueWrapper、Object 原样返回，String 使用 toString，其余目标类型无法转换
+     */
+    private static ValueConverter beyond(Type targetType) {
+        Class<?> raw = rawClass(targetType);
+        if (raw == ValueWrapper.class || raw == Object.class) {
+            return IDENTITY;
+        } else if (raw == String.class) {
+            return of(ValueWrapper::toString);
+        }
+        return of(value -> {
+            throw new RuntimeException("nebula 值类型 " + value.getValue().getSetField() + " 无法转换为 "
+                    + targetType.getTypeName());
+        });
+    }
+
+    /**
+     * 按值本身的类型转换，与原先 resolveValue 的结果一致
+     */
+    private static void natural(ValueConverter[] converters) {
+        converters[Value.BVAL] = of(ValueWrapper::asBoolean);
+        converters[Value.IVAL] = of(ValueWrapper::asLong);
+        converters[Value.FVAL] = of(ValueWrapper::asDouble);
+        converters[Value.SVAL] = AS_STRING;
+        converters[Value.DVAL] = of(ValueWrapper::asDate);
+        converters[Value.TVAL] = of(ValueWrapper::asTime);
+        converters[Value.DTVAL] = of(ValueWrapper::asDateTime);
+        converters[Value.VVAL] = of(ValueWrapper::asNode);
+        converters[Value.EVAL] = of(ValueWrapper::asRelationship);
+        converters[Value.PVAL] = of(ValueWrapper::asPath);
+        // 元素同样按 Object 转换，此时 Object 的转换表还在构建，转换时再取
+        converters[Value.LVAL] = of(value -> toList(value.asList(), table(Object.class)));
+        converters[Value.UVAL] = of(value -> toSet(value.asSet(), table(Object.class)));
+        converters[Value.MVAL] = of(value -> toMap(value.asMap(), table(Object.class)));
+    }
+
+    private static List<Object> toList(Collection<ValueWrapper> values, Table element) throws UnsupportedEncodingException {
+        List<Object> list = new ArrayList<>(values.size());
+        for (ValueWrapper value : values) {
+            list.add(element.convert(value));
+        }
+        return list;
+    }
+
+    private static Set<Object> toSet(Collection<ValueWrapper> values, Table element) throws UnsupportedEncodingException {
+        Set<Object> set = new HashSet<>(capacity(values.size()));
+        for (ValueWrapper value : values) {
+            set.add(element.convert(value));
+        }
+        return set;
+    }
+
+    private static Map<String, Object> toMap(Map<String, ValueWrapper> values, Table element) throws UnsupportedEncodingException {
+        Map<String, Object> map = new HashMap<>(capacity(values.size()));
+        for (Map.Entry<String, ValueWrapper> entry : values.entrySet()) {
+            map.put(entry.getKey(), element.convert(entry.getValue()));
+        }
+        return map;
+    }
+
+    private static int capacity(int size) {
+        return size < 3 ? size + 1 : (int) (size / 0.75f + 1.0f);
+    }
+
+    private static LocalDate localDate(DateWrapper date) {
+        return LocalDate.of(date.getYear(), date.getMonth(), date.getDay());
+    }
+
+    /**
+     * datetime 表示的时刻。nebula 的 datetime 以 UTC 存储，直接取原始字段，
+     * Instant、Timestamp、java.util.Date 这类表示时刻的类型都由此转换，与 JVM 时区、结果的时区偏移无关
+     */
+    private static Instant instant(DateTimeWrapper dateTime) {
+        return LocalDateTime.of(dateTime.getYear(), dateTime.getMonth(), dateTime.getDay(), dateTime.getHour(),
+                dateTime.getMinute(), dateTime.getSecond(), dateTime.getMicrosec() * 1000).toInstant(ZoneOffset.UTC);
+    }
+
+    /**
+     * 按结果的时区偏移转换为本地时间，LocalDateTime、LocalDate、LocalTime、java.sql.Date 这类不带时区的类型由此转换，
+     * 得到的是 graphd 所在时区的墙上时间
+     */
+    private static LocalDateTime localDateTime(DateTimeWrapper dateTime) {
+        com.vesoft.nebula.DateTime local = dateTime.getLocalDateTime();
+        return LocalDateTime.of(local.getYear(), local.getMonth(), local.getDay(), local.getHour(), local.getMinute(),
+                local.getSec(), local.getMicrosec() * 1000);
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            Type raw = ((ParameterizedType) type).getRawType();
+            return raw instanceof Class ? (Class<?>) raw : null;
+        }
+        return null;
+    }
+
+    /**
+     * 泛型参数，没有声明或不是具体类型时按 Object 处理
+     */
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length && rawClass(arguments[index]) != null) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ValueConverter enums(Class<?> enumType) {
+        return of(value -> Enum.valueOf((Class) enumType, value.asString()));
+    }
+
+    private static ValueConverter unsupported(int kind, Type targetType) {
+        String message = "nebula " + KIND_NAMES[kind] + " 类型的值无法转换为 " + targetType.getTypeName();
+        return of(value -> {
+            throw new RuntimeException(message);
+        });
+    }
+
+    private static ValueConverter of(Conversion conversion) {
+        return new ValueConverter() {
+            @Override
+            Object convert(ValueWrapper value) throws UnsupportedEncodingException {
+                return conversion.apply(value);
+            }
+        };
+    }
+
+    private static ValueConverter longs(LongConversion conversion) {
+        return new ValueConverter() {
+            @Override
+            Object convert(ValueWrapper value) throws UnsupportedEncodingException {
+                return conversion.apply(value);
+            }
+
+            @Override
+            void write(Object bean, ValueWrapper value, PropertyWriter writer) throws UnsupportedEncodingException {
+                writer.writeLong(bean, conversion.apply(value));
+            }
+        };
+    }
+
+    private static ValueConverter ints(IntConversion conversion) {
+        return new ValueConverter() {
+            @Override
+            Object convert(ValueWrapper value) throws UnsupportedEncodingException {
+                return conversion.apply(value);
+            }
+
+            @Override
+            void write(Object bean, ValueWrapper value, PropertyWriter writer) throws UnsupportedEncodingException {
+                writer.writeInt(bean, conversion.apply(value));
+            }
+        };
+    }
+
+    private static ValueConverter doubles(DoubleConversion conversion) {
+        return new ValueConverter() {
+            @Override
+            Object convert(ValueWrapper value) throws UnsupportedEncodingException {
+                return conversion.apply(value);
+            }
+
+            @Override
+            void write(Object bean, ValueWrapper value, PropertyWriter writer) throws UnsupportedEncodingException {
+                writer.writeDouble(bean, conversion.apply(value));
+            }
+        };
+    }
+
+    private static ValueConverter booleans(BooleanConversion conversion) {
+        return new ValueConverter() {
+            @Override
+            Object convert(ValueWrapper value) throws UnsupportedEncodingException {
+                return conversion.apply(value);
+            }
+
+            @Override
+            void write(Object bean, ValueWrapper value, PropertyWriter writer) throws UnsupportedEncodingException {
+                writer.writeBoolean(bean, conversion.apply(value));
+            }
+        };
+    }
+
+    private interface Conversion {
+        Object apply(ValueWrapper value) throws UnsupportedEncodingException;
+    }
+
+    private interface LongConversion {
+        long apply(ValueWrapper value) throws UnsupportedEncodingException;
+    }
+
+    private interface IntConversion {
+        int apply(ValueWrapper value) throws UnsupportedEncodingException;
+    }
+
+    private interface DoubleConversion {
+        double apply(ValueWrapper value) throws UnsupportedEncodingException;
+    }
+
+    private interface BooleanConversion {
+        boolean apply(ValueWrapper value) throws UnsupportedEncodingException;
+    }
+
+    /**
+     * 一个目标类型的转换表，下标为 {@link Value#getSetField()}
+     */
+    static final class Table {
+
+        private final Type targetType;
+        private final ValueConverter[] converters;
+        private final ValueConverter beyond;
+
+        private Table(Type targetType, ValueConverter[] converters) {
+            this.targetType = targetType;
+            this.converters = converters;
+            this.beyond = beyond(targetType);
+        }
+
+        private ValueConverter converter(int kind) {
+            return kind < converters.length ? converters[kind] : beyond;
+        }
+
+        Type getTargetType() {
+            return targetType;
+        }
+
+        /**
+         * 转换为目标类型，空值返回 null
+         */
+        Object convert(ValueWrapper value) throws UnsupportedEncodingException {
+            return converter(value.getValue().getSetField()).convert(value);
+        }
+
+        /**
+         * 转换为目标类型，字符串直接解码为 String 时使用驻留表
+         *
+         * @param interner 字符串驻留表，为 null 时与 {@link #convert(ValueWrapper)} 相同
+         */
+        Object convert(ValueWrapper value, StringInterner interner) throws UnsupportedEncodingException {
+            int kind = value.getValue().getSetField();
+            if (interner != null && kind == Value.SVAL && converters[kind] == AS_STRING) {
+                return interner.intern(value);
+            }
+            return converter(kind).convert(value);
+        }
+
+        /**
+         * 转换并写入属性，空值时基本类型属性保持默认值
+         */
+        void write(Object bean, ValueWrapper value, PropertyWriter writer) throws UnsupportedEncodingException {
+            converter(value.getValue().getSetField()).write(bean, value, writer);
+        }
+
+        /**
+         * 转换并写入属性，字符串直接解码为 String 时使用驻留表
+         *
+         * @param interner 字符串驻留表，为 null 时与 {@link #write(Object, ValueWrapper, PropertyWriter)} 相同
+         */
+        void write(Object bean, ValueWrapper value, PropertyWriter writer, StringInterner interner) throws UnsupportedEncodingException {
+            int kind = value.getValue().getSetField();
+            if (interner != null && kind == Value.SVAL && converters[kind] == AS_STRING) {
+                writer.write(bean, interner.intern(value));
+                return;
+            }
+            converter(kind).write(bean, value, writer);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.mininglamp.nebulamybatis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link GraphScope} 读写范围解析
+ *
+ * @author daiyi
+ */
+class GraphScopeTest {
+
+    @Test
+    void fetchReadsTagsAndVids() {
+        GraphScope scope = GraphScope.ofQuery("FETCH PROP ON player, team ?, \"v2\" YIELD properties(vertex)",
+                Collections.singletonList("v1"));
+        assertThat(scope.getTypes()).containsExactlyInAnyOrder("player", "team");
+        assertThat(scope.getVids()).containsExactlyInAnyOrder("v1", "v2");
+    }
+
+    @Test
+    void fetchAllTagsReadsAnyType() {
+        GraphScope scope = GraphScope.ofQuery("FETCH PROP ON * 'v1'", null);
+        assertThat(scope.getTypes()).isNull();
+        assertThat(scope.getVids()).containsExactly("v1");
+    }
+
+    @Test
+    void lookupReadsTagOnly() {
+        GraphScope scope = GraphScope.ofQuery("LOOKUP ON `player` WHERE player.age > ? YIELD id(vertex)",
+                Collections.singletonList(30));
+        assertThat(scope.getTypes()).containsExactly("player");
+        assertThat(scope.getVids()).isNull();
+    }
+
+    @Test
+    void goReadsEdgesAndReferencedTags() {
+        GraphScope scope = GraphScope.ofQuery("GO FROM ? OVER follow, serve YIELD $$.team.name, $^.player.age",
+                Collections.singletonList("v1"));
+        assertThat(scope.getTypes()).containsExactlyInAnyOrder("follow", "serve", "team", "player");
+        assertThat(scope.getVids()).isNull();
+    }
+
+    @Test
+    void pipeReadsUnionOfParts() {
+        GraphScope scope = GraphScope.ofQuery("GO FROM 'v1' OVER follow YIELD dst(edge) AS id | FETCH PROP ON player $-.id", null);
+        assertThat(scope.isAll()).isFalse();
+        assertThat(scope.getTypes()).containsExactlyInAnyOrder("follow", "player");
+        assertThat(scope.getVids()).isNull();
+    }
+
+    @Test
+    void unrecognizedQueryReadsAll() {
+        assertThat(GraphScope.ofQuery("MATCH (v:player) RETURN v", null)).isSameAs(GraphScope.ALL);
+        assertThat(GraphScope.ofQuery("FETCH PROP ON player \"v1", null)).isSameAs(GraphScope.ALL);
+    }
+
+    @Test
+    void insertVertexWritesTagsAndVids() {
+        GraphScope scope = GraphScope.ofWrite("INSERT VERTEX IF NOT EXISTS player(name, age), person() VALUES ?:(?, ?), \"v2\":(\"b\", 2)",
+                Arrays.asList("v1", "a", 1));
+        assertThat(scope.getTypes()).containsExactlyInAnyOrder("player", "person");
+        assertThat(scope.getVids()).containsExactlyInAnyOrder("v1", "v2");
+    }
+
+    @Test
+    void insertEdgeWritesBothEnds() {
+        GraphScope scope = GraphScope.ofWrite("INSERT EDGE follow(degree) VALUES 'v1'->'v2'@0:(95)", null);
+        assertThat(scope.getTypes()).containsExactly("follow");
+        assertThat(scope.getVids()).containsExactlyInAnyOrder("v1", "v2");
+    }
+
+    @Test
+    void updateWritesTagAndVid() {
+        GraphScope scope = GraphScope.ofWrite("UPDATE VERTEX ON player ? SET age = age + 1", Collections.singletonList("v1"));
+        assertThat(scope.getTypes()).containsExactly("player");
+        assertThat(scope.getVids()).containsExactly("v1");
+    }
+
+    @Test
+    void legacyUpdateWritesPropertyOwners() {
+        GraphScope scope = GraphScope.ofWrite("UPSERT VERTEX 'v1' SET player.age = 30 WHEN player.age > 10 YIELD player.age", null);
+        assertThat(scope.getTypes()).containsExactly("player");
+        assertThat(scope.getVids()).containsExactly("v1");
+    }
+
+    @Test
+    void deleteVertexWritesAnyType() {
+        GraphScope scope = GraphScope.ofWrite("DELETE VERTEX 'v1', 'v2' WITH EDGE", null);
+        assertThat(scope.getTypes()).isNull();
+        assertThat(scope.getVids()).containsExactlyInAnyOrder("v1", "v2");
+    }
+
+    @Test
+    void deleteTagWritesTagsAndVids() {
+        GraphScope scope = GraphScope.ofWrite("DELETE TAG player, team FROM 'v1'", null);
+        assertThat(scope.getTypes()).containsExactlyInAnyOrder("player", "team");
+        assertThat(scope.getVids()).containsExactly("v1");
+    }
+
+    @Test
+    void expressionVidsWriteAnyVid() {
+        GraphScope scope = GraphScope.ofWrite("GO FROM 'v1' OVER follow YIELD dst(edge) AS id | DELETE VERTEX $-.id", null);
+        assertThat(scope.isAll()).isTrue();
+        GraphScope edges = GraphScope.ofWrite("DELETE EDGE follow $-.src -> $-.dst", null);
+        assertThat(edges.getTypes()).containsExactly("follow");
+        assertThat(edges.getVids()).isNull();
+    }
+
+    @Test
+    void unrecognizedWriteWritesAll() {
+        assertThat(GraphScope.ofWrite("CLEAR SPACE basketball", null)).isSameAs(GraphScope.ALL);
+        assertThat(GraphScope.ofWrite("INSERT VERTEX VALUES 'v1':()", null)).isSameAs(GraphScope.ALL);
+    }
+
+    @Test
+    void scopesOverlapOnlyWhenTypesAndVidsIntersect() {
+        GraphScope read = GraphScope.ofQuery("FETCH PROP ON player 'v1'", null);
+        assertThat(read.overlaps(GraphScope.ofWrite("UPDATE VERTEX ON player 'v1' SET age = 1", null))).isTrue();
+        assertThat(read.overlaps(GraphScope.ofWrite("UPDATE VERTEX ON player 'v2' SET age = 1", null))).isFalse();
+        assertThat(read.overlaps(GraphScope.ofWrite("UPDATE VERTEX ON team 'v1' SET name = 'a'", null))).isFalse();
+        assertThat(read.overlaps(GraphScope.ofWrite("DELETE VERTEX 'v1'", null))).isTrue();
+        assertThat(read.overlaps(GraphScope.ALL)).isTrue();
+    }
+}
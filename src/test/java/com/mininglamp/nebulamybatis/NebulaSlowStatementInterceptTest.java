@@ -0,0 +1,196 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.jdbc.NebulaPreparedStatement;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.statement.PreparedStatementHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link NebulaSlowStatementIntercept} 的阈值、抽样和导出，执行计划由本地的 {@link NebulaProfiler} 提供，不访问 graphd
+ *
+ * @author daiyi
+ */
+class NebulaSlowStatementInterceptTest {
+
+    private static final String NAMESPACE = "com.example.PlayerMapper";
+
+    private final Configuration configuration = new Configuration();
+    private final AtomicInteger profiled = new AtomicInteger();
+    private NebulaSlowStatementIntercept intercept;
+
+    @BeforeEach
+    void setUp() {
+        intercept = new NebulaSlowStatementIntercept(new NebulaSlowStatementLog(2));
+        intercept.setThreshold(0L);
+        intercept.setProfileExecutor(Runnable::run);
+        intercept.setProfiler((configuration, ngql) -> {
+            profiled.incrementAndGet();
+            Map<String, String> row = new LinkedHashMap<>();
+            row.put("id", "1");
+            row.put("name", "GetVertices");
+            row.put("profiling data", "{\"rows\": 1}");
+            return Collections.singletonList(row);
+        });
+    }
+
+    @Test
+    void recordsStatementsReachingThreshold() throws Throwable {
+        Properties properties = new Properties();
+        properties.setProperty("threshold", "60000");
+        properties.setProperty("threshold." + NAMESPACE + ".selectById", "0");
+        intercept.setProperties(properties);
+
+        query("selectById", "v1");
+        query("selectByName", "Tim");
+        update("updateAge", "v1");
+
+        List<NebulaSlowStatement> entries = intercept.getSlowLog().getEntries();
+        assertThat(entries).extracting(NebulaSlowStatement::getStatementId).containsExactly(NAMESPACE + ".selectById");
+        assertThat(entries.get(0).getNgql()).isEqualTo("FETCH PROP ON player 'v1' YIELD properties(vertex)");
+        assertThat(entries.get(0).getServerLatencyMicros()).isEqualTo(-1L);
+    }
+
+    @Test
+    void profilesSampledQueriesOncePerInterval() throws Throwable {
+        intercept.setSampleRate(1D);
+
+        query("selectById", "v1");
+        query("selectById", "v2");
+
+        List<NebulaSlowStatement> entries = intercept.getSlowLog().getEntries();
+        assertThat(entries).extracting(NebulaSlowStatement::isSampled).containsExactly(true, false);
+        assertThat(entries.get(0).getPlan()).hasSize(1);
+        assertThat(entries.get(1).getPlan()).isNull();
+        assertThat(profiled).hasValue(1);
+
+        update("updateAge", "v1");
+        assertThat(profiled).hasValue(1);
+
+        intercept.setProfileInterval(0L);
+        query("selectById", "v3");
+        assertThat(profiled).hasValue(2);
+    }
+
+    @Test
+    void skipsProfileWhenNotSampled() throws Throwable {
+        query("selectById", "v1");
+
+        assertThat(intercept.getSlowLog().getEntries()).extracting(NebulaSlowStatement::isSampled).containsExactly(false);
+        assertThat(profiled).hasValue(0);
+    }
+
+    @Test
+    void ignoresNonNebulaStatements() throws Throwable {
+        PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if ("isWrapperFor".equals(method.getName())) {
+                        return false;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        intercept.setSampleRate(1D);
+
+        invoke(mappedStatement("selectById", SqlCommandType.SELECT), "v1", statement, true);
+
+        assertThat(intercept.getSlowLog().getEntries()).isEmpty();
+        assertThat(profiled).hasValue(0);
+    }
+
+    @Test
+    void exportsRingBufferAsJson() throws Throwable {
+        intercept.setSampleRate(1D);
+
+        query("selectById", "v1");
+        update("updateAge", "v1");
+        update("updateName", "v\"2");
+
+        String json = intercept.getSlowLog().toJson();
+        assertThat(intercept.getSlowLog().getEntries()).extracting(NebulaSlowStatement::getStatementId)
+                .containsExactly(NAMESPACE + ".updateAge", NAMESPACE + ".updateName");
+        assertThat(json).startsWith("[{\"timestamp\":").endsWith("}]")
+                .doesNotContain("selectById")
+                .contains("\"statementId\":\"" + NAMESPACE + ".updateAge\"")
+                .contains("\"ngql\":\"UPDATE VERTEX ON player 'v\\\"2' SET age = age + 1\"")
+                .contains("\"serverLatencyMicros\":-1")
+                .contains("\"mode\":null,\"decode\":null,\"sampled\":false,\"plan\":null,\"profileError\":null");
+
+        intercept.getSlowLog().clear();
+        query("selectByName", "Tim");
+        assertThat(intercept.getSlowLog().toJson())
+                .contains("\"sampled\":true,\"plan\":[{\"id\":\"1\",\"name\":\"GetVertices\",\"profiling data\":\"{\\\"rows\\\": 1}\"}]");
+    }
+
+    private void query(String id, String vid) throws Throwable {
+        MappedStatement mappedStatement = mappedStatement(id, SqlCommandType.SELECT);
+        invoke(mappedStatement, vid, new NebulaPreparedStatement(null, mappedStatement.getBoundSql(vid).getSql()), true);
+    }
+
+    private void update(String id, String vid) throws Throwable {
+        MappedStatement mappedStatement = mappedStatement(id, SqlCommandType.UPDATE);
+        invoke(mappedStatement, vid, new NebulaPreparedStatement(null, mappedStatement.getBoundSql(vid).getSql()), false);
+    }
+
+    private void invoke(MappedStatement mappedStatement, String vid, PreparedStatement statement, boolean query) throws Throwable {
+        StatementHandler handler = new StubStatementHandler(mappedStatement, vid);
+        handler.parameterize(statement);
+        Invocation invocation = query
+                ? new Invocation(handler, StatementHandler.class.getMethod("query", Statement.class, ResultHandler.class), new Object[]{statement, null})
+                : new Invocation(handler, StatementHandler.class.getMethod("update", Statement.class), new Object[]{statement});
+        intercept.intercept(invocation);
+    }
+
+    private MappedStatement mappedStatement(String id, SqlCommandType commandType) {
+        String sql = commandType == SqlCommandType.SELECT
+                ? "FETCH PROP ON player ? YIELD properties(vertex)"
+                : "UPDATE VERTEX ON player ? SET age = age + 1";
+        return new MappedStatement.Builder(configuration, NAMESPACE + "." + id,
+                new StaticSqlSource(configuration, sql, Collections.singletonList(
+                        new ParameterMapping.Builder(configuration, "vid", String.class).build())),
+                commandType).build();
+    }
+
+    /**
+     * 不访问 graphd 的 StatementHandler，只设置参数
+     */
+    private static final class StubStatementHandler extends PreparedStatementHandler {
+
+        StubStatementHandler(MappedStatement mappedStatement, String vid) {
+            super(null, mappedStatement, vid, RowBounds.DEFAULT, null, mappedStatement.getBoundSql(vid));
+        }
+
+        @Override
+        public void parameterize(Statement statement) throws SQLException {
+            if (statement instanceof NebulaPreparedStatement) {
+                super.parameterize(statement);
+            }
+        }
+
+        @Override
+        public <E> List<E> query(Statement statement, ResultHandler resultHandler) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int update(Statement statement) {
+            return 1;
+        }
+    }
+}
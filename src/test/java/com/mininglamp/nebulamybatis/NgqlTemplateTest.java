@@ -0,0 +1,157 @@
+package com.mininglamp.nebulamybatis;
+
+import com.vesoft.nebula.jdbc.NebulaPreparedStatement;
+import com.vesoft.nebula.jdbc.PlaceholderUtil;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link NgqlTemplate} 的切分和渲染，结果与 nebula-jdbc 的 setXxx 加 {@link PlaceholderUtil} 替换占位符相同
+ *
+ * @author daiyi
+ */
+class NgqlTemplateTest {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Test
+    void compileSkipsPlaceholdersInQuotes() throws Throwable {
+        String sql = "MATCH (v:player) WHERE v.player.name == '?' AND v.player.note == \"a?\" AND id(v) == ? RETURN v";
+        NgqlTemplate template = NgqlTemplate.compile(sql);
+
+        assertThat(template.getSlotCount()).isEqualTo(1);
+        assertThat(template.getSql()).isEqualTo(sql);
+        assertThat(render(template, NgqlTemplate.KIND_STRING, "v1")).isEqualTo(driver(sql, statement -> statement.setString(1, "v1")));
+    }
+
+    @Test
+    void compileSkipsPlaceholdersInBackticks() {
+        // 驱动只识别单引号、双引号，反引号内的 ? 也会被当作占位符，参数个数与 mybatis 的参数映射不一致
+        NgqlTemplate template = NgqlTemplate.compile("FETCH PROP ON `player?` ? YIELD properties(vertex)");
+
+        assertThat(template.getSlotCount()).isEqualTo(1);
+        assertThat(render(template, NgqlTemplate.KIND_STRING, "v1")).isEqualTo("FETCH PROP ON `player?` 'v1' YIELD properties(vertex)");
+    }
+
+    @Test
+    void compileKeepsEscapedQuoteInsideString() {
+        // 驱动在 \' 处结束字符串，会把其后引号内的 ? 当作占位符
+        NgqlTemplate template = NgqlTemplate.compile("LOOKUP ON player WHERE player.name == 'it\\'s?' AND player.age > ? YIELD id(vertex)");
+
+        assertThat(template.getSlotCount()).isEqualTo(1);
+        assertThat(render(template, NgqlTemplate.KIND_INTEGER, 30L))
+                .isEqualTo("LOOKUP ON player WHERE player.name == 'it\\'s?' AND player.age > 30 YIELD id(vertex)");
+    }
+
+    @Test
+    void stringsEscapeLikeSetString() throws Throwable {
+        String sql = "FETCH PROP ON player ? YIELD properties(vertex)";
+        NgqlTemplate template = NgqlTemplate.compile(sql);
+        for (String value : Arrays.asList("v1", "", "it's", "back\\slash", "\\'", "line\nbreak", "tab\tand\r", "\"quoted\"", "中文 ?")) {
+            assertThat(render(template, NgqlTemplate.KIND_STRING, value))
+                    .as(value)
+                    .isEqualTo(driver(sql, statement -> statement.setString(1, value)));
+        }
+        assertThat(render(template, NgqlTemplate.KIND_STRING, null)).isEqualTo(driver(sql, statement -> statement.setNull(1, Types.VARCHAR)));
+    }
+
+    @Test
+    void scalarsRenderLikeSetters() throws Throwable {
+        String sql = "UPDATE VERTEX ON player 'v1' SET age = ?, score = ?, weight = ?, active = ?, joined = ?, born = ?";
+        NgqlTemplate template = NgqlTemplate.compile(sql);
+        Timestamp joined = Timestamp.valueOf("2021-06-01 12:30:00");
+        LocalDate born = LocalDate.of(1990, 2, 3);
+        StringBuilder out = new StringBuilder();
+
+        assertThat(template.render(out,
+                new byte[]{NgqlTemplate.KIND_INTEGER, NgqlTemplate.KIND_FLOAT, NgqlTemplate.KIND_FLOAT, NgqlTemplate.KIND_BOOLEAN,
+                        NgqlTemplate.KIND_TIMESTAMP, NgqlTemplate.KIND_LOCAL_DATE},
+                new Object[]{42, 9.5D, 1.25F, true, joined, born}, ZONE)).isTrue();
+        assertThat(out.toString()).isEqualTo(driver(sql, statement -> {
+            statement.setInt(1, 42);
+            statement.setDouble(2, 9.5D);
+            statement.setFloat(3, 1.25F);
+            statement.setBoolean(4, true);
+            statement.setTimestamp(5, joined);
+            statement.setObject(6, born);
+        }));
+    }
+
+    @Test
+    void collectionAfterInRendersListLiteral() throws Throwable {
+        NgqlTemplate template = NgqlTemplate.compile("MATCH (v:player) WHERE id(v) IN ? AND v.player.age in\n ? RETURN v");
+
+        assertThat(template.getSlotCount()).isEqualTo(2);
+        StringBuilder out = new StringBuilder();
+        assertThat(template.render(out, new byte[]{NgqlTemplate.KIND_LIST, NgqlTemplate.KIND_LIST},
+                new Object[]{Arrays.asList("v1", "it's"), new long[]{30L, 31L}}, ZONE)).isTrue();
+        assertThat(out.toString()).isEqualTo("MATCH (v:player) WHERE id(v) IN [" + driver("?", statement -> statement.setString(1, "v1"))
+                + ", " + driver("?", statement -> statement.setString(1, "it's")) + "] AND v.player.age in\n [30, 31] RETURN v");
+    }
+
+    @Test
+    void collectionElsewhereRendersCommaSeparated() {
+        NgqlTemplate template = NgqlTemplate.compile("GO FROM ? OVER follow WHERE follow.degree IN ? YIELD dst(edge)");
+        StringBuilder out = new StringBuilder();
+
+        assertThat(template.render(out, new byte[]{NgqlTemplate.KIND_LIST, NgqlTemplate.KIND_LIST},
+                new Object[]{new String[]{"v1", "v2"}, Collections.emptyList()}, ZONE)).isTrue();
+        assertThat(out.toString()).isEqualTo("GO FROM 'v1', 'v2' OVER follow WHERE follow.degree IN [] YIELD dst(edge)");
+    }
+
+    @Test
+    void listElementsRenderByType() {
+        NgqlTemplate template = NgqlTemplate.compile("RETURN ? IN ?");
+
+        assertThat(render(template, NgqlTemplate.KIND_STRING, "a")).isEqualTo("RETURN 'a' IN null");
+        StringBuilder out = new StringBuilder();
+        assertThat(template.render(out, new byte[]{NgqlTemplate.KIND_INTEGER, NgqlTemplate.KIND_LIST},
+                new Object[]{1, Arrays.asList(1, 2.5D, null, true, "b", Arrays.asList("c", "d"))}, ZONE)).isTrue();
+        assertThat(out.toString()).isEqualTo("RETURN 1 IN [1, 2.5, null, true, 'b', ['c', 'd']]");
+
+        assertThat(template.render(new StringBuilder(), new byte[]{NgqlTemplate.KIND_INTEGER, NgqlTemplate.KIND_LIST},
+                new Object[]{1, Collections.singletonList(new Object())}, ZONE)).isFalse();
+    }
+
+    /**
+     * 只给第一个参数槽赋值，其余为 null
+     */
+    private static String render(NgqlTemplate template, byte kind, Object value) {
+        byte[] kinds = new byte[template.getSlotCount()];
+        Object[] values = new Object[kinds.length];
+        kinds[0] = kind;
+        values[0] = value;
+        StringBuilder out = new StringBuilder();
+        assertThat(template.render(out, kinds, values, ZONE)).isTrue();
+        return out.toString();
+    }
+
+    /**
+     * 驱动的渲染：setXxx 转义参数，执行时 PlaceholderUtil 替换占位符
+     */
+    private static String driver(String sql, ParameterSetter setter) throws Throwable {
+        NebulaPreparedStatement statement = new NebulaPreparedStatement(null, sql);
+        setter.set(statement);
+        MethodHandle getter = StatementHandlers.getter(NebulaPreparedStatement.class, "parameters");
+        @SuppressWarnings("unchecked")
+        Map<Integer, Object> parameters = (Map<Integer, Object>) getter.invoke(statement);
+        return PlaceholderUtil.replacePlaceholders(sql, parameters);
+    }
+
+    @FunctionalInterface
+    private interface ParameterSetter {
+
+        void set(NebulaPreparedStatement statement) throws SQLException;
+    }
+}